@@ -0,0 +1,203 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import java.time.Duration;
+import java.util.SortedSet;
+
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto.ExpiredGenerationDTO;
+import org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto.RetentionReportDTO;
+import org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto.UploadAdmissionDTO;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ExpiredGeneration;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.RetentionReport;
+import org.jboss.sbomer.manifest.storage.service.core.port.api.ComponentSearch;
+import org.jboss.sbomer.manifest.storage.service.core.port.api.RetentionAdministration;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+@Path("/api/v1/admin")
+@Tag(name = "Administration", description = "Operations for tuning the service at runtime.")
+public class AdminResource {
+
+    @Inject
+    UploadAdmission uploadAdmission;
+
+    @Inject
+    ComponentSearch componentSearch;
+
+    @Inject
+    RetentionAdministration retention;
+
+    @GET
+    @Path("/upload-admission")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Get Upload Admission", description = "Returns the limits of the upload admission control "
+            + "and the uploads currently admitted and waiting.")
+    @APIResponse(responseCode = "200", description = "The limits and current usage",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = UploadAdmissionDTO.class)))
+    public UploadAdmissionDTO getUploadAdmission() {
+        return toDTO(uploadAdmission);
+    }
+
+    @PUT
+    @Path("/upload-admission")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Update Upload Admission", description = "Changes the limits of the upload admission control "
+            + "until the next restart. Waiting uploads are admitted right away if they fit into the new limits.")
+    @APIResponse(responseCode = "200", description = "The new limits and current usage",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = UploadAdmissionDTO.class)))
+    @APIResponse(responseCode = "400", description = "A limit is out of range")
+    public Response updateUploadAdmission(UploadAdmissionDTO limits) {
+        if (limits == null || limits.maxConcurrent < 1 || limits.maxBytes < 1 || limits.maxWaitMillis < 0) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("maxConcurrent and maxBytes must be positive, maxWaitMillis must not be negative")
+                    .build();
+        }
+        uploadAdmission.setLimits(limits.maxConcurrent, limits.maxBytes, Duration.ofMillis(limits.maxWaitMillis));
+        return Response.ok(toDTO(uploadAdmission)).build();
+    }
+
+    @POST
+    @Path("/component-index/rebuild")
+    @Operation(summary = "Rebuild Component Index", description = "Rebuilds the component index of this instance from "
+            + "all SBOMs in the storage, in the background. Searches use the current index until the rebuild is done.")
+    @APIResponse(responseCode = "202", description = "The rebuild started")
+    @APIResponse(responseCode = "409", description = "A rebuild is running already")
+    public Response rebuildComponentIndex() {
+        if (!componentSearch.rebuildIndex()) {
+            return Response.status(Response.Status.CONFLICT).entity("A rebuild of the component index is running").build();
+        }
+        return Response.accepted().build();
+    }
+
+    @GET
+    @Path("/retention/report")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Get Retention Report", description = "Returns the latest evaluation of the retention policy, "
+            + "by a report or a retention pass: the generations it keeps, by reason, and those a pass would delete.")
+    @APIResponse(responseCode = "200", description = "The generations kept and expired",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = RetentionReportDTO.class)))
+    @APIResponse(responseCode = "404", description = "The retention policy was not evaluated yet")
+    public Response getRetentionReport() {
+        RetentionReport report = retention.lastReport();
+        if (report == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity("No retention report yet").build();
+        }
+        return Response.ok(toDTO(report)).build();
+    }
+
+    @POST
+    @Path("/retention/report")
+    @Operation(summary = "Evaluate Retention", description = "Applies the retention policy without deleting anything, "
+            + "in the background. The report is then returned by GET.")
+    @APIResponse(responseCode = "202", description = "The evaluation started")
+    @APIResponse(responseCode = "409", description = "A retention pass or report is running already")
+    public Response startRetentionReport() {
+        if (!retention.startReport()) {
+            return Response.status(Response.Status.CONFLICT).entity("A retention pass or report is running").build();
+        }
+        return Response.accepted().build();
+    }
+
+    @POST
+    @Path("/retention/run")
+    @Operation(summary = "Run Retention", description = "Deletes the generations the retention policy no longer keeps, "
+            + "in the background. The progress is reported by the sbomer.storage.retention metrics.")
+    @APIResponse(responseCode = "202", description = "The retention pass started")
+    @APIResponse(responseCode = "409", description = "A retention pass or report is running already")
+    @APIResponse(responseCode = "501", description = "Deduplication is enabled, passes would not delete the shared blobs")
+    public Response runRetention() {
+        if (!retention.runRetention()) {
+            return Response.status(Response.Status.CONFLICT).entity("A retention pass or report is running").build();
+        }
+        return Response.accepted().build();
+    }
+
+    @GET
+    @Path("/retention/pins")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "List Pinned Generations", description = "Returns the IDs of the generations the retention "
+            + "policy keeps regardless of their age.")
+    @APIResponse(responseCode = "200", description = "The pinned generation IDs, sorted")
+    public SortedSet<String> getRetentionPins() {
+        return retention.pins();
+    }
+
+    @PUT
+    @Path("/retention/pins/{generationId}")
+    @Operation(summary = "Pin Generation", description = "Keeps a generation regardless of its age until it is unpinned.")
+    @APIResponse(responseCode = "204", description = "The generation is pinned")
+    @APIResponse(responseCode = "400", description = "The generation ID is invalid")
+    public Response pinGeneration(@PathParam("generationId") String generationId) {
+        if (!isGenerationId(generationId)) {
+            return invalidGenerationId();
+        }
+        retention.pin(generationId);
+        return Response.noContent().build();
+    }
+
+    @DELETE
+    @Path("/retention/pins/{generationId}")
+    @Operation(summary = "Unpin Generation", description = "Leaves a generation to the retention policy again.")
+    @APIResponse(responseCode = "204", description = "The generation is not pinned")
+    @APIResponse(responseCode = "400", description = "The generation ID is invalid")
+    public Response unpinGeneration(@PathParam("generationId") String generationId) {
+        if (!isGenerationId(generationId)) {
+            return invalidGenerationId();
+        }
+        retention.unpin(generationId);
+        return Response.noContent().build();
+    }
+
+    private static boolean isGenerationId(String generationId) {
+        return generationId != null && !generationId.isBlank() && !generationId.contains("/")
+                && !generationId.startsWith("_");
+    }
+
+    private static Response invalidGenerationId() {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity("The generation ID must not be blank, contain '/' or start with '_'")
+                .build();
+    }
+
+    private static RetentionReportDTO toDTO(RetentionReport report) {
+        RetentionReportDTO dto = new RetentionReportDTO();
+        dto.evaluatedAt = report.getEvaluatedAt();
+        dto.generations = report.getGenerations();
+        dto.objects = report.getObjects();
+        dto.keptPinned = report.getKeptPinned();
+        dto.keptRecent = report.getKeptRecent();
+        dto.keptLatest = report.getKeptLatest();
+        dto.keptUnidentified = report.getKeptUnidentified();
+        dto.expired = report.getExpired().stream().map(AdminResource::toDTO).toList();
+        return dto;
+    }
+
+    private static ExpiredGenerationDTO toDTO(ExpiredGeneration generation) {
+        ExpiredGenerationDTO dto = new ExpiredGenerationDTO();
+        dto.generationId = generation.getGenerationId();
+        dto.product = generation.getProduct();
+        dto.lastModified = generation.getLastModified();
+        dto.objects = generation.getObjects();
+        dto.bytes = generation.getBytes();
+        return dto;
+    }
+
+    private static UploadAdmissionDTO toDTO(UploadAdmission admission) {
+        UploadAdmissionDTO dto = new UploadAdmissionDTO();
+        dto.maxConcurrent = admission.getMaxConcurrent();
+        dto.maxBytes = admission.getMaxBytes();
+        dto.maxWaitMillis = admission.getMaxWait().toMillis();
+        dto.inFlight = admission.getInFlight();
+        dto.inFlightBytes = admission.getInFlightBytes();
+        dto.queued = admission.getQueued();
+        return dto;
+    }
+}
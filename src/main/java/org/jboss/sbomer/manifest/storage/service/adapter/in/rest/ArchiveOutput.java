@@ -0,0 +1,262 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+
+import jakarta.ws.rs.core.StreamingOutput;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes the files of a listing as a tar.gz or zip archive, the entries are named after the storage keys.
+ * <p>
+ * The listing is read one page at a time and each file is copied into the archive as it is read, so memory
+ * use does not depend on the number or size of the files. While a file is written, the next files are
+ * already being opened on the executor, so their time to first byte overlaps with the transfer of the
+ * current one.
+ */
+@Slf4j
+class ArchiveOutput implements StreamingOutput {
+
+    /**
+     * Archive formats, named after their file extension.
+     */
+    enum Format {
+        TAR_GZ("tar.gz", "application/gzip"),
+        ZIP("zip", "application/zip");
+
+        private final String extension;
+        private final String mediaType;
+
+        Format(String extension, String mediaType) {
+            this.extension = extension;
+            this.mediaType = mediaType;
+        }
+
+        String extension() {
+            return extension;
+        }
+
+        String mediaType() {
+            return mediaType;
+        }
+
+        /**
+         * @return the format with this file extension, or null if there is none
+         */
+        static Format forExtension(String extension) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(extension)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Format format;
+    private final ObjectPage firstPage;
+    private final Function<String, ObjectPage> nextPage;
+    private final Predicate<String> included;
+    private final Function<String, StoredObject> fetch;
+    private final Executor executor;
+    private final int prefetch;
+
+    /**
+     * @param format format of the archive
+     * @param firstPage first page of the listing
+     * @param nextPage returns the page after a cursor of the listing
+     * @param included selects the listed keys that go into the archive
+     * @param fetch opens the whole, unencoded content of a file
+     * @param executor opens the files ahead of the one being written
+     * @param prefetch number of files opened ahead of the one being written
+     */
+    ArchiveOutput(Format format, ObjectPage firstPage, Function<String, ObjectPage> nextPage, Predicate<String> included,
+            Function<String, StoredObject> fetch, Executor executor, int prefetch) {
+        this.format = format;
+        this.firstPage = firstPage;
+        this.nextPage = nextPage;
+        this.included = included;
+        this.fetch = fetch;
+        this.executor = executor;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        Iterator<ObjectSummary> files = new Listing();
+        Deque<CompletableFuture<Fetched>> ahead = new ArrayDeque<>();
+        try (ArchiveOutputStream<? extends ArchiveEntry> archive = open(output)) {
+            int count = 0;
+            fill(ahead, files);
+            while (!ahead.isEmpty()) {
+                Fetched next = await(ahead.poll());
+                fill(ahead, files);
+                write(archive, next);
+                count++;
+            }
+            archive.finish();
+            log.debug("Archived {} files", count);
+        } finally {
+            // Only left over when the client went away or a file failed
+            ahead.forEach(ArchiveOutput::discard);
+        }
+    }
+
+    private void fill(Deque<CompletableFuture<Fetched>> ahead, Iterator<ObjectSummary> files) {
+        // one file is written while up to prefetch files are opened
+        while (ahead.size() < Math.max(prefetch, 1) && files.hasNext()) {
+            String key = files.next().getKey();
+            ahead.add(CompletableFuture.supplyAsync(() -> new Fetched(key, fetch.apply(key)), executor));
+        }
+    }
+
+    private ArchiveOutputStream<? extends ArchiveEntry> open(OutputStream output) throws IOException {
+        if (format == Format.ZIP) {
+            ZipArchiveOutputStream zip = new ZipArchiveOutputStream(output);
+            // the output is not seekable, entry sizes follow the data in descriptors
+            zip.setUseZip64(Zip64Mode.AsNeeded);
+            return zip;
+        }
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(output, BUFFER_SIZE));
+        tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        return tar;
+    }
+
+    private void write(ArchiveOutputStream<? extends ArchiveEntry> archive, Fetched fetched) throws IOException {
+        StoredObject object = fetched.object();
+        try (InputStream content = object.getContent()) {
+            if (archive instanceof ZipArchiveOutputStream zip) {
+                ZipArchiveEntry entry = new ZipArchiveEntry(fetched.key());
+                if (object.getLastModified() != null) {
+                    entry.setTime(object.getLastModified().toEpochMilli());
+                }
+                zip.putArchiveEntry(entry);
+                content.transferTo(zip);
+                zip.closeArchiveEntry();
+            } else {
+                writeTarEntry((TarArchiveOutputStream) archive, fetched.key(), object, content);
+            }
+        }
+    }
+
+    /**
+     * Tar headers carry the size of the entry, so content of unknown length is spooled to a file first.
+     */
+    private static void writeTarEntry(TarArchiveOutputStream tar, String key, StoredObject object, InputStream content)
+            throws IOException {
+        Path spool = null;
+        try {
+            long size = object.getContentLength();
+            InputStream data = content;
+            if (size < 0) {
+                spool = Files.createTempFile("archive-", ".bin");
+                size = Files.copy(content, spool, StandardCopyOption.REPLACE_EXISTING);
+                data = Files.newInputStream(spool);
+            }
+            TarArchiveEntry entry = new TarArchiveEntry(key);
+            entry.setSize(size);
+            if (object.getLastModified() != null) {
+                entry.setModTime(Date.from(object.getLastModified()));
+            }
+            tar.putArchiveEntry(entry);
+            try (InputStream in = data) {
+                in.transferTo(tar);
+            }
+            tar.closeArchiveEntry();
+        } finally {
+            if (spool != null) {
+                Files.deleteIfExists(spool);
+            }
+        }
+    }
+
+    private static Fetched await(CompletableFuture<Fetched> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static void discard(CompletableFuture<Fetched> future) {
+        future.thenAccept(fetched -> {
+            try (InputStream content = fetched.object().getContent()) {
+                log.debug("Discarding prefetched file '{}'", fetched.key());
+            } catch (IOException e) {
+                log.debug("Unable to close prefetched file '{}'", fetched.key(), e);
+            }
+        });
+    }
+
+    private record Fetched(String key, StoredObject object) {
+    }
+
+    /**
+     * Iterates over the included keys of the listing, reading the next page when a page is used up.
+     */
+    private final class Listing implements Iterator<ObjectSummary> {
+        private ObjectPage page = firstPage;
+        private Iterator<ObjectSummary> objects = firstPage.getObjects().iterator();
+        private ObjectSummary next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (objects.hasNext()) {
+                    ObjectSummary candidate = objects.next();
+                    if (included.test(candidate.getKey())) {
+                        next = candidate;
+                    }
+                } else if (page.getNextCursor() != null) {
+                    page = nextPage.apply(page.getNextCursor());
+                    objects = page.getObjects().iterator();
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public ObjectSummary next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ObjectSummary current = next;
+            next = null;
+            return current;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.function.Function;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+
+import jakarta.ws.rs.core.StreamingOutput;
+
+/**
+ * Writes a {@code multipart/byteranges} body (RFC 9110, section 14.6).
+ * Each range is fetched from storage only when it is about to be written.
+ */
+class ByteRangesOutput implements StreamingOutput {
+
+    private final String boundary;
+    private final List<ByteRange> ranges;
+    private final long totalLength;
+    private final String contentType;
+    private final Function<ByteRange, InputStream> fetch;
+
+    /**
+     * @param boundary multipart boundary, also announced in the response Content-Type
+     * @param ranges absolute ranges to write, in order
+     * @param totalLength size of the whole file
+     * @param contentType content type of the file, repeated in every part
+     * @param fetch opens the content of a single range
+     */
+    ByteRangesOutput(String boundary, List<ByteRange> ranges, long totalLength, String contentType, Function<ByteRange, InputStream> fetch) {
+        this.boundary = boundary;
+        this.ranges = ranges;
+        this.totalLength = totalLength;
+        this.contentType = contentType;
+        this.fetch = fetch;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        for (ByteRange range : ranges) {
+            String partHeader = "--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: bytes " + range.getFirst() + "-" + range.getLast() + "/" + totalLength + "\r\n"
+                    + "\r\n";
+            output.write(partHeader.getBytes(US_ASCII));
+            try (InputStream content = fetch.apply(range)) {
+                content.transferTo(output);
+            }
+            output.write("\r\n".getBytes(US_ASCII));
+        }
+        output.write(("--" + boundary + "--\r\n").getBytes(US_ASCII));
+    }
+}
@@ -0,0 +1,314 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads the parts of a multipart/form-data body (RFC 7578) one after the other as the body arrives.
+ * <p>
+ * The content of a part is read straight from the body through a buffer of {@link #BUFFER_SIZE}, so neither
+ * memory nor disk usage grows with the size of the parts. The content of a part can only be read until the
+ * next part is requested, the rest of it is skipped then.
+ */
+final class MultipartStream {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    // larger header blocks are rejected, form-data parts only carry a few short headers
+    static final int MAX_HEADER_SIZE = 16 * 1024;
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private final InputStream body;
+    // CRLF--boundary, the CRLF belongs to the delimiter and not to the content before it
+    private final byte[] delimiter;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int head;
+    private int tail;
+    private boolean eof;
+    private boolean finished;
+    private PartContent current;
+
+    /**
+     * @param body the request body
+     * @param boundary the boundary of the Content-Type header
+     */
+    MultipartStream(InputStream body, String boundary) {
+        this.body = body;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        // the first boundary is not preceded by a CRLF unless there is a preamble, pretend there was one
+        buffer[0] = CR;
+        buffer[1] = LF;
+        tail = 2;
+    }
+
+    /**
+     * Returns the boundary parameter of a multipart Content-Type header.
+     * @return the boundary, null if the header is no multipart type or has no valid boundary
+     */
+    static String boundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+            return null;
+        }
+        String boundary = parameters(contentType).get("boundary");
+        // RFC 2046: 1 to 70 characters
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+            return null;
+        }
+        return boundary;
+    }
+
+    /**
+     * Skips what is left of the current part and returns the next one.
+     * @return the next part, null after the last one
+     * @throws IOException if the body cannot be read or is not a well-formed multipart body
+     */
+    Part nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (current != null) {
+            current.skipRest();
+        } else {
+            skipPreamble();
+        }
+        if (!readAfterDelimiter()) {
+            finished = true;
+            return null;
+        }
+        Map<String, String> headers = readHeaders();
+        Map<String, String> disposition = parameters(headers.getOrDefault("content-disposition", ""));
+        current = new PartContent();
+        return new Part(disposition.get("name"), disposition.get("filename"), headers.get("content-type"), current);
+    }
+
+    private void skipPreamble() throws IOException {
+        PartContent preamble = new PartContent();
+        preamble.skipRest();
+    }
+
+    /**
+     * Reads what follows a delimiter: "--" closes the body, otherwise the line break before the headers.
+     * @return whether a part follows
+     */
+    private boolean readAfterDelimiter() throws IOException {
+        if (!ensure(2)) {
+            throw new MalformedMultipartException("Multipart body ends after a boundary");
+        }
+        if (buffer[head] == '-' && buffer[head + 1] == '-') {
+            // the epilogue is ignored
+            return false;
+        }
+        // transport padding may follow the boundary
+        while (ensure(1) && (buffer[head] == ' ' || buffer[head] == '\t')) {
+            head++;
+        }
+        if (!ensure(2) || buffer[head] != CR || buffer[head + 1] != LF) {
+            throw new MalformedMultipartException("Multipart boundary is not followed by a line break");
+        }
+        head += 2;
+        return true;
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        int read = 0;
+        while (true) {
+            int lineEnd = indexOfLineEnd();
+            if (lineEnd < 0) {
+                throw new MalformedMultipartException("Multipart part headers are too long or incomplete");
+            }
+            String line = new String(buffer, head, lineEnd - head, StandardCharsets.UTF_8);
+            read += lineEnd + 2 - head;
+            head = lineEnd + 2;
+            if (line.isEmpty()) {
+                return headers;
+            }
+            if (read > MAX_HEADER_SIZE) {
+                throw new MalformedMultipartException("Multipart part headers are too long");
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+    }
+
+    // position of the CR of the next CRLF, reading more of the body as needed
+    private int indexOfLineEnd() throws IOException {
+        // bytes after head already searched, kept across compactions of the buffer
+        int searched = 0;
+        while (true) {
+            for (int i = head + searched; i < tail - 1; i++) {
+                if (buffer[i] == CR && buffer[i + 1] == LF) {
+                    return i;
+                }
+            }
+            searched = Math.max(0, tail - head - 1);
+            if (tail - head >= MAX_HEADER_SIZE || !ensure(tail - head + 1)) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Makes at least count bytes available from head, compacting the buffer and reading the body as needed.
+     * @return false if the body ends before
+     */
+    private boolean ensure(int count) throws IOException {
+        while (tail - head < count) {
+            if (eof) {
+                return false;
+            }
+            if (head > 0) {
+                System.arraycopy(buffer, head, buffer, 0, tail - head);
+                tail -= head;
+                head = 0;
+            }
+            int read = body.read(buffer, tail, buffer.length - tail);
+            if (read < 0) {
+                eof = true;
+            } else {
+                tail += read;
+            }
+        }
+        return true;
+    }
+
+    // position of the delimiter in the buffered bytes after head, -1 if they do not contain it
+    private int indexOfDelimiter() {
+        int last = tail - delimiter.length;
+        outer:
+        for (int i = head; i <= last; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * A part of the body. Its content stream does not need to be closed, closing it skips the rest of the part.
+     */
+    record Part(String name, String filename, String contentType, InputStream content) {
+    }
+
+    /**
+     * The content of a part, up to the next delimiter. Buffered bytes that may be the start of the delimiter
+     * are held back until more of the body has been read.
+     */
+    private final class PartContent extends InputStream {
+        private final byte[] single = new byte[1];
+        // buffered bytes before this position are content, the delimiter is searched again beyond it
+        private int contentEnd;
+        private boolean ended;
+
+        @Override
+        public int read() throws IOException {
+            int read = read(single, 0, 1);
+            return read < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (!ended) {
+                if (head < contentEnd) {
+                    int count = Math.min(contentEnd - head, len);
+                    System.arraycopy(buffer, head, b, off, count);
+                    head += count;
+                    return count;
+                }
+                int end = indexOfDelimiter();
+                if (end == head) {
+                    head += delimiter.length;
+                    ended = true;
+                } else {
+                    contentEnd = end >= 0 ? end : tail - (delimiter.length - 1);
+                    if (contentEnd <= head) {
+                        if (!ensure(tail - head + 1)) {
+                            throw new MalformedMultipartException("Multipart body ends within a part");
+                        }
+                        // the buffer may have been compacted
+                        contentEnd = head;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int available() {
+            return ended ? 0 : Math.max(0, contentEnd - head);
+        }
+
+        @Override
+        public void close() throws IOException {
+            skipRest();
+        }
+
+        void skipRest() throws IOException {
+            byte[] skipped = new byte[8192];
+            while (read(skipped, 0, skipped.length) >= 0) {
+                // discarded
+            }
+        }
+    }
+
+    /**
+     * Parameters of a header value such as {@code form-data; name="files"; filename="bom.json"}, names in
+     * lower case. Quoted values may contain semicolons and backslash escapes.
+     */
+    static Map<String, String> parameters(String value) {
+        Map<String, String> parameters = new HashMap<>();
+        int i = value.indexOf(';');
+        while (i >= 0 && i < value.length()) {
+            i++;
+            int equals = value.indexOf('=', i);
+            if (equals < 0) {
+                break;
+            }
+            String name = value.substring(i, equals).trim().toLowerCase(Locale.ROOT);
+            i = equals + 1;
+            while (i < value.length() && value.charAt(i) == ' ') {
+                i++;
+            }
+            StringBuilder parameter = new StringBuilder();
+            if (i < value.length() && value.charAt(i) == '"') {
+                i++;
+                while (i < value.length() && value.charAt(i) != '"') {
+                    char c = value.charAt(i++);
+                    if (c == '\\' && i < value.length()) {
+                        c = value.charAt(i++);
+                    }
+                    parameter.append(c);
+                }
+                i = value.indexOf(';', i);
+            } else {
+                int end = value.indexOf(';', i);
+                parameter.append(value.substring(i, end < 0 ? value.length() : end).trim());
+                i = end;
+            }
+            parameters.putIfAbsent(name, parameter.toString());
+        }
+        return parameters;
+    }
+
+    /**
+     * The body is not a well-formed multipart body.
+     */
+    static final class MalformedMultipartException extends IOException {
+        MalformedMultipartException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+
+/**
+ * Parses HTTP Range request headers (RFC 9110, section 14.2).
+ */
+final class RangeHeader {
+
+    // more ranges than this are treated as abuse, the header is ignored and the whole file is sent
+    static final int MAX_RANGES = 16;
+
+    private static final String BYTES_UNIT = "bytes=";
+    private static final Pattern RANGE_SPEC = Pattern.compile("(\\d*)-(\\d*)");
+
+    private RangeHeader() {}
+
+    /**
+     * Parses a Range header value such as {@code bytes=0-99,200-,-50}.
+     * @param header the header value, may be null
+     * @return the requested ranges, empty if the header is absent, malformed, not a byte range,
+     *         or asks for more than {@link #MAX_RANGES} ranges; the header must be ignored then
+     */
+    static List<ByteRange> parse(String header) {
+        if (header == null || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return List.of();
+        }
+        String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return List.of();
+        }
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            Matcher matcher = RANGE_SPEC.matcher(spec.trim());
+            if (!matcher.matches()) {
+                return List.of();
+            }
+            String first = matcher.group(1);
+            String last = matcher.group(2);
+            try {
+                if (first.isEmpty() && last.isEmpty()) {
+                    return List.of();
+                } else if (first.isEmpty()) {
+                    ranges.add(ByteRange.suffix(Long.parseLong(last)));
+                } else if (last.isEmpty()) {
+                    ranges.add(ByteRange.from(Long.parseLong(first)));
+                } else if (Long.parseLong(last) < Long.parseLong(first)) {
+                    return List.of();
+                } else {
+                    ranges.add(ByteRange.of(Long.parseLong(first), Long.parseLong(last)));
+                }
+            } catch (NumberFormatException e) {
+                // positions beyond Long.MAX_VALUE
+                return List.of();
+            }
+        }
+        return ranges;
+    }
+}
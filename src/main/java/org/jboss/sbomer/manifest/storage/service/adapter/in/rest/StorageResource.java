@@ -2,10 +2,28 @@ package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
@@ -13,12 +31,30 @@ import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
-import org.jboss.resteasy.reactive.RestForm;
-import org.jboss.resteasy.reactive.multipart.FileUpload;
+import org.jboss.resteasy.reactive.PathPart;
+import org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto.ComponentMatchesDTO;
+import org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto.FileListingDTO;
 import org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto.MultipartUploadDTO;
+import org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto.SbomSummaryDTO;
+import org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto.StoredFileDTO;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageKeyInvalidException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StoragePreconditionFailedException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
 import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomFile;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.port.api.ComponentSearch;
 import org.jboss.sbomer.manifest.storage.service.core.port.api.StorageAdministration;
 
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
@@ -30,9 +66,54 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class StorageResource {
 
+    // keys listed per storage call while an archive is written
+    private static final int ARCHIVE_PAGE_SIZE = 1000;
+    // largest page of a file listing
+    private static final int MAX_LISTING_LIMIT = 1000;
+    // folder holding the batch manifests of a folder, see StagedBatchObjectStorage
+    private static final String BATCH_MANIFESTS = "/.batches/";
+
     @Inject
     StorageAdministration storageService;
 
+    @Inject
+    ComponentSearch componentSearch;
+
+    @Inject
+    UploadAdmission uploadAdmission;
+
+    @ConfigProperty(name = "sbomer.storage.download.cache-control")
+    String cacheControl;
+
+    // downloads are answered with a redirect to a presigned storage URL unless the client asks for proxying
+    @ConfigProperty(name = "sbomer.storage.download.redirect.enabled")
+    boolean redirectEnabled;
+
+    @ConfigProperty(name = "sbomer.storage.download.redirect.url-validity")
+    Duration redirectUrlValidity;
+
+    // files opened ahead of the one being written into an archive
+    @ConfigProperty(name = "sbomer.storage.archive.prefetch")
+    int archivePrefetch;
+
+    private ExecutorService archiveExecutor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        // Threads only wait for the storage to answer, the archives bound how many are busy
+        archiveExecutor = Context.taskWrapping(Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "archive-prefetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        archiveExecutor.shutdownNow();
+    }
+
     @POST
     @Path("/generations/{generationId}")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
@@ -53,10 +134,15 @@ public class StorageResource {
                     example = "{\"bom.json\": \"https://host/api/v1/storage/content/gen-123/bom.json\"}"
             )
     )
+    @APIResponse(responseCode = "400", description = "The ID is reserved for internal objects, or a filename is not valid")
+    @APIResponse(responseCode = "429", description = "Too many uploads in progress, retry after the seconds in Retry-After")
     public Response uploadGeneration(
             @Parameter(description = "The Generation ID", required = true) @PathParam("generationId") String genId,
-            @RestForm("files") List<FileUpload> uploads) {
-        return handleUpload(uploads, (files) -> storageService.storeGenerationSboms(genId, files));
+            @HeaderParam("Content-Type") String contentType,
+            @HeaderParam("Content-Length") String contentLength,
+            InputStream body) {
+        rejectInternal(genId + "/");
+        return handleUpload(contentType, contentLength, body, (files) -> storageService.streamGenerationSboms(genId, files));
     }
 
     @POST
@@ -77,49 +163,528 @@ public class StorageResource {
             description = "Files uploaded successfully. Returns a map of Filename -> Permanent URL.",
             content = @Content(mediaType = MediaType.APPLICATION_JSON)
     )
+    @APIResponse(responseCode = "400", description = "The ID is reserved for internal objects, or a filename is not valid")
+    @APIResponse(responseCode = "429", description = "Too many uploads in progress, retry after the seconds in Retry-After")
     public Response uploadEnhancement(
             @Parameter(description = "The Generation ID", required = true) @PathParam("generationId") String genId,
             @Parameter(description = "The Enhancement ID", required = true) @PathParam("enhancementId") String enhId,
-            @RestForm("files") List<FileUpload> uploads) {
-        return handleUpload(uploads, (files) -> storageService.storeEnhancementSboms(genId, enhId, files));
+            @HeaderParam("Content-Type") String contentType,
+            @HeaderParam("Content-Length") String contentLength,
+            InputStream body) {
+        rejectInternal(genId + "/" + enhId + "/");
+        return handleUpload(contentType, contentLength, body, (files) -> storageService.streamEnhancementSboms(genId, enhId, files));
     }
 
     @GET
     @Path("/content/{path: .*}")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
-    @Operation(summary = "Download File", description = "Streams the content of a stored file based on its storage key path.")
-    public Response download(@PathParam("path") String path) {
-        InputStream stream = storageService.getFileContent(path);
+    @Operation(summary = "Download File", description = "Streams the content of a stored file based on its storage key path. "
+            + "Single and multiple byte ranges can be requested with the Range header. "
+            + "Responses carry ETag and Last-Modified validators for conditional requests. "
+            + "Compressed files are sent as stored when Accept-Encoding allows it, otherwise decompressed. "
+            + "When redirects are enabled, the client is sent to a short-lived storage URL instead, unless proxy=true.")
+    @APIResponse(responseCode = "200", description = "The whole file")
+    @APIResponse(responseCode = "206", description = "The requested range, or a multipart/byteranges body for several ranges")
+    @APIResponse(responseCode = "302", description = "Fetch the file from the presigned storage URL in Location")
+    @APIResponse(responseCode = "304", description = "The client's copy is current (If-None-Match / If-Modified-Since)")
+    @APIResponse(responseCode = "404", description = "The file does not exist")
+    @APIResponse(responseCode = "416", description = "None of the requested ranges overlaps the file")
+    public Response download(
+            @PathParam("path") String path,
+            @Parameter(description = "Byte ranges to return, e.g. bytes=0-1023") @HeaderParam("Range") String range,
+            @Parameter(description = "ETag or HTTP-date the ranges are valid for") @HeaderParam("If-Range") String ifRange,
+            @Parameter(description = "ETag of the client's copy") @HeaderParam("If-None-Match") String ifNoneMatch,
+            @Parameter(description = "HTTP-date of the client's copy") @HeaderParam("If-Modified-Since") String ifModifiedSince,
+            @Parameter(description = "Content codings the client accepts, e.g. zstd, gzip") @HeaderParam("Accept-Encoding") String acceptEncoding,
+            @Parameter(description = "Stream the file through this service even when downloads are redirected") @QueryParam("proxy") boolean proxy) {
+        if (isInternal(path)) {
+            throw new StorageFileNotFoundException("File not found: " + path, null);
+        }
+        if (redirectEnabled && !proxy) {
+            // the storage evaluates ranges and conditions of the redirected request itself
+            PresignedUrl url = storageService.getDownloadUrl(path,
+                    DownloadOptions.builder().acceptEncoding(acceptEncoding).build(), redirectUrlValidity);
+            if (url != null) {
+                return Response.status(Response.Status.FOUND)
+                        .location(url.getUrl())
+                        .header("Cache-Control", "no-store")
+                        .build();
+            }
+        }
         String filename = path.substring(path.lastIndexOf('/') + 1);
-        return Response.ok(stream)
+        List<ByteRange> ranges = RangeHeader.parse(range);
+        DownloadOptions conditions = cacheConditions(ifNoneMatch, ifModifiedSince).toBuilder()
+                .acceptEncoding(acceptEncoding)
+                .build();
+        DownloadOptions preconditions = ifRangePreconditions(conditions, ifRange);
+
+        Response.ResponseBuilder response;
+        if (ranges.isEmpty() || preconditions == null) {
+            response = fullContent(path, conditions);
+        } else {
+            try {
+                response = ranges.size() == 1
+                        ? singleRange(path, ranges.get(0), preconditions)
+                        : multipleRanges(path, ranges, preconditions);
+            } catch (StoragePreconditionFailedException e) {
+                // If-Range did not match, the file has changed and is sent whole
+                response = fullContent(path, conditions);
+            }
+        }
+        return response
+                .header("Accept-Ranges", "bytes")
+                .header("Cache-Control", cacheControl)
+                .header("Vary", "Accept-Encoding")
                 .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
                 .build();
     }
 
+    @GET
+    @Path("/summary/{path: .*}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Get SBOM Summary", description = "Returns the format, spec version, serial number, component "
+            + "count, root component and hashes of a stored SBOM. They were extracted when it was uploaded, the SBOM "
+            + "itself is not read.")
+    @APIResponse(responseCode = "200", description = "The summary",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = SbomSummaryDTO.class)))
+    @APIResponse(responseCode = "404", description = "The file does not exist or is no SBOM that was summarized")
+    public Response summary(@PathParam("path") String path) {
+        SbomSummary summary = isInternal(path) ? null : storageService.getSummary(path);
+        if (summary == null) {
+            throw new StorageFileNotFoundException("Summary not found: " + path, null);
+        }
+        return Response.ok(toDTO(path, summary)).header("Cache-Control", cacheControl).build();
+    }
+
+    @GET
+    @Path("/components")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Find SBOMs by Component", description = "Returns the keys of the stored SBOMs listing a "
+            + "component, by its package URL or by its name and optionally version. Qualifiers and subpath of the "
+            + "package URL are ignored, with prefix=true every package URL starting with it matches.")
+    @APIResponse(responseCode = "200", description = "The matching SBOMs",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = ComponentMatchesDTO.class)))
+    @APIResponse(responseCode = "400", description = "Neither or both of purl and name are given, or the limit is out of range")
+    public Response findComponents(
+            @Parameter(description = "Package URL, e.g. pkg:maven/org.apache.logging.log4j/log4j-core@2.14.1") @QueryParam("purl") String purl,
+            @Parameter(description = "Match package URLs starting with purl") @QueryParam("prefix") boolean prefix,
+            @Parameter(description = "Component name, e.g. log4j-core") @QueryParam("name") String name,
+            @Parameter(description = "Component version, any version if not given") @QueryParam("version") String version,
+            @Parameter(description = "Maximum number of keys, up to 1000") @QueryParam("limit") @DefaultValue("100") int limit) {
+        boolean byPurl = purl != null && !purl.isBlank();
+        boolean byName = name != null && !name.isBlank();
+        if (byPurl == byName || byPurl && version != null) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Either purl or name, optionally with version, is required")
+                    .build();
+        }
+        if (limit < 1 || limit > MAX_LISTING_LIMIT) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("limit must be between 1 and " + MAX_LISTING_LIMIT)
+                    .build();
+        }
+        SortedSet<String> keys = byPurl ? componentSearch.findByPurl(purl, prefix) : componentSearch.findByName(name, version);
+        ComponentMatchesDTO dto = new ComponentMatchesDTO();
+        dto.keys = keys.stream().limit(limit).toList();
+        dto.truncated = keys.size() > limit;
+        return Response.ok(dto).build();
+    }
+
+    @GET
+    @Path("/generations/{generationId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "List Generation Files", description = "Lists the files stored at the root of a generation, "
+            + "in key order. Pass the returned nextCursor as cursor to get the following page.")
+    @APIResponse(responseCode = "200", description = "One page of files",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = FileListingDTO.class)))
+    @APIResponse(responseCode = "400", description = "The limit is out of range")
+    @APIResponse(responseCode = "404", description = "No files are stored for the generation")
+    public Response listGeneration(
+            @Parameter(description = "The Generation ID", required = true) @PathParam("generationId") String genId,
+            @Parameter(description = "nextCursor of the previous page") @QueryParam("cursor") String cursor,
+            @Parameter(description = "Maximum number of files, up to 1000") @QueryParam("limit") @DefaultValue("100") int limit) {
+        return handleListing(genId, cursor, limit, () -> storageService.listGenerationFiles(genId, cursor, limit));
+    }
+
+    @GET
+    @Path("/generations/{generationId}/enhancements/{enhancementId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "List Enhancement Files", description = "Lists the files stored for an enhancement of a generation, "
+            + "in key order. Pass the returned nextCursor as cursor to get the following page.")
+    @APIResponse(responseCode = "200", description = "One page of files",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = FileListingDTO.class)))
+    @APIResponse(responseCode = "400", description = "The limit is out of range")
+    @APIResponse(responseCode = "404", description = "No files are stored for the enhancement")
+    public Response listEnhancement(
+            @Parameter(description = "The Generation ID", required = true) @PathParam("generationId") String genId,
+            @Parameter(description = "The Enhancement ID", required = true) @PathParam("enhancementId") String enhId,
+            @Parameter(description = "nextCursor of the previous page") @QueryParam("cursor") String cursor,
+            @Parameter(description = "Maximum number of files, up to 1000") @QueryParam("limit") @DefaultValue("100") int limit) {
+        return handleListing(genId + "/" + enhId, cursor, limit,
+                () -> storageService.listEnhancementFiles(genId, enhId, cursor, limit));
+    }
+
+    private Response handleListing(String folder, String cursor, int limit, Supplier<ObjectPage> listing) {
+        if (limit < 1 || limit > MAX_LISTING_LIMIT) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("limit must be between 1 and " + MAX_LISTING_LIMIT)
+                    .build();
+        }
+        ObjectPage page = isInternal(folder + "/") ? ObjectPage.builder().objects(List.of()).build() : listing.get();
+        if (cursor == null && page.getObjects().isEmpty()) {
+            throw new StorageFileNotFoundException("No files stored in folder: " + folder, null);
+        }
+        FileListingDTO dto = new FileListingDTO();
+        dto.files = page.getObjects().stream().map(StorageResource::toDTO).toList();
+        dto.nextCursor = page.getNextCursor();
+        return Response.ok(dto).build();
+    }
+
+    private static StoredFileDTO toDTO(ObjectSummary object) {
+        StoredFileDTO dto = new StoredFileDTO();
+        dto.key = object.getKey();
+        dto.size = object.getSize();
+        dto.etag = object.getETag();
+        dto.contentType = object.getContentType();
+        return dto;
+    }
+
+    @GET
+    @Path("/generations/{generationId}/archive")
+    @Produces({ "application/gzip", "application/zip" })
+    @Operation(summary = "Download Generation Archive", description = "Streams all files of a generation as a single "
+            + "tar.gz or zip archive. Entries are named after the storage keys of the files.")
+    @APIResponse(responseCode = "200", description = "The archive")
+    @APIResponse(responseCode = "400", description = "Unknown archive format")
+    @APIResponse(responseCode = "404", description = "No files are stored for the generation")
+    public Response downloadArchive(
+            @Parameter(description = "The Generation ID", required = true) @PathParam("generationId") String genId,
+            @Parameter(description = "Archive format, tar.gz or zip") @QueryParam("format") @DefaultValue("tar.gz") String format,
+            @Parameter(description = "Whether to include the files of the enhancements") @QueryParam("enhancements") @DefaultValue("false") boolean enhancements) {
+        ArchiveOutput.Format archiveFormat = ArchiveOutput.Format.forExtension(format);
+        if (archiveFormat == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Unknown archive format: " + format).build();
+        }
+        String prefix = genId + "/";
+        if (isInternal(prefix)) {
+            throw new StorageFileNotFoundException("No files stored for generation: " + genId, null);
+        }
+        // The first page is listed before the response is committed, so that a missing generation is a 404
+        ObjectPage firstPage = storageService.listFiles(prefix, null, ARCHIVE_PAGE_SIZE);
+        if (firstPage.getObjects().isEmpty()) {
+            throw new StorageFileNotFoundException("No files stored for generation: " + genId, null);
+        }
+        // Enhancement files are nested one folder below the generation's own files
+        Predicate<String> included = enhancements ? key -> true : key -> key.indexOf('/', prefix.length()) < 0;
+        ArchiveOutput output = new ArchiveOutput(archiveFormat, firstPage,
+                cursor -> storageService.listFiles(prefix, cursor, ARCHIVE_PAGE_SIZE),
+                included,
+                key -> storageService.getFile(key, DownloadOptions.none()),
+                archiveExecutor,
+                archivePrefetch);
+        return Response.ok(output, archiveFormat.mediaType())
+                .header("Content-Disposition", "attachment; filename=\"" + genId + "." + archiveFormat.extension() + "\"")
+                .build();
+    }
+
+    /**
+     * Maps If-None-Match and If-Modified-Since to storage conditions.
+     * If-Modified-Since is ignored when If-None-Match is present (RFC 9110, section 13.1.3).
+     */
+    private DownloadOptions cacheConditions(String ifNoneMatch, String ifModifiedSince) {
+        if (ifNoneMatch != null) {
+            return DownloadOptions.builder().ifNoneMatch(ifNoneMatch).build();
+        }
+        Instant modifiedSince = parseHttpDate(ifModifiedSince);
+        return modifiedSince != null ? DownloadOptions.builder().ifModifiedSince(modifiedSince).build() : DownloadOptions.none();
+    }
+
+    /**
+     * Adds the If-Range header to the conditions as storage preconditions.
+     * @return the preconditions, or null if the ranges must be ignored (weak or unparsable validator)
+     */
+    private DownloadOptions ifRangePreconditions(DownloadOptions conditions, String ifRange) {
+        if (ifRange == null) {
+            return conditions;
+        } else if (ifRange.startsWith("\"")) {
+            return conditions.toBuilder().ifMatch(ifRange).build();
+        } else if (ifRange.startsWith("W/")) {
+            // weak validators never match for ranges (RFC 9110, section 13.1.5)
+            return null;
+        }
+        Instant unmodifiedSince = parseHttpDate(ifRange);
+        return unmodifiedSince != null ? conditions.toBuilder().ifUnmodifiedSince(unmodifiedSince).build() : null;
+    }
+
+    private Response.ResponseBuilder fullContent(String path, DownloadOptions conditions) {
+        return respond(storageService.getFile(path, conditions));
+    }
+
+    private Response.ResponseBuilder singleRange(String path, ByteRange range, DownloadOptions preconditions) {
+        try {
+            return respond(storageService.getFile(path, preconditions.toBuilder().range(range).build()));
+        } catch (StorageRangeNotSatisfiableException e) {
+            return notSatisfiable(path, preconditions.getAcceptEncoding());
+        }
+    }
+
+    /**
+     * Builds the 416 response of a range outside of the file, with the length of the file the range was
+     * evaluated against, as its first byte tells it.
+     */
+    private Response.ResponseBuilder notSatisfiable(String path, String acceptEncoding) {
+        Response.ResponseBuilder response = Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE);
+        StoredObject probe;
+        try {
+            probe = storageService.getFile(path, DownloadOptions.builder()
+                    .acceptEncoding(acceptEncoding)
+                    .range(ByteRange.of(0, 0))
+                    .build());
+        } catch (StorageRangeNotSatisfiableException e) {
+            // not even the first byte exists
+            return response.header("Content-Range", "bytes */0");
+        }
+        if (probe.getContent() != null) {
+            // only the length is needed
+            try {
+                probe.getContent().close();
+            } catch (IOException e) {
+                log.debug("Unable to close the first byte of {}: {}", path, e.getMessage());
+            }
+        }
+        long totalLength = probe.isPartial() ? probe.getTotalLength() : probe.getContentLength();
+        return totalLength >= 0 ? response.header("Content-Range", "bytes */" + totalLength) : response;
+    }
+
+    private Response.ResponseBuilder multipleRanges(String path, List<ByteRange> ranges, DownloadOptions preconditions) {
+        // Parts carry no Content-Encoding of their own, so they are cut from the unencoded file
+        DownloadOptions identity = preconditions.toBuilder().acceptEncoding(null).build();
+        // The first byte tells the size of the file and pins its ETag, so all parts come from the same version
+        StoredObject probe = storageService.getFile(path, identity.toBuilder().range(ByteRange.of(0, 0)).build());
+        if (probe.isNotModified() || !probe.isPartial()) {
+            // the file's size is not known, it is sent whole
+            return respond(probe);
+        }
+        try (InputStream content = probe.getContent()) {
+            content.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new RuntimeException("File processing error", e);
+        }
+        long totalLength = probe.getTotalLength();
+        List<ByteRange> satisfiable = ranges.stream()
+                .map(r -> r.resolve(totalLength))
+                .filter(Objects::nonNull)
+                .toList();
+        if (satisfiable.isEmpty()) {
+            return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header("Content-Range", "bytes */" + totalLength);
+        }
+        DownloadOptions pinned = DownloadOptions.builder().ifMatch(probe.getETag()).build();
+        if (satisfiable.size() == 1) {
+            return respond(storageService.getFile(path, pinned.toBuilder().range(satisfiable.get(0)).build()));
+        }
+        String boundary = UUID.randomUUID().toString();
+        String contentType = probe.getContentType() != null ? probe.getContentType() : MediaType.APPLICATION_OCTET_STREAM;
+        ByteRangesOutput output = new ByteRangesOutput(boundary, satisfiable, totalLength, contentType,
+                r -> storageService.getFile(path, pinned.toBuilder().range(r).build()).getContent());
+        return withValidators(Response.status(Response.Status.PARTIAL_CONTENT), probe)
+                .entity(output)
+                .type("multipart/byteranges; boundary=" + boundary);
+    }
+
+    /**
+     * Builds the 200, 206 or 304 response for a stored object.
+     */
+    private static Response.ResponseBuilder respond(StoredObject object) {
+        if (object.isNotModified()) {
+            return withValidators(Response.notModified(), object);
+        }
+        Response.ResponseBuilder response;
+        if (object.isPartial()) {
+            response = Response.status(Response.Status.PARTIAL_CONTENT)
+                    .header("Content-Range", "bytes " + object.getRangeStart() + "-" + object.getRangeEnd() + "/" + object.getTotalLength());
+        } else {
+            response = Response.ok();
+        }
+        if (object.getFile() != null) {
+            // sent with sendfile, the content stream is never opened
+            long offset = object.isPartial() ? object.getRangeStart() : 0;
+            response.entity(new PathPart(object.getFile(), offset, object.getContentLength()));
+        } else {
+            response.entity(object.getContent());
+        }
+        if (object.getContentLength() >= 0) {
+            response.header("Content-Length", object.getContentLength());
+        }
+        if (object.getContentType() != null) {
+            response.type(object.getContentType());
+        }
+        if (object.getContentEncoding() != null) {
+            response.header("Content-Encoding", object.getContentEncoding());
+        }
+        return withValidators(response, object);
+    }
+
+    private static SbomSummaryDTO toDTO(String key, SbomSummary summary) {
+        SbomSummaryDTO dto = new SbomSummaryDTO();
+        dto.key = key;
+        dto.format = summary.getFormat();
+        dto.specVersion = summary.getSpecVersion();
+        dto.serialNumber = summary.getSerialNumber();
+        dto.componentCount = summary.getComponentCount();
+        dto.root = new SbomSummaryDTO.Component();
+        dto.root.name = summary.getRootName();
+        dto.root.version = summary.getRootVersion();
+        dto.root.purl = summary.getRootPurl();
+        dto.root.hashes = summary.getRootHashes();
+        dto.sha256 = summary.getSha256();
+        dto.size = summary.getSize();
+        return dto;
+    }
+
+    private static Response.ResponseBuilder withValidators(Response.ResponseBuilder response, StoredObject object) {
+        if (object.getETag() != null) {
+            response.header("ETag", object.getETag());
+        }
+        if (object.getLastModified() != null) {
+            response.lastModified(Date.from(object.getLastModified()));
+        }
+        return response;
+    }
+
+    private static Instant parseHttpDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
     @FunctionalInterface
     interface UploadAction {
-        Map<String, String> execute(List<SbomFile> files);
+        Map<String, String> execute(Iterator<SbomFile> files);
+    }
+
+    /**
+     * Internal objects are kept under keys starting with an underscore, e.g. summaries, staged batch files and
+     * content-addressed blobs, and the batch manifests of a folder in its .batches folder. None of them is read or
+     * written through this API, staged files in particular are not visible until their batch is committed.
+     */
+    static boolean isInternal(String key) {
+        return key.startsWith("_") || ("/" + key).contains(BATCH_MANIFESTS);
     }
 
-    private Response handleUpload(List<FileUpload> uploads, UploadAction action) {
-        if (uploads == null || uploads.isEmpty()) {
-            return Response.status(Response.Status.BAD_REQUEST).entity("No files provided").build();
+    static void rejectInternal(String folder) {
+        if (isInternal(folder)) {
+            throw new StorageKeyInvalidException(folder, "Reserved for internal objects");
         }
+    }
+
+    /**
+     * A file is stored directly in its folder, so its name can neither name a subfolder nor an internal or
+     * hidden object, such as a batch manifest.
+     */
+    static void rejectFilename(String filename) {
+        if (filename.contains("/") || filename.startsWith("_") || filename.startsWith(".") || isInternal(filename)) {
+            throw new StorageKeyInvalidException(filename, "Not a valid filename");
+        }
+    }
+
+    /**
+     * Stores the "files" parts of a multipart body while it arrives, each part is piped to the storage as it is
+     * read from the request, so no upload is buffered on disk. Admission is by the Content-Length of the
+     * request, the sizes of the files are not known before they have been read.
+     */
+    private Response handleUpload(String contentType, String contentLength, InputStream body, UploadAction action) {
+        String boundary = MultipartStream.boundary(contentType);
+        if (boundary == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Expected a multipart/form-data body").build();
+        }
+        long declaredBytes = parseContentLength(contentLength);
+        UploadAdmission.Permit permit;
         try {
-            List<SbomFile> domainFiles = new ArrayList<>();
-            for (FileUpload upload : uploads) {
-                domainFiles.add(SbomFile.builder()
-                        .filename(upload.fileName())
-                        .contentType(upload.contentType())
-                        .size(upload.size())
-                        .content(java.nio.file.Files.newInputStream(upload.uploadedFile()))
-                        .build());
+            permit = uploadAdmission.acquire(declaredBytes);
+        } catch (UploadAdmission.UploadRejectedException e) {
+            log.warn("Rejected upload of {} bytes: {}", declaredBytes, e.getMessage());
+            return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header("Retry-After", e.getRetryAfterSeconds())
+                    .entity(e.getMessage())
+                    .build();
+        }
+        try (permit) {
+            Map<String, String> urls = action.execute(new FileParts(new MultipartStream(body, boundary)));
+            if (urls.isEmpty()) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("No files provided").build();
+            }
+            return Response.ok(urls).build();
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof MultipartStream.MalformedMultipartException) {
+                return Response.status(Response.Status.BAD_REQUEST).entity(e.getCause().getMessage()).build();
             }
-            return Response.ok(action.execute(domainFiles)).build();
-        } catch (IOException e) {
             throw new RuntimeException("File processing error", e);
         }
     }
+
+    private static long parseContentLength(String contentLength) {
+        if (contentLength == null) {
+            // chunked request, admitted by the number of uploads only
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(contentLength.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The file parts of the "files" field, other fields are skipped.
+     */
+    private static final class FileParts implements Iterator<SbomFile> {
+        private final MultipartStream multipart;
+        private MultipartStream.Part next;
+
+        FileParts(MultipartStream multipart) {
+            this.multipart = multipart;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null) {
+                    MultipartStream.Part part = multipart.nextPart();
+                    if (part == null) {
+                        return false;
+                    }
+                    if ("files".equals(part.name()) && part.filename() != null && !part.filename().isEmpty()) {
+                        next = part;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public SbomFile next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            MultipartStream.Part part = next;
+            next = null;
+            rejectFilename(part.filename());
+            return SbomFile.builder()
+                    .filename(part.filename())
+                    .contentType(part.contentType())
+                    .size(-1)
+                    .content(part.content())
+                    .build();
+        }
+    }
 }
 
 
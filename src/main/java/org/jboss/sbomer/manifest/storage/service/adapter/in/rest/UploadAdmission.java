@@ -0,0 +1,276 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admission control of upload requests by the number of uploads and the declared bytes in flight.
+ * <p>
+ * A request that does not fit into the budget waits in a FIFO queue for at most {@code max-wait}, so a large
+ * batch is not overtaken forever by small ones. Requests beyond {@code max-queued} waiters or the wait time are
+ * rejected with a {@link UploadRejectedException} carrying how long the client should wait before retrying,
+ * estimated from the duration and throughput of recent uploads. A batch larger than the byte budget is only
+ * admitted when no other bytes are in flight.
+ * <p>
+ * The limits are exported as gauges and can be changed at runtime with {@link #setLimits(int, long, Duration)}.
+ */
+@ApplicationScoped
+@Slf4j
+public class UploadAdmission {
+
+    static final String METRIC_PREFIX = "sbomer.storage.admission";
+
+    // weight of the latest upload in the moving averages
+    private static final double ALPHA = 0.2;
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 5;
+    private static final long MAX_RETRY_AFTER_SECONDS = 300;
+
+    @ConfigProperty(name = "sbomer.storage.upload.admission.max-concurrent")
+    int configuredMaxConcurrent;
+
+    @ConfigProperty(name = "sbomer.storage.upload.admission.max-bytes")
+    MemorySize configuredMaxBytes;
+
+    @ConfigProperty(name = "sbomer.storage.upload.admission.max-wait")
+    Duration configuredMaxWait;
+
+    @ConfigProperty(name = "sbomer.storage.upload.admission.max-queued")
+    int maxQueued;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Deque<Object> queue = new ArrayDeque<>();
+
+    // guarded by lock, volatile for the gauges
+    @Getter
+    private volatile int maxConcurrent;
+    @Getter
+    private volatile long maxBytes;
+    @Getter
+    private volatile Duration maxWait;
+    @Getter
+    private volatile int inFlight;
+    @Getter
+    private volatile long inFlightBytes;
+    @Getter
+    private volatile int queued;
+    // moving averages of completed uploads, 0 until the first one completed
+    private double averageSeconds;
+    private double averageBytesPerSecond;
+
+    private Counter rejectedQueueFull;
+    private Counter rejectedTimeout;
+
+    /**
+     * Default constructor for CDI.
+     */
+    public UploadAdmission() {}
+
+    /**
+     * Package-private constructor for testing.
+     */
+    UploadAdmission(int maxConcurrent, long maxBytes, Duration maxWait, int maxQueued, MeterRegistry meterRegistry) {
+        this.maxQueued = maxQueued;
+        this.meterRegistry = meterRegistry;
+        init(maxConcurrent, maxBytes, maxWait);
+    }
+
+    @PostConstruct
+    void init() {
+        init(configuredMaxConcurrent, configuredMaxBytes.asLongValue(), configuredMaxWait);
+    }
+
+    private void init(int maxConcurrent, long maxBytes, Duration maxWait) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxBytes = maxBytes;
+        this.maxWait = maxWait;
+        Gauge.builder(METRIC_PREFIX + ".limit.uploads", this, admission -> admission.maxConcurrent)
+                .description("Uploads admitted concurrently")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".limit.bytes", this, admission -> admission.maxBytes)
+                .description("Declared bytes of the uploads admitted concurrently")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".uploads", this, admission -> admission.inFlight)
+                .description("Uploads admitted and not completed yet")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".bytes", this, admission -> admission.inFlightBytes)
+                .description("Declared bytes of the uploads admitted and not completed yet")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".queued", this, admission -> admission.queued)
+                .description("Uploads waiting for admission")
+                .register(meterRegistry);
+        rejectedQueueFull = rejected("queue_full");
+        rejectedTimeout = rejected("timeout");
+    }
+
+    private Counter rejected(String reason) {
+        return Counter.builder(METRIC_PREFIX + ".rejected")
+                .description("Uploads rejected with 429 Too Many Requests")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Admits an upload, waiting until it fits into the budget.
+     * @param bytes declared size of the upload
+     * @return the permit, to be closed when the upload completed
+     * @throws UploadRejectedException if the queue is full or the upload did not fit in time
+     */
+    public Permit acquire(long bytes) {
+        long size = Math.max(0, bytes);
+        lock.lock();
+        try {
+            if (queue.isEmpty() && fits(size)) {
+                return admit(size);
+            }
+            if (queue.size() >= maxQueued) {
+                rejectedQueueFull.increment();
+                throw new UploadRejectedException("Too many uploads waiting for admission", retryAfterSeconds(size));
+            }
+            Object ticket = new Object();
+            queue.addLast(ticket);
+            queued = queue.size();
+            try {
+                long remaining = maxWait.toNanos();
+                while (queue.peekFirst() != ticket || !fits(size)) {
+                    if (remaining <= 0) {
+                        rejectedTimeout.increment();
+                        throw new UploadRejectedException("Upload not admitted within " + maxWait, retryAfterSeconds(size));
+                    }
+                    remaining = changed.awaitNanos(remaining);
+                }
+                return admit(size);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for upload admission", e);
+            } finally {
+                queue.remove(ticket);
+                queued = queue.size();
+                // the next waiter may fit now
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the limits, waiting uploads are admitted right away if they fit into the new ones.
+     */
+    public void setLimits(int maxConcurrent, long maxBytes, Duration maxWait) {
+        lock.lock();
+        try {
+            this.maxConcurrent = maxConcurrent;
+            this.maxBytes = maxBytes;
+            this.maxWait = maxWait;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        log.info("Upload admission limits changed to {} uploads, {} bytes, waiting up to {}", maxConcurrent, maxBytes, maxWait);
+    }
+
+    private boolean fits(long size) {
+        return inFlight < maxConcurrent && (inFlightBytes == 0 || inFlightBytes + size <= maxBytes);
+    }
+
+    private Permit admit(long size) {
+        inFlight++;
+        inFlightBytes += size;
+        return new Permit(size, System.nanoTime());
+    }
+
+    private void release(Permit permit) {
+        double seconds = Math.max(1e-3, (System.nanoTime() - permit.admittedAt) / 1e9);
+        lock.lock();
+        try {
+            inFlight--;
+            inFlightBytes -= permit.size;
+            averageSeconds = averageSeconds == 0 ? seconds : ALPHA * seconds + (1 - ALPHA) * averageSeconds;
+            double bytesPerSecond = permit.size / seconds;
+            averageBytesPerSecond = averageBytesPerSecond == 0
+                    ? bytesPerSecond
+                    : ALPHA * bytesPerSecond + (1 - ALPHA) * averageBytesPerSecond;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Estimates when an upload of this size would be admitted: the uploads ahead of it have to complete
+     * and enough bytes have to drain, at the average duration and throughput of recent uploads.
+     */
+    private long retryAfterSeconds(long size) {
+        if (averageSeconds == 0) {
+            return DEFAULT_RETRY_AFTER_SECONDS;
+        }
+        double forSlot = averageSeconds * (queue.size() + 1) / Math.max(1, maxConcurrent);
+        long excessBytes = inFlightBytes + size - maxBytes;
+        double forBytes = excessBytes > 0 && averageBytesPerSecond > 0
+                ? excessBytes / (averageBytesPerSecond * Math.max(1, inFlight))
+                : 0;
+        return Math.min(MAX_RETRY_AFTER_SECONDS, Math.max(1, (long) Math.ceil(Math.max(forSlot, forBytes))));
+    }
+
+    /**
+     * An admitted upload, closing it returns its share of the budget.
+     */
+    public final class Permit implements AutoCloseable {
+        private final long size;
+        private final long admittedAt;
+        private boolean closed;
+
+        private Permit(long size, long admittedAt) {
+            this.size = size;
+            this.admittedAt = admittedAt;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(this);
+            }
+        }
+    }
+
+    /**
+     * Thrown when an upload is not admitted, maps to HTTP 429 Too Many Requests.
+     */
+    public static class UploadRejectedException extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        UploadRejectedException(String message, long retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        /**
+         * @return seconds the client should wait before retrying
+         */
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto.UploadSessionDTO;
+import org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto.UploadSessionFinalizeDTO;
+import org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto.UploadSessionRequestDTO;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.CompletedUpload;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomFile;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadSession;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadTarget;
+import org.jboss.sbomer.manifest.storage.service.core.port.api.UploadSessionAdministration;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+@Path("/api/v1/storage")
+@Tag(name = "Storage", description = "Operations for uploading SBOMs and retrieving permanent download links.")
+public class UploadSessionResource {
+
+    @Inject
+    UploadSessionAdministration uploadSessions;
+
+    @POST
+    @Path("/generations/{generationId}/upload-sessions")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Start Generation Upload Session", description = "Starts uploads of files that the client sends "
+            + "directly to the storage. Returns presigned URLs to PUT the parts of every file to.")
+    @APIResponse(responseCode = "200", description = "The part URLs of every file",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = UploadSessionDTO.class)))
+    @APIResponse(responseCode = "400", description = "No files, a reserved folder, or a file without valid name, with a negative size or listed twice")
+    @APIResponse(responseCode = "501", description = "The storage backend does not accept direct uploads")
+    public Response startGenerationUploadSession(
+            @Parameter(description = "The Generation ID", required = true) @PathParam("generationId") String genId,
+            UploadSessionRequestDTO request) {
+        return handleStart(genId + "/", request, files -> uploadSessions.startGenerationUploadSession(genId, files));
+    }
+
+    @POST
+    @Path("/generations/{generationId}/enhancements/{enhancementId}/upload-sessions")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Start Enhancement Upload Session", description = "Starts uploads of enhancement files that the "
+            + "client sends directly to the storage. Returns presigned URLs to PUT the parts of every file to.")
+    @APIResponse(responseCode = "200", description = "The part URLs of every file",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = UploadSessionDTO.class)))
+    @APIResponse(responseCode = "400", description = "No files, a reserved folder, or a file without valid name, with a negative size or listed twice")
+    @APIResponse(responseCode = "501", description = "The storage backend does not accept direct uploads")
+    public Response startEnhancementUploadSession(
+            @Parameter(description = "The Generation ID", required = true) @PathParam("generationId") String genId,
+            @Parameter(description = "The Enhancement ID", required = true) @PathParam("enhancementId") String enhId,
+            UploadSessionRequestDTO request) {
+        return handleStart(genId + "/" + enhId + "/", request,
+                files -> uploadSessions.startEnhancementUploadSession(genId, enhId, files));
+    }
+
+    @POST
+    @Path("/generations/{generationId}/upload-sessions/finalize")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Finalize Generation Upload Session", description = "Checks the received parts of every file "
+            + "against its size and part ETags and stores the files.")
+    @APIResponse(responseCode = "200", description = "Files stored. Returns a map of Filename -> Permanent URL.",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    example = "{\"bom.json\": \"https://host/api/v1/storage/content/gen-123/bom.json\"}"))
+    @APIResponse(responseCode = "400", description = "No files, a reserved folder, or a file without valid name, upload id or part ETags")
+    @APIResponse(responseCode = "404", description = "An upload does not exist, it was finalized or aborted already")
+    @APIResponse(responseCode = "409", description = "The received parts do not match, no file was stored")
+    public Response finalizeGenerationUploadSession(
+            @Parameter(description = "The Generation ID", required = true) @PathParam("generationId") String genId,
+            UploadSessionFinalizeDTO request) {
+        return handleFinalize(genId + "/", request,
+                uploads -> uploadSessions.finalizeGenerationUploadSession(genId, uploads));
+    }
+
+    @POST
+    @Path("/generations/{generationId}/enhancements/{enhancementId}/upload-sessions/finalize")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Finalize Enhancement Upload Session", description = "Checks the received parts of every "
+            + "enhancement file against its size and part ETags and stores the files.")
+    @APIResponse(responseCode = "200", description = "Files stored. Returns a map of Filename -> Permanent URL.",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                    example = "{\"bom.json\": \"https://host/api/v1/storage/content/gen-123/enh-456/bom.json\"}"))
+    @APIResponse(responseCode = "400", description = "No files, a reserved folder, or a file without valid name, upload id or part ETags")
+    @APIResponse(responseCode = "404", description = "An upload does not exist, it was finalized or aborted already")
+    @APIResponse(responseCode = "409", description = "The received parts do not match, no file was stored")
+    public Response finalizeEnhancementUploadSession(
+            @Parameter(description = "The Generation ID", required = true) @PathParam("generationId") String genId,
+            @Parameter(description = "The Enhancement ID", required = true) @PathParam("enhancementId") String enhId,
+            UploadSessionFinalizeDTO request) {
+        return handleFinalize(genId + "/" + enhId + "/", request,
+                uploads -> uploadSessions.finalizeEnhancementUploadSession(genId, enhId, uploads));
+    }
+
+    /**
+     * The parts are written to the storage directly, the folder and filenames are checked like those of
+     * uploads through this service.
+     */
+    private static Response handleStart(String folder, UploadSessionRequestDTO request,
+            Function<List<SbomFile>, UploadSession> action) {
+        StorageResource.rejectInternal(folder);
+        if (request == null || request.files == null || request.files.isEmpty()) {
+            return badRequest("No files provided");
+        }
+        List<SbomFile> files = new ArrayList<>();
+        Set<String> filenames = new HashSet<>();
+        for (UploadSessionRequestDTO.File file : request.files) {
+            if (file.filename == null || file.filename.isBlank() || file.size < 0 || !filenames.add(file.filename)) {
+                return badRequest("Every file needs a distinct filename and a size that is not negative");
+            }
+            StorageResource.rejectFilename(file.filename);
+            files.add(SbomFile.builder()
+                    .filename(file.filename)
+                    .size(file.size)
+                    .contentType(file.contentType)
+                    .build());
+        }
+        return Response.ok(toDTO(action.apply(files))).build();
+    }
+
+    private static Response handleFinalize(String folder, UploadSessionFinalizeDTO request,
+            Function<List<CompletedUpload>, Map<String, String>> action) {
+        StorageResource.rejectInternal(folder);
+        if (request == null || request.files == null || request.files.isEmpty()) {
+            return badRequest("No files provided");
+        }
+        List<CompletedUpload> uploads = new ArrayList<>();
+        for (UploadSessionFinalizeDTO.Upload upload : request.files) {
+            if (upload.filename == null || upload.uploadId == null || upload.partETags == null || upload.partETags.isEmpty()) {
+                return badRequest("Every file needs its filename, upload id and part ETags");
+            }
+            StorageResource.rejectFilename(upload.filename);
+            uploads.add(CompletedUpload.builder()
+                    .filename(upload.filename)
+                    .uploadId(upload.uploadId)
+                    .size(upload.size)
+                    .partETags(upload.partETags)
+                    .build());
+        }
+        return Response.ok(action.apply(uploads)).build();
+    }
+
+    private static Response badRequest(String message) {
+        return Response.status(Response.Status.BAD_REQUEST).entity(message).build();
+    }
+
+    private static UploadSessionDTO toDTO(UploadSession session) {
+        UploadSessionDTO dto = new UploadSessionDTO();
+        dto.expiresAt = session.getExpiresAt();
+        dto.files = new ArrayList<>();
+        for (UploadTarget target : session.getFiles()) {
+            UploadSessionDTO.Target file = new UploadSessionDTO.Target();
+            file.filename = target.getFilename();
+            file.uploadId = target.getUploadId();
+            file.partSize = target.getPartSize();
+            file.partUrls = target.getPartUrls().stream().map(URI::toString).toList();
+            dto.files.add(file);
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,15 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto;
+
+import java.util.List;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(name = "ComponentMatches", description = "The stored SBOMs listing a component, in key order")
+public class ComponentMatchesDTO {
+
+    @Schema(description = "Storage keys of the SBOMs, the generation ID is their first segment")
+    public List<String> keys;
+
+    @Schema(description = "Whether more SBOMs match than the limit allowed to return")
+    public boolean truncated;
+}
@@ -0,0 +1,24 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto;
+
+import java.time.Instant;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(name = "ExpiredGeneration", description = "A generation the retention policy no longer keeps")
+public class ExpiredGenerationDTO {
+
+    @Schema(description = "ID of the generation", example = "gen-123")
+    public String generationId;
+
+    @Schema(description = "Root component named by the summaries of the generation", example = "quarkus-bom")
+    public String product;
+
+    @Schema(description = "When the latest file of the generation was stored")
+    public Instant lastModified;
+
+    @Schema(description = "Files of the generation")
+    public long objects;
+
+    @Schema(description = "Bytes of the files of the generation")
+    public long bytes;
+}
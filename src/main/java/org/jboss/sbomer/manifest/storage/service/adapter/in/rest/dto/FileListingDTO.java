@@ -0,0 +1,15 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto;
+
+import java.util.List;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(name = "FileListing", description = "One page of stored files, in key order")
+public class FileListingDTO {
+
+    @Schema(description = "The files of this page")
+    public List<StoredFileDTO> files;
+
+    @Schema(description = "Cursor of the next page, null on the last page")
+    public String nextCursor;
+}
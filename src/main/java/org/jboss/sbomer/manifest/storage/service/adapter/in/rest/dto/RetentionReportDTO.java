@@ -0,0 +1,34 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(name = "RetentionReport", description = "The generations the retention policy keeps and those a pass would delete")
+public class RetentionReportDTO {
+
+    @Schema(description = "When the policy was applied")
+    public Instant evaluatedAt;
+
+    @Schema(description = "Generations found in the storage")
+    public long generations;
+
+    @Schema(description = "Files of the generations found in the storage")
+    public long objects;
+
+    @Schema(description = "Generations kept as they are pinned")
+    public long keptPinned;
+
+    @Schema(description = "Generations kept as they are newer than the retention period")
+    public long keptRecent;
+
+    @Schema(description = "Generations kept as they are among the latest of their product")
+    public long keptLatest;
+
+    @Schema(description = "Generations kept as no summary names their product")
+    public long keptUnidentified;
+
+    @Schema(description = "Generations a pass would delete, oldest first")
+    public List<ExpiredGenerationDTO> expired;
+}
@@ -0,0 +1,49 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto;
+
+import java.util.Map;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(name = "SbomSummary", description = "Key facts of a stored SBOM, extracted when it was uploaded")
+public class SbomSummaryDTO {
+
+    @Schema(description = "Storage key of the SBOM", example = "gen-123/bom.json")
+    public String key;
+
+    @Schema(description = "Format of the SBOM", enumeration = { "CycloneDX", "SPDX" })
+    public String format;
+
+    @Schema(description = "Version of the format's specification", example = "1.6")
+    public String specVersion;
+
+    @Schema(description = "CycloneDX serial number or SPDX document namespace")
+    public String serialNumber;
+
+    @Schema(description = "Number of CycloneDX components, nested ones included, or SPDX packages")
+    public long componentCount;
+
+    @Schema(description = "The component the SBOM describes")
+    public Component root;
+
+    @Schema(description = "SHA-256 of the stored SBOM, hex encoded")
+    public String sha256;
+
+    @Schema(description = "Size of the stored SBOM in bytes")
+    public long size;
+
+    @Schema(name = "SbomComponent")
+    public static class Component {
+
+        @Schema(example = "quarkus-core")
+        public String name;
+
+        @Schema(example = "3.28.2")
+        public String version;
+
+        @Schema(example = "pkg:maven/io.quarkus/quarkus-core@3.28.2?type=jar")
+        public String purl;
+
+        @Schema(description = "Hashes of the component by algorithm")
+        public Map<String, String> hashes;
+    }
+}
@@ -0,0 +1,19 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(name = "StoredFile", description = "A stored file, without its content")
+public class StoredFileDTO {
+
+    @Schema(description = "Storage key of the file", example = "gen-123/bom.json")
+    public String key;
+
+    @Schema(description = "Size of the file in bytes, -1 when unknown")
+    public long size;
+
+    @Schema(description = "ETag of the stored file, null until the file has been listed from storage")
+    public String etag;
+
+    @Schema(description = "Content type of the file", example = "application/json")
+    public String contentType;
+}
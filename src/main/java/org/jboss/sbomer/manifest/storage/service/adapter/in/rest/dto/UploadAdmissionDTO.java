@@ -0,0 +1,25 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(name = "UploadAdmission", description = "Limits of the upload admission control and the uploads currently admitted")
+public class UploadAdmissionDTO {
+
+    @Schema(description = "Uploads admitted concurrently", example = "16")
+    public int maxConcurrent;
+
+    @Schema(description = "Declared bytes of the uploads admitted concurrently", example = "536870912")
+    public long maxBytes;
+
+    @Schema(description = "Milliseconds an upload waits for admission before it is rejected with 429", example = "10000")
+    public long maxWaitMillis;
+
+    @Schema(description = "Uploads admitted and not completed yet, ignored on update", readOnly = true)
+    public int inFlight;
+
+    @Schema(description = "Declared bytes of the uploads admitted and not completed yet, ignored on update", readOnly = true)
+    public long inFlightBytes;
+
+    @Schema(description = "Uploads waiting for admission, ignored on update", readOnly = true)
+    public int queued;
+}
@@ -0,0 +1,32 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(name = "UploadSession", description = "Where to send the parts of the files of an upload session")
+public class UploadSessionDTO {
+
+    @Schema(description = "The part URLs expire and unfinalized uploads are aborted after this time")
+    public Instant expiresAt;
+
+    @Schema(description = "The files of the session")
+    public List<Target> files;
+
+    @Schema(name = "UploadSessionTarget", description = "The parts of one file")
+    public static class Target {
+
+        @Schema(description = "Name of the file", example = "bom.json")
+        public String filename;
+
+        @Schema(description = "Id of the upload, to be sent back when finalizing the session")
+        public String uploadId;
+
+        @Schema(description = "Size of every part but the last one, which holds the rest of the file")
+        public long partSize;
+
+        @Schema(description = "URLs to PUT the parts to, in part order. Keep the ETag header of every answer.")
+        public List<String> partUrls;
+    }
+}
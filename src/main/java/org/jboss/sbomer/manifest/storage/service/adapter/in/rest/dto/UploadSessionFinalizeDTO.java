@@ -0,0 +1,28 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto;
+
+import java.util.List;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(name = "UploadSessionFinalize", description = "The files of an upload session whose parts have been sent")
+public class UploadSessionFinalizeDTO {
+
+    @Schema(description = "The uploaded files")
+    public List<Upload> files;
+
+    @Schema(name = "UploadSessionUpload", description = "An uploaded file")
+    public static class Upload {
+
+        @Schema(description = "Name of the file", example = "bom.json")
+        public String filename;
+
+        @Schema(description = "Id of the upload from the session")
+        public String uploadId;
+
+        @Schema(description = "Size of the file in bytes, checked against the received parts")
+        public long size;
+
+        @Schema(description = "ETag headers of the part uploads, in part order, checked against the received parts")
+        public List<String> partETags;
+    }
+}
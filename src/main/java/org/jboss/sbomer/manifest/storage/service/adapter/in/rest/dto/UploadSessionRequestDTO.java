@@ -0,0 +1,25 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest.dto;
+
+import java.util.List;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(name = "UploadSessionRequest", description = "The files the client is going to send directly to the storage")
+public class UploadSessionRequestDTO {
+
+    @Schema(description = "The files to upload")
+    public List<File> files;
+
+    @Schema(name = "UploadSessionFile", description = "A file to upload")
+    public static class File {
+
+        @Schema(description = "Name of the file", example = "bom.json")
+        public String filename;
+
+        @Schema(description = "Size of the file in bytes")
+        public long size;
+
+        @Schema(description = "Content type of the file", example = "application/json")
+        public String contentType;
+    }
+}
@@ -0,0 +1,421 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps recently downloaded objects on local disk, in front of the storage backend.
+ * <p>
+ * Entries are whole objects, indexed by storage key and validated by ETag. The index is a Caffeine cache
+ * weighted by file size, so the disk used is bounded by the byte budget and eviction follows W-TinyLFU,
+ * which keeps hot files in the cache even when many cold files are read once.
+ * <p>
+ * A miss on a plain download streams the object to the caller and copies it into a cache file on the way,
+ * the entry is added once the whole object has been read. Entries younger than {@code revalidateAfter} are
+ * served without contacting the backend; older ones are revalidated with an If-None-Match download, which
+ * transfers no body while the object is unchanged. Ranges and conditions are answered from the local copy.
+ * Hits carry the cache {@link StoredObject#getFile() file}, so the REST layer can send it zero-copy.
+ * <p>
+ * Hit, miss and eviction counts are exported as the standard {@code cache.*} metrics tagged
+ * {@code cache=sbomer.storage.cache}, the bytes held, written and served as {@code sbomer.storage.cache.*}.
+ */
+@Slf4j
+class CachingObjectStorage extends ForwardingObjectStorage {
+
+    static final String METRIC_PREFIX = "sbomer.storage.cache";
+
+    // Files of removed entries stay on disk this long, so a response that was just handed one can still open it
+    static final Duration DELETE_DELAY = Duration.ofSeconds(30);
+
+    private final Path directory;
+    private final long maxEntrySize;
+    private final Duration revalidateAfter;
+    private final Clock clock;
+    private final Cache<String, Entry> cache;
+    private final ScheduledExecutorService cleaner;
+    // Incremented by every upload, fills that started before an upload are not added
+    private final AtomicLong uploads = new AtomicLong();
+    private final Counter bytesWritten;
+    private final Counter bytesServed;
+
+    /**
+     * @param delegate storage to cache
+     * @param directory directory holding the cache files, emptied on startup
+     * @param maxSize byte budget of all cache files
+     * @param maxEntrySize larger objects are not cached
+     * @param revalidateAfter entries older than this are revalidated against the storage
+     * @param registry registry to export the cache metrics to
+     */
+    CachingObjectStorage(ObjectStorage delegate, Path directory, long maxSize, long maxEntrySize, Duration revalidateAfter,
+            MeterRegistry registry) {
+        this(delegate, directory, maxSize, maxEntrySize, revalidateAfter, registry, Clock.systemUTC());
+    }
+
+    /**
+     * Package-private constructor for testing.
+     */
+    CachingObjectStorage(ObjectStorage delegate, Path directory, long maxSize, long maxEntrySize, Duration revalidateAfter,
+            MeterRegistry registry, Clock clock) {
+        super(delegate);
+        this.directory = directory;
+        this.maxEntrySize = maxEntrySize;
+        this.revalidateAfter = revalidateAfter;
+        this.clock = clock;
+        prepareDirectory(directory);
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "storage-cache-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((String key, Entry entry) -> (int) Math.min(Integer.MAX_VALUE, entry.length))
+                .removalListener((String key, Entry entry, RemovalCause cause) -> {
+                    if (entry != null) {
+                        scheduleDelete(entry.file);
+                    }
+                })
+                .recordStats()
+                // removals only schedule a delete, no need to hand them to another thread
+                .executor(Runnable::run)
+                .build();
+
+        CaffeineCacheMetrics.monitor(registry, cache, METRIC_PREFIX);
+        Gauge.builder(METRIC_PREFIX + ".stored", cache, c -> c.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0))
+                        .orElse(0L))
+                .description("Bytes held in the local content cache")
+                .baseUnit("bytes")
+                .register(registry);
+        this.bytesWritten = Counter.builder(METRIC_PREFIX + ".written")
+                .description("Bytes written to the local content cache")
+                .baseUnit("bytes")
+                .register(registry);
+        this.bytesServed = Counter.builder(METRIC_PREFIX + ".served")
+                .description("Bytes served from the local content cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @Override
+    public void upload(String key, InputStream content, UploadOptions options) {
+        try {
+            delegate.upload(key, content, options);
+        } finally {
+            uploads.incrementAndGet();
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public void delete(Collection<String> keys) {
+        try {
+            delegate.delete(keys);
+        } finally {
+            uploads.incrementAndGet();
+            cache.invalidateAll(keys);
+        }
+    }
+
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null) {
+            if (clock.instant().isBefore(entry.verifiedAt.plus(revalidateAfter))) {
+                return serve(key, entry, options);
+            }
+            StoredObject current = delegate.download(key, DownloadOptions.builder().ifNoneMatch(entry.eTag).build());
+            if (current.isNotModified()) {
+                entry.verifiedAt = clock.instant();
+                return serve(key, entry, options);
+            }
+            log.debug("Cached copy of '{}' is outdated", key);
+            cache.asMap().remove(key, entry);
+            if (options.isPlain()) {
+                return fill(key, current);
+            }
+            closeQuietly(current.getContent());
+        }
+        if (!options.isPlain()) {
+            return delegate.download(key, options);
+        }
+        return fill(key, delegate.download(key, options));
+    }
+
+    /**
+     * Removes all entries and their files.
+     */
+    @Override
+    public void close() {
+        cleaner.shutdown();
+        cache.invalidateAll();
+        cache.cleanUp();
+        super.close();
+    }
+
+    /**
+     * Answers a download from a cache entry, applying the range and conditions of the options locally.
+     */
+    private StoredObject serve(String key, Entry entry, DownloadOptions options) {
+        StoredObject notModified = DownloadConditions.evaluate(key, entry.eTag, entry.lastModified, options);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        StoredObject.StoredObjectBuilder object = StoredObject.builder()
+                .contentType(entry.contentType)
+                .contentEncoding(entry.contentEncoding)
+                .metadata(entry.metadata)
+                .eTag(entry.eTag)
+                .lastModified(entry.lastModified)
+                .totalLength(entry.length)
+                .file(entry.file);
+        long offset = 0;
+        long length = entry.length;
+        if (options.getRange() != null) {
+            ByteRange range = options.getRange().resolve(entry.length);
+            if (range == null) {
+                throw new StorageRangeNotSatisfiableException("Range not satisfiable for: " + key, null);
+            }
+            offset = range.getFirst();
+            length = range.length();
+            object.rangeStart(range.getFirst()).rangeEnd(range.getLast());
+        }
+        bytesServed.increment(length);
+        return object
+                .content(new FileRegionInputStream(entry.file, offset, length))
+                .contentLength(length)
+                .build();
+    }
+
+    /**
+     * Wraps the content of a downloaded object so that it is copied into a new cache entry while read.
+     */
+    private StoredObject fill(String key, StoredObject object) {
+        if (object.isNotModified() || object.isPartial() || object.getETag() == null
+                || object.getContentLength() < 0 || object.getContentLength() > maxEntrySize) {
+            return object;
+        }
+        try {
+            Path file = Files.createTempFile(directory, "entry-", ".bin");
+            return object.toBuilder()
+                    .content(new FillingInputStream(key, object, file, uploads.get()))
+                    .build();
+        } catch (IOException e) {
+            log.warn("Unable to create cache file for '{}' in: {}", key, directory, e);
+            return object;
+        }
+    }
+
+    private void commit(String key, StoredObject object, Path file, long uploadsAtStart) {
+        if (uploads.get() != uploadsAtStart) {
+            // The object may have been replaced while it was read
+            deleteQuietly(file);
+            return;
+        }
+        cache.put(key, new Entry(object, file, clock.instant()));
+        bytesWritten.increment(object.getContentLength());
+        log.debug("Cached '{}' ({} bytes)", key, object.getContentLength());
+    }
+
+    private void scheduleDelete(Path file) {
+        try {
+            cleaner.schedule(() -> deleteQuietly(file), DELETE_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down, nothing is served anymore
+            deleteQuietly(file);
+        }
+    }
+
+    private static void prepareDirectory(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            // Files of a previous run are not indexed anymore
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(Files::isRegularFile).forEach(CachingObjectStorage::deleteQuietly);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to prepare cache directory: " + directory, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete cache file: {}", file, e);
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            if (stream != null) {
+                stream.close();
+            }
+        } catch (IOException e) {
+            log.debug("Unable to close stream", e);
+        }
+    }
+
+    private static final class Entry {
+        private final String eTag;
+        private final Path file;
+        private final long length;
+        private final String contentType;
+        private final String contentEncoding;
+        private final Map<String, String> metadata;
+        private final Instant lastModified;
+        private volatile Instant verifiedAt;
+
+        private Entry(StoredObject object, Path file, Instant verifiedAt) {
+            this.eTag = object.getETag();
+            this.file = file;
+            this.length = object.getContentLength();
+            this.contentType = object.getContentType();
+            this.contentEncoding = object.getContentEncoding();
+            this.metadata = object.getMetadata();
+            this.lastModified = object.getLastModified();
+            this.verifiedAt = verifiedAt;
+        }
+    }
+
+    /**
+     * Copies everything read into the cache file, the entry is added when the stream has been read to the end.
+     * Closing the stream early, skipping or a write error drops the file, the caller's read is never affected.
+     */
+    private final class FillingInputStream extends FilterInputStream {
+        private final String key;
+        private final StoredObject object;
+        private final Path file;
+        private final long uploadsAtStart;
+        private OutputStream copy;
+        private long copied;
+
+        private FillingInputStream(String key, StoredObject object, Path file, long uploadsAtStart) throws IOException {
+            super(object.getContent());
+            this.key = key;
+            this.object = object;
+            this.file = file;
+            this.uploadsAtStart = uploadsAtStart;
+            try {
+                this.copy = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+            } catch (IOException e) {
+                deleteQuietly(file);
+                throw e;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                complete();
+            } else if (copy != null) {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                complete();
+            } else if (read > 0 && copy != null) {
+                write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            abandon();
+            return super.skip(n);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                abandon();
+            }
+        }
+
+        private void write(byte[] buffer, int offset, int length) {
+            try {
+                copy.write(buffer, offset, length);
+                copied += length;
+            } catch (IOException e) {
+                log.warn("Unable to write cache file for '{}'", key, e);
+                abandon();
+            }
+        }
+
+        private void complete() {
+            if (copy == null) {
+                return;
+            }
+            try {
+                copy.close();
+                copy = null;
+            } catch (IOException e) {
+                log.warn("Unable to write cache file for '{}'", key, e);
+                abandon();
+                return;
+            }
+            if (copied == object.getContentLength()) {
+                commit(key, object, file, uploadsAtStart);
+            } else {
+                deleteQuietly(file);
+            }
+        }
+
+        private void abandon() {
+            if (copy == null) {
+                return;
+            }
+            try {
+                copy.close();
+            } catch (IOException e) {
+                log.debug("Unable to close cache file for '{}'", key, e);
+            }
+            copy = null;
+            deleteQuietly(file);
+        }
+    }
+}
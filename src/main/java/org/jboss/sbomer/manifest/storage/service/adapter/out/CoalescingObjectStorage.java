@@ -0,0 +1,357 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.context.Context;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collapses concurrent downloads of the same key into a single fetch from the wrapped storage.
+ * <p>
+ * The first request for a key becomes the leader of a flight and opens the download, requests arriving
+ * while the flight is open join it. The fetched bytes are pumped into a spill file by a background thread
+ * as fast as the storage delivers them, and every participant reads the spill file at its own pace,
+ * waiting only for bytes not written yet. A slow consumer therefore never holds back the fetch or the other
+ * consumers, and memory use does not depend on the object size. The spill file is removed when the fetch
+ * has finished and every participant has closed its stream.
+ * <p>
+ * Objects served from a local file (cache hits) are not spilled, the participants read the file directly.
+ * Only plain downloads are coalesced, ranged and conditional ones go straight to the wrapped storage.
+ * Requests that joined a flight are counted by the {@code sbomer.storage.download.coalesced} metric.
+ */
+@Slf4j
+class CoalescingObjectStorage extends ForwardingObjectStorage {
+
+    static final String COALESCED_METRIC = "sbomer.storage.download.coalesced";
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final ExecutorService pumps;
+    private final Counter coalesced;
+
+    /**
+     * @param delegate storage to fetch from
+     * @param directory directory holding the spill files, emptied on startup
+     * @param registry registry to export the coalescing metric to
+     */
+    CoalescingObjectStorage(ObjectStorage delegate, Path directory, MeterRegistry registry) {
+        super(delegate);
+        this.directory = directory;
+        prepareDirectory(directory);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pumps = Context.taskWrapping(Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "download-coalescing-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+        this.coalesced = Counter.builder(COALESCED_METRIC)
+                .description("Downloads served by a fetch that was already in flight for the same key")
+                .register(registry);
+    }
+
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
+        if (!options.isPlain()) {
+            return delegate.download(key, options);
+        }
+        boolean[] leader = new boolean[1];
+        Flight flight = flights.compute(key, (k, existing) -> {
+            Flight joined = existing;
+            if (joined == null) {
+                joined = new Flight(key);
+                leader[0] = true;
+            }
+            joined.retain();
+            return joined;
+        });
+        if (leader[0]) {
+            flight.lead();
+        } else {
+            coalesced.increment();
+            log.debug("Joined download in flight for '{}'", key);
+        }
+        return flight.join(leader[0]);
+    }
+
+    @Override
+    public void close() {
+        pumps.shutdownNow();
+        super.close();
+    }
+
+    private static void prepareDirectory(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            // Spill files of a previous run are not read by anyone
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(Files::isRegularFile).forEach(CoalescingObjectStorage::deleteQuietly);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to prepare spill directory: " + directory, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete spill file: {}", file, e);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (Exception e) {
+            log.debug("Unable to close {}", closeable, e);
+        }
+    }
+
+    /**
+     * A fetch of one key shared by all requests that arrived while it was open.
+     * Holds one reference for the map entry and one per participant, the spill file is
+     * deleted once all of them are released.
+     */
+    private final class Flight {
+        private final String key;
+        // the leader's download, its content is consumed by the pump when spilled
+        private final CompletableFuture<StoredObject> source = new CompletableFuture<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition progress = lock.newCondition();
+        // guarded by lock
+        private int references = 1;
+        private long written;
+        private boolean done;
+        private Throwable failure;
+        // set before source completes
+        private Path spill;
+        private FileChannel writer;
+
+        private Flight(String key) {
+            this.key = key;
+        }
+
+        private void retain() {
+            lock.lock();
+            try {
+                references++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void release() {
+            boolean last;
+            lock.lock();
+            try {
+                last = --references == 0;
+            } finally {
+                lock.unlock();
+            }
+            if (last && spill != null) {
+                closeQuietly(writer);
+                deleteQuietly(spill);
+            }
+        }
+
+        /**
+         * Opens the download and, unless it is served from a local file, starts pumping it into the spill file.
+         */
+        private void lead() {
+            StoredObject object;
+            try {
+                object = delegate.download(key, DownloadOptions.none());
+            } catch (RuntimeException e) {
+                land();
+                source.completeExceptionally(e);
+                return;
+            }
+            if (object.getFile() == null) {
+                try {
+                    spill = Files.createTempFile(directory, "spill-", ".bin");
+                    writer = FileChannel.open(spill, StandardOpenOption.WRITE);
+                    pumps.execute(() -> pump(object.getContent()));
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Unable to spill download of '{}', requests will not be coalesced", key, e);
+                    closeQuietly(writer);
+                    if (spill != null) {
+                        deleteQuietly(spill);
+                    }
+                    writer = null;
+                    spill = null;
+                    land();
+                }
+            } else {
+                land();
+            }
+            source.complete(object);
+        }
+
+        /**
+         * Returns the download for one participant, each one gets its own stream.
+         */
+        private StoredObject join(boolean leader) {
+            StoredObject object;
+            try {
+                object = source.join();
+            } catch (CompletionException e) {
+                release();
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            if (spill != null) {
+                return object.toBuilder().content(new SpillReader(this)).build();
+            }
+            release();
+            if (leader) {
+                return object;
+            } else if (object.getFile() != null) {
+                return object.toBuilder()
+                        .content(new FileRegionInputStream(object.getFile(), 0, object.getContentLength()))
+                        .build();
+            }
+            // spilling failed, fetch separately
+            return delegate.download(key, DownloadOptions.none());
+        }
+
+        private void pump(InputStream content) {
+            Throwable error = null;
+            try (InputStream in = content) {
+                byte[] buffer = new byte[CHUNK_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    long position = written;
+                    while (chunk.hasRemaining()) {
+                        position += writer.write(chunk, position);
+                    }
+                    advance(position, false, null);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Download of '{}' failed while spilling", key, e);
+                error = e;
+            } finally {
+                // closed to new participants before anyone sees the end of the download
+                flights.remove(key, this);
+                advance(written, true, error);
+                release();
+            }
+        }
+
+        private void advance(long position, boolean finished, Throwable error) {
+            lock.lock();
+            try {
+                written = position;
+                done = finished;
+                failure = error;
+                progress.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Closes the flight to new participants and drops the map's reference
+        private void land() {
+            flights.remove(key, this);
+            release();
+        }
+
+        /**
+         * Waits until the spill file holds bytes past the position.
+         * @return number of bytes readable at the position, or -1 at the end of the download
+         */
+        private long awaitData(long position) throws IOException {
+            lock.lock();
+            try {
+                while (written <= position && !done) {
+                    progress.await();
+                }
+                if (written > position) {
+                    return written - position;
+                } else if (failure != null) {
+                    throw new IOException("Download failed: " + key, failure);
+                }
+                return -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for: " + key);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Reads the spill file of a flight, following the pump until the download is complete.
+     */
+    private static final class SpillReader extends InputStream {
+        private final Flight flight;
+        private FileChannel channel;
+        private long position;
+        private boolean closed;
+
+        private SpillReader(Flight flight) {
+            this.flight = flight;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            } else if (length == 0) {
+                return 0;
+            }
+            long available = flight.awaitData(position);
+            if (available < 0) {
+                return -1;
+            }
+            if (channel == null) {
+                channel = FileChannel.open(flight.spill, StandardOpenOption.READ);
+            }
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, available)), position);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                closeQuietly(channel);
+                flight.release();
+            }
+        }
+    }
+}
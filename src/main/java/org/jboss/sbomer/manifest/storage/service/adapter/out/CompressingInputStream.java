@@ -0,0 +1,104 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compresses a stream while it is read, so compressed content can be handed to consumers that pull
+ * their input. Only the compressed output of one chunk of the source is held in memory.
+ */
+final class CompressingInputStream extends InputStream {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final InputStream source;
+    private final Output output = new Output();
+    private final OutputStream encoder;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    // read position in the output
+    private int position;
+    private boolean finished;
+    private long sourceLength;
+    private long compressedLength;
+
+    CompressingInputStream(InputStream source, ContentCodec codec) throws IOException {
+        this.source = source;
+        this.encoder = codec.encoder(output);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        // the encoder may hold back its output until it has seen enough input
+        while (position == output.size()) {
+            if (finished) {
+                return -1;
+            }
+            output.reset();
+            position = 0;
+            int read = source.read(chunk);
+            if (read == -1) {
+                finished = true;
+                encoder.close();
+            } else {
+                sourceLength += read;
+                encoder.write(chunk, 0, read);
+            }
+        }
+        int read = Math.min(length, output.size() - position);
+        System.arraycopy(output.buffer(), position, buffer, offset, read);
+        position += read;
+        compressedLength += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return output.size() - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (source) {
+            if (!finished) {
+                finished = true;
+                // releases the encoder's native or deflater resources
+                encoder.close();
+            }
+        }
+    }
+
+    /**
+     * @return bytes read from the source so far
+     */
+    long sourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * @return compressed bytes returned so far
+     */
+    long compressedLength() {
+        return compressedLength;
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+        private Output() {
+            super(CHUNK_SIZE);
+        }
+
+        private byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compresses content at rest and negotiates the encoding of downloads.
+ * <p>
+ * Uploads are compressed while they stream to the wrapped storage. The codec is recorded as the object's
+ * content encoding and the uncompressed size, if it is known before the upload, as the
+ * {@code uncompressed-length} metadata entry. The length of streamed uploads is recorded by the manifests of
+ * their batches instead. Content that already carries an encoding or has a compressed content type is stored
+ * as is.
+ * <p>
+ * Downloads return the stored bytes unchanged when the caller accepts their encoding (see
+ * {@link DownloadOptions#getAcceptEncoding()}). Otherwise the content is decompressed while it is read and
+ * gets a weak ETag, as it is a different representation of the stored object. Ranges of decompressed content
+ * are cut from the decompressed stream, the whole object is fetched for them. Objects stored without an
+ * encoding are always passed through, so turning compression on or off does not affect stored objects.
+ */
+@Slf4j
+class CompressingObjectStorage extends ForwardingObjectStorage {
+
+    static final String UNCOMPRESSED_LENGTH = "uncompressed-length";
+
+    // content types that do not get smaller when compressed again
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+            "application/gzip",
+            "application/x-gzip",
+            "application/zstd",
+            "application/zip",
+            "application/x-bzip2",
+            "application/x-xz",
+            "application/x-7z-compressed");
+
+    private final ContentCodec codec;
+    private final Counter uncompressedBytes;
+    private final Counter compressedBytes;
+
+    /**
+     * @param delegate storage holding the compressed content
+     * @param codec codec new uploads are compressed with, null stores them uncompressed
+     * @param registry registry to export the compression metrics to
+     */
+    CompressingObjectStorage(ObjectStorage delegate, ContentCodec codec, MeterRegistry registry) {
+        super(delegate);
+        this.codec = codec;
+        this.uncompressedBytes = Counter.builder("sbomer.storage.compression.uncompressed")
+                .description("Bytes of uploaded content before compression")
+                .baseUnit("bytes")
+                .register(registry);
+        this.compressedBytes = Counter.builder("sbomer.storage.compression.compressed")
+                .description("Bytes of uploaded content after compression")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @Override
+    public void upload(String key, InputStream content, UploadOptions options) {
+        if (codec == null || options.getContentEncoding() != null || !isCompressible(options.getContentType())) {
+            delegate.upload(key, content, options);
+            return;
+        }
+        Map<String, String> metadata = new HashMap<>(options.getMetadata());
+        if (options.getContentLength() >= 0) {
+            metadata.put(UNCOMPRESSED_LENGTH, Long.toString(options.getContentLength()));
+        }
+        UploadOptions compressedOptions = options.toBuilder()
+                .contentLength(-1)
+                .contentEncoding(codec.encoding())
+                .metadata(metadata)
+                .build();
+        try (CompressingInputStream compressed = new CompressingInputStream(content, codec)) {
+            delegate.upload(key, compressed, compressedOptions);
+            uncompressedBytes.increment(compressed.sourceLength());
+            compressedBytes.increment(compressed.compressedLength());
+            log.debug("Compressed '{}' with {}: {} -> {} bytes", key, codec.encoding(),
+                    compressed.sourceLength(), compressed.compressedLength());
+        } catch (IOException e) {
+            throw new StorageException("Unable to compress content: " + key, e);
+        }
+    }
+
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
+        // validators of the decompressed representation are weak, the stored object has the strong one
+        DownloadOptions stored = options.toBuilder()
+                .acceptEncoding(null)
+                .ifMatch(strong(options.getIfMatch()))
+                .ifNoneMatch(strong(options.getIfNoneMatch()))
+                .build();
+        StoredObject object;
+        try {
+            object = delegate.download(key, stored);
+        } catch (StorageRangeNotSatisfiableException e) {
+            // the range may lie beyond the compressed but within the decompressed size
+            if (acceptsAll(options.getAcceptEncoding())) {
+                throw e;
+            }
+            return decodedRange(key, options, stored);
+        }
+        if (object.isNotModified()) {
+            boolean weak = options.getIfNoneMatch() != null && options.getIfNoneMatch().trim().startsWith("W/");
+            return weak ? object.toBuilder().eTag(weak(object.getETag())).build() : object;
+        }
+        ContentCodec encoding = ContentCodec.forEncoding(object.getContentEncoding());
+        if (encoding == null || encoding.isAcceptedBy(options.getAcceptEncoding())) {
+            return object;
+        } else if (options.getRange() != null) {
+            closeQuietly(object.getContent());
+            return decodedRange(key, options, stored);
+        }
+        return decoded(key, object, encoding);
+    }
+
+    /**
+     * Only hands out URLs of objects whose stored encoding the caller accepts, the storage serves them as stored.
+     */
+    @Override
+    public PresignedUrl presignDownload(String key, DownloadOptions options, Duration validity) {
+        PresignedUrl url = delegate.presignDownload(key, options, validity);
+        if (url == null) {
+            return null;
+        }
+        ContentCodec encoding = ContentCodec.forEncoding(url.getContentEncoding());
+        return encoding == null || encoding.isAcceptedBy(options.getAcceptEncoding()) ? url : null;
+    }
+
+    /**
+     * Reports the uncompressed size of compressed objects, or -1 if it is not known.
+     */
+    @Override
+    public StoredObject stat(String key) {
+        StoredObject object = delegate.stat(key);
+        if (ContentCodec.forEncoding(object.getContentEncoding()) == null) {
+            return object;
+        }
+        long length = uncompressedLength(object);
+        return object.toBuilder().contentLength(length).totalLength(length).build();
+    }
+
+    /**
+     * Fetches the whole object and cuts the requested range out of its decompressed content.
+     * The whole object is returned if its decompressed size is not known.
+     */
+    private StoredObject decodedRange(String key, DownloadOptions options, DownloadOptions stored) {
+        StoredObject object = delegate.download(key, stored.toBuilder().range(null).build());
+        if (object.isNotModified()) {
+            return object;
+        }
+        ContentCodec encoding = ContentCodec.forEncoding(object.getContentEncoding());
+        if (encoding != null && encoding.isAcceptedBy(options.getAcceptEncoding())) {
+            // the range did not fit the stored object
+            closeQuietly(object.getContent());
+            throw new StorageRangeNotSatisfiableException("Range not satisfiable: " + key, null);
+        }
+        StoredObject whole = encoding != null ? decoded(key, object, encoding) : object;
+        long totalLength = whole.getContentLength();
+        if (totalLength < 0) {
+            log.debug("Uncompressed size of '{}' is unknown, returning the whole object", key);
+            return whole;
+        }
+        ByteRange range = options.getRange().resolve(totalLength);
+        if (range == null) {
+            closeQuietly(whole.getContent());
+            throw new StorageRangeNotSatisfiableException("Range not satisfiable: " + key, null);
+        }
+        InputStream content = whole.getContent();
+        try {
+            content.skipNBytes(range.getFirst());
+        } catch (IOException e) {
+            closeQuietly(content);
+            throw new StorageException("Unable to decompress content: " + key, e);
+        }
+        return whole.toBuilder()
+                .content(new LimitedInputStream(content, range.length()))
+                .file(null)
+                .contentLength(range.length())
+                .rangeStart(range.getFirst())
+                .rangeEnd(range.getLast())
+                .totalLength(totalLength)
+                .build();
+    }
+
+    private static StoredObject decoded(String key, StoredObject object, ContentCodec encoding) {
+        InputStream content;
+        try {
+            content = encoding.decoder(object.getContent());
+        } catch (IOException e) {
+            closeQuietly(object.getContent());
+            throw new StorageException("Unable to decompress content: " + key, e);
+        }
+        long length = uncompressedLength(object);
+        return object.toBuilder()
+                .content(content)
+                .file(null)
+                .contentEncoding(null)
+                .contentLength(length)
+                .totalLength(length)
+                .rangeStart(null)
+                .rangeEnd(null)
+                .eTag(weak(object.getETag()))
+                .build();
+    }
+
+    private static long uncompressedLength(StoredObject object) {
+        String value = object.getMetadata().get(UNCOMPRESSED_LENGTH);
+        try {
+            return value != null ? Long.parseLong(value) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean acceptsAll(String acceptEncoding) {
+        for (ContentCodec candidate : ContentCodec.values()) {
+            if (!candidate.isAcceptedBy(acceptEncoding)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        return !COMPRESSED_TYPES.contains(type) && !type.startsWith("image/") && !type.startsWith("video/")
+                && !type.startsWith("audio/");
+    }
+
+    private static String weak(String eTag) {
+        return eTag == null || eTag.startsWith("W/") ? eTag : "W/" + eTag;
+    }
+
+    private static String strong(String eTags) {
+        return eTags == null ? null : eTags.replace("W/", "");
+    }
+
+    private static void closeQuietly(InputStream content) {
+        try {
+            if (content != null) {
+                content.close();
+            }
+        } catch (IOException e) {
+            log.debug("Unable to close content stream", e);
+        }
+    }
+
+    /**
+     * Ends the wrapped stream after a number of bytes.
+     */
+    static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read();
+            if (read != -1) {
+                remaining--;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+}
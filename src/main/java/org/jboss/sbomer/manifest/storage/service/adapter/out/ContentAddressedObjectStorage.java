@@ -0,0 +1,286 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stores every distinct content once, under a key derived from its SHA-256 digest.
+ * <p>
+ * The content of an upload is hashed while it is spooled, in memory when it is small and to a file in
+ * the spool directory otherwise. It is then stored as a blob under {@code _blobs/sha256/{digest}}, unless
+ * a blob with that digest exists already, in which case the data is not sent at all. The upload's own key
+ * receives an empty reference object whose {@code content-digest} metadata entry names the blob.
+ * <p>
+ * Downloads read the reference object's metadata and return the blob, with the content type of the
+ * reference. Objects stored before this mode was enabled have no digest and are returned directly,
+ * so callers keep using the same keys and URLs. Listings show the reference objects with the size and
+ * ETag of their blobs, the blobs themselves are not listed. Deletes remove the reference objects only,
+ * as other references may share a blob. Blobs are never deleted, so retention passes do not run in this mode.
+ */
+@Slf4j
+class ContentAddressedObjectStorage extends ForwardingObjectStorage {
+
+    static final String BLOB_PREFIX = "_blobs/sha256/";
+    static final String CONTENT_DIGEST = "content-digest";
+
+    // uploads up to this size are spooled in memory
+    private static final int MEMORY_SPOOL_LIMIT = 1024 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final Counter skipped;
+    private final Counter saved;
+
+    /**
+     * @param delegate storage holding the blobs and reference objects
+     * @param directory directory holding the spool files of large uploads, emptied on startup
+     * @param registry registry to export the deduplication metrics to
+     */
+    ContentAddressedObjectStorage(ObjectStorage delegate, Path directory, MeterRegistry registry) {
+        super(delegate);
+        this.directory = directory;
+        prepareDirectory(directory);
+        this.skipped = Counter.builder("sbomer.storage.dedup.skipped")
+                .description("Uploads whose content was stored already, so that no data was sent")
+                .register(registry);
+        this.saved = Counter.builder("sbomer.storage.dedup.saved")
+                .description("Bytes not sent to the storage because the content was stored already")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @Override
+    public void upload(String key, InputStream content, UploadOptions options) {
+        try (Spool spool = spool(key, content)) {
+            String blobKey = BLOB_PREFIX + spool.digest;
+            if (exists(blobKey)) {
+                skipped.increment();
+                saved.increment(spool.length);
+                log.debug("Content of '{}' is stored already as '{}'", key, blobKey);
+            } else {
+                try (InputStream spooled = spool.open()) {
+                    delegate.upload(blobKey, spooled, options.toBuilder().contentLength(spool.length).build());
+                }
+            }
+            Map<String, String> metadata = new HashMap<>(options.getMetadata());
+            metadata.put(CONTENT_DIGEST, "sha256:" + spool.digest);
+            delegate.upload(key, InputStream.nullInputStream(), options.toBuilder()
+                    .contentLength(0)
+                    .metadata(metadata)
+                    .build());
+        } catch (IOException e) {
+            throw new StorageException("Unable to spool content: " + key, e);
+        }
+    }
+
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
+        StoredObject reference = delegate.stat(key);
+        String blobKey = blobKey(reference);
+        if (blobKey == null) {
+            return delegate.download(key, options);
+        }
+        StoredObject blob;
+        try {
+            blob = delegate.download(blobKey, options);
+        } catch (StorageFileNotFoundException e) {
+            log.warn("Blob '{}' referenced by '{}' is missing", blobKey, key);
+            throw new StorageFileNotFoundException("File not found: " + key, e);
+        }
+        return blob.isNotModified() ? blob : blob.toBuilder().contentType(reference.getContentType()).build();
+    }
+
+    @Override
+    public StoredObject stat(String key) {
+        StoredObject reference = delegate.stat(key);
+        String blobKey = blobKey(reference);
+        if (blobKey == null) {
+            return reference;
+        }
+        try {
+            return delegate.stat(blobKey).toBuilder().contentType(reference.getContentType()).build();
+        } catch (StorageFileNotFoundException e) {
+            log.warn("Blob '{}' referenced by '{}' is missing", blobKey, key);
+            throw new StorageFileNotFoundException("File not found: " + key, e);
+        }
+    }
+
+    /**
+     * Presigns the blob of a reference object, S3 cannot follow the reference.
+     */
+    @Override
+    public PresignedUrl presignDownload(String key, DownloadOptions options, Duration validity) {
+        String blobKey = blobKey(delegate.stat(key));
+        if (blobKey == null) {
+            return delegate.presignDownload(key, options, validity);
+        }
+        try {
+            return delegate.presignDownload(blobKey, options, validity);
+        } catch (StorageFileNotFoundException e) {
+            log.warn("Blob '{}' referenced by '{}' is missing", blobKey, key);
+            throw new StorageFileNotFoundException("File not found: " + key, e);
+        }
+    }
+
+    /**
+     * Lists the reference objects with the size and ETag of their blobs. Reference objects are empty,
+     * so only the empty objects of a page are looked up.
+     */
+    @Override
+    public ObjectPage list(String prefix, String cursor, int limit) {
+        ObjectPage page = delegate.list(prefix, cursor, limit);
+        List<ObjectSummary> objects = page.getObjects().stream()
+                .filter(object -> !object.getKey().startsWith(BLOB_PREFIX))
+                .map(object -> object.getSize() == 0 ? resolve(object) : object)
+                .toList();
+        return ObjectPage.builder().objects(objects).nextCursor(page.getNextCursor()).build();
+    }
+
+    private ObjectSummary resolve(ObjectSummary object) {
+        StoredObject stored = stat(object.getKey());
+        return object.toBuilder()
+                .size(stored.getContentLength())
+                .eTag(stored.getETag())
+                .contentType(stored.getContentType())
+                .build();
+    }
+
+    private boolean exists(String key) {
+        try {
+            delegate.stat(key);
+            return true;
+        } catch (StorageFileNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the key of the blob a reference object points to, or null if the object holds its own content
+     */
+    private static String blobKey(StoredObject reference) {
+        String digest = reference.getMetadata().get(CONTENT_DIGEST);
+        if (digest == null || !digest.startsWith("sha256:")) {
+            return null;
+        }
+        return BLOB_PREFIX + digest.substring("sha256:".length());
+    }
+
+    /**
+     * Reads the content to its end, keeping it in memory or, past the memory limit, in a spool file.
+     */
+    private Spool spool(String key, InputStream content) throws IOException {
+        MessageDigest sha256 = sha256();
+        ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        Path file = null;
+        OutputStream out = memory;
+        long length = 0;
+        try (InputStream in = new DigestInputStream(content, sha256)) {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (file == null && length + read > MEMORY_SPOOL_LIMIT) {
+                    file = Files.createTempFile(directory, "upload-", ".bin");
+                    out = Files.newOutputStream(file);
+                    memory.writeTo(out);
+                    memory = null;
+                }
+                out.write(buffer, 0, read);
+                length += read;
+            }
+        } catch (IOException | RuntimeException e) {
+            if (file != null) {
+                out.close();
+                deleteQuietly(file);
+            }
+            throw e;
+        }
+        out.close();
+        log.debug("Spooled '{}' ({} bytes{})", key, length, file != null ? " on disk" : "");
+        return new Spool(HexFormat.of().formatHex(sha256.digest()), length, memory, file);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void prepareDirectory(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            // Spool files of a previous run belong to uploads that failed
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(Files::isRegularFile).forEach(ContentAddressedObjectStorage::deleteQuietly);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to prepare spool directory: " + directory, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete spool file: {}", file, e);
+        }
+    }
+
+    /**
+     * Spooled content of one upload, the spool file is deleted on close.
+     */
+    private static final class Spool implements AutoCloseable {
+        private final String digest;
+        private final long length;
+        private final ByteArrayOutputStream memory;
+        private final Path file;
+
+        private Spool(String digest, long length, ByteArrayOutputStream memory, Path file) {
+            this.digest = digest;
+            this.length = length;
+            this.memory = memory;
+            this.file = file;
+        }
+
+        private InputStream open() throws IOException {
+            return file != null ? Files.newInputStream(file) : new ByteArrayInputStream(memory.toByteArray());
+        }
+
+        @Override
+        public void close() {
+            if (file != null) {
+                deleteQuietly(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+/**
+ * Compression codecs for content stored at rest, named after their HTTP content coding.
+ */
+enum ContentCodec {
+    GZIP("gzip") {
+        @Override
+        OutputStream encoder(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+
+        @Override
+        InputStream decoder(InputStream in) throws IOException {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+    },
+    ZSTD("zstd") {
+        @Override
+        OutputStream encoder(OutputStream out) throws IOException {
+            return new ZstdOutputStream(out, ZSTD_LEVEL);
+        }
+
+        @Override
+        InputStream decoder(InputStream in) throws IOException {
+            return new ZstdInputStream(in);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // zstd's default level, compresses SBOMs better and faster than gzip's default
+    private static final int ZSTD_LEVEL = 3;
+
+    private final String encoding;
+
+    ContentCodec(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * @return the content coding, as used in the Content-Encoding and Accept-Encoding headers
+     */
+    String encoding() {
+        return encoding;
+    }
+
+    /**
+     * Wraps the stream so everything written to it is compressed, closing it finishes the compressed stream.
+     */
+    abstract OutputStream encoder(OutputStream out) throws IOException;
+
+    /**
+     * Wraps the stream so reading from it returns the decompressed content.
+     */
+    abstract InputStream decoder(InputStream in) throws IOException;
+
+    /**
+     * @return the codec of a content coding, or null if the coding is not known
+     */
+    static ContentCodec forEncoding(String encoding) {
+        for (ContentCodec codec : values()) {
+            if (codec.encoding.equalsIgnoreCase(encoding)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether an Accept-Encoding header accepts this codec, either by name or by {@code *},
+     * a quality value of 0 rejects the coding (RFC 9110, section 12.5.3).
+     * @param acceptEncoding value of the header, null accepts no coding
+     */
+    boolean isAcceptedBy(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parameters = element.split(";");
+            String coding = parameters[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = quality(parameters) > 0;
+            if (coding.equals(encoding)) {
+                return accepted;
+            } else if (coding.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static double quality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,62 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.time.Instant;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StoragePreconditionFailedException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+
+/**
+ * Evaluates the conditions of a download against the validators of a local object,
+ * the way S3 does for a GetObject request.
+ * Shared by the storages that answer downloads themselves, so that they fail like the S3 adapters.
+ */
+final class DownloadConditions {
+
+    private DownloadConditions() {}
+
+    /**
+     * @param key object key, for the error message
+     * @param eTag ETag of the object
+     * @param lastModified modification time of the object, null if unknown
+     * @param options conditions of the download
+     * @return a not modified object carrying only the validators if the caller's copy is current, otherwise null
+     * @throws StoragePreconditionFailedException if the object doesn't match the if-match or if-unmodified-since condition
+     */
+    static StoredObject evaluate(String key, String eTag, Instant lastModified, DownloadOptions options) {
+        if (options.getIfMatch() != null && !options.getIfMatch().equals(eTag)) {
+            throw new StoragePreconditionFailedException("Precondition failed for: " + key, null);
+        }
+        if (options.getIfUnmodifiedSince() != null && lastModified != null
+                && lastModified.isAfter(options.getIfUnmodifiedSince())) {
+            throw new StoragePreconditionFailedException("Precondition failed for: " + key, null);
+        }
+        boolean notModified = options.getIfNoneMatch() != null
+                ? matchesAny(options.getIfNoneMatch(), eTag)
+                : options.getIfModifiedSince() != null && lastModified != null
+                        && !lastModified.isAfter(options.getIfModifiedSince());
+        if (!notModified) {
+            return null;
+        }
+        return StoredObject.builder()
+                .notModified(true)
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .build();
+    }
+
+    // If-None-Match uses the weak comparison and may list several ETags (RFC 9110, section 13.1.2)
+    private static boolean matchesAny(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || weak(value).equals(weak(eTag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String weak(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+}
@@ -0,0 +1,87 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a region of a local file, the file is only opened on the first read.
+ * Lets a {@link org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject} offer a
+ * stream for its content while the REST layer sends the file itself, without the stream ever being opened.
+ */
+class FileRegionInputStream extends InputStream {
+
+    private final Path file;
+    private long position;
+    private long remaining;
+    private FileChannel channel;
+    private boolean closed;
+
+    /**
+     * @param file file to read
+     * @param offset position of the first byte to read
+     * @param length number of bytes to read
+     */
+    FileRegionInputStream(Path file, long offset, long length) {
+        this.file = file;
+        this.position = offset;
+        this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        } else if (length == 0) {
+            return 0;
+        }
+        int read = channel().read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, remaining)), position);
+        if (read == -1) {
+            throw new EOFException("Unexpected end of file: " + file);
+        }
+        position += read;
+        remaining -= read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, remaining));
+        position += skipped;
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (channel == null) {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,530 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageAccessException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageKeyInvalidException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StoragePreconditionFailedException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Storage adapter keeping objects in a local directory tree, for installations without S3
+ * and for load tests that need a backend of known latency. Fails the same way as {@link S3StorageAdapter}.
+ * <p>
+ * The first segment of a key selects one of 256 shard directories by its hash, the remaining segments
+ * become nested directories, so the files of a generation share a directory and are listed without
+ * walking the whole tree. An object is a data file named after its content digest and a metadata file
+ * that refers to it. Both are written to a temporary file, synced and renamed into place, the rename of
+ * the metadata file commits the upload. A replaced data file is deleted after a delay, so that a response
+ * that was just handed it can still open it.
+ * <p>
+ * Downloads carry the data {@link StoredObject#getFile() file}, so the REST layer sends the requested
+ * region with sendfile and the content never passes through the heap; other readers get a stream doing
+ * positional {@link FileChannel} reads. A directory must only be used by a single instance.
+ */
+@ApplicationScoped
+@Typed(FilesystemStorageAdapter.class)
+@Slf4j
+public class FilesystemStorageAdapter implements ObjectStorage {
+
+    static final Duration DELETE_DELAY = Duration.ofSeconds(30);
+
+    // names of entries in the object tree, keep directories apart from files of the same name
+    private static final String DIRECTORY_PREFIX = "d-";
+    private static final String FILE_PREFIX = "f-";
+    private static final String METADATA_SUFFIX = ".meta";
+
+    private static final String METADATA_PREFIX = "metadata.";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LOCK_STRIPES = 64;
+
+    @ConfigProperty(name = "sbomer.storage.filesystem.directory")
+    Path directory;
+
+    private Path objectDirectory;
+    private Path tempDirectory;
+    // serialize commits of the same key, so that a replaced data file is never still referenced
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private ScheduledExecutorService cleaner;
+
+    /**
+     * Default constructor for CDI.
+     */
+    public FilesystemStorageAdapter() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Package-private constructor for testing.
+     * @param directory root of the object tree
+     */
+    FilesystemStorageAdapter(Path directory) {
+        this();
+        this.directory = directory;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        this.objectDirectory = directory.resolve("objects");
+        this.tempDirectory = directory.resolve("tmp");
+        try {
+            Files.createDirectories(objectDirectory);
+            Files.createDirectories(tempDirectory);
+            // Uploads interrupted by a previous run were never committed
+            try (Stream<Path> files = Files.list(tempDirectory)) {
+                files.forEach(FilesystemStorageAdapter::deleteQuietly);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to prepare storage directory: " + directory, e);
+        }
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "filesystem-storage-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Storing objects in directory '{}'", directory);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // replaced data files are not referenced anymore, delete them right away
+        cleaner.shutdownNow().forEach(Runnable::run);
+    }
+
+    /**
+     * Writes content into the object tree. The content is written to a temporary file and synced,
+     * then renamed into place together with its metadata, so readers see either the previous
+     * or the new object, never a partial one.
+     * @param key object key (path), must not be null or contain '..'
+     * @param content content to upload as an InputStream
+     * @param options MIME type, encoding and user metadata of the content
+     * @throws StorageKeyInvalidException if key is null, empty, contains path traversal patterns or is not a valid path
+     * @throws StorageException if the files cannot be written
+     * @throws StorageAccessException if access to the directory is denied
+     */
+    @Override
+    public void upload(String key, InputStream content, UploadOptions options) {
+        validateKey(key);
+        Path temp = null;
+        try {
+            log.info("Uploading to directory '{}': {}", directory, key);
+            Path parent = directoryOf(key);
+            temp = Files.createTempFile(tempDirectory, "upload-", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            long length;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream out = new DigestOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), digest);
+                length = content.transferTo(out);
+                out.flush();
+                channel.force(true);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+
+            Properties metadata = new Properties();
+            metadata.setProperty("key", key);
+            metadata.setProperty("data", fileName(key) + "." + hash);
+            metadata.setProperty("length", Long.toString(length));
+            metadata.setProperty("etag", "\"" + hash + "\"");
+            // HTTP dates have a resolution of seconds, conditions sent back by clients must match
+            metadata.setProperty("last-modified", Instant.now().truncatedTo(ChronoUnit.SECONDS).toString());
+            if (options.getContentType() != null) {
+                metadata.setProperty("content-type", options.getContentType());
+            }
+            if (options.getContentEncoding() != null) {
+                metadata.setProperty("content-encoding", options.getContentEncoding());
+            }
+            options.getMetadata().forEach((name, value) -> metadata.setProperty(METADATA_PREFIX + name, value));
+
+            Files.createDirectories(parent);
+            commit(key, parent, temp, metadata);
+            log.info("Uploaded to directory '{}': {} ({} bytes)", directory, key, length);
+        } catch (Exception e) {
+            throw handleException(e, key);
+        } finally {
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    private void commit(String key, Path parent, Path data, Properties metadata) throws IOException {
+        Path metadataFile = parent.resolve(fileName(key) + METADATA_SUFFIX);
+        Path temp = Files.createTempFile(tempDirectory, "metadata-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                metadata.store(Channels.newOutputStream(channel), null);
+                channel.force(true);
+            }
+            String dataName = metadata.getProperty("data");
+            synchronized (locks[Math.floorMod(key.hashCode(), locks.length)]) {
+                String previous = readDataName(metadataFile);
+                Files.move(data, parent.resolve(dataName), StandardCopyOption.ATOMIC_MOVE);
+                Files.move(temp, metadataFile, StandardCopyOption.ATOMIC_MOVE);
+                syncDirectory(parent);
+                if (previous != null && !previous.equals(dataName)) {
+                    scheduleDelete(parent.resolve(previous));
+                }
+            }
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Reads content, or a range of it, from the object tree.
+     * @param key object key (path), must not be null or contain ".."
+     * @param options range and conditions of the download
+     * @return the object content with its metadata and data file, or only the metadata
+     *         if the if-none-match or if-modified-since condition shows that the caller's copy is current
+     * @throws StorageKeyInvalidException if key is null, empty, contains path traversal patterns or is not a valid path
+     * @throws StorageFileNotFoundException if object doesn't exist at specified key
+     * @throws StoragePreconditionFailedException if the object doesn't match the preconditions
+     * @throws StorageRangeNotSatisfiableException if the range lies outside of the object
+     * @throws StorageException if the files cannot be read
+     * @throws StorageAccessException if access to the directory is denied
+     */
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
+        validateKey(key);
+        try {
+            log.info("Downloading from directory '{}': {}", directory, key);
+            Metadata metadata = readMetadata(key);
+            StoredObject notModified = DownloadConditions.evaluate(key, metadata.eTag(), metadata.lastModified(), options);
+            if (notModified != null) {
+                log.debug("Not modified in directory '{}': {}", directory, key);
+                return notModified;
+            }
+
+            StoredObject.StoredObjectBuilder object = toStoredObject(metadata).file(metadata.data());
+            long offset = 0;
+            long length = metadata.length();
+            if (options.getRange() != null) {
+                ByteRange range = options.getRange().resolve(metadata.length());
+                if (range == null) {
+                    throw new StorageRangeNotSatisfiableException("Range not satisfiable for: " + key, null);
+                }
+                offset = range.getFirst();
+                length = range.length();
+                object.rangeStart(range.getFirst()).rangeEnd(range.getLast());
+            }
+            log.info("Downloaded from directory '{}': {} ({} bytes)", directory, key, length);
+            return object
+                    .content(new FileRegionInputStream(metadata.data(), offset, length))
+                    .contentLength(length)
+                    .build();
+        } catch (Exception e) {
+            throw handleException(e, key);
+        }
+    }
+
+    /**
+     * Reads the metadata of an object.
+     * @param key object key (path), must not be null or contain ".."
+     * @return the object's metadata, without content
+     * @throws StorageKeyInvalidException if key is null, empty, contains path traversal patterns or is not a valid path
+     * @throws StorageFileNotFoundException if object doesn't exist at specified key
+     * @throws StorageException if the files cannot be read
+     * @throws StorageAccessException if access to the directory is denied
+     */
+    @Override
+    public StoredObject stat(String key) {
+        validateKey(key);
+        try {
+            return toStoredObject(readMetadata(key)).build();
+        } catch (Exception e) {
+            throw handleException(e, key);
+        }
+    }
+
+    /**
+     * Lists objects under a prefix in key order. A prefix containing a '/' is listed from the directory
+     * of its complete segments, a prefix without one from all shards.
+     * @param prefix key prefix, must not be null or contain ".."
+     * @param cursor last key of the previous page, null for the first page
+     * @param limit maximum number of objects in the page
+     * @return the page, with the cursor of the next page if there are more objects
+     * @throws StorageKeyInvalidException if prefix is null, empty, contains path traversal patterns or is not a valid path
+     * @throws StorageException if the directories cannot be read
+     * @throws StorageAccessException if access to the directory is denied
+     */
+    @Override
+    public ObjectPage list(String prefix, String cursor, int limit) {
+        StorageKeyValidator.validatePrefix(prefix);
+        try {
+            List<String> keys = new ArrayList<>();
+            int slash = prefix.lastIndexOf('/');
+            if (slash >= 0) {
+                String parent = prefix.substring(0, slash + 1);
+                collectKeys(directoryOf(parent), parent, prefix, cursor, keys);
+            } else if (Files.isDirectory(objectDirectory)) {
+                try (DirectoryStream<Path> shards = Files.newDirectoryStream(objectDirectory)) {
+                    for (Path shard : shards) {
+                        collectKeys(shard, "", prefix, cursor, keys);
+                    }
+                }
+            }
+            Collections.sort(keys);
+
+            List<ObjectSummary> objects = new ArrayList<>();
+            for (String key : keys.subList(0, Math.min(limit, keys.size()))) {
+                Metadata metadata = readMetadata(key);
+                objects.add(ObjectSummary.builder()
+                        .key(key)
+                        .size(metadata.length())
+                        .eTag(metadata.eTag())
+                        .lastModified(metadata.lastModified())
+                        .contentType(metadata.contentType())
+                        .build());
+            }
+            log.debug("Listed {} objects under '{}' in directory '{}'", objects.size(), prefix, directory);
+            return ObjectPage.builder()
+                    .objects(objects)
+                    .nextCursor(keys.size() > limit ? objects.get(objects.size() - 1).getKey() : null)
+                    .build();
+        } catch (Exception e) {
+            throw handleException(e, prefix);
+        }
+    }
+
+    /**
+     * Deletes objects one after the other. The metadata file is removed right away, which makes the object
+     * disappear, its data file after a delay like a replaced one. Emptied directories are left in place.
+     * @param keys object keys (paths), must not be null or contain ".."
+     * @throws StorageKeyInvalidException if a key is null, empty, contains path traversal patterns or is not a valid path
+     * @throws StorageException if the files cannot be deleted
+     * @throws StorageAccessException if access to the directory is denied
+     */
+    @Override
+    public void delete(Collection<String> keys) {
+        keys.forEach(this::validateKey);
+        for (String key : keys) {
+            try {
+                Path parent = directoryOf(key);
+                Path metadataFile = parent.resolve(fileName(key) + METADATA_SUFFIX);
+                synchronized (locks[Math.floorMod(key.hashCode(), locks.length)]) {
+                    String dataName = readDataName(metadataFile);
+                    if (dataName == null) {
+                        continue;
+                    }
+                    Files.deleteIfExists(metadataFile);
+                    syncDirectory(parent);
+                    scheduleDelete(parent.resolve(dataName));
+                }
+            } catch (Exception e) {
+                throw handleException(e, key);
+            }
+        }
+        log.debug("Deleted {} objects from directory '{}'", keys.size(), directory);
+    }
+
+    /**
+     * Collects the keys of the metadata files below a directory that follow the cursor.
+     * Entries are told apart by their names, so files deleted meanwhile are never read.
+     * @param parent key prefix the directory stands for
+     */
+    private static void collectKeys(Path directory, String parent, String prefix, String cursor, List<String> keys)
+            throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (name.startsWith(DIRECTORY_PREFIX)) {
+                    String path = parent + name.substring(DIRECTORY_PREFIX.length()) + "/";
+                    // skip directories that cannot hold keys of the prefix
+                    if (path.startsWith(prefix) || prefix.startsWith(path)) {
+                        collectKeys(entry, path, prefix, cursor, keys);
+                    }
+                } else if (name.startsWith(FILE_PREFIX) && name.endsWith(METADATA_SUFFIX)) {
+                    String key = parent + name.substring(FILE_PREFIX.length(), name.length() - METADATA_SUFFIX.length());
+                    if (key.startsWith(prefix) && (cursor == null || key.compareTo(cursor) > 0)) {
+                        keys.add(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the directory holding the files of a key
+     */
+    private Path directoryOf(String key) {
+        String[] segments = key.split("/", -1);
+        Path parent = objectDirectory.resolve(shard(segments[0]));
+        for (int i = 0; i < segments.length - 1; i++) {
+            parent = parent.resolve(DIRECTORY_PREFIX + segments[i]);
+        }
+        return parent;
+    }
+
+    private static String fileName(String key) {
+        return FILE_PREFIX + key.substring(key.lastIndexOf('/') + 1);
+    }
+
+    private static String shard(String segment) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(segment.getBytes(UTF_8));
+            return HexFormat.of().toHexDigits(hash[0]);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Metadata readMetadata(String key) throws IOException {
+        Path parent = directoryOf(key);
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(parent.resolve(fileName(key) + METADATA_SUFFIX))) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            throw new StorageFileNotFoundException("File not found: " + key, e);
+        }
+        Map<String, String> metadata = new HashMap<>();
+        properties.stringPropertyNames().stream()
+                .filter(name -> name.startsWith(METADATA_PREFIX))
+                .forEach(name -> metadata.put(name.substring(METADATA_PREFIX.length()), properties.getProperty(name)));
+        return new Metadata(
+                parent.resolve(properties.getProperty("data")),
+                Long.parseLong(properties.getProperty("length")),
+                properties.getProperty("etag"),
+                Instant.parse(properties.getProperty("last-modified")),
+                properties.getProperty("content-type"),
+                properties.getProperty("content-encoding"),
+                Map.copyOf(metadata));
+    }
+
+    private static String readDataName(Path metadataFile) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(metadataFile)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return properties.getProperty("data");
+    }
+
+    private static StoredObject.StoredObjectBuilder toStoredObject(Metadata metadata) {
+        return StoredObject.builder()
+                .contentLength(metadata.length())
+                .contentType(metadata.contentType())
+                .contentEncoding(metadata.contentEncoding())
+                .metadata(metadata.metadata())
+                .eTag(metadata.eTag())
+                .lastModified(metadata.lastModified())
+                .totalLength(metadata.length());
+    }
+
+    // makes the renames durable, not supported on every platform
+    private static void syncDirectory(Path parent) {
+        try (FileChannel channel = FileChannel.open(parent, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Unable to sync directory: {}", parent, e);
+        }
+    }
+
+    private void scheduleDelete(Path file) {
+        try {
+            cleaner.schedule(() -> deleteQuietly(file), DELETE_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down, nothing is served anymore
+            deleteQuietly(file);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete storage file: {}", file, e);
+        }
+    }
+
+    /**
+     * Validates storage key is not null, empty, or contains path traversal.
+     * @param key storage key to validate
+     * @throws StorageKeyInvalidException if key is invalid
+     */
+    private void validateKey(String key) {
+        StorageKeyValidator.validate(key);
+    }
+
+    /**
+     * Handles common exceptions and translates them to domain exceptions.
+     * @param e exception to handle
+     * @param key object key being accessed
+     * @return appropriate domain exception
+     */
+    private RuntimeException handleException(Exception e, String key) {
+        if (e instanceof StorageException storageException) {
+            return storageException;
+        } else if (e instanceof InvalidPathException) {
+            return new StorageKeyInvalidException(key, "Key is not a valid path");
+        } else if (e instanceof AccessDeniedException) {
+            return new StorageAccessException("Access denied to storage directory: " + directory, e);
+        } else if (e instanceof IOException) {
+            return new StorageException("Storage error for: " + key, e);
+        } else {
+            return new StorageException("Unexpected error for: " + key, e);
+        }
+    }
+
+    private record Metadata(Path data, long length, String eTag, Instant lastModified, String contentType,
+            String contentEncoding, Map<String, String> metadata) {
+    }
+}
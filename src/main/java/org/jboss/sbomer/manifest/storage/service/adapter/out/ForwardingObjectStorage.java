@@ -0,0 +1,65 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Collection;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+/**
+ * Base class of the {@link ObjectStorage} decorators composed by {@link ObjectStorageProducer}.
+ * Forwards every operation to the wrapped storage, subclasses override what they change.
+ */
+abstract class ForwardingObjectStorage implements ObjectStorage, AutoCloseable {
+
+    protected final ObjectStorage delegate;
+
+    protected ForwardingObjectStorage(ObjectStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void upload(String key, InputStream content, UploadOptions options) {
+        delegate.upload(key, content, options);
+    }
+
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
+        return delegate.download(key, options);
+    }
+
+    @Override
+    public StoredObject stat(String key) {
+        return delegate.stat(key);
+    }
+
+    @Override
+    public ObjectPage list(String prefix, String cursor, int limit) {
+        return delegate.list(prefix, cursor, limit);
+    }
+
+    @Override
+    public void delete(Collection<String> keys) {
+        delegate.delete(keys);
+    }
+
+    @Override
+    public PresignedUrl presignDownload(String key, DownloadOptions options, Duration validity) {
+        return delegate.presignDownload(key, options, validity);
+    }
+
+    /**
+     * Releases the resources of this decorator and of the decorators it wraps.
+     */
+    @Override
+    public void close() {
+        if (delegate instanceof ForwardingObjectStorage decorator) {
+            decorator.close();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * An immutable file of the component index: the sorted terms, each with the sorted storage keys of the
+ * files listing it.
+ * <p>
+ * The storage keys are written once, in key order, and the postings of a term are the deltas of their
+ * positions as variable-length integers, so a key listed under hundreds of terms costs a byte or two per
+ * term. Every {@value #SPARSE_INTERVAL}th term is also written to a sparse index at the end of the file. It
+ * is kept in memory together with the keys, and a lookup reads at most one run of terms from the mapped
+ * file:
+ * <pre>
+ * int magic, int version
+ * varint keyCount, keyCount * string
+ * termCount * (string term, varint postingCount, postingCount * varint delta)
+ * varint sparseCount, sparseCount * (string term, int offset)
+ * int termCount, int termsOffset, int sparseOffset, int magic
+ * </pre>
+ * Strings are a varint length followed by UTF-8 bytes. Offsets are ints, a segment is at most 2 GiB.
+ */
+final class IndexSegment {
+
+    static final int SPARSE_INTERVAL = 64;
+
+    private static final int MAGIC = 0x53424958;
+    private static final int VERSION = 1;
+    private static final int TRAILER_SIZE = 16;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final String[] keys;
+    private final String[] sparseTerms;
+    private final int[] sparseOffsets;
+    private final int termCount;
+    private final int termsOffset;
+    private final int termsEnd;
+
+    private IndexSegment(Path file, MappedByteBuffer buffer, String[] keys, String[] sparseTerms, int[] sparseOffsets,
+            int termCount, int termsOffset, int termsEnd) {
+        this.file = file;
+        this.buffer = buffer;
+        this.keys = keys;
+        this.sparseTerms = sparseTerms;
+        this.sparseOffsets = sparseOffsets;
+        this.termCount = termCount;
+        this.termsOffset = termsOffset;
+        this.termsEnd = termsEnd;
+    }
+
+    /**
+     * Maps a segment file and reads its keys and sparse index.
+     */
+    static IndexSegment open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Index segment too large: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer in = buffer.duplicate();
+        if (in.limit() < 8 + TRAILER_SIZE || in.getInt() != MAGIC || in.getInt() != VERSION
+                || in.getInt(in.limit() - 4) != MAGIC) {
+            throw new IOException("Not an index segment: " + file);
+        }
+        int termCount = in.getInt(in.limit() - TRAILER_SIZE);
+        int termsOffset = in.getInt(in.limit() - TRAILER_SIZE + 4);
+        int sparseOffset = in.getInt(in.limit() - TRAILER_SIZE + 8);
+        String[] keys = new String[readVarint(in)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = readString(in);
+        }
+        in.position(sparseOffset);
+        int sparseCount = readVarint(in);
+        String[] sparseTerms = new String[sparseCount];
+        int[] sparseOffsets = new int[sparseCount];
+        for (int i = 0; i < sparseCount; i++) {
+            sparseTerms[i] = readString(in);
+            sparseOffsets[i] = in.getInt();
+        }
+        return new IndexSegment(file, buffer, keys, sparseTerms, sparseOffsets, termCount, termsOffset, sparseOffset);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    // bytes of the file
+    long size() {
+        return buffer.capacity();
+    }
+
+    List<String> keys() {
+        return Arrays.asList(keys);
+    }
+
+    boolean contains(String key) {
+        return Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    /**
+     * Passes the keys listed under the term, or under every term starting with it, to the consumer.
+     */
+    void find(String term, boolean prefix, Consumer<String> consumer) {
+        if (sparseTerms.length == 0) {
+            return;
+        }
+        int sparse = Arrays.binarySearch(sparseTerms, term);
+        if (sparse < 0) {
+            // the run of the last sparse term before the term may contain it
+            sparse = -sparse - 2;
+            if (sparse < 0) {
+                sparse = 0;
+            }
+        }
+        ByteBuffer in = buffer.duplicate();
+        in.position(sparseOffsets[sparse]);
+        while (in.position() < termsEnd) {
+            String current = readString(in);
+            int comparison = current.compareTo(term);
+            boolean matches = comparison == 0 || prefix && current.startsWith(term);
+            if (!matches && comparison > 0) {
+                return;
+            }
+            int count = readVarint(in);
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                position += readVarint(in);
+                if (matches) {
+                    consumer.accept(keys[position]);
+                }
+            }
+            if (matches && !prefix) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes a segment of the terms, in term order, to the file.
+     */
+    static IndexSegment write(Path file, SortedMap<String, ? extends Collection<String>> postings)
+            throws IOException {
+        SortedSet<String> keys = new TreeSet<>();
+        postings.values().forEach(keys::addAll);
+        try (Writer writer = new Writer(file, keys)) {
+            for (var entry : postings.entrySet()) {
+                writer.add(entry.getKey(), entry.getValue());
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Writes the union of the segments to the file, reading each of them once in term order, and leaves out
+     * the keys masked in the segment listing them and the terms left without keys.
+     */
+    static IndexSegment merge(Path file, List<IndexSegment> segments, BiPredicate<IndexSegment, String> masked)
+            throws IOException {
+        SortedSet<String> keys = new TreeSet<>();
+        for (IndexSegment segment : segments) {
+            for (String key : segment.keys) {
+                if (!masked.test(segment, key)) {
+                    keys.add(key);
+                }
+            }
+        }
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparing((Cursor cursor) -> cursor.term));
+        for (IndexSegment segment : segments) {
+            Cursor cursor = segment.cursor();
+            if (cursor.next()) {
+                cursors.add(cursor);
+            }
+        }
+        try (Writer writer = new Writer(file, keys)) {
+            while (!cursors.isEmpty()) {
+                String term = cursors.peek().term;
+                SortedSet<String> merged = new TreeSet<>();
+                while (!cursors.isEmpty() && cursors.peek().term.equals(term)) {
+                    Cursor cursor = cursors.poll();
+                    for (String key : cursor.keys) {
+                        if (!masked.test(cursor.segment(), key)) {
+                            merged.add(key);
+                        }
+                    }
+                    if (cursor.next()) {
+                        cursors.add(cursor);
+                    }
+                }
+                if (!merged.isEmpty()) {
+                    writer.add(term, merged);
+                }
+            }
+            return writer.finish();
+        }
+    }
+
+    private Cursor cursor() {
+        ByteBuffer in = buffer.duplicate();
+        in.position(termsOffset);
+        return new Cursor(in);
+    }
+
+    /**
+     * Reads the terms of a segment one after the other.
+     */
+    private final class Cursor {
+        private final ByteBuffer in;
+        private String term;
+        private final List<String> keys = new ArrayList<>();
+
+        Cursor(ByteBuffer in) {
+            this.in = in;
+        }
+
+        IndexSegment segment() {
+            return IndexSegment.this;
+        }
+
+        boolean next() {
+            if (in.position() >= termsEnd) {
+                return false;
+            }
+            term = readString(in);
+            keys.clear();
+            int count = readVarint(in);
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                position += readVarint(in);
+                keys.add(IndexSegment.this.keys[position]);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Writes the terms to a temporary file that is moved to the segment file when complete, so that a
+     * segment file found on disk is always whole.
+     */
+    private static final class Writer implements AutoCloseable {
+        private final Path file;
+        private final Path temporary;
+        private final String[] keys;
+        private final DataOutputStream out;
+        private final List<String> sparseTerms = new ArrayList<>();
+        private final List<Integer> sparseOffsets = new ArrayList<>();
+        private int termCount;
+        private int termsOffset;
+        private String lastTerm;
+        private boolean finished;
+
+        Writer(Path file, SortedSet<String> keys) throws IOException {
+            this.file = file;
+            this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            this.keys = keys.toArray(String[]::new);
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeVarint(out, this.keys.length);
+            for (String key : this.keys) {
+                writeString(out, key);
+            }
+            termsOffset = out.size();
+        }
+
+        void add(String term, Collection<String> termKeys) throws IOException {
+            if (lastTerm != null && term.compareTo(lastTerm) <= 0) {
+                throw new IllegalArgumentException("Terms out of order: " + lastTerm + ", " + term);
+            }
+            if (termCount % SPARSE_INTERVAL == 0) {
+                sparseTerms.add(term);
+                sparseOffsets.add(out.size());
+            }
+            int[] positions = termKeys.stream().mapToInt(key -> Arrays.binarySearch(keys, key)).sorted().distinct().toArray();
+            writeString(out, term);
+            writeVarint(out, positions.length);
+            int previous = 0;
+            for (int position : positions) {
+                writeVarint(out, position - previous);
+                previous = position;
+            }
+            termCount++;
+            lastTerm = term;
+            // the size saturates at the largest int
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("Index segment too large: " + file);
+            }
+        }
+
+        IndexSegment finish() throws IOException {
+            int sparseOffset = out.size();
+            writeVarint(out, sparseTerms.size());
+            for (int i = 0; i < sparseTerms.size(); i++) {
+                writeString(out, sparseTerms.get(i));
+                out.writeInt(sparseOffsets.get(i));
+            }
+            out.writeInt(termCount);
+            out.writeInt(termsOffset);
+            out.writeInt(sparseOffset);
+            out.writeInt(MAGIC);
+            out.close();
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+            return open(file);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarint(in)];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
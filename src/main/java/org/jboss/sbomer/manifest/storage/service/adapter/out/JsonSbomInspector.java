@@ -0,0 +1,361 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ComponentIds;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.SbomInspector;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Summarizes CycloneDX and SPDX JSON documents with Jackson's non-blocking parser.
+ * <p>
+ * The uploaded bytes are fed to the parser as they pass by, without copying them, and only the tokens
+ * of the few fields of the summary are turned into strings. The parser keeps no tree of the document, so
+ * memory does not grow with its size. A document that is not well-formed JSON is not summarized, its upload
+ * is not affected.
+ * <p>
+ * The root of an SPDX document is the package named by {@code documentDescribes} if that comes before the
+ * packages, otherwise the first package, so that the packages need not be kept until the end.
+ * <p>
+ * The package URL and name@version of every component and package are collected for the component index,
+ * except those of the tools in the metadata of a CycloneDX document.
+ */
+@ApplicationScoped
+@Slf4j
+public class JsonSbomInspector implements SbomInspector {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    @Override
+    public Inspection inspect(String filename, String contentType) {
+        boolean json = (contentType != null && contentType.toLowerCase(Locale.ROOT).contains("json"))
+                || (filename != null && filename.toLowerCase(Locale.ROOT).endsWith(".json"));
+        if (!json) {
+            return null;
+        }
+        try {
+            return new JsonInspection(JSON.createNonBlockingByteArrayParser());
+        } catch (IOException e) {
+            log.warn("Unable to create JSON parser: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Tracks the path of containers the parser is in and picks the summary fields from it.
+     */
+    static final class JsonInspection implements Inspection {
+
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+        private final MessageDigest digest;
+        private long size;
+        private boolean failed;
+
+        // field names by which the open containers were entered, the array's name for objects in arrays
+        private String[] names = new String[16];
+        private boolean[] arrays = new boolean[16];
+        private int depth;
+        private String fieldName;
+
+        // CycloneDX: whether the open objects are components, and the identifying fields read of them
+        private boolean[] componentObjects = new boolean[16];
+        private String[] componentNames = new String[16];
+        private String[] componentVersions = new String[16];
+        private String[] componentPurls = new String[16];
+        private final Set<String> componentIds = new HashSet<>();
+
+        private String bomFormat;
+        private String specVersion;
+        private String spdxVersion;
+        private String serialNumber;
+        private String documentNamespace;
+        private long components;
+        private long packages;
+        private String rootName;
+        private String rootVersion;
+        private String rootPurl;
+        private final Map<String, String> rootHashes = new HashMap<>();
+        private String hashAlgorithm;
+        private String hashContent;
+
+        // SPDX: described packages and the package being read
+        private final Set<String> described = new HashSet<>();
+        private boolean rootFromDescribes;
+        private String packageId;
+        private String packageName;
+        private String packageVersion;
+        private String packagePurl;
+        private String referenceType;
+        private String referenceLocator;
+
+        JsonInspection(JsonParser parser) {
+            this.parser = parser;
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            if (length <= 0) {
+                return;
+            }
+            digest.update(bytes, offset, length);
+            size += length;
+            if (failed) {
+                return;
+            }
+            try {
+                feeder.feedInput(bytes, offset, offset + length);
+                drain();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public SbomSummary finish() {
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            if (!failed) {
+                try {
+                    feeder.endOfInput();
+                    drain();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+            if (failed || depth != 0) {
+                return null;
+            }
+            SbomSummary.SbomSummaryBuilder summary = SbomSummary.builder()
+                    .rootName(rootName)
+                    .rootVersion(rootVersion)
+                    .rootPurl(rootPurl)
+                    .rootHashes(Map.copyOf(rootHashes))
+                    .sha256(sha256)
+                    .size(size);
+            if ("CycloneDX".equals(bomFormat)) {
+                return summary.format("CycloneDX")
+                        .specVersion(specVersion)
+                        .serialNumber(serialNumber)
+                        .componentCount(components)
+                        .build();
+            }
+            if (spdxVersion != null) {
+                return summary.format("SPDX")
+                        .specVersion(spdxVersion.startsWith("SPDX-") ? spdxVersion.substring("SPDX-".length()) : spdxVersion)
+                        .serialNumber(documentNamespace)
+                        .componentCount(packages)
+                        .build();
+            }
+            return null;
+        }
+
+        @Override
+        public Set<String> components() {
+            return componentIds;
+        }
+
+        private void fail(IOException e) {
+            log.debug("Not summarizing malformed JSON: {}", e.getMessage());
+            failed = true;
+        }
+
+        private void drain() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case FIELD_NAME -> fieldName = parser.currentName();
+                    case START_OBJECT -> open(false);
+                    case START_ARRAY -> open(true);
+                    case END_OBJECT -> closeObject();
+                    case END_ARRAY -> depth--;
+                    default -> {
+                        if (token.isScalarValue()) {
+                            value(token);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void open(boolean array) {
+            String name = depth > 0 && arrays[depth - 1] ? names[depth - 1] : fieldName;
+            if (depth == names.length) {
+                names = Arrays.copyOf(names, depth * 2);
+                arrays = Arrays.copyOf(arrays, depth * 2);
+                componentObjects = Arrays.copyOf(componentObjects, depth * 2);
+                componentNames = Arrays.copyOf(componentNames, depth * 2);
+                componentVersions = Arrays.copyOf(componentVersions, depth * 2);
+                componentPurls = Arrays.copyOf(componentPurls, depth * 2);
+            }
+            names[depth] = name;
+            arrays[depth] = array;
+            depth++;
+            fieldName = null;
+            componentObjects[depth - 1] = !array && isComponent(name);
+            componentNames[depth - 1] = null;
+            componentVersions[depth - 1] = null;
+            componentPurls[depth - 1] = null;
+            if (!array && depth > 1 && arrays[depth - 2]) {
+                element(name);
+            }
+        }
+
+        // an object in an array named name starts
+        private void element(String name) {
+            if ("components".equals(name) && !"metadata".equals(names[1])) {
+                components++;
+            } else if (depth == 3 && "packages".equals(name)) {
+                packages++;
+                packageId = null;
+                packageName = null;
+                packageVersion = null;
+                packagePurl = null;
+            } else if (depth == 5 && "externalRefs".equals(name) && "packages".equals(names[1])) {
+                referenceType = null;
+                referenceLocator = null;
+            } else if (depth == 5 && "hashes".equals(name) && isRootComponent(3)) {
+                hashAlgorithm = null;
+                hashContent = null;
+            }
+        }
+
+        private void closeObject() {
+            String name = names[depth - 1];
+            boolean element = depth > 1 && arrays[depth - 2];
+            if (componentObjects[depth - 1]) {
+                addComponent(componentNames[depth - 1], componentVersions[depth - 1], componentPurls[depth - 1]);
+            }
+            if (element && depth == 3 && "packages".equals(name)) {
+                addComponent(packageName, packageVersion, packagePurl);
+                boolean describedPackage = packageId != null && described.contains(packageId);
+                if (describedPackage && !rootFromDescribes || packages == 1 && !rootFromDescribes) {
+                    rootName = packageName;
+                    rootVersion = packageVersion;
+                    rootPurl = packagePurl;
+                    rootFromDescribes = describedPackage;
+                }
+            } else if (element && depth == 5 && "externalRefs".equals(name) && "packages".equals(names[1])) {
+                if ("purl".equals(referenceType) && packagePurl == null) {
+                    packagePurl = referenceLocator;
+                }
+            } else if (element && depth == 5 && "hashes".equals(name) && isRootComponent(3)) {
+                if (hashAlgorithm != null && hashContent != null) {
+                    rootHashes.put(hashAlgorithm, hashContent);
+                }
+            }
+            depth--;
+        }
+
+        private void value(JsonToken token) throws IOException {
+            if (token != JsonToken.VALUE_STRING) {
+                return;
+            }
+            if (depth == 2 && arrays[1] && "documentDescribes".equals(names[1])) {
+                described.add(parser.getText());
+                return;
+            }
+            // other strings in arrays are not summarized
+            if (fieldName == null || arrays[depth - 1]) {
+                return;
+            }
+            if (componentObjects[depth - 1]) {
+                switch (fieldName) {
+                    case "name" -> componentNames[depth - 1] = parser.getText();
+                    case "version" -> componentVersions[depth - 1] = parser.getText();
+                    case "purl" -> componentPurls[depth - 1] = parser.getText();
+                    default -> {
+                        // not indexed
+                    }
+                }
+            }
+            if (depth == 1) {
+                switch (fieldName) {
+                    case "bomFormat" -> bomFormat = parser.getText();
+                    case "specVersion" -> specVersion = parser.getText();
+                    case "serialNumber" -> serialNumber = parser.getText();
+                    case "spdxVersion" -> spdxVersion = parser.getText();
+                    case "documentNamespace" -> documentNamespace = parser.getText();
+                    default -> {
+                        // not summarized
+                    }
+                }
+            } else if (depth == 3 && isRootComponent(3)) {
+                switch (fieldName) {
+                    case "name" -> rootName = parser.getText();
+                    case "version" -> rootVersion = parser.getText();
+                    case "purl" -> rootPurl = parser.getText();
+                    default -> {
+                        // not summarized
+                    }
+                }
+            } else if (depth == 3 && "packages".equals(names[1])) {
+                switch (fieldName) {
+                    case "SPDXID" -> packageId = parser.getText();
+                    case "name" -> packageName = parser.getText();
+                    case "versionInfo" -> packageVersion = parser.getText();
+                    default -> {
+                        // not summarized
+                    }
+                }
+            } else if (depth == 5 && "externalRefs".equals(names[4]) && "packages".equals(names[1])) {
+                if ("referenceType".equals(fieldName)) {
+                    referenceType = parser.getText();
+                } else if ("referenceLocator".equals(fieldName)) {
+                    referenceLocator = parser.getText();
+                }
+            } else if (depth == 5 && "hashes".equals(names[4]) && isRootComponent(3)) {
+                if ("alg".equals(fieldName)) {
+                    hashAlgorithm = parser.getText();
+                } else if ("content".equals(fieldName)) {
+                    hashContent = parser.getText();
+                }
+            }
+        }
+
+        // whether the object just opened, entered by name, is a CycloneDX component that is indexed
+        private boolean isComponent(String name) {
+            if (depth == 3 && isRootComponent(3)) {
+                return true;
+            }
+            boolean element = depth > 1 && arrays[depth - 2];
+            return element && "components".equals(name) && !("metadata".equals(names[1]) && "tools".equals(names[2]));
+        }
+
+        private void addComponent(String name, String version, String purl) {
+            if (purl != null && !purl.isBlank()) {
+                componentIds.add(ComponentIds.ofPurl(purl));
+            }
+            if (name != null && !name.isBlank()) {
+                componentIds.add(ComponentIds.ofName(name, version));
+            }
+        }
+
+        // whether the containers up to the depth are metadata.component of a CycloneDX document
+        private boolean isRootComponent(int at) {
+            return depth >= at && !arrays[1] && !arrays[2] && "metadata".equals(names[1]) && "component".equals(names[2]);
+        }
+    }
+}
@@ -2,15 +2,28 @@ package org.jboss.sbomer.manifest.storage.service.adapter.out;
 
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.avro.Schema;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.avro.specific.SpecificDatumWriter;
 import org.apache.avro.specific.SpecificRecordBase;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
 import org.jboss.sbomer.events.common.ContextSpec;
 import org.jboss.sbomer.events.common.FailureSpec;
 import org.jboss.sbomer.events.error.ErrorData;
@@ -18,68 +31,281 @@ import org.jboss.sbomer.events.error.ProcessingFailed;
 import org.jboss.sbomer.manifest.storage.service.core.ApplicationConstants;
 import org.jboss.sbomer.manifest.storage.service.core.port.spi.FailureNotifier;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Publishes failures as ProcessingFailed events to Kafka without holding up the caller.
+ * <p>
+ * {@link #notify} only queues the failure. A sender thread takes the queued failures in batches, serializes
+ * them with writers cached per schema and a reused encoder and buffer, and sends them with at most
+ * {@code max-in-flight} of them waiting for Kafka's acknowledgement. While Kafka is slow or down the sender
+ * waits, the queue fills up to {@code queue-capacity} and further failures are dropped and counted, so a
+ * storm of failures, e.g. during a storage outage, neither blocks uploads nor grows memory.
+ * <p>
+ * Failures of a correlation ID already notified within {@code coalesce-window} are counted but not sent
+ * again, unless that notification was dropped or not accepted by Kafka. The
+ * {@code sbomer.storage.failure-notifications} counter is tagged with the result: acked, nacked, dropped,
+ * coalesced or failed, the latter for failures that could not be turned into an event.
+ */
 @ApplicationScoped
 @Slf4j
 public class KafkaFailureNotifier implements FailureNotifier {
 
+    static final String METRIC_PREFIX = "sbomer.storage.failure-notifications";
+
+    // failures taken from the queue at once
+    static final int BATCH_SIZE = 64;
+
+    // correlation IDs remembered for coalescing
+    private static final int MAX_RECENT = 10_000;
+
     @Inject
     @Channel("sbomer-errors")
     Emitter<ProcessingFailed> emitter;
 
+    @Inject
+    MeterRegistry meterRegistry;
+
+    // failures waiting to be sent, further ones are dropped
+    @ConfigProperty(name = "sbomer.storage.failure-notification.queue-capacity")
+    int queueCapacity;
+
+    // events sent and not yet acknowledged by Kafka
+    @ConfigProperty(name = "sbomer.storage.failure-notification.max-in-flight")
+    int maxInFlight;
+
+    // further failures of a correlation ID within the window are not sent
+    @ConfigProperty(name = "sbomer.storage.failure-notification.coalesce-window")
+    Duration coalesceWindow;
+
+    // serialization state, used by the sender thread only
+    private final Map<Schema, SpecificDatumWriter<SpecificRecordBase>> writers = new ConcurrentHashMap<>();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    private BinaryEncoder encoder;
+
+    private final AtomicBoolean overflowing = new AtomicBoolean();
+    private BlockingQueue<Notification> queue;
+    private Semaphore inFlight;
+    private Cache<String, Boolean> recent;
+    private Thread sender;
+    private Counter acked;
+    private Counter nacked;
+    private Counter dropped;
+    private Counter coalesced;
+    private Counter failed;
+
+    /**
+     * Default constructor for CDI.
+     */
+    public KafkaFailureNotifier() {}
+
+    /**
+     * Package-private constructor for testing, without the sender thread.
+     */
+    KafkaFailureNotifier(Emitter<ProcessingFailed> emitter, MeterRegistry meterRegistry, int queueCapacity, int maxInFlight,
+            Duration coalesceWindow) {
+        this.emitter = emitter;
+        this.meterRegistry = meterRegistry;
+        this.queueCapacity = queueCapacity;
+        this.maxInFlight = maxInFlight;
+        this.coalesceWindow = coalesceWindow;
+        createPipeline();
+    }
+
+    @PostConstruct
+    void init() {
+        createPipeline();
+        sender = new Thread(this::sendQueued, "failure-notification-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sender.interrupt();
+        if (!queue.isEmpty()) {
+            log.warn("Dropping {} failure notifications that were not sent before shutdown", queue.size());
+        }
+    }
+
+    private void createPipeline() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        inFlight = new Semaphore(maxInFlight);
+        recent = Caffeine.newBuilder().expireAfterWrite(coalesceWindow).maximumSize(MAX_RECENT).build();
+        acked = counter("acked");
+        nacked = counter("nacked");
+        dropped = counter("dropped");
+        coalesced = counter("coalesced");
+        failed = counter("failed");
+        Gauge.builder(METRIC_PREFIX + ".queued", queue, BlockingQueue::size)
+                .description("Failure notifications waiting to be sent")
+                .register(meterRegistry);
+    }
+
+    private Counter counter(String result) {
+        return Counter.builder(METRIC_PREFIX)
+                .description("Failure notifications by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
     /**
-     * Notifies of a processing failure by building and sending a ProcessingFailed event to Kafka.
+     * Queues a ProcessingFailed event for the failure, the event is built and sent to Kafka by the sender.
      *
      * @param failure The standardized FailureSpec object describing the error.
      * @param correlationId The correlation ID from the source event, passed in.
-     * @param sourceEvent The original object (e.g. Avro event) that triggered the failure.
+     * @param sourceEvent The original object (e.g. Avro event) that triggered the failure, it must not be
+     *                    changed afterwards.
      */
     @Override
     public void notify(FailureSpec failure, String correlationId, Object sourceEvent) {
+        String eventType = (sourceEvent != null) ? sourceEvent.getClass().getSimpleName() : "N/A (initial trigger)";
+        String reason = (failure != null) ? failure.getReason() : null;
+        if (correlationId != null && recent.asMap().putIfAbsent(correlationId, Boolean.TRUE) != null) {
+            coalesced.increment();
+            log.debug("Not notifying again of failure of event '{}' with correlationId '{}': {}", eventType, correlationId,
+                    reason);
+            return;
+        }
+        if (!queue.offer(new Notification(failure, correlationId, sourceEvent, Instant.now()))) {
+            dropped.increment();
+            forget(correlationId);
+            if (overflowing.compareAndSet(false, true)) {
+                log.warn("Failure notification queue is full ({} waiting), dropping notifications until it drains",
+                        queueCapacity);
+            }
+            return;
+        }
+        if (overflowing.compareAndSet(true, false)) {
+            log.info("Failure notification queue accepts notifications again");
+        }
+        log.error("Publishing a failure notification for event of type '{}' with correlationId '{}'. Reason: {}", eventType, correlationId, reason);
+    }
+
+    /**
+     * Sends queued failures until the thread is interrupted.
+     */
+    private void sendQueued() {
+        List<Notification> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                sendBatch(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends up to a batch of queued failures, package-private for testing.
+     * @return the number of failures sent
+     */
+    int sendBatch() throws InterruptedException {
+        return sendBatch(new ArrayList<>(BATCH_SIZE));
+    }
+
+    private int sendBatch(List<Notification> batch) throws InterruptedException {
+        queue.drainTo(batch, BATCH_SIZE - batch.size());
+        for (Notification notification : batch) {
+            send(notification);
+        }
+        int sent = batch.size();
+        batch.clear();
+        return sent;
+    }
+
+    /**
+     * Builds and sends the event, after waiting for a free in-flight slot.
+     */
+    private void send(Notification notification) throws InterruptedException {
+        ProcessingFailed event;
+        try {
+            event = toEvent(notification);
+        } catch (RuntimeException e) {
+            // the sender goes on with the next failure
+            failed.increment();
+            forget(notification.correlationId());
+            log.error("Unable to build the failure notification with correlationId '{}'", notification.correlationId(), e);
+            return;
+        }
+        inFlight.acquire();
+        try {
+            emitter.send(Message.of(event,
+                    () -> {
+                        inFlight.release();
+                        acked.increment();
+                        return CompletableFuture.completedFuture(null);
+                    },
+                    failure -> {
+                        inFlight.release();
+                        nacked.increment();
+                        forget(notification.correlationId());
+                        log.warn("Kafka did not accept the failure notification with correlationId '{}': {}",
+                                notification.correlationId(), failure.getMessage());
+                        return CompletableFuture.completedFuture(null);
+                    }));
+        } catch (RuntimeException e) {
+            // the emitter refused the event, e.g. its own buffer is full
+            inFlight.release();
+            nacked.increment();
+            forget(notification.correlationId());
+            log.warn("Unable to send the failure notification with correlationId '{}': {}", notification.correlationId(),
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Lets a later failure of the correlation ID through, as its notification did not reach Kafka.
+     */
+    private void forget(String correlationId) {
+        if (correlationId != null) {
+            recent.invalidate(correlationId);
+        }
+    }
 
+    private ProcessingFailed toEvent(Notification notification) {
         // Serialize the sourceEvent to bytes, as required by the schema
-        ByteBuffer sourceEventBytes = serializeSourceEvent(sourceEvent);
+        ByteBuffer sourceEventBytes = serializeSourceEvent(notification.sourceEvent());
 
         // Build the event context using the Avro builder
         ContextSpec context = ContextSpec.newBuilder()
                 .setEventId(UUID.randomUUID().toString())
                 .setType("ProcessingFailed") // This is a required field in the new schema
                 .setSource(ApplicationConstants.COMPONENT_NAME)
-                .setCorrelationId(correlationId) // Use the passed-in correlationId
-                .setTimestamp(Instant.now())
+                .setCorrelationId(notification.correlationId()) // Use the passed-in correlationId
+                .setTimestamp(notification.failedAt())
                 .build();
 
         // Build the error data payload
         ErrorData errorData = ErrorData.newBuilder()
-                .setFailure(failure) // Pass the received FailureSpec object directly
+                .setFailure(notification.failure()) // Pass the received FailureSpec object directly
                 .setSourceEvent(sourceEventBytes) // Pass the serialized ByteBuffer
                 .build();
 
         // Create the top-level event object
-        ProcessingFailed pf = ProcessingFailed.newBuilder()
+        return ProcessingFailed.newBuilder()
                 .setContext(context)
                 .setErrorData(errorData)
                 .build();
-
-        // Log the action for observability
-        String eventType = (sourceEvent != null) ? sourceEvent.getClass().getSimpleName() : "N/A (initial trigger)";
-        log.error("Publishing a failure notification for event of type '{}' with correlationId '{}'. Reason: {}", eventType, correlationId, failure.getReason());
-
-        // Send the event to the Kafka topic
-        emitter.send(pf);
-
-        log.error("Failure notification sent successfully to Kafka topic 'sbomer.errors'.");
     }
 
     /**
      * TODO This could be rethought. Main reason to do it this way was to decouple source event types from the schema definitions
      * Serializes the source event object to a ByteBuffer as required by the ProcessingFailed schema.
-     * The schema expects `["null", "bytes"]`.
+     * The schema expects `["null", "bytes"]`. Reuses the encoder and buffer, so it must not be called concurrently.
      */
-    private ByteBuffer serializeSourceEvent(Object sourceEvent) {
+    ByteBuffer serializeSourceEvent(Object sourceEvent) {
         if (sourceEvent == null) {
             return null;
         }
@@ -96,17 +322,16 @@ public class KafkaFailureNotifier implements FailureNotifier {
 
         if (sourceEvent instanceof SpecificRecordBase) {
             SpecificRecordBase record = (SpecificRecordBase) sourceEvent;
-            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-                // Create a writer for that specific schema
-                SpecificDatumWriter<SpecificRecordBase> writer = new SpecificDatumWriter<>(record.getSchema());
-
-                // Create an Avro binary encoder that writes to our output stream
-                BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+            try {
+                // Writers are cached per schema, the encoder writes to the reused buffer
+                SpecificDatumWriter<SpecificRecordBase> writer = writers.computeIfAbsent(record.getSchema(), SpecificDatumWriter::new);
+                buffer.reset();
+                encoder = EncoderFactory.get().binaryEncoder(buffer, encoder);
                 writer.write(record, encoder);
                 encoder.flush();
 
-                // Get the raw bytes and wrap them in a ByteBuffer
-                byte[] bytes = out.toByteArray();
+                // Copy the raw bytes out of the buffer and wrap them in a ByteBuffer
+                byte[] bytes = buffer.toByteArray();
                 log.debug("Successfully serialized Avro event '{}' to {} bytes.", record.getClass().getSimpleName(), bytes.length);
                 return ByteBuffer.wrap(bytes);
 
@@ -119,4 +344,7 @@ public class KafkaFailureNotifier implements FailureNotifier {
         log.warn("Source event of type '{}' is not a recognized Avro record or byte array, sending null for sourceEvent.", sourceEvent.getClass().getSimpleName());
         return null; // Default to null as allowed by schema
     }
+
+    private record Notification(FailureSpec failure, String correlationId, Object sourceEvent, Instant failedAt) {
+    }
 }
@@ -0,0 +1,380 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kafka.common.errors.InvalidTopicException;
+import org.apache.kafka.common.errors.RecordBatchTooLargeException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.jboss.sbomer.events.storage.ManifestsStored;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.jboss.sbomer.manifest.storage.service.core.ApplicationConstants;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.StoredManifestsNotifier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.Startup;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Publishes ManifestsStored events to Kafka through a transactional outbox on local disk.
+ * <p>
+ * {@link #manifestsStored} appends the serialized event to an {@link OutboxLog} and returns once it is on
+ * disk, uploads finishing at the same time share one fsync. A publisher thread reads the events on disk in
+ * batches of {@code batch-size} and sends them all before it waits for Kafka's acknowledgements, so the
+ * producer can group them according to the {@code linger.ms}, {@code batch.size} and {@code compression.type}
+ * of the channel. The outbox checkpoint is moved past a batch once all of its events are acknowledged. If one
+ * is not, the batch is sent again after {@code retry-delay}; events left in the outbox by a crash or a
+ * shutdown are sent after the restart. Events can thus be delivered more than once, consumers recognize them
+ * by their event ID. Events are keyed by generation ID, so the events of a generation stay in order.
+ * <p>
+ * An event Kafka can never accept would stop all events behind it. One rejected as too large, unserializable
+ * or for an invalid topic, or one failing {@code max-attempts} times with an error Kafka does not consider
+ * retriable, is set aside into the {@code rejected} folder of the outbox directory and skipped. Failures Kafka
+ * considers retriable, such as timeouts while the brokers are down, are retried without limit. The outbox
+ * takes at most {@code outbox.max-size} of events not yet acknowledged, further events are refused and fail
+ * their upload with a 503 until Kafka catches up.
+ * <p>
+ * The {@code sbomer.storage.manifests-stored} counter is tagged with the result: acked, nacked, rejected or
+ * corrupt, the {@code sbomer.storage.manifests-stored.outbox.backlog} gauge tracks the bytes of events not yet
+ * acknowledged.
+ */
+@Startup
+@ApplicationScoped
+@Slf4j
+public class KafkaStoredManifestsNotifier implements StoredManifestsNotifier {
+
+    static final String METRIC_PREFIX = "sbomer.storage.manifests-stored";
+
+    // time the publisher waits for new events before it checks whether it is interrupted
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+    // events Kafka will not accept are written to it
+    private static final String REJECTED = "rejected";
+
+    @Inject
+    @Channel("sbomer-manifests-stored")
+    Emitter<ManifestsStored> emitter;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "sbomer.storage.manifests-stored.enabled")
+    boolean enabled;
+
+    // directory of the outbox segments, must be kept across restarts, so there is no default
+    @ConfigProperty(name = "sbomer.storage.manifests-stored.outbox.directory")
+    Optional<Path> outboxDirectory;
+
+    private Path directory;
+
+    @ConfigProperty(name = "sbomer.storage.manifests-stored.outbox.segment-size")
+    MemorySize segmentSize;
+
+    // events not yet acknowledged the outbox takes, further ones are refused
+    @ConfigProperty(name = "sbomer.storage.manifests-stored.outbox.max-size")
+    MemorySize maxSize;
+
+    // events sent before waiting for their acknowledgements
+    @ConfigProperty(name = "sbomer.storage.manifests-stored.batch-size")
+    int batchSize;
+
+    // wait before a batch that was not acknowledged is sent again
+    @ConfigProperty(name = "sbomer.storage.manifests-stored.retry-delay")
+    Duration retryDelay;
+
+    // sends of an event failing with a non-retriable error before it is set aside
+    @ConfigProperty(name = "sbomer.storage.manifests-stored.max-attempts")
+    int maxAttempts;
+
+    private OutboxLog outbox;
+    private Thread publisher;
+    private Counter acked;
+    private Counter nacked;
+    private Counter rejected;
+    private Counter corrupt;
+    // failed sends of the events by outbox offset, and the events set aside, until the checkpoint passes them
+    private final Map<Long, Integer> attempts = new HashMap<>();
+    private final Set<Long> setAside = new HashSet<>();
+
+    /**
+     * Default constructor for CDI.
+     */
+    public KafkaStoredManifestsNotifier() {}
+
+    /**
+     * Package-private constructor for testing, without the publisher thread.
+     */
+    KafkaStoredManifestsNotifier(Emitter<ManifestsStored> emitter, MeterRegistry meterRegistry, Path directory,
+            long segmentSize, long maxSize, int batchSize, int maxAttempts) throws IOException {
+        this.emitter = emitter;
+        this.meterRegistry = meterRegistry;
+        this.enabled = true;
+        this.outboxDirectory = Optional.of(directory);
+        this.directory = directory;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        openOutbox(segmentSize, maxSize);
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directory = outboxDirectory.orElseThrow(() -> new IllegalStateException(
+                "sbomer.storage.manifests-stored.outbox.directory is not set. Point it to a persistent volume, "
+                        + "ManifestsStored events not yet published are kept there across restarts."));
+        openOutbox(segmentSize.asLongValue(), maxSize.asLongValue());
+        publisher = new Thread(this::publishStored, "manifests-stored-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException {
+        if (outbox == null) {
+            return;
+        }
+        if (publisher != null) {
+            publisher.interrupt();
+        }
+        long backlog = outbox.durable() - outbox.checkpoint();
+        if (backlog > 0) {
+            log.info("Leaving {} bytes of ManifestsStored events in the outbox to be published after the restart",
+                    backlog);
+        }
+        outbox.close();
+    }
+
+    private void openOutbox(long segmentSize, long maxSize) throws IOException {
+        outbox = new OutboxLog(directory, segmentSize, maxSize);
+        acked = counter("acked");
+        nacked = counter("nacked");
+        rejected = counter("rejected");
+        corrupt = counter("corrupt");
+        Gauge.builder(METRIC_PREFIX + ".outbox.backlog", outbox, o -> o.durable() - o.checkpoint())
+                .description("Bytes of ManifestsStored events in the outbox not yet acknowledged by Kafka")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("ManifestsStored outbox in '{}' has {} bytes of events to publish", directory,
+                outbox.durable() - outbox.checkpoint());
+    }
+
+    private Counter counter(String result) {
+        return Counter.builder(METRIC_PREFIX)
+                .description("ManifestsStored events by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Writes a ManifestsStored event to the outbox, it is published to Kafka by the publisher.
+     */
+    @Override
+    public void manifestsStored(String generationId, String enhancementId, Map<String, String> urls) {
+        ManifestsStored event = ManifestsStored.newBuilder()
+                .setEventId(UUID.randomUUID().toString())
+                .setSource(ApplicationConstants.COMPONENT_NAME)
+                .setTimestamp(Instant.now())
+                .setGenerationId(generationId)
+                .setEnhancementId(enhancementId)
+                .setUrls(new HashMap<>(urls))
+                .build();
+        try {
+            ByteBuffer serialized = event.toByteBuffer();
+            byte[] record = new byte[serialized.remaining()];
+            serialized.get(record);
+            outbox.append(record);
+        } catch (OutboxLog.OutboxFullException e) {
+            throw new StorageUnavailableException("Unable to record the ManifestsStored event of generation "
+                    + generationId + ", Kafka does not keep up: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the ManifestsStored event of generation " + generationId
+                    + " to the outbox", e);
+        }
+        log.debug("ManifestsStored event {} of {} files of generation '{}' written to the outbox", event.getEventId(),
+                urls.size(), generationId);
+    }
+
+    /**
+     * Publishes the events in the outbox until the thread is interrupted.
+     */
+    private void publishStored() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (!outbox.awaitRecords(outbox.checkpoint(), POLL_INTERVAL)) {
+                    continue;
+                }
+                try {
+                    if (publishBatch() == 0) {
+                        Thread.sleep(retryDelay.toMillis());
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.error("Unable to publish ManifestsStored events from the outbox", e);
+                    Thread.sleep(retryDelay.toMillis());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends a batch of events from the outbox checkpoint and waits for their acknowledgements, package-private
+     * for testing. The checkpoint is only moved when all of them were acknowledged or set aside.
+     * @return the number of events published or set aside, 0 if the batch is to be sent again
+     */
+    int publishBatch() throws IOException, InterruptedException {
+        List<OutboxLog.Entry> entries = outbox.read(outbox.checkpoint(), batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        List<OutboxLog.Entry> sentEntries = new ArrayList<>(entries.size());
+        List<ManifestsStored> events = new ArrayList<>(entries.size());
+        List<CompletableFuture<Outcome>> outcomes = new ArrayList<>(entries.size());
+        for (OutboxLog.Entry entry : entries) {
+            if (setAside.contains(entry.position())) {
+                continue;
+            }
+            ManifestsStored event;
+            try {
+                event = ManifestsStored.fromByteBuffer(ByteBuffer.wrap(entry.record()));
+            } catch (IOException | RuntimeException e) {
+                // it can never be sent, keeping it would stop all events behind it
+                corrupt.increment();
+                log.error("Skipping unreadable ManifestsStored event at outbox offset {}: {}", entry.position(),
+                        e.getMessage());
+                continue;
+            }
+            sentEntries.add(entry);
+            events.add(event);
+            outcomes.add(send(event));
+        }
+        boolean resend = false;
+        for (int i = 0; i < outcomes.size(); i++) {
+            OutboxLog.Entry entry = sentEntries.get(i);
+            Outcome outcome;
+            try {
+                outcome = outcomes.get(i).get();
+            } catch (ExecutionException e) {
+                outcome = Outcome.FAILED;
+            }
+            if (outcome == Outcome.FAILED && attempts.merge(entry.position(), 1, Integer::sum) >= maxAttempts) {
+                outcome = Outcome.REJECTED;
+            }
+            switch (outcome) {
+                case ACKED -> attempts.remove(entry.position());
+                case REJECTED -> setAside(entry, events.get(i));
+                default -> resend = true;
+            }
+        }
+        if (resend) {
+            return 0;
+        }
+        long next = entries.get(entries.size() - 1).next();
+        outbox.checkpoint(next);
+        attempts.keySet().removeIf(position -> position < next);
+        setAside.removeIf(position -> position < next);
+        return entries.size();
+    }
+
+    /**
+     * Writes an event Kafka will not accept to the rejected folder, where operators can inspect and resend it,
+     * and skips it from now on.
+     */
+    private void setAside(OutboxLog.Entry entry, ManifestsStored event) throws IOException {
+        Path folder = directory.resolve(REJECTED);
+        Files.createDirectories(folder);
+        Files.write(folder.resolve(event.getEventId() + ".avro"), entry.record());
+        attempts.remove(entry.position());
+        setAside.add(entry.position());
+        rejected.increment();
+        log.error("Set aside the ManifestsStored event {} of generation '{}' that Kafka does not accept, see {}",
+                event.getEventId(), event.getGenerationId(), folder);
+    }
+
+    /**
+     * @return completes with what Kafka answered
+     */
+    private CompletableFuture<Outcome> send(ManifestsStored event) {
+        CompletableFuture<Outcome> result = new CompletableFuture<>();
+        try {
+            emitter.send(Message.of(event,
+                    () -> {
+                        acked.increment();
+                        result.complete(Outcome.ACKED);
+                        return CompletableFuture.completedFuture(null);
+                    },
+                    failure -> {
+                        nacked.increment();
+                        log.warn("Kafka did not accept the ManifestsStored event {}: {}", event.getEventId(),
+                                failure.getMessage());
+                        result.complete(Outcome.of(failure));
+                        return CompletableFuture.completedFuture(null);
+                    })
+                    .addMetadata(OutgoingKafkaRecordMetadata.<String> builder()
+                            .withKey(event.getGenerationId())
+                            .build()));
+        } catch (RuntimeException e) {
+            // the emitter refused the event, e.g. its own buffer is full
+            nacked.increment();
+            log.warn("Unable to send the ManifestsStored event {}: {}", event.getEventId(), e.getMessage());
+            result.complete(Outcome.RETRY);
+        }
+        return result;
+    }
+
+    /**
+     * What became of a sent event.
+     */
+    private enum Outcome {
+        ACKED,
+        // Kafka is expected to accept it later
+        RETRY,
+        // counts towards max-attempts
+        FAILED,
+        // Kafka will never accept it
+        REJECTED;
+
+        static Outcome of(Throwable failure) {
+            for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+                if (cause instanceof RecordTooLargeException || cause instanceof RecordBatchTooLargeException
+                        || cause instanceof SerializationException || cause instanceof InvalidTopicException) {
+                    return REJECTED;
+                }
+                if (cause instanceof RetriableException) {
+                    return RETRY;
+                }
+            }
+            return FAILED;
+        }
+    }
+}
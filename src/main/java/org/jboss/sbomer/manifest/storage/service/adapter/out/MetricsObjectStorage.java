@@ -0,0 +1,228 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageAccessException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageKeyInvalidException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StoragePreconditionFailedException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageThrottledException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records latency, bytes moved and the uploads and downloads in flight, installed outside of all
+ * other decorators so that it measures what clients see.
+ * <p>
+ * Latency is a histogram with SLO buckets per operation, outcome and the domain exception a failure
+ * was mapped to. Downloads are timed until their content is available. All meters are registered up front,
+ * a call only picks one, so the hot path allocates no tags.
+ * <p>
+ * Content streams count the bytes read from them. Downloads of a local file are sent by the REST layer
+ * without reading the stream, their length is counted when they are handed out and they are not tracked
+ * as in flight.
+ */
+class MetricsObjectStorage extends ForwardingObjectStorage {
+
+    static final String METRIC_PREFIX = "sbomer.storage";
+
+    private static final Duration[] SLOS = {
+            Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50),
+            Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1),
+            Duration.ofMillis(2500), Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(30),
+            Duration.ofSeconds(60) };
+
+    // exceptions storage failures are mapped to, a failure is tagged with its closest superclass in this list
+    private static final List<Class<? extends RuntimeException>> EXCEPTION_TYPES = List.of(
+            StorageFileNotFoundException.class,
+            StorageKeyInvalidException.class,
+            StoragePreconditionFailedException.class,
+            StorageRangeNotSatisfiableException.class,
+            StorageAccessException.class,
+            StorageThrottledException.class,
+            StorageUnavailableException.class,
+            StorageException.class);
+
+    private final Clock clock;
+    private final Operation uploads;
+    private final Operation downloads;
+
+    /**
+     * @param delegate storage to measure
+     * @param registry registry to export the metrics to
+     */
+    MetricsObjectStorage(ObjectStorage delegate, MeterRegistry registry) {
+        super(delegate);
+        this.clock = registry.config().clock();
+        this.uploads = new Operation("upload", registry);
+        this.downloads = new Operation("download", registry);
+    }
+
+    @Override
+    public void upload(String key, InputStream content, UploadOptions options) {
+        long start = clock.monotonicTime();
+        MeteredInputStream metered = new MeteredInputStream(content, uploads);
+        try {
+            delegate.upload(key, metered, options);
+            uploads.success.record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            uploads.failure(e).record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        } finally {
+            metered.finish();
+        }
+    }
+
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
+        long start = clock.monotonicTime();
+        StoredObject object;
+        try {
+            object = delegate.download(key, options);
+        } catch (RuntimeException e) {
+            downloads.failure(e).record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        if (object.isNotModified()) {
+            downloads.notModified.record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+            return object;
+        }
+        downloads.success.record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+        if (object.getFile() != null) {
+            downloads.transferred.increment(object.getContentLength());
+            return object;
+        }
+        return object.toBuilder().content(new MeteredInputStream(object.getContent(), downloads)).build();
+    }
+
+    /**
+     * Meters of one operation.
+     */
+    private static final class Operation {
+        private final Timer success;
+        private final Timer notModified;
+        private final Map<Class<?>, Timer> failures = new IdentityHashMap<>();
+        private final Timer otherFailure;
+        private final Counter transferred;
+        private final AtomicLong inFlight = new AtomicLong();
+        private final AtomicLong inFlightBytes = new AtomicLong();
+
+        private Operation(String operation, MeterRegistry registry) {
+            this.success = timer(registry, operation, "success", "none");
+            this.notModified = timer(registry, operation, "not_modified", "none");
+            for (Class<? extends RuntimeException> type : EXCEPTION_TYPES) {
+                failures.put(type, timer(registry, operation, "failure", type.getSimpleName()));
+            }
+            this.otherFailure = timer(registry, operation, "failure", "other");
+            this.transferred = Counter.builder(METRIC_PREFIX + "." + operation + ".transferred")
+                    .description("Bytes of content " + operation + "ed")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder(METRIC_PREFIX + "." + operation + ".in.flight", inFlight, AtomicLong::get)
+                    .description("Content streams of " + operation + "s being transferred")
+                    .register(registry);
+            Gauge.builder(METRIC_PREFIX + "." + operation + ".in.flight.transferred", inFlightBytes, AtomicLong::get)
+                    .description("Bytes transferred so far by " + operation + "s in flight")
+                    .baseUnit("bytes")
+                    .register(registry);
+        }
+
+        private static Timer timer(MeterRegistry registry, String operation, String outcome, String exception) {
+            return Timer.builder(METRIC_PREFIX + ".operation")
+                    .description("Latency of storage operations")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .tag("exception", exception)
+                    .serviceLevelObjectives(SLOS)
+                    .register(registry);
+        }
+
+        private Timer failure(RuntimeException e) {
+            for (Class<?> type = e.getClass(); type != null; type = type.getSuperclass()) {
+                Timer timer = failures.get(type);
+                if (timer != null) {
+                    return timer;
+                }
+            }
+            return otherFailure;
+        }
+    }
+
+    /**
+     * Counts the bytes read into the meters of its operation, the stream is in flight until it is closed
+     * or, for uploads, until the upload returned.
+     */
+    private static final class MeteredInputStream extends FilterInputStream {
+        private final Operation operation;
+        private long read;
+        private boolean finished;
+
+        private MeteredInputStream(InputStream in, Operation operation) {
+            super(in);
+            this.operation = operation;
+            operation.inFlight.incrementAndGet();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                finish();
+            }
+        }
+
+        private void count(int n) {
+            operation.transferred.increment(n);
+            if (!finished) {
+                read += n;
+                operation.inFlightBytes.addAndGet(n);
+            }
+        }
+
+        private synchronized void finish() {
+            if (!finished) {
+                finished = true;
+                operation.inFlight.decrementAndGet();
+                operation.inFlightBytes.addAndGet(-read);
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnsupportedException;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.MultipartUploadStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.StagedBatchStorage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.enterprise.inject.Instance;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Selects the {@link ObjectStorage} implementation used by the core from configuration
+ * and wraps it in the enabled decorators.
+ * Adapters are only exposed under their own type, so this is the single ObjectStorage bean.
+ * Likewise the {@link MultipartUploadStorage} of direct uploads, which only the S3 backends offer, and the
+ * {@link StagedBatchStorage} of batch uploads, which is one of the decorators of the ObjectStorage.
+ */
+@ApplicationScoped
+@Slf4j
+public class ObjectStorageProducer {
+
+    /**
+     * Available storage backends, configured with {@code sbomer.storage.backend}.
+     */
+    public enum Backend {
+        // blocking S3Client
+        S3,
+        // non-blocking S3AsyncClient
+        S3_ASYNC,
+        // local directory tree
+        FILESYSTEM
+    }
+
+    @ConfigProperty(name = "sbomer.storage.backend")
+    Backend backend;
+
+    @ConfigProperty(name = "sbomer.storage.throttling.enabled")
+    boolean throttlingEnabled;
+
+    @ConfigProperty(name = "sbomer.storage.throttling.initial-rate")
+    double throttlingInitialRate;
+
+    @ConfigProperty(name = "sbomer.storage.throttling.min-rate")
+    double throttlingMinRate;
+
+    @ConfigProperty(name = "sbomer.storage.throttling.max-rate")
+    double throttlingMaxRate;
+
+    @ConfigProperty(name = "sbomer.storage.throttling.retry-deadline")
+    Duration throttlingRetryDeadline;
+
+    @ConfigProperty(name = "sbomer.storage.throttling.retry-base-delay")
+    Duration throttlingRetryBaseDelay;
+
+    @ConfigProperty(name = "sbomer.storage.throttling.retry-max-delay")
+    Duration throttlingRetryMaxDelay;
+
+    @ConfigProperty(name = "sbomer.storage.throttling.circuit-breaker.failure-threshold")
+    int circuitBreakerFailureThreshold;
+
+    @ConfigProperty(name = "sbomer.storage.throttling.circuit-breaker.open-duration")
+    Duration circuitBreakerOpenDuration;
+
+    @ConfigProperty(name = "sbomer.storage.dedup.enabled")
+    boolean dedupEnabled;
+
+    @ConfigProperty(name = "sbomer.storage.dedup.directory")
+    Path dedupDirectory;
+
+    @ConfigProperty(name = "sbomer.storage.cache.enabled")
+    boolean cacheEnabled;
+
+    @ConfigProperty(name = "sbomer.storage.cache.directory")
+    Path cacheDirectory;
+
+    @ConfigProperty(name = "sbomer.storage.cache.max-size")
+    MemorySize cacheMaxSize;
+
+    @ConfigProperty(name = "sbomer.storage.cache.max-entry-size")
+    MemorySize cacheMaxEntrySize;
+
+    @ConfigProperty(name = "sbomer.storage.cache.revalidate-after")
+    Duration cacheRevalidateAfter;
+
+    @ConfigProperty(name = "sbomer.storage.coalescing.enabled")
+    boolean coalescingEnabled;
+
+    @ConfigProperty(name = "sbomer.storage.coalescing.directory")
+    Path coalescingDirectory;
+
+    @ConfigProperty(name = "sbomer.storage.download.redirect.refresh-before")
+    Duration redirectRefreshBefore;
+
+    @ConfigProperty(name = "sbomer.storage.compression.enabled")
+    boolean compressionEnabled;
+
+    @ConfigProperty(name = "sbomer.storage.compression.codec")
+    ContentCodec compressionCodec;
+
+    // age after which the batch manifests of a folder are listed again
+    @ConfigProperty(name = "sbomer.storage.batch.staging.refresh-after")
+    Duration stagingRefreshAfter;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    Instance<S3StorageAdapter> s3StorageAdapter;
+
+    @Inject
+    Instance<S3AsyncStorageAdapter> s3AsyncStorageAdapter;
+
+    @Inject
+    Instance<FilesystemStorageAdapter> filesystemStorageAdapter;
+
+    @Inject
+    Instance<S3MultipartUploadAdapter> s3MultipartUploadAdapter;
+
+    private StagedBatchObjectStorage stagedBatches;
+
+    @Produces
+    @ApplicationScoped
+    ObjectStorage objectStorage() {
+        // outermost, measures what clients see
+        return new MetricsObjectStorage(stagedBatches(), meterRegistry);
+    }
+
+    @Produces
+    @ApplicationScoped
+    StagedBatchStorage stagedBatchStorage() {
+        return stagedBatches();
+    }
+
+    /**
+     * Builds the decorators up to the staging of batches once, both producers share them.
+     */
+    private synchronized StagedBatchObjectStorage stagedBatches() {
+        if (stagedBatches != null) {
+            return stagedBatches;
+        }
+        log.info("Using '{}' storage backend", backend);
+        ObjectStorage storage = switch (backend) {
+            case S3 -> s3StorageAdapter.get();
+            case S3_ASYNC -> s3AsyncStorageAdapter.get();
+            case FILESYSTEM -> filesystemStorageAdapter.get();
+        };
+        // files of the filesystem backend are sent directly, a local copy would only duplicate them
+        boolean remote = backend != Backend.FILESYSTEM;
+        if (throttlingEnabled && remote) {
+            // innermost, so that every request sent to the backend is paced, including those of the decorators
+            log.info("Pacing storage requests starting at {}/s", throttlingInitialRate);
+            storage = new ThrottlingObjectStorage(storage, ThrottlingObjectStorage.Policy.builder()
+                    .initialRate(throttlingInitialRate)
+                    .minRate(throttlingMinRate)
+                    .maxRate(throttlingMaxRate)
+                    .retryDeadline(throttlingRetryDeadline)
+                    .retryBaseDelay(throttlingRetryBaseDelay)
+                    .retryMaxDelay(throttlingRetryMaxDelay)
+                    .failureThreshold(circuitBreakerFailureThreshold)
+                    .openDuration(circuitBreakerOpenDuration)
+                    .build(), meterRegistry);
+        }
+        if (dedupEnabled) {
+            log.info("Storing content once per SHA-256 digest under '{}'", ContentAddressedObjectStorage.BLOB_PREFIX);
+            storage = new ContentAddressedObjectStorage(storage, dedupDirectory, meterRegistry);
+        }
+        if (cacheEnabled && remote) {
+            log.info("Caching downloads in '{}' (up to {} bytes)", cacheDirectory, cacheMaxSize.asLongValue());
+            storage = new CachingObjectStorage(storage, cacheDirectory, cacheMaxSize.asLongValue(),
+                    cacheMaxEntrySize.asLongValue(), cacheRevalidateAfter, meterRegistry);
+        }
+        if (coalescingEnabled && remote) {
+            // outside of the cache, so that concurrent misses fill it only once
+            storage = new CoalescingObjectStorage(storage, coalescingDirectory, meterRegistry);
+        }
+        if (remote) {
+            // presigned URLs of redirected downloads, inside compression which decides who may be redirected
+            storage = new PresignCachingObjectStorage(storage, redirectRefreshBefore, meterRegistry);
+        }
+        // always installed, objects compressed earlier are decompressed for clients that do not accept them
+        ContentCodec codec = compressionEnabled ? compressionCodec : null;
+        log.info("Compressing uploads with '{}'", codec != null ? codec.encoding() : "identity");
+        storage = new CompressingObjectStorage(storage, codec, meterRegistry);
+        // the decorators below see staged files and manifests as ordinary objects
+        stagedBatches = new StagedBatchObjectStorage(storage, objectMapper, stagingRefreshAfter, meterRegistry);
+        return stagedBatches;
+    }
+
+    @Produces
+    @ApplicationScoped
+    MultipartUploadStorage multipartUploadStorage() {
+        return backend == Backend.FILESYSTEM ? new UnsupportedMultipartUploadStorage() : s3MultipartUploadAdapter.get();
+    }
+
+    void close(@Disposes ObjectStorage storage) {
+        if (storage instanceof ForwardingObjectStorage decorator) {
+            decorator.close();
+        }
+    }
+
+    /**
+     * Direct uploads of the filesystem backend, which has no URLs clients could send parts to.
+     */
+    private static class UnsupportedMultipartUploadStorage implements MultipartUploadStorage {
+
+        @Override
+        public String startUpload(String key, String contentType) {
+            throw unsupported();
+        }
+
+        @Override
+        public List<URI> presignParts(String key, String uploadId, int partCount, Duration validity) {
+            throw unsupported();
+        }
+
+        @Override
+        public void verifyUpload(String key, String uploadId, long size, List<String> partETags) {
+            throw unsupported();
+        }
+
+        @Override
+        public void completeUpload(String key, String uploadId, List<String> partETags) {
+            throw unsupported();
+        }
+
+        @Override
+        public void abortUpload(String key, String uploadId) {
+            throw unsupported();
+        }
+
+        @Override
+        public int abortUploadsStartedBefore(Instant time) {
+            // nothing was started
+            return 0;
+        }
+
+        private static StorageUnsupportedException unsupported() {
+            return new StorageUnsupportedException("Direct uploads need an S3 storage backend", null);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.SummaryStore;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stores the summary of a file as a small JSON sidecar object under {@value #SUMMARY_PREFIX}, outside of
+ * the generation folders so that listings and archives do not show it.
+ * <p>
+ * Recently saved and read summaries are kept in memory. Stored files never change, so a cached summary
+ * only goes stale when a file is uploaded again through another instance.
+ */
+@ApplicationScoped
+@Slf4j
+public class ObjectStorageSummaryStore implements SummaryStore {
+
+    static final String SUMMARY_PREFIX = "_summaries/";
+
+    private static final String CONTENT_TYPE = "application/json";
+
+    @Inject
+    ObjectStorage objectStorage;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    // summaries kept in memory
+    @ConfigProperty(name = "sbomer.storage.summary.cache.max-entries")
+    long maxEntries;
+
+    private Cache<String, SbomSummary> cache;
+
+    /**
+     * Default constructor for CDI.
+     */
+    public ObjectStorageSummaryStore() {}
+
+    /**
+     * Package-private constructor for testing.
+     */
+    ObjectStorageSummaryStore(ObjectStorage objectStorage, ObjectMapper objectMapper, long maxEntries) {
+        this.objectStorage = objectStorage;
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    @Override
+    public void save(String storageKey, SbomSummary summary) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(toJson(summary));
+        } catch (IOException e) {
+            throw new StorageException("Unable to write summary: " + storageKey, e);
+        }
+        objectStorage.upload(sidecarKey(storageKey), new ByteArrayInputStream(json), json.length, CONTENT_TYPE);
+        cache.put(storageKey, summary);
+    }
+
+    @Override
+    public SbomSummary find(String storageKey) {
+        SbomSummary cached = cache.getIfPresent(storageKey);
+        if (cached != null) {
+            return cached;
+        }
+        SbomSummary summary;
+        try (InputStream content = objectStorage.download(sidecarKey(storageKey))) {
+            summary = fromJson(objectMapper.readTree(content));
+        } catch (StorageFileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            throw new StorageException("Unable to read summary: " + storageKey, e);
+        }
+        cache.put(storageKey, summary);
+        return summary;
+    }
+
+    @Override
+    public void delete(Collection<String> storageKeys) {
+        try {
+            objectStorage.delete(storageKeys.stream().map(ObjectStorageSummaryStore::sidecarKey).toList());
+        } finally {
+            cache.invalidateAll(storageKeys);
+        }
+    }
+
+    static String sidecarKey(String storageKey) {
+        return SUMMARY_PREFIX + storageKey + ".json";
+    }
+
+    private ObjectNode toJson(SbomSummary summary) {
+        ObjectNode node = objectMapper.createObjectNode()
+                .put("format", summary.getFormat())
+                .put("specVersion", summary.getSpecVersion())
+                .put("serialNumber", summary.getSerialNumber())
+                .put("componentCount", summary.getComponentCount())
+                .put("rootName", summary.getRootName())
+                .put("rootVersion", summary.getRootVersion())
+                .put("rootPurl", summary.getRootPurl())
+                .put("sha256", summary.getSha256())
+                .put("size", summary.getSize());
+        ObjectNode hashes = node.putObject("rootHashes");
+        summary.getRootHashes().forEach(hashes::put);
+        return node;
+    }
+
+    private static SbomSummary fromJson(JsonNode node) {
+        Map<String, String> hashes = new HashMap<>();
+        node.path("rootHashes").fields().forEachRemaining(hash -> hashes.put(hash.getKey(), hash.getValue().asText()));
+        return SbomSummary.builder()
+                .format(text(node, "format"))
+                .specVersion(text(node, "specVersion"))
+                .serialNumber(text(node, "serialNumber"))
+                .componentCount(node.path("componentCount").asLong())
+                .rootName(text(node, "rootName"))
+                .rootVersion(text(node, "rootVersion"))
+                .rootPurl(text(node, "rootPurl"))
+                .rootHashes(Map.copyOf(hashes))
+                .sha256(text(node, "sha256"))
+                .size(node.path("size").asLong())
+                .build();
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+}
@@ -0,0 +1,368 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An append-only log of records in a local directory, read back in order by a single consumer that
+ * checkpoints how far it got.
+ * <p>
+ * Records are addressed by their offset in the whole log. The log is split into segment files named
+ * after the offset of their first record, a new one is started once the current one reaches
+ * {@code segmentSize}, and segments whose records are all before the checkpoint are deleted. A record is
+ * framed as
+ * <pre>
+ * int length, int crc32c, length * byte
+ * </pre>
+ * {@link #append} returns once the record is on disk. Appenders waiting at the same time share one fsync:
+ * the first of them syncs everything written so far, the others wait for it and only sync again if their
+ * record was written after it started. Only records on disk are handed to the consumer. When opened, a
+ * torn record at the end of the last segment, from a crash in the middle of a write, is cut off.
+ * Appends that would make the records after the checkpoint exceed {@code maxSize} fail with
+ * {@link OutboxFullException}, so that a consumer that cannot keep up pushes back on the appenders.
+ */
+@Slf4j
+final class OutboxLog implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final int HEADER_SIZE = 8;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final long maxSize;
+    private final NavigableSet<Long> segments = new ConcurrentSkipListSet<>();
+
+    // guards the current segment and the written offset
+    private final Object writeLock = new Object();
+    private FileChannel channel;
+    private long segmentStart;
+    private long written;
+
+    // appenders and the consumer wait on it for records on disk
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private boolean syncing;
+    private volatile long durable;
+
+    private volatile long checkpoint;
+
+    /**
+     * Opens the log in the directory, creating it if needed.
+     * @param segmentSize size from which a new segment is started
+     * @param maxSize size the records after the checkpoint may take at most
+     */
+    OutboxLog(Path directory, long segmentSize, long maxSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        Files.createDirectories(directory);
+        Path checkpointFile = directory.resolve(CHECKPOINT);
+        checkpoint = Files.exists(checkpointFile) ? Long.parseLong(Files.readString(checkpointFile, UTF_8).trim()) : 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .forEach(segments::add);
+        }
+        if (segments.isEmpty()) {
+            segmentStart = checkpoint;
+            channel = FileChannel.open(segmentFile(segmentStart), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            segments.add(segmentStart);
+            syncDirectory();
+        } else {
+            segmentStart = segments.last();
+            channel = FileChannel.open(segmentFile(segmentStart), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long end = validEnd(channel);
+            if (end < channel.size()) {
+                log.warn("Cutting off {} bytes of a record not completely written to outbox segment {}",
+                        channel.size() - end, segmentFile(segmentStart));
+                channel.truncate(end);
+                channel.force(false);
+            }
+            channel.position(end);
+        }
+        written = segmentStart + channel.position();
+        durable = written;
+        deleteConsumedSegments();
+    }
+
+    /**
+     * Appends a record and waits until it is on disk.
+     * @return the offset following the record
+     * @throws OutboxFullException if the records after the checkpoint would exceed the maximum size
+     */
+    long append(byte[] record) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + record.length)
+                .putInt(record.length)
+                .putInt(checksum(record, 0, record.length))
+                .put(record)
+                .flip();
+        long end;
+        synchronized (writeLock) {
+            if (written - checkpoint + frame.limit() > maxSize) {
+                throw new OutboxFullException("Outbox " + directory + " holds " + (written - checkpoint)
+                        + " bytes of records not yet consumed, the limit is " + maxSize);
+            }
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            written += frame.limit();
+            end = written;
+        }
+        syncLock.lock();
+        try {
+            while (durable < end) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                syncLock.unlock();
+                try {
+                    sync();
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                    synced.signalAll();
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+        return end;
+    }
+
+    /**
+     * Syncs everything written so far, and starts a new segment if the current one is full. Called by one
+     * appender at a time.
+     */
+    private void sync() throws IOException {
+        long target;
+        FileChannel current;
+        synchronized (writeLock) {
+            target = written;
+            current = channel;
+        }
+        // appenders keep writing while it runs
+        current.force(false);
+        durable = target;
+        synchronized (writeLock) {
+            if (written - segmentStart >= segmentSize) {
+                channel.force(false);
+                durable = written;
+                channel.close();
+                segmentStart = written;
+                channel = FileChannel.open(segmentFile(segmentStart), StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+                segments.add(segmentStart);
+                syncDirectory();
+            }
+        }
+    }
+
+    /**
+     * Reads records on disk in order.
+     * @param from offset of the first record to read
+     * @param max records to read at most
+     * @return the records, none if there are no records on disk from the offset
+     */
+    List<Entry> read(long from, int max) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long limit = durable;
+        long position = Math.max(from, segments.first());
+        while (position < limit && entries.size() < max) {
+            long start = segments.floor(position);
+            Long following = segments.higher(start);
+            long end = Math.min(following == null ? Long.MAX_VALUE : following, limit) - start;
+            long offset = position - start;
+            try (FileChannel in = FileChannel.open(segmentFile(start), StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (offset < end && entries.size() < max) {
+                    readFully(in, header.clear(), offset);
+                    int length = header.getInt(0);
+                    byte[] record = length < 0 || offset + HEADER_SIZE + length > end ? null : new byte[length];
+                    if (record != null) {
+                        readFully(in, ByteBuffer.wrap(record), offset + HEADER_SIZE);
+                    }
+                    if (record == null || checksum(record, 0, length) != header.getInt(4)) {
+                        log.error("Skipping the corrupt rest of outbox segment {} from offset {}", segmentFile(start),
+                                offset);
+                        offset = end;
+                        break;
+                    }
+                    long next = offset + HEADER_SIZE + length;
+                    entries.add(new Entry(start + offset, start + next, record));
+                    offset = next;
+                }
+            }
+            // the end of a segment is the start of the following one
+            position = start + offset;
+        }
+        return entries;
+    }
+
+    /**
+     * Waits until there are records on disk from the offset.
+     * @return whether there are
+     */
+    boolean awaitRecords(long from, Duration timeout) throws InterruptedException {
+        syncLock.lock();
+        try {
+            long nanos = timeout.toNanos();
+            while (durable <= from) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = synced.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Records that the records before the offset were consumed and deletes the segments holding only such
+     * records. The checkpoint file is not synced, after a crash records may be read again.
+     */
+    void checkpoint(long position) throws IOException {
+        if (position == checkpoint) {
+            return;
+        }
+        Path temporary = directory.resolve(CHECKPOINT + ".tmp");
+        Files.writeString(temporary, Long.toString(position), UTF_8);
+        Files.move(temporary, directory.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        checkpoint = position;
+        deleteConsumedSegments();
+    }
+
+    private void deleteConsumedSegments() throws IOException {
+        for (Long start : segments) {
+            Long next = segments.higher(start);
+            if (next == null || next > checkpoint) {
+                break;
+            }
+            segments.remove(start);
+            Files.deleteIfExists(segmentFile(start));
+        }
+    }
+
+    /**
+     * @return the offset the consumer got to
+     */
+    long checkpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @return the offset following the last record on disk
+     */
+    long durable() {
+        return durable;
+    }
+
+    /**
+     * @return the number of segment files
+     */
+    int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    private Path segmentFile(long start) {
+        return directory.resolve(String.format("%020d%s", start, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * @return the offset following the last complete record of the segment
+     */
+    private static long validEnd(FileChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long size = in.size();
+        long offset = 0;
+        while (offset + HEADER_SIZE <= size) {
+            readFully(in, header.clear(), offset);
+            int length = header.getInt(0);
+            if (length < 0 || offset + HEADER_SIZE + length > size) {
+                break;
+            }
+            byte[] record = new byte[length];
+            readFully(in, ByteBuffer.wrap(record), offset + HEADER_SIZE);
+            if (checksum(record, 0, length) != header.getInt(4)) {
+                break;
+            }
+            offset += HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Outbox record ends after the end of its segment");
+            }
+        }
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Makes the creation of a segment durable, where the platform allows syncing a directory.
+     */
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            log.debug("Unable to sync outbox directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * The records not yet consumed take the maximum size of the log.
+     */
+    static final class OutboxFullException extends IOException {
+        OutboxFullException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A record and its offsets in the log.
+     */
+    record Entry(long position, long next, byte[] record) {
+    }
+}
@@ -0,0 +1,49 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Pool of reusable, fixed-size part buffers shared by all multipart uploads.
+ * Buffers are allocated lazily and kept for reuse, so the heap used by uploads
+ * is bounded by {@code partSize * maxBuffers} regardless of file sizes.
+ */
+class PartBufferPool {
+
+    private final int partSize;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param partSize size in bytes of every buffer handed out
+     * @param maxBuffers maximum number of buffers that can be in use at the same time
+     */
+    PartBufferPool(int partSize, int maxBuffers) {
+        this.partSize = partSize;
+        this.permits = new Semaphore(maxBuffers, true);
+    }
+
+    int partSize() {
+        return partSize;
+    }
+
+    /**
+     * Takes a buffer from the pool, blocking until one is available.
+     * @return a buffer of {@link #partSize()} bytes, contents undefined
+     * @throws InterruptedException if interrupted while waiting
+     */
+    byte[] acquire() throws InterruptedException {
+        permits.acquire();
+        byte[] buffer = free.poll();
+        return buffer != null ? buffer : new byte[partSize];
+    }
+
+    /**
+     * Returns a buffer previously obtained from {@link #acquire()}.
+     * @param buffer buffer to return
+     */
+    void release(byte[] buffer) {
+        free.offer(buffer);
+        permits.release();
+    }
+}
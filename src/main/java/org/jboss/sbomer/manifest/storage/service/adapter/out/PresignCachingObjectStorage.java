@@ -0,0 +1,86 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Keeps presigned download URLs per key, so that an object is looked up and signed once per URL lifetime
+ * rather than on every download.
+ * <p>
+ * An entry is dropped {@code refreshBefore} ahead of its expiry, so every URL handed out is valid for at
+ * least that long. Uploads and deletes through this instance drop the entry of their key, the URL of a replaced object
+ * may point to a different blob or carry a different encoding.
+ */
+class PresignCachingObjectStorage extends ForwardingObjectStorage {
+
+    static final String METRIC_PREFIX = "sbomer.storage.presign.cache";
+
+    private static final long MAX_ENTRIES = 100_000;
+
+    private final Cache<String, PresignedUrl> cache;
+
+    /**
+     * @param delegate storage signing the URLs
+     * @param refreshBefore time before the expiry of a URL at which it is signed again
+     * @param registry registry to export the cache metrics to
+     */
+    PresignCachingObjectStorage(ObjectStorage delegate, Duration refreshBefore, MeterRegistry registry) {
+        this(delegate, refreshBefore, registry, Clock.systemUTC());
+    }
+
+    /**
+     * Package-private constructor for testing.
+     */
+    PresignCachingObjectStorage(ObjectStorage delegate, Duration refreshBefore, MeterRegistry registry, Clock clock) {
+        super(delegate);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(MAX_ENTRIES)
+                .expireAfter(Expiry.writing((String key, PresignedUrl url) -> {
+                    Duration remaining = Duration.between(clock.instant(), url.getExpiresAt()).minus(refreshBefore);
+                    return remaining.isNegative() ? Duration.ZERO : remaining;
+                }))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, METRIC_PREFIX);
+    }
+
+    @Override
+    public void upload(String key, InputStream content, UploadOptions options) {
+        try {
+            delegate.upload(key, content, options);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public void delete(Collection<String> keys) {
+        try {
+            delegate.delete(keys);
+        } finally {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    /**
+     * Returns the cached URL of the key, the options do not change the stored bytes it serves.
+     */
+    @Override
+    public PresignedUrl presignDownload(String key, DownloadOptions options, Duration validity) {
+        return cache.get(key, k -> delegate.presignDownload(k, options, validity));
+    }
+}
@@ -0,0 +1,383 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageAccessException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageKeyInvalidException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StoragePreconditionFailedException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+/**
+ * S3 compatible storage adapter implementation using the non-blocking AWS SDK client.
+ * Transfers run on the SDK's event loop (Netty transport), so no thread is tied up
+ * while bytes are in flight; only reading the caller's InputStream blocks the caller.
+ * <p>
+ * Uploads use the same pooled part buffers as {@link S3StorageAdapter}, sent as
+ * {@link AsyncRequestBody} instances that can be replayed on retry. Downloads are streamed
+ * through an {@link AsyncResponseTransformer} publisher that is exposed as a blocking stream to the
+ * caller, with backpressure towards S3. Errors are translated exactly like in {@link S3StorageAdapter}.
+ * Selected with {@code sbomer.storage.backend=s3-async}.
+ */
+@ApplicationScoped
+@Typed(S3AsyncStorageAdapter.class)
+@Slf4j
+public class S3AsyncStorageAdapter implements ObjectStorage {
+
+    @Inject
+    protected S3AsyncClient client;
+
+    @Inject
+    protected S3Presigner presigner;
+
+    @ConfigProperty(name = "sbomer.storage.s3.bucket")
+    String bucketName;
+
+    @ConfigProperty(name = "sbomer.storage.s3.multipart.part-size")
+    MemorySize partSize;
+
+    @ConfigProperty(name = "sbomer.storage.s3.multipart.max-parts-in-flight")
+    int maxPartsInFlight;
+
+    @ConfigProperty(name = "sbomer.storage.s3.multipart.max-buffers")
+    int maxBuffers;
+
+    private StreamingUploader uploader;
+
+    /**
+     * Default constructor for CDI.
+     */
+    public S3AsyncStorageAdapter() {}
+
+    /**
+     * Package-private constructor for testing.
+     * @param client S3AsyncClient instance to use
+     * @param bucketName bucket name to use for storage operations
+     * @param partSize size of a single part in bytes
+     * @param maxPartsInFlight parts of a single upload sent concurrently
+     * @param maxBuffers part buffers shared by all uploads
+     */
+    S3AsyncStorageAdapter(S3AsyncClient client, String bucketName, int partSize, int maxPartsInFlight, int maxBuffers) {
+        this.client = client;
+        this.bucketName = bucketName;
+        this.uploader = new StreamingUploader(new PartBufferPool(partSize, maxBuffers), maxPartsInFlight);
+    }
+
+    @PostConstruct
+    void init() {
+        this.uploader = new StreamingUploader(new PartBufferPool(Math.toIntExact(partSize.asLongValue()), maxBuffers), maxPartsInFlight);
+    }
+
+    /**
+     * Uploads content to S3 compatible storage.
+     * @param key object key (path) in bucket, must not be null or contain '..'
+     * @param content content to upload as an InputStream
+     * @param options size, MIME type, encoding and user metadata of the content
+     * @throws StorageKeyInvalidException if key is null, empty, or contains path traversal patterns
+     * @throws StorageException if bucket doesn't exist or unexpected error occurs
+     * @throws StorageAccessException if access is denied (HTTP 403)
+     * @throws StorageUnavailableException if storage is unavailable or rate limited
+     */
+    @Override
+    public void upload(String key, InputStream content, UploadOptions options) {
+        StorageKeyValidator.validate(key);
+        try {
+            log.info("Uploading to S3 bucket '{}': {}", bucketName, key);
+            long uploaded = uploader.upload(key, content, transport(key, options));
+            log.info("Uploaded to S3 bucket '{}': {} ({} bytes)", bucketName, key, uploaded);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw handleException(e, key);
+        } catch (Exception e) {
+            throw handleException(e, key);
+        }
+    }
+
+    /**
+     * Downloads content from S3 compatible storage.
+     * Returns as soon as the response headers arrive, the body is streamed while the caller reads.
+     * @param key object key (path) in bucket, must not be null or contain ".."
+     * @return an InputStream containing object content (caller must close it)
+     * @throws StorageKeyInvalidException if key is null, empty, or contains path traversal patterns
+     * @throws StorageFileNotFoundException if object doesn't exist at specified key
+     * @throws StorageException if bucket doesn't exist or an unexpected error occurs
+     * @throws StorageAccessException if access is denied (HTTP 403)
+     * @throws StorageUnavailableException if storage is unavailable or rate limited
+     */
+    @Override
+    public InputStream download(String key) {
+        return download(key, DownloadOptions.none()).getContent();
+    }
+
+    /**
+     * Downloads content, or a range of it, from S3 compatible storage.
+     * Returns as soon as the response headers arrive, the body is streamed while the caller reads.
+     * @param key object key (path) in bucket, must not be null or contain ".."
+     * @param options range and conditions of the download
+     * @return the object content (caller must close it) with its metadata, or only the metadata
+     *         if the if-none-match or if-modified-since condition shows that the caller's copy is current
+     * @throws StorageKeyInvalidException if key is null, empty, or contains path traversal patterns
+     * @throws StorageFileNotFoundException if object doesn't exist at specified key
+     * @throws StoragePreconditionFailedException if the object doesn't match the preconditions
+     * @throws StorageRangeNotSatisfiableException if the range lies outside of the object
+     * @throws StorageException if bucket doesn't exist or an unexpected error occurs
+     * @throws StorageAccessException if access is denied (HTTP 403)
+     * @throws StorageUnavailableException if storage is unavailable or rate limited
+     */
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
+        StorageKeyValidator.validate(key);
+        try {
+            log.info("Downloading from S3 bucket '{}': {}", bucketName, key);
+            GetObjectRequest request = S3ObjectConverter.getObjectRequest(bucketName, key, options);
+            ResponseInputStream<GetObjectResponse> responseInputStream = client
+                    .getObject(request, AsyncResponseTransformer.<GetObjectResponse>toBlockingInputStream())
+                    .join();
+            StoredObject object = S3ObjectConverter.toStoredObject(responseInputStream);
+            log.info("Downloaded from S3 bucket '{}': {} ({} bytes)", bucketName, key, object.getContentLength());
+            return object;
+        } catch (Exception e) {
+            if (S3ExceptionTranslator.unwrap(e) instanceof NoSuchKeyException noSuchKey) {
+                throw new StorageFileNotFoundException("File not found: " + key, noSuchKey);
+            }
+            StoredObject notModified = S3ObjectConverter.notModified(e);
+            if (notModified != null) {
+                log.debug("Not modified in S3 bucket '{}': {}", bucketName, key);
+                return notModified;
+            }
+            throw handleException(e, key);
+        }
+    }
+
+    /**
+     * Reads the metadata of an object with a HeadObject request.
+     * @param key object key (path) in bucket, must not be null or contain ".."
+     * @return the object's metadata, without content
+     * @throws StorageKeyInvalidException if key is null, empty, or contains path traversal patterns
+     * @throws StorageFileNotFoundException if object doesn't exist at specified key
+     * @throws StorageException if bucket doesn't exist or an unexpected error occurs
+     * @throws StorageAccessException if access is denied (HTTP 403)
+     * @throws StorageUnavailableException if storage is unavailable or rate limited
+     */
+    @Override
+    public StoredObject stat(String key) {
+        StorageKeyValidator.validate(key);
+        try {
+            HeadObjectResponse response = client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build()).join();
+            return S3ObjectConverter.toStoredObject(response);
+        } catch (Exception e) {
+            if (S3ObjectConverter.isNoSuchKey(e)) {
+                throw new StorageFileNotFoundException("File not found: " + key, e);
+            }
+            throw handleException(e, key);
+        }
+    }
+
+    /**
+     * Presigns a GetObject request of an object after checking with a HeadObject request that it exists.
+     * The URL serves the stored bytes, with the encoding they are stored with.
+     * @param key object key (path) in bucket, must not be null or contain ".."
+     * @param options ignored, S3 serves the stored bytes only
+     * @param validity time the URL is accepted by S3
+     * @return the URL and when it expires
+     * @throws StorageFileNotFoundException if object doesn't exist at specified key
+     * @throws StorageException if bucket doesn't exist or an unexpected error occurs
+     */
+    @Override
+    public PresignedUrl presignDownload(String key, DownloadOptions options, Duration validity) {
+        StoredObject object = stat(key);
+        try {
+            return S3ObjectConverter.presign(presigner, bucketName, key, object, validity);
+        } catch (Exception e) {
+            throw handleException(e, key);
+        }
+    }
+
+    /**
+     * Lists objects under a prefix with a ListObjectsV2 request, one request per page.
+     * @param prefix key prefix, must not be null or contain ".."
+     * @param cursor last key of the previous page, null for the first page
+     * @param limit maximum number of objects in the page, S3 returns at most 1000
+     * @return the page, with the cursor of the next page if the listing is truncated
+     * @throws StorageKeyInvalidException if prefix is null, empty, or contains path traversal patterns
+     * @throws StorageException if bucket doesn't exist or an unexpected error occurs
+     * @throws StorageAccessException if access is denied (HTTP 403)
+     * @throws StorageUnavailableException if storage is unavailable or rate limited
+     */
+    @Override
+    public ObjectPage list(String prefix, String cursor, int limit) {
+        StorageKeyValidator.validatePrefix(prefix);
+        try {
+            ListObjectsV2Response response = client.listObjectsV2(ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(prefix)
+                    .startAfter(cursor)
+                    .maxKeys(limit)
+                    .build()).join();
+            log.debug("Listed {} objects under '{}' in S3 bucket '{}'", response.keyCount(), prefix, bucketName);
+            return S3ObjectConverter.toObjectPage(response);
+        } catch (Exception e) {
+            throw handleException(e, prefix);
+        }
+    }
+
+    /**
+     * Deletes objects with DeleteObjects requests of at most {@link #MAX_DELETE_BATCH} keys each, all of them
+     * sent at once. Keys without an object are skipped by S3.
+     * @param keys object keys (paths) in bucket, must not be null or contain ".."
+     * @throws StorageKeyInvalidException if a key is null, empty, or contains path traversal patterns
+     * @throws StorageException if S3 could not delete some of the objects or an unexpected error occurs
+     * @throws StorageAccessException if access is denied (HTTP 403)
+     * @throws StorageUnavailableException if storage is unavailable or rate limited
+     */
+    @Override
+    public void delete(Collection<String> keys) {
+        keys.forEach(StorageKeyValidator::validate);
+        List<String> remaining = List.copyOf(keys);
+        List<CompletableFuture<DeleteObjectsResponse>> requests = new ArrayList<>();
+        for (int from = 0; from < remaining.size(); from += MAX_DELETE_BATCH) {
+            List<String> batch = remaining.subList(from, Math.min(from + MAX_DELETE_BATCH, remaining.size()));
+            requests.add(client.deleteObjects(S3ObjectConverter.deleteObjectsRequest(bucketName, batch)));
+        }
+        String first = remaining.isEmpty() ? null : remaining.get(0);
+        try {
+            CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).join();
+            for (CompletableFuture<DeleteObjectsResponse> request : requests) {
+                StorageException errors = S3ObjectConverter.deleteErrors(bucketName, request.join());
+                if (errors != null) {
+                    throw errors;
+                }
+            }
+            log.info("Deleted {} objects from S3 bucket '{}'", remaining.size(), bucketName);
+        } catch (Exception e) {
+            throw handleException(e, first);
+        }
+    }
+
+    private StreamingUploader.Transport transport(String key, UploadOptions options) {
+        String contentType = options.getContentType();
+        return new StreamingUploader.Transport() {
+            @Override
+            public void putObject(byte[] buffer, int length) {
+                PutObjectRequest request = PutObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentLength((long) length)
+                        .contentType(contentType)
+                        .contentEncoding(options.getContentEncoding())
+                        .metadata(options.getMetadata())
+                        .build();
+                client.putObject(request, bufferBody(buffer, length)).join();
+            }
+
+            @Override
+            public String createMultipartUpload() {
+                return client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .contentEncoding(options.getContentEncoding())
+                        .metadata(options.getMetadata())
+                        .checksumAlgorithm(ChecksumAlgorithm.CRC32)
+                        .build()).join().uploadId();
+            }
+
+            @Override
+            public CompletableFuture<CompletedPart> uploadPart(String uploadId, int partNumber, byte[] buffer, int length) {
+                return client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) length)
+                        .checksumAlgorithm(ChecksumAlgorithm.CRC32)
+                        .build(), bufferBody(buffer, length))
+                        .thenApply(response -> CompletedPart.builder()
+                                .partNumber(partNumber)
+                                .eTag(response.eTag())
+                                .checksumCRC32(response.checksumCRC32())
+                                .build());
+            }
+
+            @Override
+            public void completeMultipartUpload(String uploadId, List<CompletedPart> parts) {
+                client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                        .build()).join();
+            }
+
+            @Override
+            public void abortMultipartUpload(String uploadId) {
+                client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .build()).join();
+            }
+        };
+    }
+
+    // Wraps the pooled buffer without copying, each subscription (including retries) reads it from the start
+    private static AsyncRequestBody bufferBody(byte[] buffer, int length) {
+        return AsyncRequestBody.fromRemainingByteBufferUnsafe(ByteBuffer.wrap(buffer, 0, length));
+    }
+
+    /**
+     * Handles common exceptions and translates them to domain exceptions.
+     * @param e exception to handle
+     * @param key object key being accessed
+     * @return appropriate domain exception
+     */
+    private RuntimeException handleException(Exception e, String key) {
+        return S3ExceptionTranslator.translate(e, bucketName, key);
+    }
+}
@@ -0,0 +1,89 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static jakarta.ws.rs.core.Response.Status.FORBIDDEN;
+import static jakarta.ws.rs.core.Response.Status.PRECONDITION_FAILED;
+import static jakarta.ws.rs.core.Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE;
+import static jakarta.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static jakarta.ws.rs.core.Response.Status.TOO_MANY_REQUESTS;
+
+import java.util.concurrent.CompletionException;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageAccessException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StoragePreconditionFailedException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageThrottledException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Translates AWS SDK exceptions to domain exceptions.
+ * Shared by the S3 adapters so that all of them fail the same way.
+ */
+final class S3ExceptionTranslator {
+
+    private S3ExceptionTranslator() {}
+
+    /**
+     * Handles common exceptions and translates them to domain exceptions.
+     * @param e exception to handle, futures' {@link CompletionException} wrappers are removed
+     * @param bucketName bucket being accessed
+     * @param key object key being accessed
+     * @return appropriate domain exception
+     */
+    static RuntimeException translate(Throwable e, String bucketName, String key) {
+        Throwable cause = unwrap(e);
+        if (cause instanceof StorageException storageException) {
+            return storageException;
+        } else if (cause instanceof NoSuchBucketException) {
+            return new StorageException("Storage bucket not found: " + bucketName, cause);
+        } else if (cause instanceof S3Exception s3Exception) {
+            return translateS3Exception(s3Exception, bucketName, key);
+        } else if (cause instanceof SdkClientException) {
+            return new StorageUnavailableException("Unable to connect to storage bucket: " + bucketName, cause);
+        } else {
+            return new StorageException("Unexpected error for: " + key, cause);
+        }
+    }
+
+    /**
+     * Removes the {@link CompletionException} wrappers added by futures.
+     * @param e exception thrown by a future or a blocking call
+     * @return the underlying exception
+     */
+    static Throwable unwrap(Throwable e) {
+        Throwable cause = e;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Handles S3 exceptions and translates them to domain exceptions.
+     * @param e S3 exception to handle
+     * @param bucketName bucket being accessed
+     * @param key object key being accessed
+     * @return appropriate domain exception
+     */
+    private static RuntimeException translateS3Exception(S3Exception e, String bucketName, String key) {
+        int statusCode = e.statusCode();
+        if (statusCode == FORBIDDEN.getStatusCode()) {
+            return new StorageAccessException("Access denied to storage bucket: " + bucketName, e);
+        } else if (statusCode == TOO_MANY_REQUESTS.getStatusCode()) {
+            return new StorageThrottledException("Storage rate limit exceeded", e);
+        } else if (statusCode == SERVICE_UNAVAILABLE.getStatusCode()) {
+            // S3 answers SlowDown with 503
+            return new StorageThrottledException("Storage unavailable", e);
+        } else if (statusCode == PRECONDITION_FAILED.getStatusCode()) {
+            return new StoragePreconditionFailedException("Precondition failed for: " + key, e);
+        } else if (statusCode == REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode()) {
+            return new StorageRangeNotSatisfiableException("Range not satisfiable for: " + key, e);
+        } else {
+            return new StorageException("Storage error for: " + key, e);
+        }
+    }
+}
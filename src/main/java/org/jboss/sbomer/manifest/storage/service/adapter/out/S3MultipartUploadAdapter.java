@@ -0,0 +1,236 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUploadMismatchException;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.MultipartUploadStorage;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsRequest;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsResponse;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsResponse;
+import software.amazon.awssdk.services.s3.model.MultipartUpload;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.UploadPartPresignRequest;
+
+/**
+ * S3 multipart uploads whose parts clients send with presigned UploadPart URLs.
+ * Used with both S3 backends, the requests are few and small so the blocking client serves them.
+ * <p>
+ * The parts S3 received are listed before an upload is completed, so a part that is missing, has a
+ * different ETag (the MD5 of the part) than the client got for it, or parts that do not add up to the
+ * declared size fail the upload instead of storing a truncated or corrupted file.
+ */
+@ApplicationScoped
+@Typed(S3MultipartUploadAdapter.class)
+@Slf4j
+public class S3MultipartUploadAdapter implements MultipartUploadStorage {
+
+    @Inject
+    protected S3Client client;
+
+    @Inject
+    protected S3Presigner presigner;
+
+    @ConfigProperty(name = "sbomer.storage.s3.bucket")
+    String bucketName;
+
+    /**
+     * Default constructor for CDI.
+     */
+    public S3MultipartUploadAdapter() {}
+
+    /**
+     * Package-private constructor for testing.
+     * @param client S3Client instance to use
+     * @param presigner S3Presigner instance to use
+     * @param bucketName bucket name to use for storage operations
+     */
+    S3MultipartUploadAdapter(S3Client client, S3Presigner presigner, String bucketName) {
+        this.client = client;
+        this.presigner = presigner;
+        this.bucketName = bucketName;
+    }
+
+    @Override
+    public String startUpload(String key, String contentType) {
+        StorageKeyValidator.validate(key);
+        try {
+            String uploadId = client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .contentType(contentType)
+                    .build()).uploadId();
+            log.debug("Started multipart upload '{}' of '{}'", uploadId, key);
+            return uploadId;
+        } catch (Exception e) {
+            throw S3ExceptionTranslator.translate(e, bucketName, key);
+        }
+    }
+
+    @Override
+    public List<URI> presignParts(String key, String uploadId, int partCount, Duration validity) {
+        try {
+            List<URI> urls = new ArrayList<>(partCount);
+            for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                UploadPartRequest part = UploadPartRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .build();
+                urls.add(URI.create(presigner.presignUploadPart(UploadPartPresignRequest.builder()
+                        .signatureDuration(validity)
+                        .uploadPartRequest(part)
+                        .build()).url().toString()));
+            }
+            return urls;
+        } catch (Exception e) {
+            throw S3ExceptionTranslator.translate(e, bucketName, key);
+        }
+    }
+
+    @Override
+    public void verifyUpload(String key, String uploadId, long size, List<String> partETags) {
+        List<Part> parts = listParts(key, uploadId);
+        if (parts.size() != partETags.size()) {
+            throw new StorageUploadMismatchException(String.format("Upload of %s has %d parts, expected %d",
+                    key, parts.size(), partETags.size()), null);
+        }
+        long received = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            Part part = parts.get(i);
+            if (part.partNumber() != i + 1) {
+                throw new StorageUploadMismatchException(String.format("Upload of %s is missing part %d", key, i + 1), null);
+            }
+            if (!unquoted(part.eTag()).equals(unquoted(partETags.get(i)))) {
+                throw new StorageUploadMismatchException(String.format("Part %d of %s has ETag %s, expected %s",
+                        i + 1, key, part.eTag(), partETags.get(i)), null);
+            }
+            received += part.size();
+        }
+        if (received != size) {
+            throw new StorageUploadMismatchException(String.format("Upload of %s has %d bytes, expected %d",
+                    key, received, size), null);
+        }
+    }
+
+    @Override
+    public void completeUpload(String key, String uploadId, List<String> partETags) {
+        List<CompletedPart> parts = new ArrayList<>(partETags.size());
+        for (int i = 0; i < partETags.size(); i++) {
+            parts.add(CompletedPart.builder().partNumber(i + 1).eTag(partETags.get(i)).build());
+        }
+        try {
+            client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+            log.debug("Completed multipart upload '{}' of '{}' from {} parts", uploadId, key, parts.size());
+        } catch (NoSuchUploadException e) {
+            throw new StorageFileNotFoundException("Upload not found: " + key, e);
+        } catch (Exception e) {
+            throw S3ExceptionTranslator.translate(e, bucketName, key);
+        }
+    }
+
+    @Override
+    public void abortUpload(String key, String uploadId) {
+        try {
+            client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (NoSuchUploadException e) {
+            log.debug("Multipart upload '{}' of '{}' is already gone", uploadId, key);
+        } catch (Exception e) {
+            throw S3ExceptionTranslator.translate(e, bucketName, key);
+        }
+    }
+
+    /**
+     * Lists the multipart uploads of the bucket page by page and aborts those initiated before the time.
+     * A failed abort is logged and retried by the next sweep.
+     */
+    @Override
+    public int abortUploadsStartedBefore(Instant time) {
+        int aborted = 0;
+        String keyMarker = null;
+        String uploadIdMarker = null;
+        ListMultipartUploadsResponse page;
+        do {
+            try {
+                page = client.listMultipartUploads(ListMultipartUploadsRequest.builder()
+                        .bucket(bucketName)
+                        .keyMarker(keyMarker)
+                        .uploadIdMarker(uploadIdMarker)
+                        .build());
+            } catch (Exception e) {
+                throw S3ExceptionTranslator.translate(e, bucketName, "");
+            }
+            for (MultipartUpload upload : page.uploads()) {
+                if (upload.initiated() == null || !upload.initiated().isBefore(time)) {
+                    continue;
+                }
+                try {
+                    abortUpload(upload.key(), upload.uploadId());
+                    aborted++;
+                } catch (RuntimeException e) {
+                    log.warn("Unable to abort multipart upload '{}' of '{}': {}", upload.uploadId(), upload.key(), e.getMessage());
+                }
+            }
+            keyMarker = page.nextKeyMarker();
+            uploadIdMarker = page.nextUploadIdMarker();
+        } while (Boolean.TRUE.equals(page.isTruncated()));
+        return aborted;
+    }
+
+    private List<Part> listParts(String key, String uploadId) {
+        List<Part> parts = new ArrayList<>();
+        Integer marker = null;
+        ListPartsResponse page;
+        do {
+            try {
+                page = client.listParts(ListPartsRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumberMarker(marker)
+                        .build());
+            } catch (NoSuchUploadException e) {
+                throw new StorageFileNotFoundException("Upload not found: " + key, e);
+            } catch (Exception e) {
+                throw S3ExceptionTranslator.translate(e, bucketName, key);
+            }
+            parts.addAll(page.parts());
+            marker = page.nextPartNumberMarker();
+        } while (Boolean.TRUE.equals(page.isTruncated()));
+        return parts;
+    }
+
+    private static String unquoted(String eTag) {
+        return eTag == null ? "" : eTag.replace("\"", "");
+    }
+}
@@ -0,0 +1,219 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+
+/**
+ * Maps between domain types and S3 GetObject, HeadObject and ListObjectsV2 requests and responses,
+ * and presigned GetObject requests.
+ * Shared by the S3 adapters.
+ */
+final class S3ObjectConverter {
+
+    // e.g. "bytes 0-99/1000"
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private static final int NOT_MODIFIED = 304;
+    private static final int NOT_FOUND = 404;
+
+    private S3ObjectConverter() {}
+
+    /**
+     * Builds a GetObject request carrying the range and preconditions of the options.
+     */
+    static GetObjectRequest getObjectRequest(String bucketName, String key, DownloadOptions options) {
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key);
+        if (options.getRange() != null) {
+            request.range(options.getRange().toHeaderValue());
+        }
+        if (options.getIfMatch() != null) {
+            request.ifMatch(options.getIfMatch());
+        }
+        if (options.getIfUnmodifiedSince() != null) {
+            request.ifUnmodifiedSince(options.getIfUnmodifiedSince());
+        }
+        if (options.getIfNoneMatch() != null) {
+            request.ifNoneMatch(options.getIfNoneMatch());
+        }
+        if (options.getIfModifiedSince() != null) {
+            request.ifModifiedSince(options.getIfModifiedSince());
+        }
+        return request.build();
+    }
+
+    /**
+     * Wraps a GetObject response stream, the stream becomes the content of the stored object.
+     */
+    static StoredObject toStoredObject(ResponseInputStream<GetObjectResponse> stream) {
+        GetObjectResponse response = stream.response();
+        long contentLength = response.contentLength() != null ? response.contentLength() : -1;
+        StoredObject.StoredObjectBuilder object = StoredObject.builder()
+                .content(stream)
+                .contentLength(contentLength)
+                .contentType(response.contentType())
+                .contentEncoding(response.contentEncoding())
+                .metadata(response.hasMetadata() ? response.metadata() : Map.of())
+                .eTag(response.eTag())
+                .lastModified(response.lastModified())
+                .totalLength(contentLength);
+        Matcher range = response.contentRange() != null ? CONTENT_RANGE.matcher(response.contentRange()) : null;
+        if (range != null && range.matches()) {
+            object.rangeStart(Long.parseLong(range.group(1)))
+                    .rangeEnd(Long.parseLong(range.group(2)))
+                    .totalLength(Long.parseLong(range.group(3)));
+        }
+        return object.build();
+    }
+
+    /**
+     * Describes an object from its HeadObject response, the stored object has no content.
+     */
+    static StoredObject toStoredObject(HeadObjectResponse response) {
+        long contentLength = response.contentLength() != null ? response.contentLength() : -1;
+        return StoredObject.builder()
+                .contentLength(contentLength)
+                .contentType(response.contentType())
+                .contentEncoding(response.contentEncoding())
+                .metadata(response.hasMetadata() ? response.metadata() : Map.of())
+                .eTag(response.eTag())
+                .lastModified(response.lastModified())
+                .totalLength(contentLength)
+                .build();
+    }
+
+    /**
+     * Presigns a GetObject request of the whole object, signing does not contact S3.
+     * @param object metadata of the object, its encoding is the one of the bytes served at the URL
+     */
+    static PresignedUrl presign(S3Presigner presigner, String bucketName, String key, StoredObject object, Duration validity) {
+        PresignedGetObjectRequest presigned = presigner.presignGetObject(GetObjectPresignRequest.builder()
+                .signatureDuration(validity)
+                .getObjectRequest(GetObjectRequest.builder().bucket(bucketName).key(key).build())
+                .build());
+        return PresignedUrl.builder()
+                .url(URI.create(presigned.url().toString()))
+                .expiresAt(presigned.expiration())
+                .contentEncoding(object.getContentEncoding())
+                .build();
+    }
+
+    /**
+     * Maps a ListObjectsV2 response to a page, the last key is the cursor of the next page.
+     */
+    static ObjectPage toObjectPage(ListObjectsV2Response response) {
+        List<ObjectSummary> objects = response.contents().stream()
+                .map(object -> ObjectSummary.builder()
+                        .key(object.key())
+                        .size(object.size() != null ? object.size() : -1)
+                        .eTag(object.eTag())
+                        .lastModified(object.lastModified())
+                        .build())
+                .toList();
+        boolean truncated = Boolean.TRUE.equals(response.isTruncated()) && !objects.isEmpty();
+        return ObjectPage.builder()
+                .objects(objects)
+                .nextCursor(truncated ? objects.get(objects.size() - 1).getKey() : null)
+                .build();
+    }
+
+    /**
+     * Builds a quiet DeleteObjects request, S3 then only reports the keys it could not delete.
+     * @param keys at most {@link ObjectStorage#MAX_DELETE_BATCH} keys
+     */
+    static DeleteObjectsRequest deleteObjectsRequest(String bucketName, List<String> keys) {
+        return DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder()
+                        .objects(keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                        .quiet(true)
+                        .build())
+                .build();
+    }
+
+    /**
+     * DeleteObjects answers 200 even if it could not delete some of the keys, they are listed as errors.
+     * @return the failure to report, or null if all keys were deleted
+     */
+    static StorageException deleteErrors(String bucketName, DeleteObjectsResponse response) {
+        if (!response.hasErrors() || response.errors().isEmpty()) {
+            return null;
+        }
+        S3Error first = response.errors().get(0);
+        return new StorageException(String.format("Unable to delete %d objects from storage bucket %s, e.g. %s: %s",
+                response.errors().size(), bucketName, first.key(), first.code()), null);
+    }
+
+    /**
+     * HeadObject responses have no body, so a missing key is only told apart by the status code.
+     * @return true if the exception reports that there is no object under the requested key
+     */
+    static boolean isNoSuchKey(Throwable e) {
+        Throwable cause = S3ExceptionTranslator.unwrap(e);
+        return cause instanceof NoSuchKeyException
+                || (cause instanceof S3Exception s3Exception && !(cause instanceof NoSuchBucketException)
+                        && s3Exception.statusCode() == NOT_FOUND);
+    }
+
+    /**
+     * S3 answers a GetObject whose if-none-match or if-modified-since condition holds with
+     * 304 Not Modified, which the SDK raises as an exception. Turns that into a stored object
+     * carrying only the validators from the response headers.
+     * @param e exception thrown by GetObject, futures' wrappers are removed
+     * @return the not modified object, or null if the exception is not a 304 response
+     */
+    static StoredObject notModified(Throwable e) {
+        if (!(S3ExceptionTranslator.unwrap(e) instanceof S3Exception s3Exception) || s3Exception.statusCode() != NOT_MODIFIED) {
+            return null;
+        }
+        StoredObject.StoredObjectBuilder object = StoredObject.builder().notModified(true);
+        AwsErrorDetails details = s3Exception.awsErrorDetails();
+        if (details != null && details.sdkHttpResponse() != null) {
+            SdkHttpResponse response = details.sdkHttpResponse();
+            response.firstMatchingHeader("ETag").ifPresent(object::eTag);
+            response.firstMatchingHeader("Last-Modified").ifPresent(lastModified -> {
+                try {
+                    object.lastModified(Instant.from(DateTimeFormatter.RFC_1123_DATE_TIME.parse(lastModified)));
+                } catch (DateTimeParseException ignored) {
+                    // validator is optional
+                }
+            });
+        }
+        return object.build();
+    }
+}
@@ -1,47 +1,102 @@
 package org.jboss.sbomer.manifest.storage.service.adapter.out;
 
-import static jakarta.ws.rs.core.Response.Status.FORBIDDEN;
-import static jakarta.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
-import static jakarta.ws.rs.core.Response.Status.TOO_MANY_REQUESTS;
-
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageAccessException;
 import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
 import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
 import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageKeyInvalidException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StoragePreconditionFailedException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
 import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
 import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
 
+import io.opentelemetry.context.Context;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 /**
  * S3 compatible storage adapter implementation using AWS SDK.
  * Provides upload and download operations for object storage backends.
+ * <p>
+ * Uploads are streamed: content is read in fixed-size parts into pooled buffers.
+ * Content that fits into a single part is sent with one PutObject, anything larger
+ * is sent as an S3 multipart upload, so heap usage is bounded by the part size and
+ * the number of parts in flight rather than by the file size.
  */
 @ApplicationScoped
+@Typed(S3StorageAdapter.class)
 @Slf4j
 public class S3StorageAdapter implements ObjectStorage {
 
+    static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    static final int DEFAULT_MAX_PARTS_IN_FLIGHT = 2;
+    static final int DEFAULT_MAX_BUFFERS = 16;
+
     @Inject
     protected S3Client client;
 
+    @Inject
+    protected S3Presigner presigner;
+
     @ConfigProperty(name = "sbomer.storage.s3.bucket")
     String bucketName;
 
+    // size of a single multipart part, S3 requires at least 5 MiB for all parts but the last
+    @ConfigProperty(name = "sbomer.storage.s3.multipart.part-size")
+    MemorySize partSize;
+
+    // parts of a single upload that may be sent concurrently
+    @ConfigProperty(name = "sbomer.storage.s3.multipart.max-parts-in-flight")
+    int maxPartsInFlight;
+
+    // part buffers shared by all concurrent uploads, caps total upload heap usage
+    @ConfigProperty(name = "sbomer.storage.s3.multipart.max-buffers")
+    int maxBuffers;
+
+    private StreamingUploader uploader;
+    private ExecutorService partUploadExecutor;
+
     /**
      * Default constructor for CDI.
      */
@@ -53,43 +108,158 @@ public class S3StorageAdapter implements ObjectStorage {
      * @param bucketName bucket name to use for storage operations
      */
     S3StorageAdapter(S3Client client, String bucketName) {
+        this(client, bucketName, DEFAULT_PART_SIZE, DEFAULT_MAX_PARTS_IN_FLIGHT, DEFAULT_MAX_BUFFERS);
+    }
+
+    /**
+     * Package-private constructor for testing presigned downloads.
+     * @param client S3Client instance to use
+     * @param presigner S3Presigner instance to use
+     * @param bucketName bucket name to use for storage operations
+     */
+    S3StorageAdapter(S3Client client, S3Presigner presigner, String bucketName) {
+        this(client, bucketName);
+        this.presigner = presigner;
+    }
+
+    /**
+     * Package-private constructor for testing multipart uploads.
+     * @param client S3Client instance to use
+     * @param bucketName bucket name to use for storage operations
+     * @param partSize size of a single part in bytes
+     * @param maxPartsInFlight parts of a single upload sent concurrently
+     * @param maxBuffers part buffers shared by all uploads
+     */
+    S3StorageAdapter(S3Client client, String bucketName, int partSize, int maxPartsInFlight, int maxBuffers) {
         this.client = client;
         this.bucketName = bucketName;
+        this.maxPartsInFlight = maxPartsInFlight;
+        this.maxBuffers = maxBuffers;
+        initUploads(partSize);
+    }
+
+    @PostConstruct
+    void init() {
+        initUploads(Math.toIntExact(partSize.asLongValue()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        partUploadExecutor.shutdownNow();
+    }
+
+    private void initUploads(int partSizeBytes) {
+        this.uploader = new StreamingUploader(new PartBufferPool(partSizeBytes, maxBuffers), maxPartsInFlight);
+        AtomicInteger threadCount = new AtomicInteger();
+        // Part uploads are bounded by the buffer pool, so the pool itself does not need a limit
+        this.partUploadExecutor = Context.taskWrapping(Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "s3-part-upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
     }
 
     /**
      * Uploads content to S3 compatible storage.
+     * Content that fits into a single part is uploaded with a single PutObject request,
+     * larger content is streamed as a multipart upload.
      * @param key object key (path) in bucket, must not be null or contain '..'
      * @param content content to upload as an InputStream
-     * @param contentLength size of content in bytes
-     * @param contentType MIME type of content (e.g., 'application/json')
+     * @param options size, MIME type, encoding and user metadata of the content
      * @throws StorageKeyInvalidException if key is null, empty, or contains path traversal patterns
      * @throws StorageException if bucket doesn't exist or unexpected error occurs
      * @throws StorageAccessException if access is denied (HTTP 403)
      * @throws StorageUnavailableException if storage is unavailable or rate limited
      */
     @Override
-    public void upload(String key, InputStream content, long contentLength, String contentType) {
+    public void upload(String key, InputStream content, UploadOptions options) {
         validateKey(key);
         try {
             log.info("Uploading to S3 bucket '{}': {}", bucketName, key);
-            PutObjectRequest request = PutObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .contentLength(contentLength)
-                    .contentType(contentType)
-                    .build();
-            // Enables AWS SDK's built-in retry mechanism to work with non-markable streams
-            // RequestBody.fromInputStream() fails on retry
-            // RequestBody.fromBytes() allows unlimited retries
-            byte[] bytes = content.readAllBytes();
-            client.putObject(request, RequestBody.fromBytes(bytes));
-            log.info("Uploaded to S3 bucket '{}': {} ({} bytes)", bucketName, key, contentLength);
+            long uploaded = uploader.upload(key, content, transport(key, options));
+            log.info("Uploaded to S3 bucket '{}': {} ({} bytes)", bucketName, key, uploaded);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw handleException(e, key);
         } catch (Exception e) {
             throw handleException(e, key);
         }
     }
 
+    private StreamingUploader.Transport transport(String key, UploadOptions options) {
+        String contentType = options.getContentType();
+        return new StreamingUploader.Transport() {
+            @Override
+            public void putObject(byte[] buffer, int length) {
+                PutObjectRequest request = PutObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentLength((long) length)
+                        .contentType(contentType)
+                        .contentEncoding(options.getContentEncoding())
+                        .metadata(options.getMetadata())
+                        .build();
+                // Enables AWS SDK's built-in retry mechanism to work with non-markable streams,
+                // every attempt gets a fresh stream over the buffered bytes
+                client.putObject(request, bufferBody(buffer, length, contentType));
+            }
+
+            @Override
+            public String createMultipartUpload() {
+                return client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .contentEncoding(options.getContentEncoding())
+                        .metadata(options.getMetadata())
+                        .checksumAlgorithm(ChecksumAlgorithm.CRC32)
+                        .build()).uploadId();
+            }
+
+            @Override
+            public CompletableFuture<CompletedPart> uploadPart(String uploadId, int partNumber, byte[] buffer, int length) {
+                return CompletableFuture.supplyAsync(() -> {
+                    UploadPartResponse response = client.uploadPart(UploadPartRequest.builder()
+                            .bucket(bucketName)
+                            .key(key)
+                            .uploadId(uploadId)
+                            .partNumber(partNumber)
+                            .contentLength((long) length)
+                            .checksumAlgorithm(ChecksumAlgorithm.CRC32)
+                            .build(), bufferBody(buffer, length, contentType));
+                    return CompletedPart.builder()
+                            .partNumber(partNumber)
+                            .eTag(response.eTag())
+                            .checksumCRC32(response.checksumCRC32())
+                            .build();
+                }, partUploadExecutor);
+            }
+
+            @Override
+            public void completeMultipartUpload(String uploadId, List<CompletedPart> parts) {
+                client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                        .build());
+            }
+
+            @Override
+            public void abortMultipartUpload(String uploadId) {
+                client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .build());
+            }
+        };
+    }
+
+    private static RequestBody bufferBody(byte[] buffer, int length, String contentType) {
+        return RequestBody.fromContentProvider(() -> new ByteArrayInputStream(buffer, 0, length), length, contentType);
+    }
+
     /**
      * Downloads content from S3 compatible storage.
      * @param key object key (path) in bucket, must not be null or contain ".."
@@ -102,72 +272,165 @@ public class S3StorageAdapter implements ObjectStorage {
      */
     @Override
     public InputStream download(String key) {
+        return download(key, DownloadOptions.none()).getContent();
+    }
+
+    /**
+     * Downloads content, or a range of it, from S3 compatible storage.
+     * @param key object key (path) in bucket, must not be null or contain ".."
+     * @param options range and conditions of the download
+     * @return the object content (caller must close it) with its metadata, or only the metadata
+     *         if the if-none-match or if-modified-since condition shows that the caller's copy is current
+     * @throws StorageKeyInvalidException if key is null, empty, or contains path traversal patterns
+     * @throws StorageFileNotFoundException if object doesn't exist at specified key
+     * @throws StoragePreconditionFailedException if the object doesn't match the preconditions
+     * @throws StorageRangeNotSatisfiableException if the range lies outside of the object
+     * @throws StorageException if bucket doesn't exist or an unexpected error occurs
+     * @throws StorageAccessException if access is denied (HTTP 403)
+     * @throws StorageUnavailableException if storage is unavailable or rate limited
+     */
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
         validateKey(key);
         try {
             log.info("Downloading from S3 bucket '{}': {}", bucketName, key);
-            GetObjectRequest request = GetObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .build();
+            GetObjectRequest request = S3ObjectConverter.getObjectRequest(bucketName, key, options);
             ResponseInputStream<GetObjectResponse> responseInputStream = client.getObject(request);
-            long contentLength = responseInputStream.response().contentLength();
-            log.info("Downloaded from S3 bucket '{}': {} ({} bytes)", bucketName, key, contentLength);
-            return responseInputStream;
+            StoredObject object = S3ObjectConverter.toStoredObject(responseInputStream);
+            log.info("Downloaded from S3 bucket '{}': {} ({} bytes)", bucketName, key, object.getContentLength());
+            return object;
         } catch (NoSuchKeyException e) {
             throw new StorageFileNotFoundException("File not found: " + key, e);
         } catch (Exception e) {
+            StoredObject notModified = S3ObjectConverter.notModified(e);
+            if (notModified != null) {
+                log.debug("Not modified in S3 bucket '{}': {}", bucketName, key);
+                return notModified;
+            }
             throw handleException(e, key);
         }
     }
 
     /**
-     * Validates storage key is not null, empty, or contains path traversal.
-     * @param key storage key to validate
-     * @throws StorageKeyInvalidException if key is invalid
+     * Reads the metadata of an object with a HeadObject request.
+     * @param key object key (path) in bucket, must not be null or contain ".."
+     * @return the object's metadata, without content
+     * @throws StorageKeyInvalidException if key is null, empty, or contains path traversal patterns
+     * @throws StorageFileNotFoundException if object doesn't exist at specified key
+     * @throws StorageException if bucket doesn't exist or an unexpected error occurs
+     * @throws StorageAccessException if access is denied (HTTP 403)
+     * @throws StorageUnavailableException if storage is unavailable or rate limited
      */
-    private void validateKey(String key) {
-        if (key == null || key.trim().isEmpty()) {
-            throw new StorageKeyInvalidException(key, "Key cannot be empty");
+    @Override
+    public StoredObject stat(String key) {
+        validateKey(key);
+        try {
+            HeadObjectResponse response = client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build());
+            return S3ObjectConverter.toStoredObject(response);
+        } catch (Exception e) {
+            if (S3ObjectConverter.isNoSuchKey(e)) {
+                throw new StorageFileNotFoundException("File not found: " + key, e);
+            }
+            throw handleException(e, key);
         }
-        if (key.contains("..")) {
-            throw new StorageKeyInvalidException(key, "Path traversal not allowed");
+    }
+
+    /**
+     * Presigns a GetObject request of an object after checking with a HeadObject request that it exists.
+     * The URL serves the stored bytes, with the encoding they are stored with.
+     * @param key object key (path) in bucket, must not be null or contain ".."
+     * @param options ignored, S3 serves the stored bytes only
+     * @param validity time the URL is accepted by S3
+     * @return the URL and when it expires
+     * @throws StorageFileNotFoundException if object doesn't exist at specified key
+     * @throws StorageException if bucket doesn't exist or an unexpected error occurs
+     */
+    @Override
+    public PresignedUrl presignDownload(String key, DownloadOptions options, Duration validity) {
+        StoredObject object = stat(key);
+        try {
+            return S3ObjectConverter.presign(presigner, bucketName, key, object, validity);
+        } catch (Exception e) {
+            throw handleException(e, key);
         }
     }
 
     /**
-     * Handles common exceptions and translates them to domain exceptions.
-     * @param e exception to handle
-     * @param key object key being accessed
-     * @return appropriate domain exception
+     * Lists objects under a prefix with a ListObjectsV2 request, one request per page.
+     * @param prefix key prefix, must not be null or contain ".."
+     * @param cursor last key of the previous page, null for the first page
+     * @param limit maximum number of objects in the page, S3 returns at most 1000
+     * @return the page, with the cursor of the next page if the listing is truncated
+     * @throws StorageKeyInvalidException if prefix is null, empty, or contains path traversal patterns
+     * @throws StorageException if bucket doesn't exist or an unexpected error occurs
+     * @throws StorageAccessException if access is denied (HTTP 403)
+     * @throws StorageUnavailableException if storage is unavailable or rate limited
      */
-    private RuntimeException handleException(Exception e, String key) {
-        if (e instanceof NoSuchBucketException) {
-            return new StorageException("Storage bucket not found: " + bucketName, e);
-        } else if (e instanceof S3Exception s3Exception) {
-            return handleS3Exception(s3Exception, key);
-        } else if (e instanceof SdkClientException) {
-            return new StorageUnavailableException("Unable to connect to storage bucket: " + bucketName, e);
-        } else {
-            return new StorageException("Unexpected error for: " + key, e);
+    @Override
+    public ObjectPage list(String prefix, String cursor, int limit) {
+        StorageKeyValidator.validatePrefix(prefix);
+        try {
+            ListObjectsV2Response response = client.listObjectsV2(ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(prefix)
+                    .startAfter(cursor)
+                    .maxKeys(limit)
+                    .build());
+            log.debug("Listed {} objects under '{}' in S3 bucket '{}'", response.keyCount(), prefix, bucketName);
+            return S3ObjectConverter.toObjectPage(response);
+        } catch (Exception e) {
+            throw handleException(e, prefix);
         }
     }
 
     /**
-     * Handles S3 exceptions and translates them to domain exceptions.
-     * @param e S3 exception to handle
+     * Deletes objects with DeleteObjects requests of at most {@link #MAX_DELETE_BATCH} keys each, sent one
+     * after the other. Keys without an object are skipped by S3.
+     * @param keys object keys (paths) in bucket, must not be null or contain ".."
+     * @throws StorageKeyInvalidException if a key is null, empty, or contains path traversal patterns
+     * @throws StorageException if S3 could not delete some of the objects or an unexpected error occurs
+     * @throws StorageAccessException if access is denied (HTTP 403)
+     * @throws StorageUnavailableException if storage is unavailable or rate limited
+     */
+    @Override
+    public void delete(Collection<String> keys) {
+        keys.forEach(this::validateKey);
+        List<String> remaining = List.copyOf(keys);
+        for (int from = 0; from < remaining.size(); from += MAX_DELETE_BATCH) {
+            List<String> batch = remaining.subList(from, Math.min(from + MAX_DELETE_BATCH, remaining.size()));
+            try {
+                DeleteObjectsResponse response = client.deleteObjects(
+                        S3ObjectConverter.deleteObjectsRequest(bucketName, batch));
+                StorageException errors = S3ObjectConverter.deleteErrors(bucketName, response);
+                if (errors != null) {
+                    throw errors;
+                }
+                log.info("Deleted {} objects from S3 bucket '{}'", batch.size(), bucketName);
+            } catch (Exception e) {
+                throw handleException(e, batch.get(0));
+            }
+        }
+    }
+
+    /**
+     * Validates storage key is not null, empty, or contains path traversal.
+     * @param key storage key to validate
+     * @throws StorageKeyInvalidException if key is invalid
+     */
+    private void validateKey(String key) {
+        StorageKeyValidator.validate(key);
+    }
+
+    /**
+     * Handles common exceptions and translates them to domain exceptions.
+     * @param e exception to handle
      * @param key object key being accessed
      * @return appropriate domain exception
      */
-    private RuntimeException handleS3Exception(S3Exception e, String key) {
-        int statusCode = e.statusCode();
-        if (statusCode == FORBIDDEN.getStatusCode()) {
-            return new StorageAccessException("Access denied to storage bucket: " + bucketName, e);
-        } else if (statusCode == TOO_MANY_REQUESTS.getStatusCode()) {
-            return new StorageUnavailableException("Storage rate limit exceeded", e);
-        } else if (statusCode == SERVICE_UNAVAILABLE.getStatusCode()) {
-            return new StorageUnavailableException("Storage unavailable", e);
-        } else {
-            return new StorageException("Storage error for: " + key, e);
-        }
+    private RuntimeException handleException(Exception e, String key) {
+        return S3ExceptionTranslator.translate(e, bucketName, key);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,571 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ComponentIndex;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component index on local disk, built like a log-structured merge tree.
+ * <p>
+ * Added files go to a sorted in-memory table, which is written to a new immutable {@link IndexSegment} once
+ * it holds {@code flush-postings} postings, and at least every {@code flush-interval}. When there are more
+ * than {@code merge-factor} segments, the smallest of them are merged into one in the background, so a lookup
+ * reads a few segments whatever the number of uploads. Writes never block lookups: they read the table, the
+ * table being written, if any, and the list of segments, which is replaced as a whole.
+ * <p>
+ * Adding a file replaces what was indexed of it before, and removing one drops it. Both take the file out of
+ * the table and mask it in the segments written so far: the mask is a number drawn from the segment ids,
+ * and postings of the file in segments with a lower id are ignored by lookups and left out by merges and
+ * rebuilds. Masks are kept in the {@value #MASKS_FILE} file while segments they apply to remain.
+ * <p>
+ * The segments are kept across restarts, the postings in memory are lost when the process is killed. The
+ * index is local to the instance; files uploaded through other instances, or before the index was enabled,
+ * are found after a rebuild from the storage.
+ */
+@ApplicationScoped
+@Slf4j
+public class SegmentedComponentIndex implements ComponentIndex {
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String MASKS_FILE = "masked.keys";
+
+    // directory holding the segment files, must be kept across restarts, so there is no default
+    @ConfigProperty(name = "sbomer.storage.component-index.directory")
+    Path directory;
+
+    // postings held in memory before they are written to a segment
+    @ConfigProperty(name = "sbomer.storage.component-index.flush-postings")
+    long flushPostings;
+
+    @ConfigProperty(name = "sbomer.storage.component-index.flush-interval")
+    Duration flushInterval;
+
+    // segments kept before the smallest of them are merged
+    @ConfigProperty(name = "sbomer.storage.component-index.merge-factor")
+    int mergeFactor;
+
+    // adds hold the read lock, swapping the table takes the write lock
+    private final ReadWriteLock tableLock = new ReentrantReadWriteLock();
+    private final AtomicLong nextSegmentId = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    // segments are not merged while a rebuild is going to replace them
+    private final AtomicInteger rebuilds = new AtomicInteger();
+    private volatile Table active;
+    private volatile Table flushing;
+    private volatile List<IndexSegment> segments;
+    // postings of a key in segments with a lower id are outdated
+    private final Map<String, Long> masks = new ConcurrentHashMap<>();
+    private ScheduledExecutorService maintenance;
+
+    /**
+     * Default constructor for CDI.
+     */
+    public SegmentedComponentIndex() {}
+
+    /**
+     * Package-private constructor for testing, without the periodic flush.
+     */
+    SegmentedComponentIndex(Path directory, long flushPostings, int mergeFactor) {
+        this.directory = directory;
+        this.flushPostings = flushPostings;
+        this.mergeFactor = mergeFactor;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        segments = List.copyOf(openSegments());
+        active = new Table();
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "component-index-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (flushInterval != null) {
+            maintenance.scheduleWithFixedDelay(this::maintainQuietly, flushInterval.toMillis(), flushInterval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+        log.info("Component index in '{}' has {} segments and {} replaced or removed files", directory,
+                segments.size(), masks.size());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        maintenance.shutdownNow();
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to write the component index on shutdown: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void add(String storageKey, Collection<String> components) {
+        if (isIndexed(storageKey)) {
+            replace(storageKey, components);
+            return;
+        }
+        long postings;
+        tableLock.readLock().lock();
+        try {
+            postings = active.add(storageKey, components);
+        } finally {
+            tableLock.readLock().unlock();
+        }
+        scheduleFlush(postings);
+    }
+
+    @Override
+    public synchronized void remove(Collection<String> storageKeys) {
+        // no table is being written, flushes hold the same lock
+        tableLock.writeLock().lock();
+        try {
+            storageKeys.forEach(active::remove);
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+        boolean masked = false;
+        for (String key : storageKeys) {
+            masked |= maskIfListed(key);
+        }
+        if (masked) {
+            writeMasks();
+        }
+    }
+
+    @Override
+    public SortedSet<String> find(String component, boolean prefix) {
+        SortedSet<String> keys = new TreeSet<>();
+        // in this order, so a table is seen in memory or as a segment while it is written
+        active.find(component, prefix, keys::add);
+        Table written = flushing;
+        if (written != null) {
+            written.find(component, prefix, keys::add);
+        }
+        for (IndexSegment segment : segments) {
+            if (masks.isEmpty()) {
+                segment.find(component, prefix, keys::add);
+                continue;
+            }
+            long id = id(segment);
+            segment.find(component, prefix, key -> {
+                if (!isMasked(id, key)) {
+                    keys.add(key);
+                }
+            });
+        }
+        return keys;
+    }
+
+    @Override
+    public synchronized Rebuild startRebuild() {
+        rebuilds.incrementAndGet();
+        return new SegmentRebuild(segments, nextSegmentId.getAndIncrement());
+    }
+
+    List<IndexSegment> segments() {
+        return segments;
+    }
+
+    /**
+     * Writes the postings in memory to a new segment.
+     */
+    synchronized void flush() throws IOException {
+        flushScheduled.set(false);
+        Table full;
+        tableLock.writeLock().lock();
+        try {
+            full = active;
+            if (full.isEmpty()) {
+                return;
+            }
+            flushing = full;
+            active = new Table();
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+        try {
+            IndexSegment segment = IndexSegment.write(nextSegmentFile(), full.postings);
+            segments = concat(segments, List.of(segment));
+            log.debug("Wrote component index segment {} with {} terms", segment.file().getFileName(), segment.termCount());
+        } catch (IOException | RuntimeException e) {
+            // keep the postings for the next flush
+            full.postings.forEach((term, keys) -> keys.forEach(key -> active.add(key, List.of(term))));
+            throw e;
+        } finally {
+            flushing = null;
+        }
+    }
+
+    /**
+     * Merges the smallest segments while there are more than {@code merge-factor}.
+     */
+    synchronized void merge() throws IOException {
+        while (segments.size() > mergeFactor && rebuilds.get() == 0) {
+            List<IndexSegment> inputs = segments.stream()
+                    .sorted(Comparator.comparingLong(IndexSegment::size))
+                    .limit(Math.max(2, mergeFactor))
+                    .toList();
+            IndexSegment merged = IndexSegment.merge(nextSegmentFile(), inputs,
+                    (segment, key) -> isMasked(id(segment), key));
+            segments = concat(segments.stream().filter(segment -> !inputs.contains(segment)).toList(), List.of(merged));
+            inputs.forEach(segment -> deleteQuietly(segment.file()));
+            log.debug("Merged {} component index segments into {}", inputs.size(), merged.file().getFileName());
+            forgetUnlisted();
+        }
+    }
+
+    Map<String, Long> masks() {
+        return masks;
+    }
+
+    /**
+     * @return whether the file may have postings in the tables or segments, or in those of a rebuild
+     */
+    private boolean isIndexed(String key) {
+        // in the order of the lookups
+        if (rebuilds.get() > 0 || masks.containsKey(key) || active.contains(key)) {
+            return true;
+        }
+        Table written = flushing;
+        return written != null && written.contains(key)
+                || segments.stream().anyMatch(segment -> segment.contains(key));
+    }
+
+    /**
+     * Replaces the postings of a file in the table and masks those in the segments.
+     */
+    private synchronized void replace(String key, Collection<String> components) {
+        long postings;
+        tableLock.writeLock().lock();
+        try {
+            active.remove(key);
+            postings = active.add(key, components);
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+        if (maskIfListed(key)) {
+            writeMasks();
+        }
+        scheduleFlush(postings);
+    }
+
+    /**
+     * Masks the postings of a file in the segments written so far, segments written later have higher ids.
+     *
+     * @return whether the file was masked, the caller holds the index lock and writes the masks
+     */
+    private boolean maskIfListed(String key) {
+        // a rebuild may have read the previous content and write it to a segment later
+        if (rebuilds.get() == 0 && segments.stream().noneMatch(segment -> segment.contains(key))) {
+            return false;
+        }
+        masks.put(key, nextSegmentId.getAndIncrement());
+        return true;
+    }
+
+    private boolean isMasked(long segmentId, String key) {
+        Long mask = masks.get(key);
+        return mask != null && segmentId < mask;
+    }
+
+    private void scheduleFlush(long postings) {
+        if (postings >= flushPostings && flushScheduled.compareAndSet(false, true)) {
+            schedule(this::maintainQuietly);
+        }
+    }
+
+    /**
+     * Drops the masks of files that no segment they apply to lists anymore.
+     */
+    private synchronized void forgetUnlisted() {
+        if (rebuilds.get() > 0) {
+            return;
+        }
+        boolean dropped = masks.entrySet().removeIf(mask -> segments.stream()
+                .noneMatch(segment -> id(segment) < mask.getValue() && segment.contains(mask.getKey())));
+        if (dropped) {
+            writeMasks();
+        }
+    }
+
+    /**
+     * Replaces the file of masks, or deletes it when there are none.
+     */
+    private synchronized void writeMasks() {
+        Path file = directory.resolve(MASKS_FILE);
+        try {
+            if (masks.isEmpty()) {
+                Files.deleteIfExists(file);
+                return;
+            }
+            List<String> lines = new TreeMap<>(masks).entrySet().stream()
+                    .map(mask -> Long.toHexString(mask.getValue()) + " " + mask.getKey())
+                    .toList();
+            Path temporary = file.resolveSibling(MASKS_FILE + ".tmp");
+            Files.write(temporary, lines, UTF_8);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the masks of the component index", e);
+        }
+    }
+
+    private void readMasks(Path file) throws IOException {
+        for (String line : Files.readAllLines(file, UTF_8)) {
+            int separator = line.indexOf(' ');
+            long mask = Long.parseLong(line.substring(0, separator), 16);
+            masks.put(line.substring(separator + 1), mask);
+            nextSegmentId.set(Math.max(nextSegmentId.get(), mask + 1));
+        }
+    }
+
+    private void maintainQuietly() {
+        try {
+            flush();
+            merge();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to write the component index: {}", e.getMessage());
+        }
+    }
+
+    private void schedule(Runnable task) {
+        try {
+            maintenance.execute(task);
+        } catch (RejectedExecutionException e) {
+            // shutting down, the postings are written by the shutdown
+        }
+    }
+
+    private Path nextSegmentFile() {
+        return directory.resolve(String.format("%016x%s", nextSegmentId.getAndIncrement(), SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Opens the segments of a previous run and removes files of writes that did not complete.
+     */
+    private List<IndexSegment> openSegments() {
+        List<IndexSegment> opened = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(directory)) {
+                files = listing.filter(Files::isRegularFile).sorted().toList();
+            }
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.equals(MASKS_FILE)) {
+                    readMasks(file);
+                    continue;
+                }
+                if (!name.endsWith(SEGMENT_SUFFIX)) {
+                    deleteQuietly(file);
+                    continue;
+                }
+                try {
+                    long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()), 16);
+                    opened.add(IndexSegment.open(file));
+                    nextSegmentId.set(Math.max(nextSegmentId.get(), id + 1));
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Removing unreadable component index segment {}: {}", file, e.getMessage());
+                    deleteQuietly(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open component index directory: " + directory, e);
+        }
+        return opened;
+    }
+
+    private static long id(IndexSegment segment) {
+        String name = segment.file().getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()), 16);
+    }
+
+    private static List<IndexSegment> concat(List<IndexSegment> first, List<IndexSegment> second) {
+        return Stream.concat(first.stream(), second.stream()).toList();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete component index file: {}", file, e);
+        }
+    }
+
+    /**
+     * Sorted postings in memory.
+     */
+    private static final class Table {
+        private final ConcurrentSkipListMap<String, Set<String>> postings = new ConcurrentSkipListMap<>();
+        // the terms of each key, to drop a key without going through all postings
+        private final Map<String, Set<String>> terms = new ConcurrentHashMap<>();
+        private final AtomicLong size = new AtomicLong();
+
+        /**
+         * @return the postings in the table after the add
+         */
+        long add(String key, Collection<String> components) {
+            long added = 0;
+            terms.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).addAll(components);
+            for (String component : components) {
+                if (postings.computeIfAbsent(component, c -> ConcurrentHashMap.newKeySet()).add(key)) {
+                    added++;
+                }
+            }
+            return size.addAndGet(added);
+        }
+
+        /**
+         * Drops the postings of a key, the caller keeps adds out.
+         */
+        void remove(String key) {
+            Set<String> dropped = terms.remove(key);
+            if (dropped == null) {
+                return;
+            }
+            for (String term : dropped) {
+                postings.computeIfPresent(term, (t, termKeys) -> {
+                    if (termKeys.remove(key)) {
+                        size.decrementAndGet();
+                    }
+                    return termKeys.isEmpty() ? null : termKeys;
+                });
+            }
+        }
+
+        boolean contains(String key) {
+            return terms.containsKey(key);
+        }
+
+        boolean isEmpty() {
+            return postings.isEmpty();
+        }
+
+        void find(String term, boolean prefix, Consumer<String> consumer) {
+            if (!prefix) {
+                Set<String> keys = postings.get(term);
+                if (keys != null) {
+                    keys.forEach(consumer);
+                }
+                return;
+            }
+            for (Map.Entry<String, Set<String>> entry : postings.tailMap(term).entrySet()) {
+                if (!entry.getKey().startsWith(term)) {
+                    return;
+                }
+                entry.getValue().forEach(consumer);
+            }
+        }
+    }
+
+    /**
+     * Builds new segments next to the current ones and swaps them in on commit.
+     */
+    private final class SegmentRebuild implements Rebuild {
+        // the segments present when the rebuild started, files added later are in other segments
+        private final List<IndexSegment> replaced;
+        // files masked later may have been read before they were replaced or removed
+        private final long started;
+        private final List<IndexSegment> built = new ArrayList<>();
+        private Table table = new Table();
+        private boolean done;
+
+        SegmentRebuild(List<IndexSegment> replaced, long started) {
+            this.replaced = replaced;
+            this.started = started;
+        }
+
+        @Override
+        public synchronized void add(String storageKey, Collection<String> components) {
+            if (table.add(storageKey, components) >= flushPostings) {
+                writeTable();
+            }
+        }
+
+        @Override
+        public void commit() {
+            synchronized (this) {
+                if (!table.isEmpty()) {
+                    writeTable();
+                }
+                done = true;
+            }
+            synchronized (SegmentedComponentIndex.this) {
+                segments = concat(built, segments.stream().filter(segment -> !replaced.contains(segment)).toList());
+                replaced.forEach(segment -> deleteQuietly(segment.file()));
+            }
+            rebuilds.decrementAndGet();
+            forgetUnlisted();
+            log.info("Rebuilt component index with {} segments", built.size());
+            schedule(SegmentedComponentIndex.this::maintainQuietly);
+        }
+
+        @Override
+        public synchronized void abort() {
+            if (done) {
+                return;
+            }
+            done = true;
+            built.forEach(segment -> deleteQuietly(segment.file()));
+            rebuilds.decrementAndGet();
+        }
+
+        private void writeTable() {
+            Path file;
+            synchronized (SegmentedComponentIndex.this) {
+                // masks drawn after the file id apply to the segment, those drawn before do not
+                masks.forEach((key, mask) -> {
+                    if (mask > started) {
+                        table.remove(key);
+                    }
+                });
+                if (table.isEmpty()) {
+                    return;
+                }
+                file = nextSegmentFile();
+            }
+            try {
+                built.add(IndexSegment.write(file, table.postings));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to write component index segment", e);
+            }
+            table = new Table();
+        }
+    }
+}
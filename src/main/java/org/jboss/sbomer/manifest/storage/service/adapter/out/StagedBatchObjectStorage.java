@@ -0,0 +1,742 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.StagedBatchStorage;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.f4b6a3.tsid.Tsid;
+import com.github.f4b6a3.tsid.TsidFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stages the files of batches and makes each batch visible with a single manifest write per folder.
+ * <p>
+ * A file of batch {@code B} that is to become visible as {@code {folder}/{name}} is uploaded to
+ * {@code _batches/B/{folder}/{name}}, where reads and listings of the folder do not see it. Committing the
+ * batch lists its staging area once and writes the manifest {@code {folder}/.batches/B.json}, naming the
+ * files with their staged keys and listed size, ETag and last modification, and the length they were uploaded
+ * with. Reads and listings report that length, as objects compressed at rest while their length was not
+ * known beforehand do not record it themselves. Batch ids are TSIDs, so they sort
+ * by start time and the file of the latest batch naming it wins. A batch spanning several folders gets one
+ * manifest per folder.
+ * <p>
+ * Reads look a key up in the manifests of its folder, keys they do not name are read directly. The manifests
+ * of a folder are listed when it is first read and again once that is {@code refreshAfter} old, or when a
+ * staged file is missing because a batch committed through another instance replaced it. Listings show the
+ * files of the manifests under their own keys, merged in key order, and hide the staging area and files a
+ * manifest replaces. They are thus complete for prefixes ending at a folder, which are the only ones listed.
+ * <p>
+ * Committing a batch deletes the staged files and manifests it replaced. Discarded and abandoned batches are
+ * deleted with DeleteObjects requests of up to {@link #MAX_DELETE_BATCH} keys, one per page of the staging
+ * listing, sent in parallel while the next page is listed. Deletes take stored keys, not the keys files are
+ * visible under.
+ */
+@Slf4j
+class StagedBatchObjectStorage extends ForwardingObjectStorage implements StagedBatchStorage {
+
+    static final String STAGING_PREFIX = "_batches/";
+    static final String MANIFEST_DIRECTORY = ".batches/";
+    static final String METRIC_PREFIX = "sbomer.storage.staging";
+
+    private static final String MANIFEST_SUFFIX = ".json";
+    private static final String CONTENT_TYPE = "application/json";
+    // a missing file only lists the manifests of its folder again after this time
+    private static final Duration MIN_RELOAD_INTERVAL = Duration.ofSeconds(1);
+    private static final int DELETE_CONCURRENCY = 4;
+    private static final long MAX_FOLDERS = 10_000;
+    private static final long MAX_MANIFESTS = 100_000;
+
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final TsidFactory tsidFactory;
+    // manifests per folder, expire refreshAfter after they were listed
+    private final Cache<String, Folder> folders;
+    // manifests by key, they never change once written
+    private final Cache<String, Manifest> manifests;
+    private final ExecutorService deleter;
+    private final Counter committed;
+    private final Counter discarded;
+    private final Counter abandoned;
+    private final Counter replaced;
+
+    /**
+     * @param delegate storage holding the staged files and manifests
+     * @param objectMapper mapper the manifests are written and read with
+     * @param refreshAfter age after which the manifests of a folder are listed again
+     * @param registry registry to export the staging metrics to
+     */
+    StagedBatchObjectStorage(ObjectStorage delegate, ObjectMapper objectMapper, Duration refreshAfter,
+            MeterRegistry registry) {
+        this(delegate, objectMapper, refreshAfter, registry, Clock.systemUTC());
+    }
+
+    /**
+     * Package-private constructor for testing, batches are started at the time of the clock.
+     */
+    StagedBatchObjectStorage(ObjectStorage delegate, ObjectMapper objectMapper, Duration refreshAfter,
+            MeterRegistry registry, Clock clock) {
+        super(delegate);
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.tsidFactory = TsidFactory.builder().withClock(clock).build();
+        this.folders = Caffeine.newBuilder()
+                .maximumSize(MAX_FOLDERS)
+                .expireAfterWrite(refreshAfter)
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .build();
+        this.manifests = Caffeine.newBuilder().maximumSize(MAX_MANIFESTS).build();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.deleter = Executors.newFixedThreadPool(DELETE_CONCURRENCY, r -> {
+            Thread thread = new Thread(r, "staging-delete-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.committed = Counter.builder(METRIC_PREFIX + ".committed")
+                .description("Staged files made visible by committed batches")
+                .register(registry);
+        this.discarded = deleted(registry, "discarded");
+        this.abandoned = deleted(registry, "abandoned");
+        this.replaced = deleted(registry, "replaced");
+    }
+
+    private static Counter deleted(MeterRegistry registry, String reason) {
+        return Counter.builder(METRIC_PREFIX + ".deleted")
+                .description("Staged files deleted, by reason")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    @Override
+    public String begin() {
+        return tsidFactory.create().toString();
+    }
+
+    @Override
+    public String stagingKey(String batchId, String key) {
+        return STAGING_PREFIX + batchId + "/" + key;
+    }
+
+    /**
+     * Lists the staging area of the batch, so that the manifests carry what a listing of the files would show,
+     * and writes the manifests. Fails if a file of the batch is not staged.
+     */
+    @Override
+    public void commit(String batchId, List<ObjectSummary> files) {
+        String staging = STAGING_PREFIX + batchId + "/";
+        Map<String, ObjectSummary> staged = listAll(staging);
+        List<Entry> entries = new ArrayList<>();
+        for (ObjectSummary file : files) {
+            ObjectSummary object = staged.get(stagingKey(batchId, file.getKey()));
+            if (object == null) {
+                throw new StorageException("Staged file of batch " + batchId + " is missing: " + file.getKey(), null);
+            }
+            entries.add(entry(file, object));
+        }
+        writeManifests(batchId, entries);
+        log.info("Committed batch {} of {} files", batchId, entries.size());
+    }
+
+    @Override
+    public void commitInPlace(List<ObjectSummary> files) {
+        String batchId = begin();
+        Map<String, ObjectSummary> stored = new HashMap<>();
+        for (String folder : files.stream().map(file -> folderOf(file.getKey())).collect(Collectors.toSet())) {
+            stored.putAll(listAll(folder));
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (ObjectSummary file : files) {
+            ObjectSummary object = stored.get(file.getKey());
+            if (object == null) {
+                throw new StorageFileNotFoundException("File not found: " + file.getKey(), null);
+            }
+            entries.add(entry(file, object));
+        }
+        writeManifests(batchId, entries);
+        log.info("Committed {} files stored in place as batch {}", entries.size(), batchId);
+    }
+
+    private static Entry entry(ObjectSummary file, ObjectSummary stored) {
+        return new Entry(file.getKey(), stored.getKey(), stored.getSize(), file.getSize(), stored.getETag(),
+                stored.getLastModified(), file.getContentType());
+    }
+
+    private void writeManifests(String batchId, List<Entry> entries) {
+        Map<String, List<Entry>> byFolder = entries.stream()
+                .collect(Collectors.groupingBy(entry -> folderOf(entry.key()), LinkedHashMap::new, Collectors.toList()));
+        Instant committedAt = clock.instant();
+        for (Map.Entry<String, List<Entry>> folder : byFolder.entrySet()) {
+            Manifest manifest = new Manifest(folder.getKey() + MANIFEST_DIRECTORY + batchId + MANIFEST_SUFFIX, batchId,
+                    committedAt, folder.getValue());
+            byte[] json = toJson(manifest);
+            delegate.upload(manifest.key(), new ByteArrayInputStream(json), json.length, CONTENT_TYPE);
+            manifests.put(manifest.key(), manifest);
+            committed.increment(manifest.files().size());
+        }
+        byFolder.keySet().forEach(this::deleteReplaced);
+    }
+
+    /**
+     * Deletes the files of a folder that the latest batches replaced and the manifests left without current files.
+     * Only the view of this instance counts, a manifest written meanwhile is seen by the next commit. Failures are
+     * logged, replaced files are never read.
+     */
+    private void deleteReplaced(String folder) {
+        try {
+            folders.invalidate(folder);
+            Folder state = folder(folder);
+            Set<String> current = state.current.values().stream()
+                    .map(Entry::location)
+                    .collect(Collectors.toSet());
+            List<String> locations = new ArrayList<>();
+            List<String> emptied = new ArrayList<>();
+            for (Manifest manifest : state.manifests) {
+                boolean empty = true;
+                for (Entry entry : manifest.files()) {
+                    if (state.isCurrent(manifest, entry)) {
+                        empty = false;
+                    } else if (!current.contains(entry.location())) {
+                        locations.add(entry.location());
+                    }
+                }
+                if (empty) {
+                    emptied.add(manifest.key());
+                }
+            }
+            if (locations.isEmpty() && emptied.isEmpty()) {
+                return;
+            }
+            // files before their manifests, a manifest naming a deleted file is never left behind
+            deleteInParallel(locations);
+            deleteInParallel(emptied);
+            emptied.forEach(manifests::invalidate);
+            folders.invalidate(folder);
+            replaced.increment(locations.size());
+            log.info("Deleted {} replaced files and {} manifests in '{}'", locations.size(), emptied.size(), folder);
+        } catch (RuntimeException e) {
+            log.warn("Unable to delete the files replaced in '{}': {}", folder, e.getMessage());
+        }
+    }
+
+    @Override
+    public void discard(String batchId) {
+        List<String> keys = new ArrayList<>(listAll(STAGING_PREFIX + batchId + "/").keySet());
+        deleteInParallel(keys);
+        discarded.increment(keys.size());
+        log.info("Discarded {} staged files of batch {}", keys.size(), batchId);
+    }
+
+    /**
+     * Lists the staging area from the first batch that may have started after {@code startedAfter}, in pages of
+     * {@link #MAX_DELETE_BATCH} keys, and deletes the files of batches without a manifest in their folder. Pages are
+     * deleted while the next one is listed.
+     */
+    @Override
+    public int discardAbandoned(Instant startedAfter, Instant startedBefore) {
+        TsidFactory boundFactory = TsidFactory.builder()
+                .withClock(Clock.fixed(startedAfter.minusMillis(1), ZoneOffset.UTC))
+                .build();
+        String cursor = STAGING_PREFIX + boundFactory.create().toString();
+        Map<String, Boolean> committedFolders = new HashMap<>();
+        List<CompletableFuture<Void>> deletes = new ArrayList<>();
+        List<String> pending = new ArrayList<>();
+        int count = 0;
+        boolean done = false;
+        while (cursor != null && !done) {
+            ObjectPage page = delegate.list(STAGING_PREFIX, cursor, MAX_DELETE_BATCH);
+            for (ObjectSummary object : page.getObjects()) {
+                String path = object.getKey().substring(STAGING_PREFIX.length());
+                int slash = path.indexOf('/');
+                Instant started = slash > 0 ? startedAt(path.substring(0, slash)) : null;
+                if (started == null || started.isBefore(startedAfter)) {
+                    continue;
+                } else if (!started.isBefore(startedBefore)) {
+                    done = true;
+                    break;
+                }
+                String batchId = path.substring(0, slash);
+                String folder = folderOf(path.substring(slash + 1));
+                boolean isCommitted = committedFolders.computeIfAbsent(batchId + "/" + folder,
+                        k -> exists(folder + MANIFEST_DIRECTORY + batchId + MANIFEST_SUFFIX));
+                if (!isCommitted) {
+                    pending.add(object.getKey());
+                }
+            }
+            if (!pending.isEmpty()) {
+                deletes.add(deleteAsync(List.copyOf(pending)));
+                count += pending.size();
+                pending.clear();
+            }
+            cursor = page.getNextCursor();
+        }
+        join(deletes);
+        abandoned.increment(count);
+        return count;
+    }
+
+    @Override
+    public List<String> storedKeys(String prefix) {
+        Set<String> files = new LinkedHashSet<>();
+        List<String> manifestKeys = new ArrayList<>();
+        for (String key : listAll(prefix).keySet()) {
+            if (!isManifest(key)) {
+                files.add(key);
+                continue;
+            }
+            manifestKeys.add(key);
+            Manifest manifest = manifests.get(key, this::readManifest);
+            if (manifest != null) {
+                manifest.files().forEach(entry -> files.add(entry.location()));
+            }
+        }
+        List<String> keys = new ArrayList<>(files);
+        keys.addAll(manifestKeys);
+        return keys;
+    }
+
+    private static void closeQuietly(InputStream content) {
+        try {
+            if (content != null) {
+                content.close();
+            }
+        } catch (IOException e) {
+            log.debug("Unable to close content stream", e);
+        }
+    }
+
+    private static Instant startedAt(String batchId) {
+        return Tsid.isValid(batchId) ? Tsid.from(batchId).getInstant() : null;
+    }
+
+    private boolean exists(String key) {
+        try {
+            delegate.stat(key);
+            return true;
+        } catch (StorageFileNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
+        return withLength(key, read(key, location -> delegate.download(location, options)), options.getRange());
+    }
+
+    @Override
+    public StoredObject stat(String key) {
+        return withLength(key, read(key, delegate::stat), null);
+    }
+
+    /**
+     * Fills in the uploaded length of a file that is read without one, e.g. decompressed content, and cuts the
+     * requested range out of it, as the wrapped storage returns the whole content when it cannot resolve it.
+     */
+    private StoredObject withLength(String key, StoredObject object, ByteRange range) {
+        if (object.isNotModified() || object.getContentLength() >= 0 || isInternal(key)) {
+            return object;
+        }
+        Entry entry = folder(folderOf(key)).current.get(key);
+        if (entry == null || entry.length() < 0) {
+            return object;
+        }
+        long length = entry.length();
+        if (range == null || object.getContent() == null) {
+            return object.toBuilder().contentLength(length).totalLength(length).build();
+        }
+        ByteRange resolved = range.resolve(length);
+        if (resolved == null) {
+            closeQuietly(object.getContent());
+            throw new StorageRangeNotSatisfiableException("Range not satisfiable: " + key, null);
+        }
+        InputStream content = object.getContent();
+        try {
+            content.skipNBytes(resolved.getFirst());
+        } catch (IOException e) {
+            closeQuietly(content);
+            throw new StorageException("Unable to read content: " + key, e);
+        }
+        return object.toBuilder()
+                .content(new CompressingObjectStorage.LimitedInputStream(content, resolved.length()))
+                .file(null)
+                .contentLength(resolved.length())
+                .rangeStart(resolved.getFirst())
+                .rangeEnd(resolved.getLast())
+                .totalLength(length)
+                .build();
+    }
+
+    @Override
+    public PresignedUrl presignDownload(String key, DownloadOptions options, Duration validity) {
+        return read(key, location -> delegate.presignDownload(location, options, validity));
+    }
+
+    /**
+     * Reads the current file of a key. If it is missing, the manifests of its folder are listed again, as a batch
+     * committed through another instance may have replaced it.
+     */
+    private <T> T read(String key, Function<String, T> operation) {
+        if (isInternal(key)) {
+            return operation.apply(key);
+        }
+        String location = locate(folder(folderOf(key)), key);
+        try {
+            return operation.apply(location);
+        } catch (StorageFileNotFoundException e) {
+            String reloaded = locate(reload(folderOf(key)), key);
+            if (reloaded.equals(location)) {
+                throw location.equals(key) ? e : new StorageFileNotFoundException("File not found: " + key, e);
+            }
+            return operation.apply(reloaded);
+        }
+    }
+
+    private static String locate(Folder folder, String key) {
+        Entry entry = folder.current.get(key);
+        return entry == null ? key : entry.location();
+    }
+
+    /**
+     * Lists through the wrapped storage and merges the current files of the manifests in, in key order.
+     * <p>
+     * The files of a folder all sort after the first key below it, so the manifests of a folder are looked up
+     * when the wrapped listing first reaches a key below it, before anything after that key is listed. The
+     * files still to be listed wait until the wrapped listing has passed them. Pages hold at most
+     * {@code limit} files and the cursor is the last key listed, so a page can end inside a manifest.
+     */
+    @Override
+    public ObjectPage list(String prefix, String cursor, int limit) {
+        Listing listing = new Listing(prefix, cursor, limit);
+        if (cursor != null && cursor.startsWith(prefix) && !cursor.startsWith("_")) {
+            // the folders holding the cursor may have files after it
+            listing.enter(cursor, isManifest(cursor));
+        }
+        String next = cursor;
+        do {
+            ObjectPage page = delegate.list(prefix, next, limit);
+            for (ObjectSummary object : page.getObjects()) {
+                if (listing.add(object)) {
+                    return listing.page(true);
+                }
+            }
+            next = page.getNextCursor();
+        } while (next != null);
+        return listing.page(listing.flush());
+    }
+
+    /**
+     * One page of a listing, with the files of the manifests seen so far that have yet to be listed.
+     */
+    private final class Listing {
+        private final String prefix;
+        private final int limit;
+        private final Set<String> folders = new HashSet<>();
+        private final NavigableMap<String, ObjectSummary> pending = new TreeMap<>();
+        private final List<ObjectSummary> objects = new ArrayList<>();
+        private String last;
+
+        private Listing(String prefix, String cursor, int limit) {
+            this.prefix = prefix;
+            this.limit = limit;
+            this.last = cursor;
+        }
+
+        /**
+         * Adds a key of the wrapped listing and the files of the manifests that sort before it.
+         * @return whether the page is full
+         */
+        private boolean add(ObjectSummary object) {
+            String key = object.getKey();
+            if (key.startsWith(STAGING_PREFIX)) {
+                return false;
+            }
+            if (!key.startsWith("_")) {
+                enter(key, isManifest(key));
+            }
+            while (!pending.isEmpty() && pending.firstKey().compareTo(key) < 0) {
+                if (emit(pending.pollFirstEntry().getValue())) {
+                    return true;
+                }
+            }
+            if (key.startsWith("_") || (!isManifest(key) && !folder(folderOf(key)).current.containsKey(key))) {
+                return emit(object);
+            }
+            return false;
+        }
+
+        /**
+         * Lists the files left once the wrapped listing is complete.
+         * @return whether files are left for a further page
+         */
+        private boolean flush() {
+            while (!pending.isEmpty()) {
+                if (emit(pending.pollFirstEntry().getValue())) {
+                    return !pending.isEmpty();
+                }
+            }
+            return false;
+        }
+
+        private boolean emit(ObjectSummary object) {
+            objects.add(object);
+            last = object.getKey();
+            return objects.size() == limit;
+        }
+
+        /**
+         * Looks up the manifests of the folders holding the key, from the folder of the prefix down.
+         * @param manifest whether the key is a manifest, whose folder is the one above its manifest directory
+         */
+        private void enter(String key, boolean manifest) {
+            String folder = folderOf(key);
+            if (manifest) {
+                folder = folder.substring(0, folder.length() - MANIFEST_DIRECTORY.length());
+            }
+            int slash = folderOf(prefix).length() - 1;
+            do {
+                String entered = folder.substring(0, slash + 1);
+                if (folders.add(entered)) {
+                    queue(folder(entered));
+                }
+                slash = folder.indexOf('/', slash + 1);
+            } while (slash >= 0);
+            if (manifest && folder(folder).manifest(key) == null) {
+                // committed after the folder was listed
+                queue(reload(folder));
+            }
+        }
+
+        private void queue(Folder folder) {
+            for (Entry entry : folder.current.values()) {
+                if (entry.key().startsWith(prefix) && (last == null || entry.key().compareTo(last) > 0)) {
+                    pending.put(entry.key(), ObjectSummary.builder()
+                            .key(entry.key())
+                            .size(entry.length() >= 0 ? entry.length() : entry.size())
+                            .eTag(entry.eTag())
+                            .lastModified(entry.lastModified())
+                            .contentType(entry.contentType())
+                            .build());
+                }
+            }
+        }
+
+        private ObjectPage page(boolean more) {
+            return ObjectPage.builder().objects(objects).nextCursor(more ? last : null).build();
+        }
+    }
+
+    @Override
+    public void close() {
+        deleter.shutdownNow();
+        super.close();
+    }
+
+    private Folder folder(String folder) {
+        return folders.get(folder, this::loadFolder);
+    }
+
+    private Folder reload(String folder) {
+        Folder cached = folders.getIfPresent(folder);
+        if (cached != null && !clock.instant().isBefore(cached.listedAt.plus(MIN_RELOAD_INTERVAL))) {
+            folders.asMap().remove(folder, cached);
+        }
+        return folder(folder);
+    }
+
+    private Folder loadFolder(String folder) {
+        List<Manifest> found = new ArrayList<>();
+        for (String key : listAll(folder + MANIFEST_DIRECTORY).keySet()) {
+            if (key.endsWith(MANIFEST_SUFFIX)) {
+                Manifest manifest = manifests.get(key, this::readManifest);
+                if (manifest != null) {
+                    found.add(manifest);
+                }
+            }
+        }
+        return new Folder(found, clock.instant());
+    }
+
+    /**
+     * @return the manifest, or null if it was deleted since it was listed
+     */
+    private Manifest readManifest(String key) {
+        try (InputStream content = delegate.download(key)) {
+            return fromJson(key, objectMapper.readTree(content));
+        } catch (StorageFileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            throw new StorageException("Unable to read batch manifest: " + key, e);
+        }
+    }
+
+    private Map<String, ObjectSummary> listAll(String prefix) {
+        Map<String, ObjectSummary> objects = new LinkedHashMap<>();
+        String cursor = null;
+        do {
+            ObjectPage page = delegate.list(prefix, cursor, MAX_DELETE_BATCH);
+            page.getObjects().forEach(object -> objects.put(object.getKey(), object));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return objects;
+    }
+
+    private void deleteInParallel(List<String> keys) {
+        List<CompletableFuture<Void>> deletes = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += MAX_DELETE_BATCH) {
+            deletes.add(deleteAsync(keys.subList(from, Math.min(from + MAX_DELETE_BATCH, keys.size()))));
+        }
+        join(deletes);
+    }
+
+    private CompletableFuture<Void> deleteAsync(List<String> keys) {
+        return CompletableFuture.runAsync(() -> delegate.delete(keys), deleter);
+    }
+
+    private static void join(List<CompletableFuture<Void>> deletes) {
+        try {
+            CompletableFuture.allOf(deletes.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static String folderOf(String key) {
+        return key.substring(0, key.lastIndexOf('/') + 1);
+    }
+
+    private static boolean isManifest(String key) {
+        return key.endsWith(MANIFEST_SUFFIX) && folderOf(key).endsWith("/" + MANIFEST_DIRECTORY);
+    }
+
+    // keys outside of the generation folders and the manifests are never staged
+    private static boolean isInternal(String key) {
+        return key.startsWith("_") || isManifest(key);
+    }
+
+    private byte[] toJson(Manifest manifest) {
+        ObjectNode node = objectMapper.createObjectNode()
+                .put("batch", manifest.batchId())
+                .put("committed", manifest.committedAt().toString());
+        ArrayNode files = node.putArray("files");
+        for (Entry entry : manifest.files()) {
+            files.addObject()
+                    .put("key", entry.key())
+                    .put("location", entry.location())
+                    .put("size", entry.size())
+                    .put("length", entry.length())
+                    .put("eTag", entry.eTag())
+                    .put("lastModified", entry.lastModified() != null ? entry.lastModified().toString() : null)
+                    .put("contentType", entry.contentType());
+        }
+        try {
+            return objectMapper.writeValueAsBytes(node);
+        } catch (IOException e) {
+            throw new StorageException("Unable to write batch manifest: " + manifest.key(), e);
+        }
+    }
+
+    private static Manifest fromJson(String key, JsonNode node) {
+        List<Entry> files = new ArrayList<>();
+        for (JsonNode file : node.path("files")) {
+            String lastModified = text(file, "lastModified");
+            files.add(new Entry(text(file, "key"), text(file, "location"), file.path("size").asLong(),
+                    file.path("length").asLong(-1), text(file, "eTag"), lastModified != null ? Instant.parse(lastModified) : null,
+                    text(file, "contentType")));
+        }
+        return new Manifest(key, text(node, "batch"), Instant.parse(text(node, "committed")), List.copyOf(files));
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    /**
+     * A file named by a manifest.
+     * @param key key the file is visible under
+     * @param location key the file is stored under
+     * @param size size of the stored object
+     * @param length length the file was uploaded with, -1 if not known, e.g. in manifests of earlier versions
+     */
+    private record Entry(String key, String location, long size, long length, String eTag, Instant lastModified,
+            String contentType) {
+    }
+
+    /**
+     * The files of a committed batch in one folder.
+     */
+    private record Manifest(String key, String batchId, Instant committedAt, List<Entry> files) {
+    }
+
+    /**
+     * The manifests of a folder, by batch id, and the current file of each key.
+     */
+    private static final class Folder {
+        private final List<Manifest> manifests;
+        private final Map<String, Entry> current = new HashMap<>();
+        private final Map<String, Manifest> currentManifest = new HashMap<>();
+        private final Instant listedAt;
+
+        private Folder(List<Manifest> manifests, Instant listedAt) {
+            this.manifests = manifests.stream().sorted(Comparator.comparing(Manifest::batchId)).toList();
+            this.listedAt = listedAt;
+            for (Manifest manifest : this.manifests) {
+                for (Entry entry : manifest.files()) {
+                    current.put(entry.key(), entry);
+                    currentManifest.put(entry.key(), manifest);
+                }
+            }
+        }
+
+        private boolean isCurrent(Manifest manifest, Entry entry) {
+            Manifest holder = currentManifest.get(entry.key());
+            return holder != null && holder.key().equals(manifest.key());
+        }
+
+        private Manifest manifest(String key) {
+            return manifests.stream().filter(manifest -> manifest.key().equals(key)).findFirst().orElse(null);
+        }
+    }
+}
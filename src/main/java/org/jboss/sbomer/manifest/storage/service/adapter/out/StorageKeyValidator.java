@@ -0,0 +1,39 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageKeyInvalidException;
+
+/**
+ * Key validation shared by all storage adapters, so that they reject the same keys.
+ */
+final class StorageKeyValidator {
+
+    private StorageKeyValidator() {}
+
+    /**
+     * Validates storage key is not null, empty, or contains path traversal.
+     * @param key storage key to validate
+     * @throws StorageKeyInvalidException if key is invalid
+     */
+    static void validate(String key) {
+        if (key == null || key.trim().isEmpty()) {
+            throw new StorageKeyInvalidException(key, "Key cannot be empty");
+        }
+        if (key.contains("..")) {
+            throw new StorageKeyInvalidException(key, "Path traversal not allowed");
+        }
+    }
+
+    /**
+     * Validates a listing prefix, which unlike a key may be empty to list all objects.
+     * @param prefix key prefix to validate
+     * @throws StorageKeyInvalidException if prefix is invalid
+     */
+    static void validatePrefix(String prefix) {
+        if (prefix == null) {
+            throw new StorageKeyInvalidException(null, "Prefix cannot be null");
+        }
+        if (prefix.contains("..")) {
+            throw new StorageKeyInvalidException(prefix, "Path traversal not allowed");
+        }
+    }
+}
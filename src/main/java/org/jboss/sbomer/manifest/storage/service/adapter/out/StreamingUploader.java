@@ -0,0 +1,184 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+
+/**
+ * Splits an InputStream into pooled part buffers and sends them to S3.
+ * Content that fits into a single part is sent with one PutObject, anything larger
+ * is sent as a multipart upload with a bounded number of parts in flight.
+ * Every part stays in its buffer until it has been acknowledged, so retries resend only that part.
+ * The S3 calls themselves are provided by the adapter through a {@link Transport}.
+ */
+@Slf4j
+class StreamingUploader {
+
+    /**
+     * S3 operations used by the uploader, bound to a single object key.
+     * Buffers passed in are only valid until the call (or the returned future) completes.
+     */
+    interface Transport {
+        void putObject(byte[] buffer, int length);
+
+        String createMultipartUpload();
+
+        CompletableFuture<CompletedPart> uploadPart(String uploadId, int partNumber, byte[] buffer, int length);
+
+        void completeMultipartUpload(String uploadId, List<CompletedPart> parts);
+
+        void abortMultipartUpload(String uploadId);
+    }
+
+    private final PartBufferPool bufferPool;
+    private final int maxPartsInFlight;
+
+    /**
+     * @param bufferPool pool providing the part buffers
+     * @param maxPartsInFlight parts of a single upload that may be sent concurrently
+     */
+    StreamingUploader(PartBufferPool bufferPool, int maxPartsInFlight) {
+        this.bufferPool = bufferPool;
+        this.maxPartsInFlight = maxPartsInFlight;
+    }
+
+    /**
+     * Reads the first part and decides between a single PutObject and a multipart upload.
+     * @param key object key, used for logging
+     * @param content content to upload, read until the end of the stream
+     * @param transport S3 operations bound to the key
+     * @return number of bytes uploaded
+     */
+    long upload(String key, InputStream content, Transport transport) throws IOException, InterruptedException {
+        byte[] buffer = bufferPool.acquire();
+        boolean multipart = false;
+        try {
+            int length = readPart(content, buffer, 0);
+            // Probe one byte past a full part to find out whether there is anything left
+            int next = length < buffer.length ? -1 : content.read();
+            if (next == -1) {
+                transport.putObject(buffer, length);
+                return length;
+            }
+            multipart = true;
+            return uploadMultipart(key, content, transport, buffer, length, next);
+        } finally {
+            // Ownership of the buffer is handed over to the multipart upload
+            if (!multipart) {
+                bufferPool.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Uploads the remaining content as a multipart upload. Takes ownership of the first buffer.
+     * @return number of bytes uploaded
+     */
+    private long uploadMultipart(String key, InputStream content, Transport transport, byte[] firstBuffer, int firstLength, int next)
+            throws IOException, InterruptedException {
+        String uploadId;
+        try {
+            uploadId = transport.createMultipartUpload();
+        } catch (RuntimeException e) {
+            bufferPool.release(firstBuffer);
+            throw e;
+        }
+        log.debug("Started multipart upload '{}' for: {}", uploadId, key);
+
+        Semaphore inFlight = new Semaphore(maxPartsInFlight);
+        CompletableFuture<Void> failure = new CompletableFuture<>();
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        long total = 0;
+        try {
+            inFlight.acquire();
+            parts.add(submitPart(transport, uploadId, 1, firstBuffer, firstLength, inFlight, failure));
+            total += firstLength;
+            while (next != -1 && !failure.isDone()) {
+                inFlight.acquire();
+                byte[] buffer;
+                try {
+                    buffer = bufferPool.acquire();
+                } catch (InterruptedException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                int length;
+                try {
+                    buffer[0] = (byte) next;
+                    length = 1 + readPart(content, buffer, 1);
+                    next = length < buffer.length ? -1 : content.read();
+                } catch (IOException e) {
+                    bufferPool.release(buffer);
+                    inFlight.release();
+                    throw e;
+                }
+                parts.add(submitPart(transport, uploadId, parts.size() + 1, buffer, length, inFlight, failure));
+                total += length;
+            }
+
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+            for (CompletableFuture<CompletedPart> part : parts) {
+                completedParts.add(part.join());
+            }
+            transport.completeMultipartUpload(uploadId, completedParts);
+            log.debug("Completed multipart upload '{}' for: {} ({} parts)", uploadId, key, completedParts.size());
+            return total;
+        } catch (CompletionException e) {
+            abortMultipart(key, uploadId, transport, parts);
+            throw unwrap(e);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            abortMultipart(key, uploadId, transport, parts);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<CompletedPart> submitPart(Transport transport, String uploadId, int partNumber, byte[] buffer, int length,
+            Semaphore inFlight, CompletableFuture<Void> failure) {
+        CompletableFuture<CompletedPart> part;
+        try {
+            part = transport.uploadPart(uploadId, partNumber, buffer, length);
+        } catch (RuntimeException e) {
+            part = CompletableFuture.failedFuture(e);
+        }
+        return part.whenComplete((completed, e) -> {
+            bufferPool.release(buffer);
+            inFlight.release();
+            if (e != null) {
+                failure.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Waits for parts still in flight so their buffers are returned, then aborts the upload
+     * so that S3 discards the parts already stored.
+     */
+    private void abortMultipart(String key, String uploadId, Transport transport, List<CompletableFuture<CompletedPart>> parts) {
+        try {
+            CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).handle((r, e) -> null).join();
+            transport.abortMultipartUpload(uploadId);
+            log.warn("Aborted multipart upload '{}' for: {}", uploadId, key);
+        } catch (Exception e) {
+            log.warn("Failed to abort multipart upload '{}' for: {}", uploadId, key, e);
+        }
+    }
+
+    /**
+     * Reads from the stream until the buffer is full or the stream ends.
+     * @return number of bytes read into the buffer starting at offset
+     */
+    private static int readPart(InputStream content, byte[] buffer, int offset) throws IOException {
+        return content.readNBytes(buffer, offset, buffer.length - offset);
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        return e.getCause() instanceof RuntimeException cause ? cause : e;
+    }
+}
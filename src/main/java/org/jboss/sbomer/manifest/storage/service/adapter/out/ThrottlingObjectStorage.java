@@ -0,0 +1,370 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageThrottledException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the request rate to the backend near what it can serve, installed directly around the backend
+ * so that every request it receives is paced.
+ * <p>
+ * Requests take a token from a bucket refilled at an adaptive rate: every success raises the rate additively
+ * by one request per second per second of full use, a throttling answer (429, 503 SlowDown) halves it, at
+ * most once per second so that one burst of rejections counts once. Requests failing because the backend is
+ * unavailable are retried with full-jitter exponential backoff until the retry deadline. Uploads are only
+ * retried while their content has not been read, parts of a started upload are retried by the S3 client.
+ * <p>
+ * Consecutive unavailability opens a circuit breaker, requests then fail right away until the open duration
+ * passed and a single probe succeeded.
+ */
+@Slf4j
+class ThrottlingObjectStorage extends ForwardingObjectStorage {
+
+    static final String METRIC_PREFIX = "sbomer.storage.throttling";
+
+    private static final Duration DECREASE_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * Limits of the rate, retries and circuit breaker.
+     */
+    @Getter
+    @Builder
+    static class Policy {
+        // requests per second
+        private final double initialRate;
+        private final double minRate;
+        private final double maxRate;
+        // time an operation may take including its retries and the wait for tokens
+        private final Duration retryDeadline;
+        private final Duration retryBaseDelay;
+        private final Duration retryMaxDelay;
+        // consecutive unavailable answers that open the circuit
+        private final int failureThreshold;
+        private final Duration openDuration;
+    }
+
+    /**
+     * States of the circuit breaker, the ordinal is exported as gauge.
+     */
+    enum CircuitState {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final Policy policy;
+    private final Clock clock;
+
+    // token bucket, guarded by this
+    private double rate;
+    private double tokens;
+    private long refilledAt;
+    private long decreasedAt;
+
+    // circuit breaker, guarded by this
+    private CircuitState state = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probing;
+
+    private final Counter retries;
+    private final Counter throttled;
+    private final Counter rejectedCircuitOpen;
+    private final Counter rejectedRateLimited;
+
+    /**
+     * @param delegate backend to pace
+     * @param policy limits of the rate, retries and circuit breaker
+     * @param registry registry to export the throttling metrics to
+     */
+    ThrottlingObjectStorage(ObjectStorage delegate, Policy policy, MeterRegistry registry) {
+        this(delegate, policy, registry, Clock.systemUTC());
+    }
+
+    /**
+     * Package-private constructor for testing.
+     */
+    ThrottlingObjectStorage(ObjectStorage delegate, Policy policy, MeterRegistry registry, Clock clock) {
+        super(delegate);
+        this.policy = policy;
+        this.clock = clock;
+        this.rate = policy.getInitialRate();
+        this.tokens = Math.max(1, rate);
+        this.refilledAt = System.nanoTime();
+        this.decreasedAt = refilledAt - DECREASE_INTERVAL.toNanos();
+
+        Gauge.builder(METRIC_PREFIX + ".rate", this, ThrottlingObjectStorage::getRate)
+                .description("Requests per second currently allowed to the storage backend")
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + ".circuit.state", this, storage -> storage.getCircuitState().ordinal())
+                .description("State of the storage circuit breaker: 0 closed, 1 half-open, 2 open")
+                .register(registry);
+        this.retries = Counter.builder(METRIC_PREFIX + ".retries")
+                .description("Storage requests retried after the backend was unavailable")
+                .register(registry);
+        this.throttled = Counter.builder(METRIC_PREFIX + ".throttled")
+                .description("Storage requests the backend asked to slow down")
+                .register(registry);
+        this.rejectedCircuitOpen = rejected(registry, "circuit_open");
+        this.rejectedRateLimited = rejected(registry, "rate_limited");
+    }
+
+    private static Counter rejected(MeterRegistry registry, String reason) {
+        return Counter.builder(METRIC_PREFIX + ".rejected")
+                .description("Storage requests failed without reaching the backend")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    @Override
+    public void upload(String key, InputStream content, UploadOptions options) {
+        UnreadInputStream unread = new UnreadInputStream(content);
+        call(() -> {
+            delegate.upload(key, unread, options);
+            return null;
+        }, unread::isUnread);
+    }
+
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
+        return call(() -> delegate.download(key, options), () -> true);
+    }
+
+    @Override
+    public StoredObject stat(String key) {
+        return call(() -> delegate.stat(key), () -> true);
+    }
+
+    @Override
+    public ObjectPage list(String prefix, String cursor, int limit) {
+        return call(() -> delegate.list(prefix, cursor, limit), () -> true);
+    }
+
+    /**
+     * Deletes in chunks of {@link #MAX_DELETE_BATCH} keys, so that every DeleteObjects request takes a token.
+     * Deletes are idempotent, so every chunk is retried.
+     */
+    @Override
+    public void delete(Collection<String> keys) {
+        List<String> remaining = List.copyOf(keys);
+        for (int from = 0; from < remaining.size(); from += MAX_DELETE_BATCH) {
+            List<String> batch = remaining.subList(from, Math.min(from + MAX_DELETE_BATCH, remaining.size()));
+            call(() -> {
+                delegate.delete(batch);
+                return null;
+            }, () -> true);
+        }
+    }
+
+    @Override
+    public PresignedUrl presignDownload(String key, DownloadOptions options, Duration validity) {
+        return call(() -> delegate.presignDownload(key, options, validity), () -> true);
+    }
+
+    synchronized double getRate() {
+        return rate;
+    }
+
+    synchronized CircuitState getCircuitState() {
+        return state;
+    }
+
+    private <T> T call(Supplier<T> operation, BooleanSupplier retryable) {
+        long deadline = System.nanoTime() + policy.getRetryDeadline().toNanos();
+        for (int attempt = 0;; attempt++) {
+            boolean probe = permit();
+            try {
+                acquireToken(deadline);
+            } catch (RuntimeException e) {
+                if (probe) {
+                    // the probe never reached the storage, the next request probes instead
+                    releaseProbe();
+                }
+                throw e;
+            }
+            try {
+                T result = operation.get();
+                onResponse(true);
+                return result;
+            } catch (StorageUnavailableException e) {
+                onUnavailable(e);
+                long delay = backoff(attempt);
+                if (!retryable.getAsBoolean() || System.nanoTime() + delay > deadline) {
+                    throw e;
+                }
+                log.debug("Storage unavailable, retrying in {} ms: {}", TimeUnit.NANOSECONDS.toMillis(delay), e.getMessage());
+                retries.increment();
+                sleep(delay, e);
+            } catch (RuntimeException e) {
+                // any other answer shows that the backend is up
+                onResponse(false);
+                throw e;
+            }
+        }
+    }
+
+    // full jitter: uniformly random up to the exponential delay
+    private long backoff(int attempt) {
+        long base = policy.getRetryBaseDelay().toNanos();
+        long max = policy.getRetryMaxDelay().toNanos();
+        long exponential = attempt >= 30 ? max : Math.min(max, base << attempt);
+        return ThreadLocalRandom.current().nextLong(exponential + 1);
+    }
+
+    /**
+     * @return whether the request is the probe of a half-open circuit
+     */
+    private synchronized boolean permit() {
+        if (state == CircuitState.OPEN) {
+            if (clock.millis() - openedAt < policy.getOpenDuration().toMillis()) {
+                rejectedCircuitOpen.increment();
+                throw new StorageUnavailableException("Storage circuit open, not sending requests", null);
+            }
+            state = CircuitState.HALF_OPEN;
+            probing = false;
+        }
+        if (state == CircuitState.HALF_OPEN) {
+            if (probing) {
+                rejectedCircuitOpen.increment();
+                throw new StorageUnavailableException("Storage circuit half-open, waiting for the probe", null);
+            }
+            probing = true;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void releaseProbe() {
+        probing = false;
+    }
+
+    private void acquireToken(long deadline) {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(Math.max(1, rate), tokens + (now - refilledAt) / 1e9 * rate);
+            refilledAt = now;
+            // reserve the token, waiters line up behind each other
+            tokens -= 1;
+            wait = tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+            if (wait > 0 && now + wait > deadline) {
+                tokens += 1;
+                rejectedRateLimited.increment();
+                throw new StorageThrottledException("Storage rate limit exceeded", null);
+            }
+        }
+        if (wait > 0) {
+            try {
+                sleep(wait, null);
+            } catch (StorageUnavailableException e) {
+                // interrupted, the request is not sent
+                synchronized (this) {
+                    tokens += 1;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private synchronized void onResponse(boolean success) {
+        consecutiveFailures = 0;
+        probing = false;
+        if (state != CircuitState.CLOSED) {
+            log.info("Storage responds again, closing circuit");
+            state = CircuitState.CLOSED;
+        }
+        if (success) {
+            // additive increase: one request per second more for every second at the current rate
+            rate = Math.min(policy.getMaxRate(), rate + 1 / rate);
+        }
+    }
+
+    private synchronized void onUnavailable(StorageUnavailableException e) {
+        if (e instanceof StorageThrottledException) {
+            throttled.increment();
+            long now = System.nanoTime();
+            if (now - decreasedAt >= DECREASE_INTERVAL.toNanos()) {
+                decreasedAt = now;
+                rate = Math.max(policy.getMinRate(), rate / 2);
+                log.info("Storage throttled, lowering request rate to {}/s", String.format("%.1f", rate));
+            }
+        }
+        probing = false;
+        if (state == CircuitState.HALF_OPEN || ++consecutiveFailures >= policy.getFailureThreshold()) {
+            if (state != CircuitState.OPEN) {
+                log.warn("Storage unavailable, opening circuit for {}: {}", policy.getOpenDuration(), e.getMessage());
+            }
+            state = CircuitState.OPEN;
+            openedAt = clock.millis();
+            consecutiveFailures = 0;
+        }
+    }
+
+    private static void sleep(long nanos, StorageUnavailableException cause) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            StorageUnavailableException interrupted = new StorageUnavailableException("Interrupted while waiting for storage", e);
+            if (cause != null) {
+                interrupted.addSuppressed(cause);
+            }
+            throw interrupted;
+        }
+    }
+
+    /**
+     * Tells whether the upload has started to read its content, only then it cannot be sent again.
+     */
+    private static final class UnreadInputStream extends FilterInputStream {
+        private volatile boolean unread = true;
+
+        private UnreadInputStream(InputStream in) {
+            super(in);
+        }
+
+        boolean isUnread() {
+            return unread;
+        }
+
+        @Override
+        public int read() throws IOException {
+            unread = false;
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            unread = false;
+            return super.read(buffer, offset, length);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            unread = false;
+            return super.skip(n);
+        }
+    }
+}
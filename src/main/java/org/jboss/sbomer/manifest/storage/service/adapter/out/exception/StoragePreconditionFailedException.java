@@ -0,0 +1,13 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out.exception;
+
+import static jakarta.ws.rs.core.Response.Status.PRECONDITION_FAILED;
+
+/**
+ * Thrown when a conditional request does not match the current state of the stored object.
+ * Maps to HTTP 412 Precondition Failed.
+ */
+public class StoragePreconditionFailedException extends StorageException {
+    public StoragePreconditionFailedException(String message, Throwable cause) {
+        super(message, cause, PRECONDITION_FAILED);
+    }
+}
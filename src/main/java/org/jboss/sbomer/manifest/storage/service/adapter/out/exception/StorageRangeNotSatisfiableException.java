@@ -0,0 +1,13 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out.exception;
+
+import static jakarta.ws.rs.core.Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE;
+
+/**
+ * Thrown when a requested byte range lies outside of the stored object.
+ * Maps to HTTP 416 Range Not Satisfiable.
+ */
+public class StorageRangeNotSatisfiableException extends StorageException {
+    public StorageRangeNotSatisfiableException(String message, Throwable cause) {
+        super(message, cause, REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+}
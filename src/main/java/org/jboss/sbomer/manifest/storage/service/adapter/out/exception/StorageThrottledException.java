@@ -0,0 +1,12 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out.exception;
+
+/**
+ * Thrown when the storage service asks the client to slow down (HTTP 429 or 503 SlowDown).
+ * The storage is reachable, requests succeed again at a lower rate.
+ * Maps to HTTP 503 Service Unavailable.
+ */
+public class StorageThrottledException extends StorageUnavailableException {
+    public StorageThrottledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,13 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out.exception;
+
+import static jakarta.ws.rs.core.Response.Status.NOT_IMPLEMENTED;
+
+/**
+ * Thrown when the configured storage backend does not offer an operation.
+ * Maps to HTTP 501 Not Implemented.
+ */
+public class StorageUnsupportedException extends StorageException {
+    public StorageUnsupportedException(String message, Throwable cause) {
+        super(message, cause, NOT_IMPLEMENTED);
+    }
+}
@@ -0,0 +1,13 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out.exception;
+
+import static jakarta.ws.rs.core.Response.Status.CONFLICT;
+
+/**
+ * Thrown when the parts received by the storage do not match the size or part checksums declared for an upload.
+ * Maps to HTTP 409 Conflict.
+ */
+public class StorageUploadMismatchException extends StorageException {
+    public StorageUploadMismatchException(String message, Throwable cause) {
+        super(message, cause, CONFLICT);
+    }
+}
@@ -0,0 +1,83 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * A single byte range of a stored object, positions are inclusive.
+ * Either bounded ({@code first-last}), open-ended ({@code first-}) or a suffix ({@code -length}).
+ */
+@Getter
+@EqualsAndHashCode
+public class ByteRange {
+    private final Long first;
+    private final Long last;
+    private final Long suffixLength;
+
+    private ByteRange(Long first, Long last, Long suffixLength) {
+        this.first = first;
+        this.last = last;
+        this.suffixLength = suffixLength;
+    }
+
+    /**
+     * Range from first to last byte position, both inclusive.
+     */
+    public static ByteRange of(long first, long last) {
+        return new ByteRange(first, last, null);
+    }
+
+    /**
+     * Range from first byte position to the end of the object.
+     */
+    public static ByteRange from(long first) {
+        return new ByteRange(first, null, null);
+    }
+
+    /**
+     * The last {@code length} bytes of the object.
+     */
+    public static ByteRange suffix(long length) {
+        return new ByteRange(null, null, length);
+    }
+
+    /**
+     * Resolves this range against the size of an object.
+     * @param totalLength size of the object in bytes
+     * @return the absolute range, or null if the range cannot be satisfied
+     */
+    public ByteRange resolve(long totalLength) {
+        if (suffixLength != null) {
+            if (suffixLength == 0 || totalLength == 0) {
+                return null;
+            }
+            return of(Math.max(0, totalLength - suffixLength), totalLength - 1);
+        }
+        if (first >= totalLength) {
+            return null;
+        }
+        return of(first, last == null ? totalLength - 1 : Math.min(last, totalLength - 1));
+    }
+
+    /**
+     * @return the number of bytes in an absolute range
+     */
+    public long length() {
+        return last - first + 1;
+    }
+
+    /**
+     * @return the range formatted as a HTTP Range header value, e.g. {@code bytes=0-99}
+     */
+    public String toHeaderValue() {
+        if (suffixLength != null) {
+            return "bytes=-" + suffixLength;
+        }
+        return "bytes=" + first + "-" + (last == null ? "" : last);
+    }
+
+    @Override
+    public String toString() {
+        return toHeaderValue();
+    }
+}
@@ -0,0 +1,20 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * A file of an {@link UploadSession} whose parts the client has sent, to be checked and completed.
+ */
+@Getter
+@Builder
+public class CompletedUpload {
+    private String filename;
+    private String uploadId;
+    // declared size of the file, the sizes of the received parts have to add up to it
+    private long size;
+    // ETags the storage answered the part uploads with, part number i + 1 at index i
+    private List<String> partETags;
+}
@@ -0,0 +1,35 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+/**
+ * The identifiers under which the components of stored SBOMs are indexed and searched.
+ * <p>
+ * A component is known by its package URL without qualifiers and subpath, so that e.g. the jar and the
+ * sources of a Maven artifact are the same component, and by its name and version.
+ */
+public final class ComponentIds {
+
+    private ComponentIds() {}
+
+    /**
+     * Returns the package URL without its qualifiers ({@code ?type=jar}) and subpath ({@code #path}).
+     */
+    public static String ofPurl(String purl) {
+        int end = purl.length();
+        int qualifiers = purl.indexOf('?');
+        int subpath = purl.indexOf('#');
+        if (qualifiers >= 0) {
+            end = qualifiers;
+        }
+        if (subpath >= 0 && subpath < end) {
+            end = subpath;
+        }
+        return purl.substring(0, end);
+    }
+
+    /**
+     * Returns {@code name@version}, or only the name of a component without version.
+     */
+    public static String ofName(String name, String version) {
+        return version == null || version.isEmpty() ? name : name + "@" + version;
+    }
+}
@@ -0,0 +1,44 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import java.time.Instant;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Optional parts of a download: a byte range and the preconditions it is subject to.
+ * The if-none-match and if-modified-since conditions do not fail, they make the storage
+ * answer with a {@link StoredObject#isNotModified() not modified} object without content.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class DownloadOptions {
+    private static final DownloadOptions NONE = DownloadOptions.builder().build();
+
+    // only these bytes are returned when set
+    private ByteRange range;
+    // fails with a precondition error unless the object has this ETag
+    private String ifMatch;
+    // fails with a precondition error if the object was modified after this time
+    private Instant ifUnmodifiedSince;
+    // no content is returned if the object still has this ETag
+    private String ifNoneMatch;
+    // no content is returned unless the object was modified after this time
+    private Instant ifModifiedSince;
+    // Accept-Encoding of the client, stored encodings it does not accept are decoded; null accepts none
+    private String acceptEncoding;
+
+    /**
+     * @return options for a plain, unconditional download of the whole object
+     */
+    public static DownloadOptions none() {
+        return NONE;
+    }
+
+    /**
+     * @return true if the whole object is requested without any condition, the accepted encodings do not matter
+     */
+    public boolean isPlain() {
+        return range == null && ifMatch == null && ifUnmodifiedSince == null && ifNoneMatch == null && ifModifiedSince == null;
+    }
+}
@@ -0,0 +1,21 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import java.time.Instant;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * A generation the retention policy no longer keeps.
+ */
+@Getter
+@Builder
+public class ExpiredGeneration {
+    private String generationId;
+    // root component named by the summary of the generation's files
+    private String product;
+    // the time its latest file was stored
+    private Instant lastModified;
+    private long objects;
+    private long bytes;
+}
@@ -0,0 +1,17 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * One page of a listing, in key order.
+ */
+@Getter
+@Builder
+public class ObjectPage {
+    private List<ObjectSummary> objects;
+    // cursor of the next page, null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,21 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import java.time.Instant;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * A listed object, without its content.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class ObjectSummary {
+    private String key;
+    // size of the stored object in bytes
+    private long size;
+    private String eTag;
+    private Instant lastModified;
+    // null when the listing does not know it
+    private String contentType;
+}
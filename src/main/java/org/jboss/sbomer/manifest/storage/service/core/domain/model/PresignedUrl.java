@@ -0,0 +1,20 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import java.net.URI;
+import java.time.Instant;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * A short-lived URL at which a stored object can be fetched directly from the storage, without this service.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class PresignedUrl {
+    private URI url;
+    // the URL is rejected by the storage after this time
+    private Instant expiresAt;
+    // encoding of the bytes served at the URL, null if they are not encoded
+    private String contentEncoding;
+}
@@ -0,0 +1,27 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import java.time.Instant;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The generations the retention policy keeps, by the reason that keeps them, and those it deletes.
+ */
+@Getter
+@Builder
+public class RetentionReport {
+    private Instant evaluatedAt;
+    // generations and their files found in the storage
+    private long generations;
+    private long objects;
+    // kept generations by the first rule keeping them
+    private long keptPinned;
+    private long keptRecent;
+    private long keptLatest;
+    // kept as no summary names the product they belong to
+    private long keptUnidentified;
+    // oldest first
+    private List<ExpiredGeneration> expired;
+}
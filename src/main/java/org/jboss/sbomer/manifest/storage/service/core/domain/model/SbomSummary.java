@@ -0,0 +1,33 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The key facts of a stored SBOM, extracted while it was uploaded.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class SbomSummary {
+    // "CycloneDX" or "SPDX"
+    private String format;
+    // version of the format's specification, e.g. "1.6" or "2.3"
+    private String specVersion;
+    // CycloneDX serial number or SPDX document namespace, null if the document has none
+    private String serialNumber;
+    // CycloneDX components, nested ones included, or SPDX packages
+    private long componentCount;
+    // the component the SBOM describes, null fields if the document does not name one
+    private String rootName;
+    private String rootVersion;
+    private String rootPurl;
+    // hashes of the root component by algorithm, e.g. "SHA-256"
+    @Builder.Default
+    private Map<String, String> rootHashes = Map.of();
+    // SHA-256 of the uploaded bytes, hex encoded
+    private String sha256;
+    // size of the uploaded bytes
+    private long size;
+}
@@ -0,0 +1,49 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Content of a stored object together with what the storage knows about it.
+ * When a range was requested, the content holds only the bytes rangeStart to rangeEnd.
+ * When the conditions of the download showed that the caller's copy is current, the object is
+ * {@link #isNotModified() not modified} and carries only its validators, no content.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class StoredObject {
+    // caller must close it, null when not modified
+    private InputStream content;
+    // number of bytes in content, -1 when unknown
+    private long contentLength;
+    private String contentType;
+    // encoding of the content, e.g. "zstd", null for the raw bytes
+    private String contentEncoding;
+    private String eTag;
+    private Instant lastModified;
+    // inclusive positions of the returned bytes, null when the whole object is returned
+    private Long rangeStart;
+    private Long rangeEnd;
+    // size of the whole object
+    private long totalLength;
+    // user metadata stored with the object
+    @Builder.Default
+    private Map<String, String> metadata = Map.of();
+    // the caller's copy matches, content is not transferred
+    private boolean notModified;
+    // local copy of the whole object when the content is read from disk, lets it be sent without copying;
+    // the content stream is then only opened when read and need not be closed otherwise
+    private Path file;
+
+    /**
+     * @return true if the content is only a range of the object
+     */
+    public boolean isPartial() {
+        return rangeStart != null;
+    }
+}
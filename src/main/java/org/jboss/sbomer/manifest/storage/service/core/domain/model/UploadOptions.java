@@ -0,0 +1,23 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Describes the content of an upload and the metadata stored with it.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class UploadOptions {
+    // size of the content in bytes, -1 when unknown
+    @Builder.Default
+    private long contentLength = -1;
+    private String contentType;
+    // encoding applied to the content, e.g. "zstd", null for the raw bytes
+    private String contentEncoding;
+    // user metadata stored with the object, names are lower case
+    @Builder.Default
+    private Map<String, String> metadata = Map.of();
+}
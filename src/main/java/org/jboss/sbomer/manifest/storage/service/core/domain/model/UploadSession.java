@@ -0,0 +1,18 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import java.time.Instant;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Uploads started for files that the client sends directly to the storage, part by part.
+ */
+@Getter
+@Builder
+public class UploadSession {
+    // the part URLs are rejected after this time and uploads not finalized by then are aborted
+    private Instant expiresAt;
+    private List<UploadTarget> files;
+}
@@ -0,0 +1,21 @@
+package org.jboss.sbomer.manifest.storage.service.core.domain.model;
+
+import java.net.URI;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Where the parts of one file of an {@link UploadSession} are sent to.
+ */
+@Getter
+@Builder
+public class UploadTarget {
+    private String filename;
+    private String uploadId;
+    // size of every part but the last one, which holds the rest
+    private long partSize;
+    // presigned URL of part number i + 1 at index i, the parts are sent with PUT
+    private List<URI> partUrls;
+}
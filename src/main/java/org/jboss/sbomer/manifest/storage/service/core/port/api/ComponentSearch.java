@@ -0,0 +1,27 @@
+package org.jboss.sbomer.manifest.storage.service.core.port.api;
+
+import java.util.SortedSet;
+
+/**
+ * Finds the stored SBOMs that list a component, by its package URL or by its name and version.
+ */
+public interface ComponentSearch {
+
+    /**
+     * Returns the storage keys of the SBOMs listing the package URL, qualifiers and subpath ignored.
+     * @param prefix also match the package URLs starting with it, e.g. all versions of {@code pkg:maven/g/a@}
+     */
+    SortedSet<String> findByPurl(String purl, boolean prefix);
+
+    /**
+     * Returns the storage keys of the SBOMs listing a component of the name and version.
+     * @param version null for any version
+     */
+    SortedSet<String> findByName(String name, String version);
+
+    /**
+     * Starts to rebuild the index from the files in the storage, in the background.
+     * @return false if a rebuild is running already
+     */
+    boolean rebuildIndex();
+}
@@ -0,0 +1,39 @@
+package org.jboss.sbomer.manifest.storage.service.core.port.api;
+
+import java.util.SortedSet;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.RetentionReport;
+
+/**
+ * Deletes the generations that the retention policy no longer keeps, and pins generations to keep them.
+ */
+public interface RetentionAdministration {
+
+    /**
+     * Starts evaluating the retention policy against the storage without deleting anything, in the background.
+     * @return false if an evaluation or a pass is running already
+     */
+    boolean startReport();
+
+    /**
+     * @return the report of the latest evaluation, by a report or a pass, null if there was none yet
+     */
+    RetentionReport lastReport();
+
+    /**
+     * Starts a retention pass deleting the expired generations, in the background.
+     * @return false if a pass is running already
+     * @throws org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnsupportedException if
+     *         deduplication is enabled
+     */
+    boolean runRetention();
+
+    /**
+     * Keeps a generation regardless of the retention policy until it is unpinned, on all instances.
+     */
+    void pin(String generationId);
+
+    void unpin(String generationId);
+
+    SortedSet<String> pins();
+}
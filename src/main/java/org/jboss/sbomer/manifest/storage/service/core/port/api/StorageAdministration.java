@@ -1,10 +1,17 @@
 package org.jboss.sbomer.manifest.storage.service.core.port.api;
 
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
 import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomFile;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
 
 public interface StorageAdministration {
 
@@ -20,5 +27,60 @@ public interface StorageAdministration {
      */
     Map<String, String> storeEnhancementSboms(String generationId, String enhancementId, List<SbomFile> files);
 
+    /**
+     * Stores files at the root of the generation folder one after the other, as the iterator yields them.
+     * The content of a file may only be readable until the next one is requested, and sizes may be unknown (-1).
+     * Path: {generationId}/{filename}
+     */
+    Map<String, String> streamGenerationSboms(String generationId, Iterator<SbomFile> files);
+
+    /**
+     * Stores files of an enhancement one after the other, as the iterator yields them.
+     * Path: {generationId}/{enhancementId}/{filename}
+     */
+    Map<String, String> streamEnhancementSboms(String generationId, String enhancementId, Iterator<SbomFile> files);
+
     InputStream getFileContent(String storageKey);
+
+    /**
+     * Returns the summary extracted from a stored SBOM when it was uploaded.
+     * @return the summary, null if the file was not summarized or does not exist
+     */
+    SbomSummary getSummary(String storageKey);
+
+    /**
+     * Returns a stored file, or a range of it, together with its metadata.
+     */
+    StoredObject getFile(String storageKey, DownloadOptions options);
+
+    /**
+     * Returns a short-lived URL at which the client can fetch a stored file directly from the storage,
+     * or null if the file has to be downloaded through this service.
+     * @param options carry the client's accept-encoding, stored encodings it does not accept are not redirected
+     * @param validity time the URL is valid for, a cached URL may have less of it left
+     */
+    PresignedUrl getDownloadUrl(String storageKey, DownloadOptions options, Duration validity);
+
+    /**
+     * Lists the files at the root of the generation folder, in key order.
+     * Served from an in-memory index of the generation's keys.
+     * @param cursor next cursor of the previous page, or null for the first page
+     * @param limit maximum number of files on the page
+     */
+    ObjectPage listGenerationFiles(String generationId, String cursor, int limit);
+
+    /**
+     * Lists the files of an enhancement of the generation, in key order.
+     * Served from an in-memory index of the generation's keys.
+     * @param cursor next cursor of the previous page, or null for the first page
+     * @param limit maximum number of files on the page
+     */
+    ObjectPage listEnhancementFiles(String generationId, String enhancementId, String cursor, int limit);
+
+    /**
+     * Lists the stored files whose keys start with a prefix, in key order, directly from the storage.
+     * @param cursor next cursor of the previous page, or null for the first page
+     * @param limit maximum number of files on the page
+     */
+    ObjectPage listFiles(String prefix, String cursor, int limit);
 }
@@ -0,0 +1,41 @@
+package org.jboss.sbomer.manifest.storage.service.core.port.api;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.CompletedUpload;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomFile;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadSession;
+
+/**
+ * Uploads of files that clients send directly to the storage: a session hands out presigned part URLs,
+ * finalizing it checks the received parts and stores the files like an upload through this service.
+ */
+public interface UploadSessionAdministration {
+
+    /**
+     * Starts uploads of files at the root of the generation folder.
+     * @param files names, sizes and content types of the files, without content
+     */
+    UploadSession startGenerationUploadSession(String generationId, List<SbomFile> files);
+
+    /**
+     * Starts uploads of files nested under the generation in an enhancement folder.
+     * @param files names, sizes and content types of the files, without content
+     */
+    UploadSession startEnhancementUploadSession(String generationId, String enhancementId, List<SbomFile> files);
+
+    /**
+     * Checks and completes the uploads of a generation session. Nothing is completed if any upload
+     * does not match its declared size and part ETags.
+     * @return map of filename to permanent URL
+     */
+    Map<String, String> finalizeGenerationUploadSession(String generationId, List<CompletedUpload> uploads);
+
+    /**
+     * Checks and completes the uploads of an enhancement session. Nothing is completed if any upload
+     * does not match its declared size and part ETags.
+     * @return map of filename to permanent URL
+     */
+    Map<String, String> finalizeEnhancementUploadSession(String generationId, String enhancementId, List<CompletedUpload> uploads);
+}
@@ -0,0 +1,48 @@
+package org.jboss.sbomer.manifest.storage.service.core.port.spi;
+
+import java.util.Collection;
+import java.util.SortedSet;
+
+/**
+ * Inverted index from the components of stored SBOMs, by their
+ * {@link org.jboss.sbomer.manifest.storage.service.core.domain.model.ComponentIds}, to the storage keys of
+ * the files that list them.
+ */
+public interface ComponentIndex {
+
+    /**
+     * Adds the components of a stored file.
+     */
+    void add(String storageKey, Collection<String> components);
+
+    /**
+     * Removes deleted files, they are no longer found.
+     */
+    void remove(Collection<String> storageKeys);
+
+    /**
+     * Returns the storage keys of the files listing the component, or with prefix any component whose
+     * identifier starts with it, in key order.
+     */
+    SortedSet<String> find(String component, boolean prefix);
+
+    /**
+     * Starts to build the index anew. Files added to the rebuild replace the current contents once it is
+     * committed, files added to the index meanwhile are kept. Until then, the current contents are searched.
+     */
+    Rebuild startRebuild();
+
+    interface Rebuild {
+        /**
+         * Adds the components of a stored file, may be called from several threads.
+         */
+        void add(String storageKey, Collection<String> components);
+
+        void commit();
+
+        /**
+         * Drops what was added, the current contents stay.
+         */
+        void abort();
+    }
+}
@@ -0,0 +1,47 @@
+package org.jboss.sbomer.manifest.storage.service.core.port.spi;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Multipart uploads whose parts clients send directly to the storage with presigned URLs.
+ * The content does not pass through this service, so the {@link ObjectStorage} decorators do not apply to it.
+ */
+public interface MultipartUploadStorage {
+
+    /**
+     * Starts a multipart upload of an object.
+     * @return the id of the upload
+     */
+    String startUpload(String key, String contentType);
+
+    /**
+     * Returns the presigned URLs of the parts 1 to partCount of an upload, in part order.
+     */
+    List<URI> presignParts(String key, String uploadId, int partCount, Duration validity);
+
+    /**
+     * Checks the parts received for an upload against the declared size and the ETags the client got for them.
+     * Fails with a mismatch error if a part is missing or differs, and with a not found error if there is no
+     * such upload of the key.
+     */
+    void verifyUpload(String key, String uploadId, long size, List<String> partETags);
+
+    /**
+     * Completes an upload from its parts, the object becomes visible under the key.
+     */
+    void completeUpload(String key, String uploadId, List<String> partETags);
+
+    /**
+     * Aborts an upload and drops the parts received for it.
+     */
+    void abortUpload(String key, String uploadId);
+
+    /**
+     * Aborts all uploads started before the time, also those started by other instances.
+     * @return the number of aborted uploads
+     */
+    int abortUploadsStartedBefore(Instant time);
+}
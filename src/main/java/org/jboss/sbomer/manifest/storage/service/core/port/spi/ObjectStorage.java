@@ -1,12 +1,73 @@
 package org.jboss.sbomer.manifest.storage.service.core.port.spi;
 
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.Collection;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
 
 public interface ObjectStorage {
-    void upload(String key, InputStream content, long contentLength, String contentType);
-    
+
+    // keys S3 accepts in a single DeleteObjects request
+    int MAX_DELETE_BATCH = 1000;
+
+    default void upload(String key, InputStream content, long contentLength, String contentType) {
+        upload(key, content, UploadOptions.builder().contentLength(contentLength).contentType(contentType).build());
+    }
+
+    /**
+     * Stores the content, read until the end of the stream, with the encoding and metadata of the options.
+     */
+    void upload(String key, InputStream content, UploadOptions options);
+
     /**
      * Returns the raw stream from the storage provider.
      */
-    InputStream download(String key);
-}
\ No newline at end of file
+    default InputStream download(String key) {
+        return download(key, DownloadOptions.none()).getContent();
+    }
+
+    /**
+     * Returns the object, or the requested range of it, together with its metadata.
+     * Fails with a precondition error if the object does not match the options' preconditions,
+     * and with a range error if the range lies outside of the object.
+     * Returns a not modified object without content if the if-none-match or if-modified-since
+     * condition shows that the caller's copy is current.
+     */
+    StoredObject download(String key, DownloadOptions options);
+
+    /**
+     * Returns the metadata of an object without its content.
+     * Fails with a not found error if there is no object under the key.
+     */
+    StoredObject stat(String key);
+
+    /**
+     * Lists the objects whose keys start with the prefix, in key order. Pages hold at most {@code limit}
+     * objects and their cursor is the last key listed, the next page starts after it.
+     * @param prefix key prefix, e.g. "{generationId}/", empty to list all objects
+     * @param cursor last key of the previous page, null for the first page
+     * @param limit maximum number of objects in the page
+     */
+    ObjectPage list(String prefix, String cursor, int limit);
+
+    /**
+     * Deletes the objects under the keys, keys without an object are skipped.
+     * Storages that delete several objects per request send at most {@link #MAX_DELETE_BATCH} keys at a time.
+     * Fails with a storage error if some of the objects could not be deleted, the others may be gone already.
+     */
+    void delete(Collection<String> keys);
+
+    /**
+     * Returns a URL at which clients can fetch the object directly for the given time, or null if the storage
+     * does not offer such URLs or cannot serve the object as the options' accept-encoding asks for.
+     * Fails with a not found error if there is no object under the key.
+     */
+    default PresignedUrl presignDownload(String key, DownloadOptions options, Duration validity) {
+        return null;
+    }
+}
@@ -0,0 +1,39 @@
+package org.jboss.sbomer.manifest.storage.service.core.port.spi;
+
+import java.util.Set;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ComponentIds;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+
+/**
+ * Extracts the summary of an SBOM from its bytes while they are uploaded, so it is not read a second time.
+ */
+public interface SbomInspector {
+
+    /**
+     * Starts the inspection of a file.
+     * @return the inspection to pass the bytes of the file to, null if files of this name and type are not inspected
+     */
+    Inspection inspect(String filename, String contentType);
+
+    interface Inspection {
+        /**
+         * Passes the next bytes of the file. The bytes are not retained after the call returns.
+         */
+        void update(byte[] bytes, int offset, int length);
+
+        /**
+         * Ends the inspection after the last bytes were passed.
+         * @return the summary, null if the file is no SBOM the inspector recognizes
+         */
+        SbomSummary finish();
+
+        /**
+         * Returns the components the file lists, by their {@link ComponentIds}, once {@link #finish()}
+         * returned a summary.
+         */
+        default Set<String> components() {
+            return Set.of();
+        }
+    }
+}
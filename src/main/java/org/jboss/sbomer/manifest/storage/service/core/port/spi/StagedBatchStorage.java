@@ -0,0 +1,58 @@
+package org.jboss.sbomer.manifest.storage.service.core.port.spi;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+
+/**
+ * Batches of files that become visible together. The files of a batch are uploaded through the
+ * {@link ObjectStorage} under their staging keys, where reads and listings of their own keys do not see them,
+ * and are made visible under their own keys by a single manifest write when the batch is committed.
+ * A batch that is not committed is discarded, by the uploader or later by a sweeper.
+ */
+public interface StagedBatchStorage {
+
+    /**
+     * Starts a batch.
+     * @return the id of the batch, ids of later batches sort after it
+     */
+    String begin();
+
+    /**
+     * @return the key the file of a batch that is to become visible under the key is uploaded to
+     */
+    String stagingKey(String batchId, String key);
+
+    /**
+     * Makes the staged files of a batch visible under their keys, replacing earlier versions of them.
+     * @param files the staged files, with the key they become visible under, their size and content type
+     */
+    void commit(String batchId, List<ObjectSummary> files);
+
+    /**
+     * Records files uploaded directly under their keys, e.g. by upload sessions, as their current version,
+     * so that they replace files of earlier batches with the same keys.
+     */
+    void commitInPlace(List<ObjectSummary> files);
+
+    /**
+     * Deletes the staged files of a batch that is not committed.
+     */
+    void discard(String batchId);
+
+    /**
+     * Deletes the staged files of batches started between the times that were never committed, also those
+     * of other instances.
+     * @return the number of deleted files
+     */
+    int discardAbandoned(Instant startedAfter, Instant startedBefore);
+
+    /**
+     * Returns the keys of the objects holding the files visible under a folder and the folders below it,
+     * for deleting them. The staged files of committed batches are included, and the manifests naming them
+     * come last, so that deleting the keys in order never leaves a staged file behind.
+     * @param prefix prefix ending at a folder, e.g. "{generationId}/"
+     */
+    List<String> storedKeys(String prefix);
+}
@@ -0,0 +1,17 @@
+package org.jboss.sbomer.manifest.storage.service.core.port.spi;
+
+import java.util.Map;
+
+/**
+ * Lets other components know about stored manifests.
+ */
+public interface StoredManifestsNotifier {
+    /**
+     * Records that a batch of manifests was stored. Once it returns, the notification is sure to be delivered,
+     * possibly later and possibly more than once.
+     * @param generationId The generation the manifests belong to.
+     * @param enhancementId The enhancement the manifests belong to, null for the manifests of the generation.
+     * @param urls The permanent URL of each stored file, by filename.
+     */
+    void manifestsStored(String generationId, String enhancementId, Map<String, String> urls);
+}
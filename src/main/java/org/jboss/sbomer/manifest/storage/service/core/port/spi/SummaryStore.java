@@ -0,0 +1,23 @@
+package org.jboss.sbomer.manifest.storage.service.core.port.spi;
+
+import java.util.Collection;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+
+/**
+ * Keeps the summaries of stored SBOMs next to them.
+ */
+public interface SummaryStore {
+
+    void save(String storageKey, SbomSummary summary);
+
+    /**
+     * @return the summary of the file, null if there is none
+     */
+    SbomSummary find(String storageKey);
+
+    /**
+     * Deletes the summaries of files, files without summary are skipped.
+     */
+    void delete(Collection<String> storageKeys);
+}
@@ -0,0 +1,218 @@
+package org.jboss.sbomer.manifest.storage.service.core.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ComponentIds;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.port.api.ComponentSearch;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ComponentIndex;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.SbomInspector;
+
+import io.opentelemetry.instrumentation.annotations.SpanAttribute;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Searches the component index, which {@link StorageService} feeds with the components of uploaded SBOMs.
+ * <p>
+ * A rebuild lists the whole storage and inspects every file again, {@code rebuild.concurrency} files at a
+ * time, so that files stored through other instances or before the index was enabled are found too. Objects
+ * under keys starting with an underscore, like the summaries, are not SBOMs and are skipped.
+ */
+@ApplicationScoped
+@Slf4j
+public class ComponentIndexService implements ComponentSearch {
+
+    static final int LIST_PAGE_SIZE = 1000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Inject
+    ComponentIndex componentIndex;
+
+    @Inject
+    ObjectStorage objectStorage;
+
+    @Inject
+    SbomInspector sbomInspector;
+
+    // files read concurrently by a rebuild
+    @ConfigProperty(name = "sbomer.storage.component-index.rebuild.concurrency")
+    int rebuildConcurrency;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private ExecutorService rebuildExecutor;
+
+    /**
+     * Default constructor for CDI.
+     */
+    public ComponentIndexService() {}
+
+    /**
+     * Package-private constructor for testing.
+     */
+    ComponentIndexService(ComponentIndex componentIndex, ObjectStorage objectStorage, SbomInspector sbomInspector,
+            int rebuildConcurrency) {
+        this.componentIndex = componentIndex;
+        this.objectStorage = objectStorage;
+        this.sbomInspector = sbomInspector;
+        this.rebuildConcurrency = rebuildConcurrency;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "component-index-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    @WithSpan
+    @Override
+    public SortedSet<String> findByPurl(@SpanAttribute("component.purl") String purl, boolean prefix) {
+        return componentIndex.find(ComponentIds.ofPurl(purl), prefix);
+    }
+
+    @WithSpan
+    @Override
+    public SortedSet<String> findByName(@SpanAttribute("component.name") String name,
+            @SpanAttribute("component.version") String version) {
+        if (version != null) {
+            return componentIndex.find(ComponentIds.ofName(name, version), false);
+        }
+        // components without version are indexed by their name alone
+        SortedSet<String> keys = componentIndex.find(name + "@", true);
+        keys.addAll(componentIndex.find(name, false));
+        return keys;
+    }
+
+    @Override
+    public boolean rebuildIndex() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildExecutor.execute(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("Rebuilding the component index failed", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Rebuilds the index from all files in the storage. A file that cannot be read is left out, a failed
+     * listing leaves the index as it was.
+     * @return the number of files indexed
+     */
+    long rebuild() {
+        log.info("Rebuilding the component index from the storage, reading {} files at a time", rebuildConcurrency);
+        long start = System.nanoTime();
+        ComponentIndex.Rebuild rebuild = componentIndex.startRebuild();
+        ExecutorService readers = Executors.newFixedThreadPool(rebuildConcurrency, r -> {
+            Thread thread = new Thread(r, "component-index-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // bounds the listed files waiting to be read
+        Semaphore pending = new Semaphore(rebuildConcurrency * 2);
+        AtomicLong indexed = new AtomicLong();
+        AtomicInteger failed = new AtomicInteger();
+        try {
+            String cursor = null;
+            do {
+                ObjectPage page = objectStorage.list("", cursor, LIST_PAGE_SIZE);
+                for (ObjectSummary object : page.getObjects()) {
+                    if (object.getKey().startsWith("_")) {
+                        continue;
+                    }
+                    pending.acquire();
+                    readers.execute(() -> {
+                        try {
+                            if (index(rebuild, object)) {
+                                indexed.incrementAndGet();
+                            }
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                            log.warn("Unable to index {}: {}", object.getKey(), e.getMessage());
+                        } finally {
+                            pending.release();
+                        }
+                    });
+                }
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            readers.shutdown();
+            if (!readers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                throw new IllegalStateException("Component index readers did not terminate");
+            }
+            rebuild.commit();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rebuild.abort();
+            throw new RuntimeException("Interrupted while rebuilding the component index", e);
+        } catch (RuntimeException e) {
+            rebuild.abort();
+            throw e;
+        } finally {
+            readers.shutdownNow();
+        }
+        log.info("Rebuilt the component index from {} files in {} ms, {} files could not be read", indexed.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failed.get());
+        return indexed.get();
+    }
+
+    /**
+     * Reads a stored file through an inspection and adds its components to the rebuild.
+     * @return whether the file is an SBOM the inspector recognizes
+     */
+    private boolean index(ComponentIndex.Rebuild rebuild, ObjectSummary object) {
+        String key = object.getKey();
+        SbomInspector.Inspection inspection = sbomInspector.inspect(key.substring(key.lastIndexOf('/') + 1),
+                object.getContentType());
+        if (inspection == null) {
+            return false;
+        }
+        try (InputStream content = objectStorage.download(key)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = content.read(buffer)) >= 0) {
+                inspection.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + key, e);
+        }
+        if (inspection.finish() == null) {
+            return false;
+        }
+        rebuild.add(key, inspection.components());
+        return true;
+    }
+}
@@ -0,0 +1,198 @@
+package org.jboss.sbomer.manifest.storage.service.core.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of the stored keys, per generation, serving listings without a storage call per request.
+ * <p>
+ * The keys of a generation are held in a sorted map, so a page is a walk from the cursor. Uploads add their
+ * files as soon as they are stored. A generation is listed from the storage when it is first listed and
+ * again once its listing is older than {@code refreshAfter}, picking up files uploaded by other instances.
+ * A refresh keeps the size and content type of known files whose ETag did not change and takes those of the
+ * others from the listing, which for files of staged batches carries both. Files the listing does not describe,
+ * such as objects stored before batches were staged, are looked up once they are listed on a page, so a refresh
+ * makes no storage call per file. Sizes are the uploaded bytes of a file, -1 when they are not known.
+ * <p>
+ * Only the most recently used generations are kept, the others are listed again when they are needed.
+ */
+@Slf4j
+class KeyIndex {
+
+    // keys listed per storage call during a refresh
+    private static final int REFRESH_PAGE_SIZE = 1000;
+
+    private final ObjectStorage objectStorage;
+    private final Duration refreshAfter;
+    private final Clock clock;
+    private final Cache<String, Generation> generations;
+
+    /**
+     * @param objectStorage storage the generations are listed from
+     * @param refreshAfter age after which the listing of a generation is read again from the storage
+     * @param maxGenerations number of generations kept in memory
+     * @param clock clock the age of the listings is measured with
+     */
+    KeyIndex(ObjectStorage objectStorage, Duration refreshAfter, long maxGenerations, Clock clock) {
+        this.objectStorage = objectStorage;
+        this.refreshAfter = refreshAfter;
+        this.clock = clock;
+        this.generations = Caffeine.newBuilder()
+                .maximumSize(maxGenerations)
+                .build();
+    }
+
+    /**
+     * Adds an uploaded file. Its ETag is learned from the next refresh.
+     */
+    void put(String generationId, ObjectSummary file) {
+        Generation generation = generation(generationId);
+        generation.files.put(file.getKey(), file);
+        generation.undescribed.remove(file.getKey());
+    }
+
+    /**
+     * Forgets a deleted generation, it is listed from the storage again when it is next listed.
+     */
+    void remove(String generationId) {
+        generations.invalidate(generationId);
+    }
+
+    /**
+     * Lists the files of a generation under a prefix, in key order.
+     * @param prefix prefix of the listed keys, at or below the generation's folder
+     * @param nested whether files in folders below the prefix are listed
+     * @param cursor last key of the previous page, or null for the first page
+     * @param limit maximum number of files on the page
+     */
+    ObjectPage list(String generationId, String prefix, boolean nested, String cursor, int limit) {
+        Generation generation = generation(generationId);
+        if (generation.isStale()) {
+            generation.refresh(generationId + "/");
+        }
+        NavigableMap<String, ObjectSummary> following = cursor == null || cursor.compareTo(prefix) < 0
+                ? generation.files.tailMap(prefix, true)
+                : generation.files.tailMap(cursor, false);
+        List<ObjectSummary> objects = new ArrayList<>();
+        String nextCursor = null;
+        for (ObjectSummary file : following.values()) {
+            if (!file.getKey().startsWith(prefix)) {
+                break;
+            } else if (!nested && file.getKey().indexOf('/', prefix.length()) >= 0) {
+                continue;
+            } else if (objects.size() == limit) {
+                nextCursor = objects.get(limit - 1).getKey();
+                break;
+            }
+            ObjectSummary described = generation.describe(file);
+            if (described != null) {
+                objects.add(described);
+            }
+        }
+        return ObjectPage.builder().objects(objects).nextCursor(nextCursor).build();
+    }
+
+    private Generation generation(String generationId) {
+        return generations.get(generationId, id -> new Generation());
+    }
+
+    /**
+     * Files of one generation and the time they were last listed from the storage.
+     */
+    private final class Generation {
+        private final ConcurrentSkipListMap<String, ObjectSummary> files = new ConcurrentSkipListMap<>();
+        // listed files whose size or content type the listing did not tell
+        private final Set<String> undescribed = ConcurrentHashMap.newKeySet();
+        private volatile Instant listedAt;
+
+        private boolean isStale() {
+            Instant listed = listedAt;
+            return listed == null || !clock.instant().isBefore(listed.plus(refreshAfter));
+        }
+
+        private synchronized void refresh(String folder) {
+            if (!isStale()) {
+                // refreshed by a concurrent listing
+                return;
+            }
+            Instant started = clock.instant();
+            Map<String, ObjectSummary> listed = new HashMap<>();
+            String cursor = null;
+            do {
+                ObjectPage page = objectStorage.list(folder, cursor, REFRESH_PAGE_SIZE);
+                page.getObjects().forEach(object -> listed.put(object.getKey(), object));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            for (ObjectSummary object : listed.values()) {
+                ObjectSummary known = files.get(object.getKey());
+                if (known != null && (known.getETag() == null || known.getETag().equals(object.getETag()))) {
+                    files.put(object.getKey(), known.toBuilder()
+                            .eTag(object.getETag())
+                            .lastModified(object.getLastModified())
+                            .build());
+                    continue;
+                }
+                files.put(object.getKey(), object);
+                if (object.getContentType() == null || object.getSize() < 0) {
+                    undescribed.add(object.getKey());
+                } else {
+                    undescribed.remove(object.getKey());
+                }
+            }
+            // Files without an ETag were uploaded during the refresh and may be missing from the listing
+            files.values().removeIf(file -> file.getETag() != null && !listed.containsKey(file.getKey()));
+            undescribed.retainAll(files.keySet());
+            listedAt = started;
+            log.debug("Listed {} files in '{}' from storage, {} left to look up", listed.size(), folder,
+                    undescribed.size());
+        }
+
+        /**
+         * Looks up a listed file the listing did not describe.
+         * @return the file, or null if it was deleted since it was listed
+         */
+        private ObjectSummary describe(ObjectSummary file) {
+            if (!undescribed.contains(file.getKey())) {
+                return file;
+            }
+            try {
+                StoredObject stored = objectStorage.stat(file.getKey());
+                ObjectSummary described = file.toBuilder()
+                        .size(stored.getContentLength())
+                        .eTag(stored.getETag() != null ? stored.getETag() : file.getETag())
+                        .contentType(stored.getContentType())
+                        .build();
+                // unless it was uploaded again or refreshed meanwhile
+                if (files.replace(file.getKey(), file, described)) {
+                    undescribed.remove(file.getKey());
+                }
+                return described;
+            } catch (StorageFileNotFoundException e) {
+                files.remove(file.getKey(), file);
+                undescribed.remove(file.getKey());
+                return null;
+            }
+        }
+    }
+}
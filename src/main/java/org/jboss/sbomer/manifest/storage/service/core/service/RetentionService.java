@@ -0,0 +1,592 @@
+package org.jboss.sbomer.manifest.storage.service.core.service;
+
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnsupportedException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ExpiredGeneration;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.RetentionReport;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+import org.jboss.sbomer.manifest.storage.service.core.port.api.RetentionAdministration;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.StagedBatchStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.SummaryStore;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deletes the generations that the retention policy no longer keeps, every {@code interval} when enabled and
+ * whenever an administrator asks for it.
+ * <p>
+ * A generation is kept while it is pinned, while its latest file is newer than {@code keep-newer-than}, or while
+ * it is one of the {@code keep-last} latest generations of its product. The product of a generation is the root
+ * component named by the summary of its first file, generations without such a summary are kept. Pins are
+ * objects under {@value #PIN_PREFIX}, so all instances see them.
+ * <p>
+ * A pass lists the storage in shards, one per first character of the generation IDs, {@code list-concurrency}
+ * shards at a time and each page by page. Generations whose ID starts with another character are never deleted,
+ * nor are the objects under keys starting with an underscore. An expired generation is listed once more before
+ * it is deleted, so that one that was pinned or received files since is kept. Its objects are deleted with
+ * requests of up to {@link ObjectStorage#MAX_DELETE_BATCH} keys, files first, then the manifests of its batches
+ * and its summaries, and its files are removed from the component index. The list, lookup and delete requests of the passes are spaced to at most
+ * {@code requests-per-second}, leaving the rest of the storage's capacity to uploads and downloads.
+ * <p>
+ * Passes do not run while deduplication is enabled: the files are then references to blobs shared across
+ * generations, which a pass would leave behind, so it would reclaim almost none of the storage. Reports do.
+ */
+@ApplicationScoped
+@Slf4j
+public class RetentionService implements RetentionAdministration {
+
+    static final String PIN_PREFIX = "_retention/pins/";
+    static final String METRIC_PREFIX = "sbomer.storage.retention";
+    static final int LIST_PAGE_SIZE = 1000;
+
+    // first characters of the generation IDs, one listing shard each
+    private static final String SHARDS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final long MAX_PRODUCTS = 100_000;
+
+    @Inject
+    ObjectStorage objectStorage;
+
+    @Inject
+    StagedBatchStorage stagedBatches;
+
+    @Inject
+    SummaryStore summaryStore;
+
+    @Inject
+    StorageService storageService;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    // passes run every interval, otherwise only when asked for
+    @ConfigProperty(name = "sbomer.storage.retention.enabled")
+    boolean enabled;
+
+    @ConfigProperty(name = "sbomer.storage.retention.interval")
+    Duration interval;
+
+    // latest generations kept per product
+    @ConfigProperty(name = "sbomer.storage.retention.keep-last")
+    int keepLast;
+
+    // generations whose latest file is newer are kept
+    @ConfigProperty(name = "sbomer.storage.retention.keep-newer-than")
+    Duration keepNewerThan;
+
+    // shards listed concurrently
+    @ConfigProperty(name = "sbomer.storage.retention.list-concurrency")
+    int listConcurrency;
+
+    // storage requests of the passes per second
+    @ConfigProperty(name = "sbomer.storage.retention.requests-per-second")
+    double requestsPerSecond;
+
+    // files are references to shared blobs, which passes do not delete
+    @ConfigProperty(name = "sbomer.storage.dedup.enabled")
+    boolean dedupEnabled;
+
+    // a pass or a report is running
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile RetentionReport lastReport;
+    // expired generations the running pass has not handled yet
+    private final AtomicLong pending = new AtomicLong();
+    private Clock clock;
+    private Pacer pacer;
+    // product of each generation, generations without a product are looked up again
+    private Cache<String, String> products;
+    private ExecutorService passExecutor;
+    private ScheduledExecutorService scheduler;
+    private Counter listed;
+    private Counter deleted;
+    private Counter keptGenerations;
+    private Counter deletedGenerations;
+    private Counter failedGenerations;
+    private Timer passes;
+
+    /**
+     * Default constructor for CDI.
+     */
+    public RetentionService() {}
+
+    /**
+     * Package-private constructor for testing, without the schedule.
+     */
+    RetentionService(ObjectStorage objectStorage, StagedBatchStorage stagedBatches, SummaryStore summaryStore,
+            StorageService storageService, MeterRegistry meterRegistry, int keepLast, Duration keepNewerThan,
+            int listConcurrency, double requestsPerSecond, Clock clock) {
+        this.objectStorage = objectStorage;
+        this.stagedBatches = stagedBatches;
+        this.summaryStore = summaryStore;
+        this.storageService = storageService;
+        this.meterRegistry = meterRegistry;
+        this.keepLast = keepLast;
+        this.keepNewerThan = keepNewerThan;
+        this.listConcurrency = listConcurrency;
+        this.requestsPerSecond = requestsPerSecond;
+        prepare(clock);
+    }
+
+    @PostConstruct
+    void init() {
+        prepare(Clock.systemUTC());
+        if (!enabled) {
+            log.info("Retention passes are not scheduled, they only run when asked for");
+            return;
+        }
+        if (dedupEnabled) {
+            throw new IllegalStateException("sbomer.storage.retention.enabled and sbomer.storage.dedup.enabled "
+                    + "cannot both be set. Retention passes do not delete the blobs under _blobs/ shared by "
+                    + "deduplicated files, so they would reclaim almost none of the storage.");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "retention-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runRetention, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void prepare(Clock clock) {
+        this.clock = clock;
+        pacer = new Pacer(requestsPerSecond);
+        products = Caffeine.newBuilder().maximumSize(MAX_PRODUCTS).build();
+        passExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "retention-pass");
+            thread.setDaemon(true);
+            return thread;
+        });
+        listed = Counter.builder(METRIC_PREFIX + ".listed")
+                .description("Objects listed by retention passes")
+                .register(meterRegistry);
+        deleted = Counter.builder(METRIC_PREFIX + ".deleted")
+                .description("Objects holding files or batch manifests deleted by retention passes")
+                .register(meterRegistry);
+        keptGenerations = generations("kept");
+        deletedGenerations = generations("deleted");
+        failedGenerations = generations("failed");
+        Gauge.builder(METRIC_PREFIX + ".pending", pending, AtomicLong::get)
+                .description("Expired generations the running retention pass has still to delete")
+                .register(meterRegistry);
+        passes = Timer.builder(METRIC_PREFIX + ".pass")
+                .description("Duration of retention passes")
+                .register(meterRegistry);
+    }
+
+    private Counter generations(String result) {
+        return Counter.builder(METRIC_PREFIX + ".generations")
+                .description("Generations handled by retention passes, by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        passExecutor.shutdownNow();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean startReport() {
+        return inBackground("report", this::evaluate);
+    }
+
+    @Override
+    public RetentionReport lastReport() {
+        return lastReport;
+    }
+
+    @Override
+    public boolean runRetention() {
+        if (dedupEnabled) {
+            throw new StorageUnsupportedException("Retention passes do not run while deduplication is enabled, "
+                    + "they would not delete the blobs shared by the files", null);
+        }
+        return inBackground("pass", this::run);
+    }
+
+    /**
+     * Runs a report or a pass on the pass thread, one at a time, as both list the whole storage.
+     * @return false if one is running already
+     */
+    private boolean inBackground(String name, Runnable task) {
+        if (!running.compareAndSet(false, true)) {
+            log.debug("A retention pass or report is running already");
+            return false;
+        }
+        passExecutor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Retention {} failed", name, e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void pin(String generationId) {
+        objectStorage.upload(PIN_PREFIX + generationId, InputStream.nullInputStream(), 0, "text/plain");
+        log.info("Pinned generation '{}'", generationId);
+    }
+
+    @Override
+    public void unpin(String generationId) {
+        objectStorage.delete(List.of(PIN_PREFIX + generationId));
+        log.info("Unpinned generation '{}'", generationId);
+    }
+
+    @Override
+    public SortedSet<String> pins() {
+        SortedSet<String> pins = new TreeSet<>();
+        String cursor = null;
+        do {
+            ObjectPage page = objectStorage.list(PIN_PREFIX, cursor, LIST_PAGE_SIZE);
+            page.getObjects().forEach(pin -> pins.add(pin.getKey().substring(PIN_PREFIX.length())));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return pins;
+    }
+
+    /**
+     * Deletes the expired generations. A generation that cannot be deleted is left to the next pass.
+     * @return the number of deleted generations
+     */
+    int run() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        RetentionReport report = evaluate();
+        keptGenerations.increment(report.getGenerations() - report.getExpired().size());
+        log.info("Retention pass found {} generations, deleting {} of them", report.getGenerations(),
+                report.getExpired().size());
+        Instant cutoff = report.getEvaluatedAt().minus(keepNewerThan);
+        int count = 0;
+        pending.set(report.getExpired().size());
+        try {
+            for (ExpiredGeneration generation : report.getExpired()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    log.info("Retention pass interrupted, {} generations left to the next pass", pending.get());
+                    break;
+                }
+                try {
+                    if (delete(generation.getGenerationId(), cutoff)) {
+                        deletedGenerations.increment();
+                        count++;
+                    } else {
+                        keptGenerations.increment();
+                    }
+                } catch (RuntimeException e) {
+                    failedGenerations.increment();
+                    log.warn("Unable to delete generation '{}', left to the next pass: {}", generation.getGenerationId(),
+                            e.getMessage());
+                }
+                pending.decrementAndGet();
+            }
+        } finally {
+            pending.set(0);
+            sample.stop(passes);
+        }
+        log.info("Retention pass deleted {} generations", count);
+        return count;
+    }
+
+    /**
+     * Lists the generations and applies the retention policy to them, the report becomes the last report.
+     */
+    @WithSpan
+    RetentionReport evaluate() {
+        Instant evaluatedAt = clock.instant();
+        Instant cutoff = evaluatedAt.minus(keepNewerThan);
+        SortedSet<String> pinned = pins();
+        Map<String, Generation> generations = listGenerations();
+
+        Map<String, List<Generation>> byProduct = new HashMap<>();
+        for (Generation generation : generations.values()) {
+            generation.product = product(generation);
+            if (generation.product != null) {
+                byProduct.computeIfAbsent(generation.product, product -> new ArrayList<>()).add(generation);
+            }
+        }
+        Map<String, Integer> ranks = new HashMap<>();
+        for (List<Generation> latestFirst : byProduct.values()) {
+            latestFirst.sort(Comparator.comparing((Generation generation) -> generation.lastModified,
+                    Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(generation -> generation.id).reversed());
+            for (int rank = 0; rank < latestFirst.size(); rank++) {
+                ranks.put(latestFirst.get(rank).id, rank);
+            }
+        }
+
+        RetentionReport.RetentionReportBuilder report = RetentionReport.builder().evaluatedAt(evaluatedAt);
+        long objects = 0;
+        long keptPinned = 0;
+        long keptRecent = 0;
+        long keptUnidentified = 0;
+        long keptLatest = 0;
+        List<ExpiredGeneration> expired = new ArrayList<>();
+        for (Generation generation : generations.values()) {
+            objects += generation.objects;
+            if (pinned.contains(generation.id)) {
+                keptPinned++;
+            } else if (generation.lastModified == null || generation.lastModified.isAfter(cutoff)) {
+                // the storage did not tell the age of a file
+                keptRecent++;
+            } else if (generation.product == null) {
+                keptUnidentified++;
+            } else if (ranks.get(generation.id) < keepLast) {
+                keptLatest++;
+            } else {
+                expired.add(ExpiredGeneration.builder()
+                        .generationId(generation.id)
+                        .product(generation.product)
+                        .lastModified(generation.lastModified)
+                        .objects(generation.objects)
+                        .bytes(generation.bytes)
+                        .build());
+            }
+        }
+        expired.sort(Comparator.comparing(ExpiredGeneration::getLastModified)
+                .thenComparing(ExpiredGeneration::getGenerationId));
+        RetentionReport evaluated = report.generations(generations.size())
+                .objects(objects)
+                .keptPinned(keptPinned)
+                .keptRecent(keptRecent)
+                .keptLatest(keptLatest)
+                .keptUnidentified(keptUnidentified)
+                .expired(expired)
+                .build();
+        lastReport = evaluated;
+        return evaluated;
+    }
+
+    /**
+     * Lists the shards in parallel.
+     */
+    private Map<String, Generation> listGenerations() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService listers = Executors.newFixedThreadPool(listConcurrency, r -> {
+            Thread thread = new Thread(r, "retention-list-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Map<String, Generation>>> shards = new ArrayList<>();
+            for (char first : SHARDS.toCharArray()) {
+                shards.add(listers.submit(() -> listShard(String.valueOf(first))));
+            }
+            Map<String, Generation> generations = new HashMap<>();
+            for (Future<Map<String, Generation>> shard : shards) {
+                generations.putAll(shard.get());
+            }
+            return generations;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while listing the generations", e);
+        } finally {
+            listers.shutdownNow();
+        }
+    }
+
+    private Map<String, Generation> listShard(String prefix) {
+        Map<String, Generation> generations = new HashMap<>();
+        String cursor = null;
+        do {
+            pacer.acquire();
+            ObjectPage page = objectStorage.list(prefix, cursor, LIST_PAGE_SIZE);
+            for (ObjectSummary object : page.getObjects()) {
+                int slash = object.getKey().indexOf('/');
+                if (slash > 0) {
+                    generations.computeIfAbsent(object.getKey().substring(0, slash), Generation::new).add(object);
+                }
+            }
+            listed.increment(page.getObjects().size());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return generations;
+    }
+
+    /**
+     * @return the root component named by the summary of the first file of the generation, null if there is none
+     */
+    private String product(Generation generation) {
+        String product = products.getIfPresent(generation.id);
+        if (product != null || generation.firstFile == null) {
+            return product;
+        }
+        try {
+            pacer.acquire();
+            SbomSummary summary = summaryStore.find(generation.firstFile);
+            product = summary == null ? null : summary.getRootName();
+        } catch (RuntimeException e) {
+            log.warn("Unable to read the summary of {}, keeping its generation: {}", generation.firstFile,
+                    e.getMessage());
+            return null;
+        }
+        if (product != null) {
+            products.put(generation.id, product);
+        }
+        return product;
+    }
+
+    /**
+     * Deletes an expired generation, unless it was pinned or received files since it was evaluated.
+     * @return whether the generation was deleted
+     */
+    private boolean delete(String generationId, Instant cutoff) {
+        pacer.acquire();
+        if (isPinned(generationId)) {
+            log.info("Keeping generation '{}', it was pinned", generationId);
+            return false;
+        }
+        String folder = generationId + "/";
+        List<String> files = new ArrayList<>();
+        String cursor = null;
+        do {
+            pacer.acquire();
+            ObjectPage page = objectStorage.list(folder, cursor, LIST_PAGE_SIZE);
+            for (ObjectSummary file : page.getObjects()) {
+                if (file.getLastModified() == null || file.getLastModified().isAfter(cutoff)) {
+                    log.info("Keeping generation '{}', {} was stored since it expired", generationId, file.getKey());
+                    return false;
+                }
+                files.add(file.getKey());
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        pacer.acquire();
+        List<String> stored = stagedBatches.storedKeys(folder);
+        deleteInBatches(stored, objectStorage::delete);
+        deleted.increment(stored.size());
+        // summaries last, a generation left half deleted is still recognized by the next pass
+        deleteInBatches(files, summaryStore::delete);
+        storageService.forgetGeneration(generationId, files);
+        log.info("Deleted generation '{}' of {} files stored in {} objects", generationId, files.size(), stored.size());
+        return true;
+    }
+
+    private boolean isPinned(String generationId) {
+        try {
+            objectStorage.stat(PIN_PREFIX + generationId);
+            return true;
+        } catch (StorageFileNotFoundException e) {
+            return false;
+        }
+    }
+
+    private void deleteInBatches(List<String> keys, Consumer<List<String>> delete) {
+        for (int from = 0; from < keys.size(); from += ObjectStorage.MAX_DELETE_BATCH) {
+            pacer.acquire();
+            delete.accept(keys.subList(from, Math.min(from + ObjectStorage.MAX_DELETE_BATCH, keys.size())));
+        }
+    }
+
+    /**
+     * The files of a generation found by a listing.
+     */
+    private static final class Generation {
+        private final String id;
+        private long objects;
+        private long bytes;
+        // null if the storage did not tell the age of a file
+        private Instant lastModified;
+        private boolean undated;
+        // first file at the root of the generation folder, in key order
+        private String firstFile;
+        private String product;
+
+        private Generation(String id) {
+            this.id = id;
+        }
+
+        private void add(ObjectSummary object) {
+            objects++;
+            bytes += Math.max(0, object.getSize());
+            if (object.getLastModified() == null) {
+                undated = true;
+            } else if (lastModified == null || object.getLastModified().isAfter(lastModified)) {
+                lastModified = object.getLastModified();
+            }
+            if (undated) {
+                lastModified = null;
+            }
+            String key = object.getKey();
+            if (key.indexOf('/', id.length() + 1) < 0 && (firstFile == null || key.compareTo(firstFile) < 0)) {
+                firstFile = key;
+            }
+        }
+    }
+
+    /**
+     * Spaces requests evenly, at most {@code rate} per second across all threads.
+     */
+    private static final class Pacer {
+        private final long intervalNanos;
+        private long next = System.nanoTime();
+
+        private Pacer(double rate) {
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        }
+
+        private void acquire() {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long at = Math.max(now, next);
+                next = at + intervalNanos;
+                wait = at - now;
+            }
+            if (wait <= 0) {
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the retention request rate", e);
+            }
+        }
+    }
+}
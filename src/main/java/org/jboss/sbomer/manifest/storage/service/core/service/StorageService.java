@@ -1,19 +1,56 @@
 package org.jboss.sbomer.manifest.storage.service.core.service;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
 import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomFile;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
 import org.jboss.sbomer.manifest.storage.service.core.port.api.StorageAdministration;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ComponentIndex;
 import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.SbomInspector;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.StagedBatchStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.StoredManifestsNotifier;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.SummaryStore;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.context.Context;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import lombok.AccessLevel;
+import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 
 @ApplicationScoped
@@ -23,15 +60,168 @@ public class StorageService implements StorageAdministration {
     @Inject
     ObjectStorage objectStorage;
 
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Inject
+    SbomInspector sbomInspector;
+
+    @Inject
+    SummaryStore summaryStore;
+
+    @Inject
+    ComponentIndex componentIndex;
+
+    @Inject
+    StoredManifestsNotifier storedManifestsNotifier;
+
+    // batches are uploaded to a staging area and made visible together, files are uploaded in place without it
+    @Inject
+    StagedBatchStorage stagedBatches;
+
+    // summaries of uploaded SBOMs are extracted while they are stored
+    @ConfigProperty(name = "sbomer.storage.summary.enabled")
+    boolean summaryEnabled;
+
+    // the components of uploaded SBOMs are indexed while they are stored
+    @ConfigProperty(name = "sbomer.storage.component-index.enabled")
+    boolean componentIndexEnabled;
+
+    // stored batches are announced with a ManifestsStored event
+    @ConfigProperty(name = "sbomer.storage.manifests-stored.enabled")
+    boolean manifestsStoredEnabled;
+
     // the public api url of this service component
     @ConfigProperty(name = "sbomer.storage.public-api-url")
     String publicApiUrl;
 
+    // files of a single batch uploaded concurrently
+    @ConfigProperty(name = "sbomer.storage.batch.max-concurrency")
+    int maxConcurrency;
+
+    // files uploaded concurrently across all batches
+    @ConfigProperty(name = "sbomer.storage.batch.global-max-concurrency")
+    int globalMaxConcurrency;
+
+    // age after which the listing of a generation is read again from the storage
+    @ConfigProperty(name = "sbomer.storage.index.refresh-after")
+    Duration indexRefreshAfter;
+
+    // generations whose keys are kept in memory for listings
+    @ConfigProperty(name = "sbomer.storage.index.max-generations")
+    long indexMaxGenerations;
+
+    // batches not committed within this time are discarded by the sweeper
+    @ConfigProperty(name = "sbomer.storage.batch.staging.abandon-after")
+    Duration abandonAfter;
+
+    @ConfigProperty(name = "sbomer.storage.batch.staging.sweep-interval")
+    Duration sweepInterval;
+
+    // how far back the first sweep after a start looks for abandoned batches
+    @ConfigProperty(name = "sbomer.storage.batch.staging.sweep-lookback")
+    Duration sweepLookback;
+
+    private ExecutorService uploadExecutor;
+    private ScheduledExecutorService sweeper;
+    private Instant sweptUntil;
+    private KeyIndex keyIndex;
+    private DistributionSummary batchFiles;
+    private DistributionSummary batchBytes;
+
+    /**
+     * Default constructor for CDI.
+     */
+    public StorageService() {}
+
+    /**
+     * Package-private constructor for testing, built with {@link #forTesting()}. Summaries and the component
+     * index are not fed without an inspector, or without a store or an index, stored batches are not announced
+     * without a notifier and files are uploaded in place without staged batches. There is no background
+     * sweeper. Unset limits default to 4 files per batch, 8 overall, a 5 minute index refresh and 10000
+     * indexed generations.
+     * @param objectStorage storage to upload to
+     * @param publicApiUrl public api url used to build permanent URLs
+     * @param maxConcurrency files of a single batch uploaded concurrently
+     * @param globalMaxConcurrency files uploaded concurrently across all batches
+     * @param indexRefreshAfter age after which the listing of a generation is read again from the storage
+     * @param indexMaxGenerations generations whose keys are kept in memory
+     * @param meterRegistry registry to export the batch metrics to, a simple registry if unset
+     * @param sbomInspector inspector of uploaded files
+     * @param summaryStore store of the summaries
+     * @param componentIndex index of the components
+     * @param storedManifestsNotifier notifier of stored batches
+     * @param stagedBatches staging area of the batches
+     */
+    @Builder(builderMethodName = "forTesting", access = AccessLevel.PACKAGE)
+    StorageService(ObjectStorage objectStorage, String publicApiUrl, int maxConcurrency, int globalMaxConcurrency,
+            Duration indexRefreshAfter, long indexMaxGenerations, MeterRegistry meterRegistry,
+            SbomInspector sbomInspector, SummaryStore summaryStore, ComponentIndex componentIndex,
+            StoredManifestsNotifier storedManifestsNotifier, StagedBatchStorage stagedBatches) {
+        this.objectStorage = objectStorage;
+        this.stagedBatches = stagedBatches;
+        this.sbomInspector = sbomInspector;
+        this.summaryStore = summaryStore;
+        this.componentIndex = componentIndex;
+        this.storedManifestsNotifier = storedManifestsNotifier;
+        this.manifestsStoredEnabled = storedManifestsNotifier != null;
+        this.summaryEnabled = sbomInspector != null && summaryStore != null;
+        this.componentIndexEnabled = sbomInspector != null && componentIndex != null;
+        this.meterRegistry = meterRegistry != null ? meterRegistry : new SimpleMeterRegistry();
+        this.publicApiUrl = publicApiUrl;
+        this.maxConcurrency = maxConcurrency > 0 ? maxConcurrency : 4;
+        this.globalMaxConcurrency = globalMaxConcurrency > 0 ? globalMaxConcurrency : 8;
+        this.indexRefreshAfter = indexRefreshAfter != null ? indexRefreshAfter : Duration.ofMinutes(5);
+        this.indexMaxGenerations = indexMaxGenerations > 0 ? indexMaxGenerations : 10_000;
+        prepareUploads();
+    }
+
+    @PostConstruct
+    void init() {
+        prepareUploads();
+        sweptUntil = Instant.now().minus(abandonAfter).minus(sweepLookback);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "batch-staging-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, sweepInterval.toMillis(), sweepInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void prepareUploads() {
+        AtomicInteger threadCount = new AtomicInteger();
+        // The pool size is the global limit, batches queue up for a free uploader beyond it
+        uploadExecutor = Context.taskWrapping(Executors.newFixedThreadPool(globalMaxConcurrency, r -> {
+            Thread thread = new Thread(r, "batch-upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+        keyIndex = new KeyIndex(objectStorage, indexRefreshAfter, indexMaxGenerations, Clock.systemUTC());
+        batchFiles = DistributionSummary.builder("sbomer.storage.batch.files")
+                .description("Files per uploaded batch")
+                .serviceLevelObjectives(1, 2, 5, 10, 20, 50, 100)
+                .register(meterRegistry);
+        batchBytes = DistributionSummary.builder("sbomer.storage.batch.size")
+                .description("Declared size of the files of an uploaded batch")
+                .baseUnit("bytes")
+                .serviceLevelObjectives(64 * 1024, 1024 * 1024, 16 * 1024 * 1024, 128 * 1024 * 1024, 1024 * 1024 * 1024)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        uploadExecutor.shutdownNow();
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
     @WithSpan
     @Override
     public Map<String, String> storeGenerationSboms(@SpanAttribute("generation.id") String generationId, List<SbomFile> files) {
         // generationId is the prefix
-        return uploadBatch(generationId, files);
+        return announceStored(generationId, null, uploadBatch(generationId, generationId, files));
     }
 
     @WithSpan
@@ -39,39 +229,470 @@ public class StorageService implements StorageAdministration {
     public Map<String, String> storeEnhancementSboms(@SpanAttribute("generation.id") String generationId, @SpanAttribute("enhancement.id") String enhancementId, List<SbomFile> files) {
         // generationId/enhancementId is the prefix
         String prefix = String.format("%s/%s", generationId, enhancementId);
-        return uploadBatch(prefix, files);
+        return announceStored(generationId, enhancementId, uploadBatch(generationId, prefix, files));
+    }
+
+    @WithSpan
+    @Override
+    public Map<String, String> streamGenerationSboms(@SpanAttribute("generation.id") String generationId, Iterator<SbomFile> files) {
+        return announceStored(generationId, null, uploadStream(generationId, generationId, files));
+    }
+
+    @WithSpan
+    @Override
+    public Map<String, String> streamEnhancementSboms(@SpanAttribute("generation.id") String generationId, @SpanAttribute("enhancement.id") String enhancementId, Iterator<SbomFile> files) {
+        return announceStored(generationId, enhancementId,
+                uploadStream(generationId, String.format("%s/%s", generationId, enhancementId), files));
+    }
+
+    /**
+     * Records the ManifestsStored event of a stored batch in the outbox before the batch is reported as
+     * stored, so that it is published even if the process dies right after. If it cannot be recorded the
+     * batch fails, and uploading it again stores the same files and records the event.
+     * @return the urls
+     */
+    Map<String, String> announceStored(String generationId, String enhancementId, Map<String, String> urls) {
+        if (manifestsStoredEnabled && !urls.isEmpty()) {
+            storedManifestsNotifier.manifestsStored(generationId, enhancementId, urls);
+        }
+        return urls;
     }
 
     /**
-     * Helper to handle the Batch Atomicity logic
+     * Helper to handle the Batch Atomicity logic.
+     * Files are uploaded in parallel, at most {@code maxConcurrency} at a time, to the staging area of the
+     * batch. The first failure cancels the uploads that are still running or waiting, discards the files
+     * already staged and fails the whole batch. Once all are staged, the batch is committed and its files
+     * are added to the key index of the generation.
      */
-    private Map<String, String> uploadBatch(String folderPrefix, List<SbomFile> files) {
+    private Map<String, String> uploadBatch(String generationId, String folderPrefix, List<SbomFile> files) {
         log.info("Uploading {} files to folder: {}", files.size(), folderPrefix);
+        batchFiles.record(files.size());
+        long declaredBytes = 0;
+        for (SbomFile file : files) {
+            declaredBytes += Math.max(0, file.getSize());
+        }
+        batchBytes.record(declaredBytes);
+
+        String batchId = beginBatch();
+        List<StagedFile> staged = new ArrayList<>();
+        CompletionService<StagedFile> completionService = new ExecutorCompletionService<>(uploadExecutor);
+        List<Future<StagedFile>> submitted = new ArrayList<>();
+        Iterator<SbomFile> remaining = files.iterator();
+        boolean uploaded = false;
+
+        try {
+            while (remaining.hasNext() && submitted.size() < maxConcurrency) {
+                SbomFile next = remaining.next();
+                submitted.add(completionService.submit(() -> uploadFile(batchId, folderPrefix, next)));
+            }
+            for (int completed = 0; completed < files.size(); completed++) {
+                staged.add(completionService.take().get());
+                if (remaining.hasNext()) {
+                    SbomFile next = remaining.next();
+                    submitted.add(completionService.submit(() -> uploadFile(batchId, folderPrefix, next)));
+                }
+            }
+            uploaded = true;
+        } catch (ExecutionException e) {
+            // Atomic failure: Throw exception to ensure 500 Error and no partial state in storage or DB
+            throw e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while uploading files to folder " + folderPrefix, e);
+        } finally {
+            // Fail fast: stop whatever is still in flight, no-op for uploads already done
+            submitted.forEach(future -> future.cancel(true));
+            if (!uploaded) {
+                discardQuietly(batchId, folderPrefix);
+            }
+        }
+        return commitBatch(generationId, folderPrefix, batchId, staged);
+    }
 
+    /**
+     * Uploads files in the order the iterator yields them. The content of a file can only be read before the
+     * next one is requested, so each file is handed to an upload thread and the next one is requested once its
+     * content was read to the end. The rest of the upload, e.g. the response of the storage, overlaps with
+     * reading the next files, at most {@code maxConcurrency} at a time. The first failure stops reading,
+     * cancels the uploads still running, discards the files already staged and fails the whole batch. Files of
+     * unknown size are indexed with the number of bytes read from them.
+     */
+    private Map<String, String> uploadStream(String generationId, String folderPrefix, Iterator<SbomFile> files) {
+        log.info("Streaming files to folder: {}", folderPrefix);
+        String batchId = beginBatch();
+        Semaphore slots = new Semaphore(maxConcurrency);
+        List<Future<StagedFile>> submitted = new ArrayList<>();
+        List<StagedFile> staged = new ArrayList<>();
+        boolean uploaded = false;
+        try {
+            while (files.hasNext()) {
+                SbomFile file = files.next();
+                slots.acquire();
+                HandedOverInputStream content = new HandedOverInputStream(file.getContent());
+                submitted.add(uploadExecutor.submit(() -> {
+                    try {
+                        StagedFile uploadedFile = uploadFile(batchId, folderPrefix, SbomFile.builder()
+                                .filename(file.getFilename())
+                                .contentType(file.getContentType())
+                                .size(file.getSize())
+                                .content(content)
+                                .build());
+                        SbomFile stored = SbomFile.builder()
+                                .filename(file.getFilename())
+                                .contentType(file.getContentType())
+                                .size(content.count)
+                                .build();
+                        return new StagedFile(stored, uploadedFile.inspection());
+                    } finally {
+                        content.handBack();
+                        slots.release();
+                    }
+                }));
+                content.awaitHandBack();
+                failFast(submitted);
+            }
+            for (Future<StagedFile> upload : submitted) {
+                staged.add(upload.get());
+            }
+            uploaded = true;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while uploading files to folder " + folderPrefix, e);
+        } finally {
+            submitted.forEach(future -> future.cancel(true));
+            if (!uploaded) {
+                discardQuietly(batchId, folderPrefix);
+            }
+        }
+        long bytes = 0;
+        for (StagedFile stagedFile : staged) {
+            bytes += stagedFile.file().getSize();
+        }
+        batchFiles.record(staged.size());
+        batchBytes.record(bytes);
+        return commitBatch(generationId, folderPrefix, batchId, staged);
+    }
+
+    /**
+     * Fails with the failure of the first upload that failed so far.
+     */
+    private static void failFast(List<Future<StagedFile>> submitted) throws ExecutionException, InterruptedException {
+        for (Future<StagedFile> upload : submitted) {
+            if (upload.isDone()) {
+                upload.get();
+            }
+        }
+    }
+
+    private StagedFile uploadFile(String batchId, String folderPrefix, SbomFile file) {
+        // Final Key: folderPrefix/filename, staged under the batch until it is committed
+        String storageKey = buildStorageKey(folderPrefix, file);
+        String uploadKey = batchId == null ? storageKey : stagedBatches.stagingKey(batchId, storageKey);
+        SbomInspector.Inspection inspection = summaryEnabled || componentIndexEnabled
+                ? sbomInspector.inspect(file.getFilename(), file.getContentType())
+                : null;
+        InputStream content = inspection == null ? file.getContent() : new InspectingInputStream(file.getContent(), inspection);
+        try {
+            objectStorage.upload(uploadKey, content, file.getSize(), file.getContentType());
+        } catch (Exception e) {
+            log.error("Upload failed for file {}. Aborting batch.", file.getFilename(), e);
+            throw new RuntimeException("Failed to upload file " + file.getFilename(), e);
+        }
+        return new StagedFile(file, inspection);
+    }
+
+    /**
+     * @return the id of a new staged batch, null if files are uploaded in place
+     */
+    private String beginBatch() {
+        return stagedBatches == null ? null : stagedBatches.begin();
+    }
+
+    /**
+     * Makes the staged files of a batch visible with a single manifest write, then records their inspections
+     * and adds them to the key index. A batch whose commit fails is left to the sweeper, as its manifest may
+     * have been written nonetheless.
+     * @return the permanent URLs of the files
+     */
+    private Map<String, String> commitBatch(String generationId, String folderPrefix, String batchId,
+            List<StagedFile> staged) {
+        if (batchId != null && !staged.isEmpty()) {
+            try {
+                stagedBatches.commit(batchId, staged.stream()
+                        .map(stagedFile -> summary(folderPrefix, stagedFile.file()))
+                        .toList());
+            } catch (RuntimeException e) {
+                log.error("Commit failed for batch {} of {} files to folder {}.", batchId, staged.size(),
+                        folderPrefix, e);
+                throw new RuntimeException("Failed to commit the files uploaded to folder " + folderPrefix, e);
+            }
+        }
         Map<String, String> resultUrls = new HashMap<>();
+        for (StagedFile stagedFile : staged) {
+            if (stagedFile.inspection() != null) {
+                recordInspection(buildStorageKey(folderPrefix, stagedFile.file()), stagedFile.inspection());
+            }
+            resultUrls.put(stagedFile.file().getFilename(), indexStoredFile(generationId, folderPrefix, stagedFile.file()));
+        }
+        return resultUrls;
+    }
 
-        for (SbomFile file : files) {
-            // Final Key: folderPrefix/filename
-            String storageKey = String.format("%s/%s", folderPrefix, file.getFilename());
+    /**
+     * Deletes the staged files of a failed batch. Files that cannot be deleted now, or whose upload is still
+     * finishing, are left to the sweeper.
+     */
+    private void discardQuietly(String batchId, String folderPrefix) {
+        if (batchId == null) {
+            return;
+        }
+        try {
+            stagedBatches.discard(batchId);
+        } catch (RuntimeException e) {
+            log.warn("Unable to discard batch {} of folder {}, left to the sweeper: {}", batchId, folderPrefix,
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Records files uploaded in place, by upload sessions, as the current version of their keys, so that
+     * they replace the files of earlier batches.
+     */
+    void commitInPlace(String folderPrefix, List<SbomFile> files) {
+        if (stagedBatches != null && !files.isEmpty()) {
+            stagedBatches.commitInPlace(files.stream().map(file -> summary(folderPrefix, file)).toList());
+        }
+    }
+
+    /**
+     * Discards the batches started since the last sweep that were not committed within
+     * {@code abandon-after}, also those of other instances.
+     * @return the number of deleted files
+     */
+    int sweep() {
+        Instant startedBefore = Instant.now().minus(abandonAfter);
+        int deleted = stagedBatches.discardAbandoned(sweptUntil, startedBefore);
+        sweptUntil = startedBefore;
+        if (deleted > 0) {
+            log.info("Deleted {} staged file(s) of batches not committed within {}", deleted, abandonAfter);
+        }
+        return deleted;
+    }
 
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            log.warn("Unable to sweep abandoned batches: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the summary of an uploaded file and indexes its components. A file without summary or not
+     * indexed is still stored, so failures are only logged.
+     */
+    private void recordInspection(String storageKey, SbomInspector.Inspection inspection) {
+        SbomSummary summary;
+        try {
+            summary = inspection.finish();
+        } catch (RuntimeException e) {
+            log.warn("Unable to inspect {}: {}", storageKey, e.getMessage());
+            return;
+        }
+        if (summary == null) {
+            return;
+        }
+        if (summaryEnabled) {
+            try {
+                summaryStore.save(storageKey, summary);
+            } catch (RuntimeException e) {
+                log.warn("Unable to save summary of {}: {}", storageKey, e.getMessage());
+            }
+        }
+        if (componentIndexEnabled) {
             try {
-                objectStorage.upload(storageKey, file.getContent(), file.getSize(), file.getContentType());
+                componentIndex.add(storageKey, inspection.components());
+            } catch (RuntimeException e) {
+                log.warn("Unable to index components of {}: {}", storageKey, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds a stored file to the key index of the generation.
+     * @return the permanent URL of the file
+     */
+    String indexStoredFile(String generationId, String folderPrefix, SbomFile file) {
+        keyIndex.put(generationId, summary(folderPrefix, file));
+        return buildPermanentUrl(folderPrefix, file);
+    }
 
-                // Construct permanent URL
-                String permUrl = String.format("%s/api/v1/storage/content/%s", publicApiUrl, storageKey);
-                resultUrls.put(file.getFilename(), permUrl);
+    private ObjectSummary summary(String folderPrefix, SbomFile file) {
+        return ObjectSummary.builder()
+                .key(buildStorageKey(folderPrefix, file))
+                .size(file.getSize())
+                .contentType(file.getContentType())
+                .build();
+    }
 
-            } catch (Exception e) {
-                log.error("Upload failed for file {}. Aborting batch.", file.getFilename(), e);
-                // Atomic failure: Throw exception to ensure 500 Error and no partial state in DB
-                throw new RuntimeException("Failed to upload file " + file.getFilename(), e);
+    /**
+     * Drops the files of a deleted generation from the key index and the component index.
+     */
+    void forgetGeneration(String generationId, List<String> storageKeys) {
+        keyIndex.remove(generationId);
+        if (componentIndexEnabled) {
+            try {
+                componentIndex.remove(storageKeys);
+            } catch (RuntimeException e) {
+                log.warn("Unable to remove the components of generation '{}': {}", generationId, e.getMessage());
             }
         }
-        return resultUrls;
+    }
+
+    String buildStorageKey(String folderPrefix, SbomFile file) {
+        return String.format("%s/%s", folderPrefix, file.getFilename());
+    }
+
+    // Construct permanent URL
+    String buildPermanentUrl(String folderPrefix, SbomFile file) {
+        return String.format("%s/api/v1/storage/content/%s", publicApiUrl, buildStorageKey(folderPrefix, file));
+    }
+
+    @Override
+    public SbomSummary getSummary(String storageKey) {
+        return summaryStore.find(storageKey);
     }
 
     @Override
     public InputStream getFileContent(String storageKey) {
         return objectStorage.download(storageKey);
     }
+
+    @Override
+    public StoredObject getFile(String storageKey, DownloadOptions options) {
+        return objectStorage.download(storageKey, options);
+    }
+
+    @Override
+    public PresignedUrl getDownloadUrl(String storageKey, DownloadOptions options, Duration validity) {
+        return objectStorage.presignDownload(storageKey, options, validity);
+    }
+
+    @Override
+    public ObjectPage listGenerationFiles(String generationId, String cursor, int limit) {
+        return keyIndex.list(generationId, generationId + "/", false, cursor, limit);
+    }
+
+    @Override
+    public ObjectPage listEnhancementFiles(String generationId, String enhancementId, String cursor, int limit) {
+        return keyIndex.list(generationId, String.format("%s/%s/", generationId, enhancementId), true, cursor, limit);
+    }
+
+    @Override
+    public ObjectPage listFiles(String prefix, String cursor, int limit) {
+        return objectStorage.list(prefix, cursor, limit);
+    }
+
+    /**
+     * An uploaded file of a batch and the inspection of its content, recorded once the batch is committed.
+     */
+    private record StagedFile(SbomFile file, SbomInspector.Inspection inspection) {}
+
+    /**
+     * Content of a streamed file read by an upload thread, counting the bytes read. It is handed back to the
+     * reading thread at its end, once it is closed or once the upload is over, whichever comes first.
+     */
+    private static final class HandedOverInputStream extends FilterInputStream {
+        private final CountDownLatch handedBack = new CountDownLatch(1);
+        private long count;
+
+        HandedOverInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            } else {
+                handBack();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            } else if (read < 0) {
+                handBack();
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() {
+            // the rest of the request is read by the reading thread
+            handBack();
+        }
+
+        void handBack() {
+            handedBack.countDown();
+        }
+
+        void awaitHandBack() throws InterruptedException {
+            handedBack.await();
+        }
+    }
+
+    /**
+     * Passes the bytes read by the storage to an inspection on their way.
+     */
+    private static final class InspectingInputStream extends FilterInputStream {
+        private final SbomInspector.Inspection inspection;
+        private final byte[] single = new byte[1];
+
+        InspectingInputStream(InputStream in, SbomInspector.Inspection inspection) {
+            super(in);
+            this.inspection = inspection;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                single[0] = (byte) b;
+                inspection.update(single, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                inspection.update(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes would be missing from the inspection
+            byte[] skipped = new byte[(int) Math.min(n, 8192)];
+            int read = read(skipped, 0, skipped.length);
+            return Math.max(read, 0);
+        }
+    }
 }
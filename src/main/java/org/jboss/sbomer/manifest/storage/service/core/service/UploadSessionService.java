@@ -0,0 +1,222 @@
+package org.jboss.sbomer.manifest.storage.service.core.service;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.CompletedUpload;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomFile;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadSession;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadTarget;
+import org.jboss.sbomer.manifest.storage.service.core.port.api.UploadSessionAdministration;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.MultipartUploadStorage;
+
+import io.opentelemetry.instrumentation.annotations.SpanAttribute;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Upload sessions: clients send large files directly to the storage with presigned part URLs instead of
+ * streaming them through this service.
+ * <p>
+ * No session state is kept here, the client hands the upload ids back when it finalizes the session, and
+ * the storage checks that they belong to the file keys. So any instance can finalize a session. Uploads
+ * that are not finalized within {@code expire-after} are aborted by a sweeper, which asks the storage for
+ * old uploads and thus also catches those of instances that have gone away.
+ */
+@ApplicationScoped
+@Slf4j
+public class UploadSessionService implements UploadSessionAdministration {
+
+    // S3 accepts at most this many parts per upload
+    static final int MAX_PARTS = 10_000;
+
+    @Inject
+    MultipartUploadStorage multipartUploads;
+
+    @Inject
+    StorageService storageService;
+
+    // size of the parts clients are asked to send, raised for files that would need more than MAX_PARTS
+    @ConfigProperty(name = "sbomer.storage.upload.session.part-size")
+    MemorySize configuredPartSize;
+
+    // validity of the part URLs, uploads not finalized within it are aborted
+    @ConfigProperty(name = "sbomer.storage.upload.session.expire-after")
+    Duration expireAfter;
+
+    @ConfigProperty(name = "sbomer.storage.upload.session.sweep-interval")
+    Duration sweepInterval;
+
+    private long partSize;
+    private Clock clock;
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * Default constructor for CDI.
+     */
+    public UploadSessionService() {}
+
+    /**
+     * Package-private constructor for testing, without the background sweeper.
+     */
+    UploadSessionService(MultipartUploadStorage multipartUploads, StorageService storageService, long partSize,
+            Duration expireAfter, Clock clock) {
+        this.multipartUploads = multipartUploads;
+        this.storageService = storageService;
+        this.partSize = partSize;
+        this.expireAfter = expireAfter;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void init() {
+        partSize = configuredPartSize.asLongValue();
+        clock = Clock.systemUTC();
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "upload-session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, sweepInterval.toMillis(), sweepInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    @WithSpan
+    @Override
+    public UploadSession startGenerationUploadSession(@SpanAttribute("generation.id") String generationId, List<SbomFile> files) {
+        return start(generationId, files);
+    }
+
+    @WithSpan
+    @Override
+    public UploadSession startEnhancementUploadSession(@SpanAttribute("generation.id") String generationId,
+            @SpanAttribute("enhancement.id") String enhancementId, List<SbomFile> files) {
+        return start(String.format("%s/%s", generationId, enhancementId), files);
+    }
+
+    @WithSpan
+    @Override
+    public Map<String, String> finalizeGenerationUploadSession(@SpanAttribute("generation.id") String generationId,
+            List<CompletedUpload> uploads) {
+        return storageService.announceStored(generationId, null, finalizeUploads(generationId, generationId, uploads));
+    }
+
+    @WithSpan
+    @Override
+    public Map<String, String> finalizeEnhancementUploadSession(@SpanAttribute("generation.id") String generationId,
+            @SpanAttribute("enhancement.id") String enhancementId, List<CompletedUpload> uploads) {
+        return storageService.announceStored(generationId, enhancementId,
+                finalizeUploads(generationId, String.format("%s/%s", generationId, enhancementId), uploads));
+    }
+
+    /**
+     * Starts an upload per file and presigns its parts. If one of them fails, the uploads started
+     * so far are aborted.
+     */
+    private UploadSession start(String folderPrefix, List<SbomFile> files) {
+        log.info("Starting upload session of {} files to folder: {}", files.size(), folderPrefix);
+        Instant expiresAt = clock.instant().plus(expireAfter);
+        List<UploadTarget> targets = new ArrayList<>();
+        Map<String, String> started = new HashMap<>();
+        try {
+            for (SbomFile file : files) {
+                String key = storageService.buildStorageKey(folderPrefix, file);
+                String uploadId = multipartUploads.startUpload(key, file.getContentType());
+                started.put(key, uploadId);
+                long filePartSize = partSize(file.getSize());
+                int partCount = (int) Math.max(1, (file.getSize() + filePartSize - 1) / filePartSize);
+                List<URI> partUrls = multipartUploads.presignParts(key, uploadId, partCount, expireAfter);
+                targets.add(UploadTarget.builder()
+                        .filename(file.getFilename())
+                        .uploadId(uploadId)
+                        .partSize(filePartSize)
+                        .partUrls(partUrls)
+                        .build());
+            }
+        } catch (RuntimeException e) {
+            log.error("Unable to start upload session in folder {}, aborting {} started uploads", folderPrefix, started.size(), e);
+            started.forEach(this::abortQuietly);
+            throw e;
+        }
+        return UploadSession.builder().expiresAt(expiresAt).files(targets).build();
+    }
+
+    private long partSize(long fileSize) {
+        return Math.max(partSize, (fileSize + MAX_PARTS - 1) / MAX_PARTS);
+    }
+
+    /**
+     * Checks every upload before completing any, so that a mismatch leaves all of them open for the
+     * client to send the failed parts again and finalize once more.
+     */
+    private Map<String, String> finalizeUploads(String generationId, String folderPrefix, List<CompletedUpload> uploads) {
+        log.info("Finalizing upload session of {} files in folder: {}", uploads.size(), folderPrefix);
+        List<SbomFile> files = new ArrayList<>();
+        for (CompletedUpload upload : uploads) {
+            SbomFile file = SbomFile.builder().filename(upload.getFilename()).size(upload.getSize()).build();
+            multipartUploads.verifyUpload(storageService.buildStorageKey(folderPrefix, file), upload.getUploadId(),
+                    upload.getSize(), upload.getPartETags());
+            files.add(file);
+        }
+        for (int i = 0; i < uploads.size(); i++) {
+            CompletedUpload upload = uploads.get(i);
+            multipartUploads.completeUpload(storageService.buildStorageKey(folderPrefix, files.get(i)),
+                    upload.getUploadId(), upload.getPartETags());
+        }
+        // the completed files replace those of earlier batches only once they are all recorded
+        storageService.commitInPlace(folderPrefix, files);
+        Map<String, String> resultUrls = new HashMap<>();
+        for (SbomFile file : files) {
+            resultUrls.put(file.getFilename(), storageService.indexStoredFile(generationId, folderPrefix, file));
+        }
+        return resultUrls;
+    }
+
+    /**
+     * Aborts the uploads started before the expiry of their part URLs.
+     * @return the number of aborted uploads
+     */
+    int sweep() {
+        int aborted = multipartUploads.abortUploadsStartedBefore(clock.instant().minus(expireAfter));
+        if (aborted > 0) {
+            log.info("Aborted {} upload(s) not finalized within {}", aborted, expireAfter);
+        }
+        return aborted;
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            log.warn("Unable to sweep expired uploads: {}", e.getMessage());
+        }
+    }
+
+    private void abortQuietly(String key, String uploadId) {
+        try {
+            multipartUploads.abortUpload(key, uploadId);
+        } catch (RuntimeException e) {
+            log.warn("Unable to abort upload '{}' of '{}', left to the sweeper: {}", uploadId, key, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.jboss.sbomer.manifest.storage.service;
+
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * Stream of a given number of pseudo-random bytes, repeating a fixed 64K block.
+ * Lets benchmarks move payloads of hundreds of megabytes without holding them in memory.
+ */
+public class PayloadInputStream extends InputStream {
+
+    private static final byte[] BLOCK = new byte[64 * 1024];
+
+    static {
+        new Random(42).nextBytes(BLOCK);
+    }
+
+    private final long length;
+    private long position;
+
+    public PayloadInputStream(long length) {
+        this.length = length;
+    }
+
+    @Override
+    public int read() {
+        if (position >= length) {
+            return -1;
+        }
+        return BLOCK[(int) (position++ % BLOCK.length)] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) {
+        if (position >= length) {
+            return -1;
+        }
+        int blockOffset = (int) (position % BLOCK.length);
+        int n = (int) Math.min(Math.min(count, BLOCK.length - blockOffset), length - position);
+        System.arraycopy(BLOCK, blockOffset, buffer, offset, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, length - position);
+    }
+}
@@ -0,0 +1,139 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the tar.gz and zip archives written by ArchiveOutput.
+ */
+class ArchiveOutputTest {
+
+    private static final Map<String, String> FILES = new LinkedHashMap<>();
+
+    static {
+        FILES.put("gen-1/bom.json", "{\"bomFormat\":\"CycloneDX\"}");
+        FILES.put("gen-1/bom.spdx.json", "{\"spdxVersion\":\"SPDX-2.3\"}");
+        FILES.put("gen-1/enh-1/bom.json", "{\"bomFormat\":\"CycloneDX\",\"enhanced\":true}");
+        FILES.put("gen-1/z.txt", "last");
+    }
+
+    ExecutorService executor;
+    List<String> cursors;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        cursors = new ArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testTarContainsEveryPageInOrder() throws IOException {
+        Map<String, String> archived = write(ArchiveOutput.Format.TAR_GZ, key -> true, 1);
+
+        assertEquals(FILES, archived);
+        assertEquals(List.of("gen-1/bom.json", "gen-1/bom.spdx.json", "gen-1/enh-1/bom.json"), cursors);
+    }
+
+    @Test
+    void testZipSkipsExcludedKeys() throws IOException {
+        Map<String, String> archived = write(ArchiveOutput.Format.ZIP, key -> !key.contains("enh-1"), 4);
+
+        assertEquals(List.of("gen-1/bom.json", "gen-1/bom.spdx.json", "gen-1/z.txt"), List.copyOf(archived.keySet()));
+        assertEquals("last", archived.get("gen-1/z.txt"));
+    }
+
+    @Test
+    void testFileOfUnknownLengthIsSpooledIntoTar() throws IOException {
+        Map<String, String> archived = write(ArchiveOutput.Format.TAR_GZ, key -> true, 2, -1);
+
+        assertEquals(FILES, archived);
+    }
+
+    @Test
+    void testFormatIsSelectedByExtension() {
+        assertEquals(ArchiveOutput.Format.TAR_GZ, ArchiveOutput.Format.forExtension("tar.gz"));
+        assertEquals(ArchiveOutput.Format.ZIP, ArchiveOutput.Format.forExtension("ZIP"));
+        assertNull(ArchiveOutput.Format.forExtension("rar"));
+    }
+
+    private Map<String, String> write(ArchiveOutput.Format format, Predicate<String> included, int prefetch)
+            throws IOException {
+        return write(format, included, prefetch, 0);
+    }
+
+    /**
+     * Writes the files as an archive, listed one file per page, and reads the archive back.
+     * @param contentLength length reported for the files, 0 for their actual length
+     */
+    private Map<String, String> write(ArchiveOutput.Format format, Predicate<String> included, int prefetch,
+            long contentLength) throws IOException {
+        ArchiveOutput output = new ArchiveOutput(format, page(null), cursor -> {
+            cursors.add(cursor);
+            return page(cursor);
+        }, included, key -> {
+            byte[] bytes = FILES.get(key).getBytes(UTF_8);
+            return StoredObject.builder()
+                    .content(new ByteArrayInputStream(bytes))
+                    .contentLength(contentLength == 0 ? bytes.length : contentLength)
+                    .build();
+        }, executor, prefetch);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        output.write(body);
+
+        return read(format, body.toByteArray());
+    }
+
+    private static ObjectPage page(String cursor) {
+        List<String> keys = new ArrayList<>(FILES.keySet());
+        int next = cursor == null ? 0 : keys.indexOf(cursor) + 1;
+        String key = keys.get(next);
+        return ObjectPage.builder()
+                .objects(List.of(ObjectSummary.builder().key(key).build()))
+                .nextCursor(next + 1 < keys.size() ? key : null)
+                .build();
+    }
+
+    private static Map<String, String> read(ArchiveOutput.Format format, byte[] archive) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        InputStream in = new ByteArrayInputStream(archive);
+        try (ArchiveInputStream<? extends ArchiveEntry> entryStream = format == ArchiveOutput.Format.ZIP
+                ? new ZipArchiveInputStream(in)
+                : new TarArchiveInputStream(new GZIPInputStream(in))) {
+            ArchiveEntry entry;
+            while ((entry = entryStream.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(entryStream.readAllBytes(), UTF_8));
+            }
+        }
+        return entries;
+    }
+}
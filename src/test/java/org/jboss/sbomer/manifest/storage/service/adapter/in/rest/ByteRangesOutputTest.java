@@ -0,0 +1,43 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the multipart/byteranges body written by ByteRangesOutput.
+ */
+class ByteRangesOutputTest {
+
+    @Test
+    void testWritesEveryRangeAsPart() throws IOException {
+        byte[] file = "0123456789".getBytes(US_ASCII);
+        ByteRangesOutput output = new ByteRangesOutput("XYZ", List.of(ByteRange.of(0, 1), ByteRange.of(7, 9)), file.length,
+                "application/octet-stream",
+                r -> new ByteArrayInputStream(Arrays.copyOfRange(file, r.getFirst().intValue(), r.getLast().intValue() + 1)));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        output.write(body);
+
+        String expected = "--XYZ\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "Content-Range: bytes 0-1/10\r\n"
+                + "\r\n"
+                + "01\r\n"
+                + "--XYZ\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "Content-Range: bytes 7-9/10\r\n"
+                + "\r\n"
+                + "789\r\n"
+                + "--XYZ--\r\n";
+        assertEquals(expected, body.toString(US_ASCII));
+    }
+}
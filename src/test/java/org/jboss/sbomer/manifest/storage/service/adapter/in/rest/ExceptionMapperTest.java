@@ -5,6 +5,7 @@ import static jakarta.ws.rs.core.Response.Status.FORBIDDEN;
 import static jakarta.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import static jakarta.ws.rs.core.Response.Status.NOT_FOUND;
 import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 
@@ -25,7 +26,7 @@ class ExceptionMapperTest {
     @Test
     void testStorageFileNotFoundReturnsNotFound() {
         String message = "File not found";
-        when(storageService.getFileContent(anyString()))
+        when(storageService.getFile(anyString(), any()))
                 .thenThrow(new StorageFileNotFoundException(message, null));
         given()
                 .when().get("/api/v1/storage/content/gen-1/bom.json")
@@ -37,7 +38,7 @@ class ExceptionMapperTest {
     @Test
     void testStorageAccessDeniedReturnsForbidden() {
         String message = "Access denied";
-        when(storageService.getFileContent(anyString()))
+        when(storageService.getFile(anyString(), any()))
                 .thenThrow(new StorageAccessException(message, null));
         given()
                 .when().get("/api/v1/storage/content/gen-1/bom.json")
@@ -49,7 +50,7 @@ class ExceptionMapperTest {
     @Test
     void testUnhandledExceptionReturnsInternalServerError() {
         String message = "Error";
-        when(storageService.getFileContent(anyString()))
+        when(storageService.getFile(anyString(), any()))
                 .thenThrow(new RuntimeException(message));
         given()
                 .when().get("/api/v1/storage/content/gen-1/bom.json")
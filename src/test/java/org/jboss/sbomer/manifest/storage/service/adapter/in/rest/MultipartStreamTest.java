@@ -0,0 +1,137 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for MultipartStream.
+ * Tests parsing of parts, content spanning buffer refills and malformed bodies.
+ */
+class MultipartStreamTest {
+
+    private static final String BOUNDARY = "----boundary42";
+
+    @Test
+    void testReadsPartsInOrder() throws IOException {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"files\"; filename=\"bom.json\"\r\n"
+                + "Content-Type: application/json\r\n"
+                + "\r\n"
+                + "{\"a\":1}\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"files\"; filename=\"b;o\\\"m.spdx\"\r\n"
+                + "\r\n"
+                + "\r\n--not-the-boundary\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+        MultipartStream multipart = new MultipartStream(new ByteArrayInputStream(body.getBytes(UTF_8)), BOUNDARY);
+
+        MultipartStream.Part first = multipart.nextPart();
+        assertEquals("files", first.name());
+        assertEquals("bom.json", first.filename());
+        assertEquals("application/json", first.contentType());
+        assertEquals("{\"a\":1}", new String(first.content().readAllBytes(), UTF_8));
+
+        MultipartStream.Part second = multipart.nextPart();
+        assertEquals("b;o\"m.spdx", second.filename());
+        assertNull(second.contentType());
+        assertEquals("\r\n--not-the-boundary", new String(second.content().readAllBytes(), UTF_8));
+
+        assertNull(multipart.nextPart());
+        assertNull(multipart.nextPart());
+    }
+
+    @Test
+    void testSkipsUnreadContentAndPreamble() throws IOException {
+        String body = "preamble\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"comment\"\r\n\r\n"
+                + "ignored\r\n"
+                + "--" + BOUNDARY + "  \r\n"
+                + "Content-Disposition: form-data; name=\"files\"; filename=\"bom.json\"\r\n\r\n"
+                + "{}\r\n"
+                + "--" + BOUNDARY + "--";
+        MultipartStream multipart = new MultipartStream(new ByteArrayInputStream(body.getBytes(UTF_8)), BOUNDARY);
+
+        assertNull(multipart.nextPart().filename());
+        MultipartStream.Part file = multipart.nextPart();
+
+        assertEquals("bom.json", file.filename());
+        assertEquals("{}", new String(file.content().readAllBytes(), UTF_8));
+        assertNull(multipart.nextPart());
+    }
+
+    @Test
+    void testStreamsContentLargerThanBuffer() throws IOException {
+        byte[] content = new byte[MultipartStream.BUFFER_SIZE * 3 + 17];
+        for (int i = 0; i < content.length; i++) {
+            // includes CR, LF and '-' bytes around buffer borders
+            content[i] = (byte) "\r\n-ab".charAt(i % 5);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"files\"; filename=\"big.json\"\r\n\r\n").getBytes(UTF_8));
+        body.write(content);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(UTF_8));
+        // the body arrives in small, uneven chunks
+        MultipartStream multipart = new MultipartStream(new TricklingInputStream(body.toByteArray(), 1000), BOUNDARY);
+
+        InputStream part = multipart.nextPart().content();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        byte[] chunk = new byte[333];
+        int n;
+        while ((n = part.read(chunk)) >= 0) {
+            read.write(chunk, 0, n);
+        }
+
+        assertArrayEquals(content, read.toByteArray());
+        assertNull(multipart.nextPart());
+    }
+
+    @Test
+    void testTruncatedBodyFails() throws IOException {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"files\"; filename=\"bom.json\"\r\n\r\n"
+                + "{\"a\":";
+        MultipartStream multipart = new MultipartStream(new ByteArrayInputStream(body.getBytes(UTF_8)), BOUNDARY);
+
+        InputStream content = multipart.nextPart().content();
+
+        assertThrows(MultipartStream.MalformedMultipartException.class, content::readAllBytes);
+    }
+
+    @Test
+    void testBodyWithoutBoundaryFails() {
+        MultipartStream multipart = new MultipartStream(new ByteArrayInputStream("{}".getBytes(UTF_8)), BOUNDARY);
+
+        assertThrows(MultipartStream.MalformedMultipartException.class, multipart::nextPart);
+    }
+
+    @Test
+    void testBoundaryOfContentType() {
+        assertEquals(BOUNDARY, MultipartStream.boundary("multipart/form-data; boundary=" + BOUNDARY));
+        assertEquals("a b", MultipartStream.boundary("Multipart/Form-Data; charset=utf-8; boundary=\"a b\""));
+        assertNull(MultipartStream.boundary("application/json"));
+        assertNull(MultipartStream.boundary("multipart/form-data"));
+        assertNull(MultipartStream.boundary(null));
+    }
+
+    private static final class TricklingInputStream extends FilterInputStream {
+        private final int maxChunk;
+
+        TricklingInputStream(byte[] bytes, int maxChunk) {
+            super(new ByteArrayInputStream(bytes));
+            this.maxChunk = maxChunk;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, maxChunk));
+        }
+    }
+}
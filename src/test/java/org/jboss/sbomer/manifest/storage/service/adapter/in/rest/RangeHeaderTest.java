@@ -0,0 +1,53 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for RangeHeader parsing and ByteRange resolution.
+ */
+class RangeHeaderTest {
+
+    @Test
+    void testParseSingleRange() {
+        assertEquals(List.of(ByteRange.of(0, 99)), RangeHeader.parse("bytes=0-99"));
+    }
+
+    @Test
+    void testParseMultipleRanges() {
+        assertEquals(List.of(ByteRange.of(0, 99), ByteRange.from(200), ByteRange.suffix(50)),
+                RangeHeader.parse("bytes=0-99, 200-,-50"));
+    }
+
+    @Test
+    void testParseIgnoresAbsentOrInvalidHeader() {
+        assertTrue(RangeHeader.parse(null).isEmpty());
+        assertTrue(RangeHeader.parse("items=0-9").isEmpty());
+        assertTrue(RangeHeader.parse("bytes=").isEmpty());
+        assertTrue(RangeHeader.parse("bytes=-").isEmpty());
+        assertTrue(RangeHeader.parse("bytes=9-0").isEmpty());
+        assertTrue(RangeHeader.parse("bytes=a-b").isEmpty());
+        assertTrue(RangeHeader.parse("bytes=0-9,x").isEmpty());
+        assertTrue(RangeHeader.parse("bytes=99999999999999999999-").isEmpty());
+    }
+
+    @Test
+    void testParseIgnoresTooManyRanges() {
+        String header = "bytes=" + "0-0,".repeat(RangeHeader.MAX_RANGES) + "1-1";
+        assertTrue(RangeHeader.parse(header).isEmpty());
+    }
+
+    @Test
+    void testResolve() {
+        assertEquals(ByteRange.of(0, 9), ByteRange.of(0, 99).resolve(10));
+        assertEquals(ByteRange.of(5, 9), ByteRange.from(5).resolve(10));
+        assertEquals(ByteRange.of(7, 9), ByteRange.suffix(3).resolve(10));
+        assertEquals(ByteRange.of(0, 9), ByteRange.suffix(30).resolve(10));
+        assertNull(ByteRange.from(10).resolve(10));
+        assertNull(ByteRange.suffix(0).resolve(10));
+    }
+}
@@ -0,0 +1,240 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import static io.restassured.RestAssured.given;
+import static jakarta.ws.rs.core.Response.Status.NOT_FOUND;
+import static jakarta.ws.rs.core.Response.Status.NOT_MODIFIED;
+import static jakarta.ws.rs.core.Response.Status.OK;
+import static jakarta.ws.rs.core.Response.Status.PARTIAL_CONTENT;
+import static jakarta.ws.rs.core.Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StoragePreconditionFailedException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.port.api.StorageAdministration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+
+@QuarkusTest
+class StorageResourceDownloadTest {
+
+    private static final String PATH = "/api/v1/storage/content/gen-1/bom.json";
+    private static final String ETAG = "\"v1\"";
+    private static final byte[] FILE = "0123456789".getBytes(US_ASCII);
+    private static final Instant LAST_MODIFIED = Instant.parse("2025-01-01T10:00:00Z");
+    private static final String LAST_MODIFIED_HEADER = "Wed, 01 Jan 2025 10:00:00 GMT";
+
+    @InjectMock
+    StorageAdministration storageService;
+
+    @BeforeEach
+    void setUp() {
+        when(storageService.getFile(anyString(), any()))
+                .thenAnswer(invocation -> stored(invocation.getArgument(1)));
+    }
+
+    @Test
+    void testWithoutRangeReturnsWholeFile() {
+        given()
+                .when().get(PATH)
+                .then()
+                .statusCode(OK.getStatusCode())
+                .header("Accept-Ranges", "bytes")
+                .header("ETag", ETAG)
+                .header("Last-Modified", LAST_MODIFIED_HEADER)
+                .header("Cache-Control", "no-cache")
+                .contentType("application/json")
+                .body(equalTo("0123456789"));
+    }
+
+    @Test
+    void testMatchingIfNoneMatchReturnsNotModified() {
+        given()
+                .header("If-None-Match", ETAG)
+                .when().get(PATH)
+                .then()
+                .statusCode(NOT_MODIFIED.getStatusCode())
+                .header("ETag", ETAG)
+                .header("Cache-Control", "no-cache");
+        verify(storageService).getFile(anyString(), argThat(o -> ETAG.equals(o.getIfNoneMatch())));
+    }
+
+    @Test
+    void testOutdatedIfNoneMatchReturnsWholeFile() {
+        given()
+                .header("If-None-Match", "\"v0\"")
+                .when().get(PATH)
+                .then()
+                .statusCode(OK.getStatusCode())
+                .body(equalTo("0123456789"));
+    }
+
+    @Test
+    void testIfModifiedSinceIsPassedToStorage() {
+        given()
+                .header("If-Modified-Since", LAST_MODIFIED_HEADER)
+                .when().get(PATH)
+                .then()
+                .statusCode(NOT_MODIFIED.getStatusCode())
+                .header("Last-Modified", LAST_MODIFIED_HEADER);
+        verify(storageService).getFile(anyString(), argThat(o -> LAST_MODIFIED.equals(o.getIfModifiedSince())));
+    }
+
+    @Test
+    void testSingleRangeReturnsPartialContent() {
+        given()
+                .header("Range", "bytes=2-4")
+                .when().get(PATH)
+                .then()
+                .statusCode(PARTIAL_CONTENT.getStatusCode())
+                .header("Content-Range", "bytes 2-4/10")
+                .body(equalTo("234"));
+    }
+
+    @Test
+    void testMultipleRangesReturnMultipartBody() {
+        given()
+                .header("Range", "bytes=0-1,-2")
+                .when().get(PATH)
+                .then()
+                .statusCode(PARTIAL_CONTENT.getStatusCode())
+                .contentType(startsWith("multipart/byteranges; boundary="))
+                .body(containsString("Content-Type: application/json\r\nContent-Range: bytes 0-1/10\r\n\r\n01\r\n"))
+                .body(containsString("Content-Range: bytes 8-9/10\r\n\r\n89\r\n"));
+    }
+
+    @Test
+    void testSingleRangeOutsideFileIsNotSatisfiable() {
+        given()
+                .header("Range", "bytes=20-30")
+                .when().get(PATH)
+                .then()
+                .statusCode(REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode())
+                .header("Content-Range", "bytes */10");
+    }
+
+    @Test
+    void testMultipleRangesOutsideFileAreNotSatisfiable() {
+        given()
+                .header("Range", "bytes=20-30,40-")
+                .when().get(PATH)
+                .then()
+                .statusCode(REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode())
+                .header("Content-Range", "bytes */10");
+    }
+
+    @Test
+    void testChangedIfRangeReturnsWholeFile() {
+        given()
+                .header("Range", "bytes=2-4")
+                .header("If-Range", "\"v0\"")
+                .when().get(PATH)
+                .then()
+                .statusCode(OK.getStatusCode())
+                .body(equalTo("0123456789"));
+    }
+
+    @Test
+    void testAcceptedEncodingIsSentAsStored() {
+        byte[] compressed = "compressed".getBytes(US_ASCII);
+        when(storageService.getFile(anyString(), argThat(o -> o != null && "zstd".equals(o.getAcceptEncoding()))))
+                .thenReturn(StoredObject.builder()
+                        .content(new ByteArrayInputStream(compressed))
+                        .contentLength(compressed.length)
+                        .totalLength(compressed.length)
+                        .contentType("application/json")
+                        .contentEncoding("zstd")
+                        .eTag(ETAG)
+                        .build());
+
+        given()
+                .header("Accept-Encoding", "zstd")
+                .when().get(PATH)
+                .then()
+                .statusCode(OK.getStatusCode())
+                .header("Content-Encoding", "zstd")
+                .header("Vary", "Accept-Encoding")
+                .header("Content-Length", String.valueOf(compressed.length));
+    }
+
+    @Test
+    void testMultipleRangesAreCutFromUnencodedFile() {
+        given()
+                .header("Accept-Encoding", "zstd")
+                .header("Range", "bytes=0-1,-2")
+                .when().get(PATH)
+                .then()
+                .statusCode(PARTIAL_CONTENT.getStatusCode());
+        verify(storageService).getFile(anyString(), argThat(o -> ByteRange.of(0, 0).equals(o.getRange()) && o.getAcceptEncoding() == null));
+    }
+
+    @Test
+    void testStagedFileIsNotServed() {
+        given()
+                .when().get("/api/v1/storage/content/_batches/01J0000000000000000000000/gen-1/bom.json")
+                .then()
+                .statusCode(NOT_FOUND.getStatusCode());
+        verify(storageService, never()).getFile(anyString(), any());
+    }
+
+    @Test
+    void testBatchManifestIsNotServed() {
+        given()
+                .when().get("/api/v1/storage/content/gen-1/.batches/01J0000000000000000000000.json")
+                .then()
+                .statusCode(NOT_FOUND.getStatusCode());
+        verify(storageService, never()).getFile(anyString(), any());
+    }
+
+    private static StoredObject stored(DownloadOptions options) {
+        if (options.getIfMatch() != null && !options.getIfMatch().equals(ETAG)) {
+            throw new StoragePreconditionFailedException("Precondition failed", null);
+        }
+        if (ETAG.equals(options.getIfNoneMatch())
+                || (options.getIfModifiedSince() != null && !LAST_MODIFIED.isAfter(options.getIfModifiedSince()))) {
+            return StoredObject.builder().notModified(true).eTag(ETAG).lastModified(LAST_MODIFIED).build();
+        }
+        ByteRange range = options.getRange() == null ? null : options.getRange().resolve(FILE.length);
+        if (options.getRange() != null && range == null) {
+            throw new StorageRangeNotSatisfiableException("Range not satisfiable", null);
+        }
+        if (range == null) {
+            return StoredObject.builder()
+                    .content(new ByteArrayInputStream(FILE))
+                    .contentLength(FILE.length)
+                    .totalLength(FILE.length)
+                    .contentType("application/json")
+                    .eTag(ETAG)
+                    .lastModified(LAST_MODIFIED)
+                    .build();
+        }
+        return StoredObject.builder()
+                .content(new ByteArrayInputStream(Arrays.copyOfRange(FILE, range.getFirst().intValue(), range.getLast().intValue() + 1)))
+                .contentLength(range.length())
+                .rangeStart(range.getFirst())
+                .rangeEnd(range.getLast())
+                .totalLength(FILE.length)
+                .contentType("application/json")
+                .eTag(ETAG)
+                .lastModified(LAST_MODIFIED)
+                .build();
+    }
+}
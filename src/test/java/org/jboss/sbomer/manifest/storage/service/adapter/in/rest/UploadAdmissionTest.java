@@ -0,0 +1,126 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for UploadAdmission.
+ * Tests the budgets, the bounded queue, rejections and changing the limits at runtime.
+ */
+class UploadAdmissionTest {
+
+    private static final long MB = 1024 * 1024;
+
+    SimpleMeterRegistry registry;
+    ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testAdmitsWithinBudgetAndReleasesOnClose() {
+        UploadAdmission admission = new UploadAdmission(2, 10 * MB, Duration.ZERO, 4, registry);
+
+        try (UploadAdmission.Permit first = admission.acquire(4 * MB);
+                UploadAdmission.Permit second = admission.acquire(4 * MB)) {
+            assertEquals(2, admission.getInFlight());
+            assertEquals(8 * MB, admission.getInFlightBytes());
+            assertEquals(8 * MB, registry.get("sbomer.storage.admission.bytes").gauge().value());
+        }
+
+        assertEquals(0, admission.getInFlight());
+        assertEquals(0, admission.getInFlightBytes());
+    }
+
+    @Test
+    void testRejectsWhenOverBudgetAfterWaiting() {
+        UploadAdmission admission = new UploadAdmission(4, 10 * MB, Duration.ofMillis(50), 4, registry);
+
+        try (UploadAdmission.Permit held = admission.acquire(8 * MB)) {
+            UploadAdmission.UploadRejectedException e = assertThrows(UploadAdmission.UploadRejectedException.class,
+                    () -> admission.acquire(4 * MB));
+            assertTrue(e.getRetryAfterSeconds() >= 1);
+        }
+
+        assertEquals(1, registry.get("sbomer.storage.admission.rejected").tag("reason", "timeout").counter().count());
+        assertEquals(0, admission.getQueued());
+    }
+
+    @Test
+    void testRejectsRightAwayWhenQueueIsFull() {
+        UploadAdmission admission = new UploadAdmission(1, 10 * MB, Duration.ofSeconds(10), 0, registry);
+
+        try (UploadAdmission.Permit held = admission.acquire(MB)) {
+            assertThrows(UploadAdmission.UploadRejectedException.class, () -> admission.acquire(MB));
+        }
+
+        assertEquals(1, registry.get("sbomer.storage.admission.rejected").tag("reason", "queue_full").counter().count());
+    }
+
+    @Test
+    void testWaitingUploadIsAdmittedWhenBudgetIsReleased() throws Exception {
+        UploadAdmission admission = new UploadAdmission(1, 10 * MB, Duration.ofSeconds(10), 4, registry);
+        UploadAdmission.Permit held = admission.acquire(MB);
+
+        CompletableFuture<UploadAdmission.Permit> waiting = CompletableFuture.supplyAsync(() -> admission.acquire(MB), executor);
+        awaitQueued(admission, 1);
+        assertFalse(waiting.isDone());
+
+        held.close();
+        try (UploadAdmission.Permit admitted = waiting.get(5, TimeUnit.SECONDS)) {
+            assertEquals(1, admission.getInFlight());
+        }
+    }
+
+    @Test
+    void testLargerThanBudgetIsAdmittedAlone() {
+        UploadAdmission admission = new UploadAdmission(4, 10 * MB, Duration.ZERO, 4, registry);
+
+        try (UploadAdmission.Permit large = admission.acquire(50 * MB)) {
+            assertEquals(50 * MB, admission.getInFlightBytes());
+            assertThrows(UploadAdmission.UploadRejectedException.class, () -> admission.acquire(MB));
+        }
+    }
+
+    @Test
+    void testRaisedLimitsAdmitWaitingUploads() throws Exception {
+        UploadAdmission admission = new UploadAdmission(1, 10 * MB, Duration.ofSeconds(10), 4, registry);
+
+        try (UploadAdmission.Permit held = admission.acquire(MB)) {
+            CompletableFuture<UploadAdmission.Permit> waiting = CompletableFuture.supplyAsync(() -> admission.acquire(MB), executor);
+            awaitQueued(admission, 1);
+
+            admission.setLimits(2, 10 * MB, Duration.ofSeconds(10));
+
+            waiting.get(5, TimeUnit.SECONDS).close();
+            assertEquals(2, registry.get("sbomer.storage.admission.limit.uploads").gauge().value());
+        }
+    }
+
+    private static void awaitQueued(UploadAdmission admission, int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (admission.getQueued() < queued && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(queued, admission.getQueued());
+    }
+}
@@ -0,0 +1,104 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.in.rest;
+
+import static io.restassured.RestAssured.given;
+import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomFile;
+import org.jboss.sbomer.manifest.storage.service.core.port.api.StorageAdministration;
+import org.jboss.sbomer.manifest.storage.service.core.port.api.UploadSessionAdministration;
+import org.junit.jupiter.api.Test;
+
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+
+/**
+ * Tests that uploads, through sessions or through this service, cannot write internal objects.
+ */
+@QuarkusTest
+class UploadSessionResourceTest {
+
+    private static final String SESSIONS = "/api/v1/storage/generations/{generationId}/upload-sessions";
+
+    @InjectMock
+    UploadSessionAdministration uploadSessions;
+
+    @InjectMock
+    StorageAdministration storageService;
+
+    @Test
+    void testSessionOfReservedFolderIsRejected() {
+        startSession("_retention", "pins/gen-1");
+        given()
+                .contentType(ContentType.JSON)
+                .body(Map.of("files", List.of(Map.of("filename", "bom.json", "uploadId", "u-1", "size", 2,
+                        "partETags", List.of("\"e1\"")))))
+                .when().post(SESSIONS + "/finalize", "_summaries")
+                .then()
+                .statusCode(BAD_REQUEST.getStatusCode());
+        given()
+                .contentType(ContentType.JSON)
+                .body(Map.of("files", List.of(Map.of("filename", "bom.json", "size", 2))))
+                .when().post("/api/v1/storage/generations/{generationId}/enhancements/{enhancementId}/upload-sessions",
+                        "gen-1", ".batches")
+                .then()
+                .statusCode(BAD_REQUEST.getStatusCode());
+
+        verify(uploadSessions, never()).startGenerationUploadSession(anyString(), any());
+        verify(uploadSessions, never()).startEnhancementUploadSession(anyString(), anyString(), any());
+        verify(uploadSessions, never()).finalizeGenerationUploadSession(anyString(), any());
+    }
+
+    @Test
+    void testSessionFilesOutsideTheFolderAreRejected() {
+        startSession("gen-1", ".batches/0000000000001.json");
+        startSession("gen-1", "enh-1/bom.json");
+        startSession("gen-1", "_blobs");
+        given()
+                .contentType(ContentType.JSON)
+                .body(Map.of("files", List.of(Map.of("filename", "../_retention/pins/gen-2", "uploadId", "u-1",
+                        "size", 2, "partETags", List.of("\"e1\"")))))
+                .when().post(SESSIONS + "/finalize", "gen-1")
+                .then()
+                .statusCode(BAD_REQUEST.getStatusCode());
+
+        verify(uploadSessions, never()).startGenerationUploadSession(anyString(), any());
+        verify(uploadSessions, never()).finalizeGenerationUploadSession(anyString(), any());
+    }
+
+    @Test
+    void testUploadedFileNamingBatchManifestIsRejected() {
+        when(storageService.streamGenerationSboms(anyString(), any())).thenAnswer(invocation -> {
+            Iterator<SbomFile> files = invocation.getArgument(1);
+            while (files.hasNext()) {
+                files.next().getContent().readAllBytes();
+            }
+            return Map.of();
+        });
+
+        given()
+                .multiPart("files", ".batches/0000000000001.json", "{}".getBytes(UTF_8), "application/json")
+                .when().post("/api/v1/storage/generations/{generationId}", "gen-1")
+                .then()
+                .statusCode(BAD_REQUEST.getStatusCode());
+    }
+
+    private static void startSession(String generationId, String filename) {
+        given()
+                .contentType(ContentType.JSON)
+                .body(Map.of("files", List.of(Map.of("filename", filename, "size", 2))))
+                .when().post(SESSIONS, generationId)
+                .then()
+                .statusCode(BAD_REQUEST.getStatusCode());
+    }
+}
@@ -0,0 +1,240 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StoragePreconditionFailedException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for CachingObjectStorage.
+ * Tests filling, serving, revalidating and evicting cache entries.
+ */
+@ExtendWith(MockitoExtension.class)
+class CachingObjectStorageTest {
+
+    private static final String KEY = "gen-1/bom.json";
+    private static final String CONTENT = "0123456789";
+    private static final Duration REVALIDATE_AFTER = Duration.ofMinutes(10);
+
+    @Mock
+    ObjectStorage delegate;
+
+    @TempDir
+    Path directory;
+
+    SimpleMeterRegistry registry;
+    MutableClock clock;
+    CachingObjectStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        clock = new MutableClock(Instant.parse("2025-01-01T10:00:00Z"));
+        storage = new CachingObjectStorage(delegate, directory, 1024, 100, REVALIDATE_AFTER, registry, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    void testMissFillsCacheAndHitIsServedLocally() throws IOException {
+        when(delegate.download(eq(KEY), any())).thenReturn(stored(CONTENT, "\"v1\""));
+
+        assertEquals(CONTENT, read(storage.download(KEY, DownloadOptions.none())));
+        StoredObject hit = storage.download(KEY, DownloadOptions.none());
+
+        assertNotNull(hit.getFile());
+        assertEquals(CONTENT, Files.readString(hit.getFile()));
+        assertEquals(CONTENT, read(hit));
+        assertEquals("\"v1\"", hit.getETag());
+        assertEquals("application/json", hit.getContentType());
+        verify(delegate, times(1)).download(eq(KEY), any());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "sbomer.storage.cache").tag("result", "hit").functionCounter().count());
+        assertEquals(10.0, registry.get("sbomer.storage.cache.stored").gauge().value());
+        assertEquals(10.0, registry.get("sbomer.storage.cache.served").counter().count());
+    }
+
+    @Test
+    void testPartiallyReadObjectIsNotCached() throws IOException {
+        when(delegate.download(eq(KEY), any()))
+                .thenReturn(stored(CONTENT, "\"v1\""))
+                .thenReturn(stored(CONTENT, "\"v1\""));
+
+        try (InputStream content = storage.download(KEY, DownloadOptions.none()).getContent()) {
+            content.readNBytes(3);
+        }
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        StoredObject second = storage.download(KEY, DownloadOptions.none());
+
+        assertNull(second.getFile());
+        verify(delegate, times(2)).download(eq(KEY), any());
+    }
+
+    @Test
+    void testRangeAndConditionsAreServedFromCache() throws IOException {
+        fill(CONTENT, "\"v1\"");
+
+        StoredObject range = storage.download(KEY, DownloadOptions.builder().range(ByteRange.of(2, 4)).build());
+        StoredObject notModified = storage.download(KEY, DownloadOptions.builder().ifNoneMatch("W/\"v1\"").build());
+
+        assertTrue(range.isPartial());
+        assertEquals(2L, range.getRangeStart());
+        assertEquals(4L, range.getRangeEnd());
+        assertEquals(10L, range.getTotalLength());
+        assertEquals("234", read(range));
+        assertTrue(notModified.isNotModified());
+        assertThrows(StoragePreconditionFailedException.class, () ->
+                storage.download(KEY, DownloadOptions.builder().ifMatch("\"v0\"").build()));
+        verify(delegate, times(1)).download(eq(KEY), any());
+    }
+
+    @Test
+    void testMissWithOptionsIsNotCached() {
+        StoredObject ranged = stored("234", "\"v1\"");
+        when(delegate.download(eq(KEY), any())).thenReturn(ranged);
+
+        assertSame(ranged, storage.download(KEY, DownloadOptions.builder().range(ByteRange.of(2, 4)).build()));
+    }
+
+    @Test
+    void testStaleEntryIsRevalidated() throws IOException {
+        fill(CONTENT, "\"v1\"");
+        clock.advance(REVALIDATE_AFTER.plusSeconds(1));
+        when(delegate.download(eq(KEY), argThat(o -> "\"v1\"".equals(o.getIfNoneMatch()))))
+                .thenReturn(StoredObject.builder().notModified(true).eTag("\"v1\"").build());
+
+        StoredObject revalidated = storage.download(KEY, DownloadOptions.none());
+        StoredObject fresh = storage.download(KEY, DownloadOptions.none());
+
+        assertEquals(CONTENT, read(revalidated));
+        assertNotNull(fresh.getFile());
+        verify(delegate, times(2)).download(eq(KEY), any());
+    }
+
+    @Test
+    void testChangedEntryIsReplaced() throws IOException {
+        fill(CONTENT, "\"v1\"");
+        clock.advance(REVALIDATE_AFTER.plusSeconds(1));
+        when(delegate.download(eq(KEY), argThat(o -> "\"v1\"".equals(o.getIfNoneMatch()))))
+                .thenReturn(stored("abc", "\"v2\""));
+
+        assertEquals("abc", read(storage.download(KEY, DownloadOptions.none())));
+        StoredObject hit = storage.download(KEY, DownloadOptions.none());
+
+        assertEquals("\"v2\"", hit.getETag());
+        assertEquals("abc", read(hit));
+    }
+
+    @Test
+    void testUploadInvalidatesEntry() throws IOException {
+        fill(CONTENT, "\"v1\"");
+
+        storage.upload(KEY, new ByteArrayInputStream(new byte[0]), 0, "application/json");
+
+        verify(delegate).upload(eq(KEY), any(), argThat((UploadOptions options) -> options.getContentLength() == 0));
+        when(delegate.download(eq(KEY), any())).thenReturn(stored("abc", "\"v2\""));
+        assertEquals("abc", read(storage.download(KEY, DownloadOptions.none())));
+    }
+
+    @Test
+    void testLargeObjectIsNotCached() throws IOException {
+        String large = "x".repeat(101);
+        when(delegate.download(eq(KEY), any())).thenReturn(stored(large, "\"v1\""));
+
+        assertEquals(large, read(storage.download(KEY, DownloadOptions.none())));
+
+        assertEquals(0.0, registry.get("sbomer.storage.cache.stored").gauge().value());
+    }
+
+    @Test
+    void testCacheStaysWithinBudget() throws IOException {
+        for (int i = 0; i < 30; i++) {
+            String key = "gen-" + i + "/bom.json";
+            when(delegate.download(eq(key), any())).thenReturn(stored("x".repeat(100), "\"v1\""));
+            read(storage.download(key, DownloadOptions.none()));
+        }
+
+        assertTrue(registry.get("sbomer.storage.cache.stored").gauge().value() <= 1024);
+        assertTrue(registry.get("cache.evictions").tag("cache", "sbomer.storage.cache").functionCounter().count() > 0);
+    }
+
+    private void fill(String content, String eTag) throws IOException {
+        when(delegate.download(eq(KEY), eq(DownloadOptions.none()))).thenReturn(stored(content, eTag));
+        read(storage.download(KEY, DownloadOptions.none()));
+    }
+
+    private static StoredObject stored(String content, String eTag) {
+        byte[] bytes = content.getBytes(UTF_8);
+        return StoredObject.builder()
+                .content(new ByteArrayInputStream(bytes))
+                .contentLength(bytes.length)
+                .totalLength(bytes.length)
+                .contentType("application/json")
+                .eTag(eTag)
+                .build();
+    }
+
+    private static String read(StoredObject object) throws IOException {
+        try (InputStream content = object.getContent()) {
+            return new String(content.readAllBytes(), UTF_8);
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
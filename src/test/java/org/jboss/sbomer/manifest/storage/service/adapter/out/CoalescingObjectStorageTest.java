@@ -0,0 +1,227 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for CoalescingObjectStorage.
+ * Tests that concurrent downloads share one fetch and read it independently.
+ */
+@ExtendWith(MockitoExtension.class)
+class CoalescingObjectStorageTest {
+
+    private static final String KEY = "gen-1/bom.json";
+    private static final int REQUESTS = 8;
+
+    @Mock
+    ObjectStorage delegate;
+
+    @TempDir
+    Path directory;
+
+    SimpleMeterRegistry registry;
+    CoalescingObjectStorage storage;
+    ExecutorService clients;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        storage = new CoalescingObjectStorage(delegate, directory, registry);
+        clients = Executors.newFixedThreadPool(REQUESTS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clients.shutdownNow();
+        storage.close();
+    }
+
+    @Test
+    void testConcurrentDownloadsShareOneFetch() throws Exception {
+        byte[] content = randomBytes(1024 * 1024);
+        CountDownLatch fetchStarted = new CountDownLatch(1);
+        CountDownLatch allJoined = new CountDownLatch(1);
+        when(delegate.download(eq(KEY), any())).thenAnswer(invocation -> {
+            fetchStarted.countDown();
+            assertTrue(allJoined.await(10, TimeUnit.SECONDS));
+            return stored(content);
+        });
+
+        List<Future<byte[]>> downloads = new ArrayList<>();
+        downloads.add(clients.submit(() -> readAll(storage.download(KEY, DownloadOptions.none()))));
+        assertTrue(fetchStarted.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < REQUESTS; i++) {
+            downloads.add(clients.submit(() -> readAll(storage.download(KEY, DownloadOptions.none()))));
+        }
+        awaitCoalesced(REQUESTS - 1);
+        allJoined.countDown();
+
+        for (Future<byte[]> download : downloads) {
+            assertArrayEquals(content, download.get(10, TimeUnit.SECONDS));
+        }
+        verify(delegate, times(1)).download(eq(KEY), any());
+        assertSpillFilesRemoved();
+    }
+
+    @Test
+    void testSlowConsumerDoesNotStallOthers() throws Exception {
+        byte[] content = randomBytes(1024 * 1024);
+        CountDownLatch allJoined = new CountDownLatch(1);
+        when(delegate.download(eq(KEY), any())).thenAnswer(invocation -> {
+            assertTrue(allJoined.await(10, TimeUnit.SECONDS));
+            return stored(content);
+        });
+
+        Future<StoredObject> slow = clients.submit(() -> storage.download(KEY, DownloadOptions.none()));
+        Future<byte[]> fast = clients.submit(() -> readAll(storage.download(KEY, DownloadOptions.none())));
+        awaitCoalesced(1);
+        allJoined.countDown();
+
+        // the slow consumer has not read a single byte yet
+        assertArrayEquals(content, fast.get(10, TimeUnit.SECONDS));
+        assertArrayEquals(content, readAll(slow.get(10, TimeUnit.SECONDS)));
+        assertSpillFilesRemoved();
+    }
+
+    @Test
+    void testFailureIsSharedByAllParticipants() throws Exception {
+        CountDownLatch allJoined = new CountDownLatch(1);
+        when(delegate.download(eq(KEY), any())).thenAnswer(invocation -> {
+            assertTrue(allJoined.await(10, TimeUnit.SECONDS));
+            throw new StorageFileNotFoundException("File not found: " + KEY, null);
+        });
+
+        Future<StoredObject> first = clients.submit(() -> storage.download(KEY, DownloadOptions.none()));
+        Future<StoredObject> second = clients.submit(() -> storage.download(KEY, DownloadOptions.none()));
+        awaitCoalesced(1);
+        allJoined.countDown();
+
+        for (Future<StoredObject> download : List.of(first, second)) {
+            Exception e = assertThrows(Exception.class, () -> download.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(StorageFileNotFoundException.class, e.getCause());
+        }
+        verify(delegate, times(1)).download(eq(KEY), any());
+    }
+
+    @Test
+    void testLocalFileIsReadDirectly() throws Exception {
+        byte[] content = randomBytes(1000);
+        Path file = Files.write(Files.createTempFile(directory, "cached", ".bin"), content);
+        CountDownLatch allJoined = new CountDownLatch(1);
+        when(delegate.download(eq(KEY), any())).thenAnswer(invocation -> {
+            assertTrue(allJoined.await(10, TimeUnit.SECONDS));
+            return stored(content).toBuilder()
+                    .content(new FileRegionInputStream(file, 0, content.length))
+                    .file(file)
+                    .build();
+        });
+
+        Future<StoredObject> first = clients.submit(() -> storage.download(KEY, DownloadOptions.none()));
+        Future<StoredObject> second = clients.submit(() -> storage.download(KEY, DownloadOptions.none()));
+        awaitCoalesced(1);
+        allJoined.countDown();
+
+        for (Future<StoredObject> download : List.of(first, second)) {
+            StoredObject object = download.get(10, TimeUnit.SECONDS);
+            assertEquals(file, object.getFile());
+            assertArrayEquals(content, readAll(object));
+        }
+    }
+
+    @Test
+    void testSequentialDownloadsAreNotCoalesced() throws IOException {
+        byte[] content = randomBytes(100);
+        when(delegate.download(eq(KEY), any())).thenAnswer(invocation -> stored(content));
+
+        assertArrayEquals(content, readAll(storage.download(KEY, DownloadOptions.none())));
+        assertArrayEquals(content, readAll(storage.download(KEY, DownloadOptions.none())));
+
+        verify(delegate, times(2)).download(eq(KEY), any());
+        assertEquals(0.0, registry.get(CoalescingObjectStorage.COALESCED_METRIC).counter().count());
+    }
+
+    @Test
+    void testRangedDownloadIsPassedThrough() {
+        DownloadOptions options = DownloadOptions.builder().range(ByteRange.of(0, 9)).build();
+        StoredObject ranged = stored(new byte[10]);
+        when(delegate.download(KEY, options)).thenReturn(ranged);
+
+        assertSame(ranged, storage.download(KEY, options));
+    }
+
+    private void awaitCoalesced(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (registry.get(CoalescingObjectStorage.COALESCED_METRIC).counter().count() < count) {
+            assertTrue(System.nanoTime() < deadline, "Requests did not join the flight");
+            Thread.sleep(5);
+        }
+    }
+
+    // the pump drops its reference right after the readers see the end of the download
+    private void assertSpillFilesRemoved() throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            try (var files = Files.list(directory)) {
+                if (files.findAny().isEmpty()) {
+                    return;
+                }
+            }
+            assertTrue(System.nanoTime() < deadline, "Spill file was not removed");
+            Thread.sleep(5);
+        }
+    }
+
+    private static StoredObject stored(byte[] content) {
+        return StoredObject.builder()
+                .content(new ByteArrayInputStream(content))
+                .contentLength(content.length)
+                .totalLength(content.length)
+                .eTag("\"v1\"")
+                .build();
+    }
+
+    private static byte[] readAll(StoredObject object) {
+        try (InputStream content = object.getContent()) {
+            return content.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
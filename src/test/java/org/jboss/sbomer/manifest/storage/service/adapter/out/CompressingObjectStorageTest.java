@@ -0,0 +1,245 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for CompressingObjectStorage.
+ * Tests compression on upload and the negotiation of the content encoding on download.
+ */
+@ExtendWith(MockitoExtension.class)
+class CompressingObjectStorageTest {
+
+    private static final String KEY = "gen-1/bom.json";
+    private static final String ETAG = "\"v1\"";
+    private static final byte[] CONTENT = "{\"components\":[{\"name\":\"quarkus-core\",\"version\":\"3.28.2\"}]}".repeat(100)
+            .getBytes(UTF_8);
+
+    @Mock
+    ObjectStorage delegate;
+
+    SimpleMeterRegistry registry;
+    CompressingObjectStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        storage = new CompressingObjectStorage(delegate, ContentCodec.ZSTD, registry);
+    }
+
+    @Test
+    void testUploadIsCompressedWhileStreaming() throws IOException {
+        ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+        doAnswer(invocation -> {
+            invocation.<InputStream>getArgument(1).transferTo(uploaded);
+            return null;
+        }).when(delegate).upload(eq(KEY), any(), any(UploadOptions.class));
+
+        storage.upload(KEY, new ByteArrayInputStream(CONTENT), CONTENT.length, "application/json");
+
+        ArgumentCaptor<UploadOptions> options = ArgumentCaptor.forClass(UploadOptions.class);
+        verify(delegate).upload(eq(KEY), any(), options.capture());
+        assertEquals("zstd", options.getValue().getContentEncoding());
+        assertEquals("application/json", options.getValue().getContentType());
+        assertEquals(-1, options.getValue().getContentLength());
+        assertEquals(String.valueOf(CONTENT.length), options.getValue().getMetadata().get(CompressingObjectStorage.UNCOMPRESSED_LENGTH));
+        assertTrue(uploaded.size() < CONTENT.length / 10);
+        assertArrayEquals(CONTENT, ContentCodec.ZSTD.decoder(new ByteArrayInputStream(uploaded.toByteArray())).readAllBytes());
+        assertEquals(CONTENT.length, registry.get("sbomer.storage.compression.uncompressed").counter().count());
+        assertEquals(uploaded.size(), registry.get("sbomer.storage.compression.compressed").counter().count());
+    }
+
+    @Test
+    void testCompressedContentTypeIsStoredAsIs() {
+        InputStream content = new ByteArrayInputStream(CONTENT);
+
+        storage.upload(KEY, content, CONTENT.length, "application/gzip");
+
+        verify(delegate).upload(eq(KEY), same(content), argThat((UploadOptions o) -> o.getContentEncoding() == null));
+    }
+
+    @Test
+    void testUploadWithoutCodecIsStoredAsIs() {
+        storage = new CompressingObjectStorage(delegate, null, registry);
+        InputStream content = new ByteArrayInputStream(CONTENT);
+
+        storage.upload(KEY, content, CONTENT.length, "application/json");
+
+        verify(delegate).upload(eq(KEY), same(content), argThat((UploadOptions o) -> o.getContentEncoding() == null));
+    }
+
+    @Test
+    void testAcceptedEncodingIsPassedThrough() {
+        StoredObject compressed = compressed();
+        when(delegate.download(eq(KEY), any())).thenReturn(compressed);
+
+        StoredObject object = storage.download(KEY, DownloadOptions.builder().acceptEncoding("gzip, zstd;q=0.9").build());
+
+        assertSame(compressed, object);
+    }
+
+    @Test
+    void testContentIsDecompressedForOtherClients() {
+        when(delegate.download(eq(KEY), any())).thenReturn(compressed());
+
+        StoredObject object = storage.download(KEY, DownloadOptions.builder().acceptEncoding("gzip, zstd;q=0").build());
+
+        assertNull(object.getContentEncoding());
+        assertNull(object.getFile());
+        assertEquals(CONTENT.length, object.getContentLength());
+        assertEquals("W/" + ETAG, object.getETag());
+        assertArrayEquals(CONTENT, readAll(object));
+    }
+
+    @Test
+    void testRangeIsCutFromDecompressedContent() {
+        when(delegate.download(eq(KEY), argThat(o -> o != null && o.getRange() != null))).thenReturn(compressed().toBuilder()
+                .rangeStart(0L)
+                .rangeEnd(9L)
+                .build());
+        when(delegate.download(eq(KEY), argThat(o -> o != null && o.getRange() == null))).thenReturn(compressed());
+
+        StoredObject object = storage.download(KEY, DownloadOptions.builder().range(ByteRange.of(100, 199)).build());
+
+        assertEquals(100L, object.getRangeStart());
+        assertEquals(199L, object.getRangeEnd());
+        assertEquals(CONTENT.length, object.getTotalLength());
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 100, 200), readAll(object));
+    }
+
+    @Test
+    void testRangeBeyondCompressedSizeIsServedFromDecompressedContent() {
+        when(delegate.download(eq(KEY), argThat(o -> o != null && o.getRange() != null)))
+                .thenThrow(new StorageRangeNotSatisfiableException("Range not satisfiable", null));
+        when(delegate.download(eq(KEY), argThat(o -> o != null && o.getRange() == null))).thenReturn(compressed());
+
+        StoredObject object = storage.download(KEY, DownloadOptions.builder().range(ByteRange.suffix(10)).build());
+
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, CONTENT.length - 10, CONTENT.length), readAll(object));
+    }
+
+    @Test
+    void testRangeBeyondDecompressedSizeIsNotSatisfiable() {
+        when(delegate.download(eq(KEY), argThat(o -> o != null && o.getRange() != null)))
+                .thenThrow(new StorageRangeNotSatisfiableException("Range not satisfiable", null));
+        when(delegate.download(eq(KEY), argThat(o -> o != null && o.getRange() == null))).thenReturn(compressed());
+
+        DownloadOptions options = DownloadOptions.builder().range(ByteRange.from(CONTENT.length)).build();
+        assertThrows(StorageRangeNotSatisfiableException.class, () -> storage.download(KEY, options));
+    }
+
+    @Test
+    void testWeakValidatorIsMatchedAgainstStoredObject() {
+        when(delegate.download(eq(KEY), argThat(o -> ETAG.equals(o.getIfNoneMatch()))))
+                .thenReturn(StoredObject.builder().notModified(true).eTag(ETAG).build());
+
+        StoredObject object = storage.download(KEY, DownloadOptions.builder().ifNoneMatch("W/" + ETAG).build());
+
+        assertTrue(object.isNotModified());
+        assertEquals("W/" + ETAG, object.getETag());
+    }
+
+    @Test
+    void testUncompressedObjectIsPassedThrough() {
+        StoredObject plain = StoredObject.builder()
+                .content(new ByteArrayInputStream(CONTENT))
+                .contentLength(CONTENT.length)
+                .eTag(ETAG)
+                .build();
+        when(delegate.download(eq(KEY), any())).thenReturn(plain);
+
+        assertSame(plain, storage.download(KEY, DownloadOptions.none()));
+    }
+
+    @Test
+    void testStatReportsUncompressedLength() {
+        when(delegate.stat(KEY)).thenReturn(compressed().toBuilder().content(null).build());
+
+        StoredObject object = storage.stat(KEY);
+
+        assertEquals(CONTENT.length, object.getContentLength());
+        assertEquals(ETAG, object.getETag());
+    }
+
+    @Test
+    void testAcceptEncodingNegotiation() {
+        assertTrue(ContentCodec.ZSTD.isAcceptedBy("gzip, deflate, br, zstd"));
+        assertTrue(ContentCodec.ZSTD.isAcceptedBy("*"));
+        assertTrue(ContentCodec.GZIP.isAcceptedBy("GZIP;q=0.5"));
+        assertFalse(ContentCodec.ZSTD.isAcceptedBy("gzip, deflate"));
+        assertFalse(ContentCodec.ZSTD.isAcceptedBy("*, zstd;q=0"));
+        assertFalse(ContentCodec.ZSTD.isAcceptedBy("identity"));
+        assertFalse(ContentCodec.ZSTD.isAcceptedBy(null));
+    }
+
+    @Test
+    void testCompressedObjectIsOnlyPresignedForClientsAcceptingItsEncoding() {
+        PresignedUrl url = PresignedUrl.builder()
+                .url(URI.create("https://s3.example.com/gen-1/bom.json"))
+                .expiresAt(Instant.now().plus(Duration.ofMinutes(15)))
+                .contentEncoding("zstd")
+                .build();
+        when(delegate.presignDownload(eq(KEY), any(), any())).thenReturn(url);
+
+        assertSame(url, storage.presignDownload(KEY, DownloadOptions.builder().acceptEncoding("zstd, gzip").build(),
+                Duration.ofMinutes(15)));
+        assertNull(storage.presignDownload(KEY, DownloadOptions.builder().acceptEncoding("gzip").build(),
+                Duration.ofMinutes(15)));
+    }
+
+    private static StoredObject compressed() {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream encoder = ContentCodec.ZSTD.encoder(compressed)) {
+            encoder.write(CONTENT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return StoredObject.builder()
+                .content(new ByteArrayInputStream(compressed.toByteArray()))
+                .contentLength(compressed.size())
+                .totalLength(compressed.size())
+                .contentType("application/json")
+                .contentEncoding("zstd")
+                .metadata(Map.of(CompressingObjectStorage.UNCOMPRESSED_LENGTH, String.valueOf(CONTENT.length)))
+                .eTag(ETAG)
+                .build();
+    }
+
+    private static byte[] readAll(StoredObject object) {
+        try (InputStream content = object.getContent()) {
+            return content.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Measures compression ratio and streaming throughput of the codecs on CycloneDX and SPDX manifests.
+ * The samples in {@code src/test/resources/sboms} were generated by the CycloneDX and SPDX Maven plugins
+ * for a Quarkus service. Not part of the regular test run, enable with {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CompressionBenchmark {
+
+    private static final String[] SAMPLES = { "quarkus-service.cdx.json", "quarkus-service.spdx.json" };
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+
+    @Test
+    void ratioAndThroughput() throws IOException {
+        System.out.printf("Average of %d iterations%n", ITERATIONS);
+        System.out.printf("%-28s%-7s%12s%12s%8s%16s%16s%n",
+                "sample", "codec", "size", "compressed", "ratio", "compress", "decompress");
+        for (String sample : SAMPLES) {
+            byte[] content = sample(sample);
+            for (ContentCodec codec : ContentCodec.values()) {
+                byte[] compressed = compress(content, codec);
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    compress(content, codec);
+                    decompress(compressed, codec);
+                }
+                long compressNanos = 0;
+                long decompressNanos = 0;
+                for (int i = 0; i < ITERATIONS; i++) {
+                    long start = System.nanoTime();
+                    compress(content, codec);
+                    compressNanos += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    decompress(compressed, codec);
+                    decompressNanos += System.nanoTime() - start;
+                }
+                System.out.printf("%-28s%-7s%12d%12d%8.1f%11.0f MB/s%11.0f MB/s%n",
+                        sample, codec.encoding(), content.length, compressed.length,
+                        (double) content.length / compressed.length,
+                        megabytesPerSecond(content.length, compressNanos),
+                        megabytesPerSecond(content.length, decompressNanos));
+            }
+        }
+    }
+
+    // goes through CompressingInputStream like an upload does
+    private static byte[] compress(byte[] content, ContentCodec codec) throws IOException {
+        try (InputStream in = new CompressingInputStream(new ByteArrayInputStream(content), codec)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static void decompress(byte[] compressed, ContentCodec codec) throws IOException {
+        try (InputStream in = codec.decoder(new ByteArrayInputStream(compressed))) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static double megabytesPerSecond(long bytes, long totalNanos) {
+        return bytes * (double) ITERATIONS / (totalNanos / 1e9) / (1024 * 1024);
+    }
+
+    private static byte[] sample(String name) throws IOException {
+        try (InputStream in = CompressionBenchmark.class.getResourceAsStream("/sboms/" + name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toByteArray();
+        }
+    }
+}
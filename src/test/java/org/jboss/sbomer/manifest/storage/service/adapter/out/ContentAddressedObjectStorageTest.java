@@ -0,0 +1,215 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for ContentAddressedObjectStorage.
+ * Tests that identical content is stored once and read back through the reference objects.
+ */
+class ContentAddressedObjectStorageTest {
+
+    private static final byte[] CONTENT = "{\"bomFormat\":\"CycloneDX\"}".getBytes(UTF_8);
+
+    @TempDir
+    Path directory;
+
+    InMemoryObjectStorage delegate;
+    SimpleMeterRegistry registry;
+    ContentAddressedObjectStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new InMemoryObjectStorage();
+        registry = new SimpleMeterRegistry();
+        storage = new ContentAddressedObjectStorage(delegate, directory, registry);
+    }
+
+    @Test
+    void testIdenticalContentIsStoredOnce() {
+        storage.upload("gen-1/bom.json", new ByteArrayInputStream(CONTENT), CONTENT.length, "application/json");
+        storage.upload("gen-2/bom.json", new ByteArrayInputStream(CONTENT), CONTENT.length, "application/json");
+
+        List<String> blobs = delegate.keys(ContentAddressedObjectStorage.BLOB_PREFIX);
+        assertEquals(1, blobs.size());
+        assertEquals(1, delegate.uploads(blobs.get(0)));
+        assertEquals(0, delegate.objects.get("gen-1/bom.json").length);
+        assertEquals(1.0, registry.get("sbomer.storage.dedup.skipped").counter().count());
+        assertEquals(CONTENT.length, registry.get("sbomer.storage.dedup.saved").counter().count());
+    }
+
+    @Test
+    void testBlobIsNamedAfterDigest() throws Exception {
+        storage.upload("gen-1/bom.json", new ByteArrayInputStream(CONTENT), CONTENT.length, "application/json");
+
+        String digest = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(CONTENT));
+        assertEquals(List.of(ContentAddressedObjectStorage.BLOB_PREFIX + digest),
+                delegate.keys(ContentAddressedObjectStorage.BLOB_PREFIX));
+        assertEquals("sha256:" + digest,
+                delegate.stat("gen-1/bom.json").getMetadata().get(ContentAddressedObjectStorage.CONTENT_DIGEST));
+    }
+
+    @Test
+    void testDownloadResolvesReference() {
+        storage.upload("gen-1/bom.json", new ByteArrayInputStream(CONTENT), CONTENT.length, "application/json");
+        storage.upload("gen-2/bom.txt", new ByteArrayInputStream(CONTENT), CONTENT.length, "text/plain");
+
+        StoredObject object = storage.download("gen-2/bom.txt", DownloadOptions.none());
+
+        assertArrayEquals(CONTENT, readAll(object));
+        assertEquals("text/plain", object.getContentType());
+        assertEquals(CONTENT.length, storage.stat("gen-2/bom.txt").getContentLength());
+    }
+
+    @Test
+    void testLargeContentIsSpooledToDisk() throws IOException {
+        byte[] large = new byte[3 * 1024 * 1024];
+        new Random(42).nextBytes(large);
+
+        storage.upload("gen-1/large.bin", new ByteArrayInputStream(large), large.length, null);
+
+        assertArrayEquals(large, readAll(storage.download("gen-1/large.bin", DownloadOptions.none())));
+        try (var files = Files.list(directory)) {
+            assertTrue(files.findAny().isEmpty(), "Spool file was not removed");
+        }
+    }
+
+    @Test
+    void testObjectWithoutDigestIsReadDirectly() {
+        delegate.upload("gen-0/bom.json", new ByteArrayInputStream(CONTENT), CONTENT.length, "application/json");
+
+        assertArrayEquals(CONTENT, readAll(storage.download("gen-0/bom.json", DownloadOptions.none())));
+    }
+
+    @Test
+    void testMissingBlobIsReportedForReference() {
+        storage.upload("gen-1/bom.json", new ByteArrayInputStream(CONTENT), CONTENT.length, "application/json");
+        delegate.objects.keySet().removeIf(key -> key.startsWith(ContentAddressedObjectStorage.BLOB_PREFIX));
+
+        StorageFileNotFoundException e = assertThrows(StorageFileNotFoundException.class,
+                () -> storage.download("gen-1/bom.json", DownloadOptions.none()));
+        assertTrue(e.getMessage().contains("gen-1/bom.json"));
+    }
+
+    @Test
+    void testListShowsReferencesWithBlobSize() {
+        storage.upload("gen-1/bom.json", new ByteArrayInputStream(CONTENT), CONTENT.length, "application/json");
+        storage.upload("gen-1/copy.json", new ByteArrayInputStream(CONTENT), CONTENT.length, "application/json");
+
+        ObjectPage page = storage.list("", null, 10);
+
+        assertEquals(List.of("gen-1/bom.json", "gen-1/copy.json"), page.getObjects().stream().map(ObjectSummary::getKey).toList());
+        assertEquals(CONTENT.length, page.getObjects().get(0).getSize());
+        assertEquals("application/json", page.getObjects().get(1).getContentType());
+    }
+
+    private static byte[] readAll(StoredObject object) {
+        try (InputStream content = object.getContent()) {
+            return content.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Keeps objects in memory and counts the uploads per key.
+     */
+    private static final class InMemoryObjectStorage implements ObjectStorage {
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        private final Map<String, UploadOptions> options = new ConcurrentHashMap<>();
+        private final Map<String, Integer> uploads = new ConcurrentHashMap<>();
+
+        @Override
+        public void upload(String key, InputStream content, UploadOptions uploadOptions) {
+            try {
+                objects.put(key, content.readAllBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            options.put(key, uploadOptions);
+            uploads.merge(key, 1, Integer::sum);
+        }
+
+        @Override
+        public StoredObject download(String key, DownloadOptions downloadOptions) {
+            byte[] bytes = get(key);
+            return stat(key).toBuilder().content(new ByteArrayInputStream(bytes)).build();
+        }
+
+        @Override
+        public StoredObject stat(String key) {
+            byte[] bytes = get(key);
+            UploadOptions uploadOptions = options.get(key);
+            return StoredObject.builder()
+                    .contentLength(bytes.length)
+                    .totalLength(bytes.length)
+                    .contentType(uploadOptions.getContentType())
+                    .metadata(uploadOptions.getMetadata())
+                    .build();
+        }
+
+        @Override
+        public ObjectPage list(String prefix, String cursor, int limit) {
+            List<ObjectSummary> page = objects.entrySet().stream()
+                    .filter(entry -> entry.getKey().startsWith(prefix))
+                    .filter(entry -> cursor == null || entry.getKey().compareTo(cursor) > 0)
+                    .sorted(Map.Entry.comparingByKey())
+                    .limit(limit + 1L)
+                    .map(entry -> ObjectSummary.builder().key(entry.getKey()).size(entry.getValue().length).build())
+                    .toList();
+            if (page.size() <= limit) {
+                return ObjectPage.builder().objects(page).build();
+            }
+            List<ObjectSummary> first = page.subList(0, limit);
+            return ObjectPage.builder().objects(first).nextCursor(first.get(limit - 1).getKey()).build();
+        }
+
+        @Override
+        public void delete(Collection<String> keys) {
+            keys.forEach(objects::remove);
+        }
+
+        private byte[] get(String key) {
+            byte[] bytes = objects.get(key);
+            if (bytes == null) {
+                throw new StorageFileNotFoundException("File not found: " + key, null);
+            }
+            return bytes;
+        }
+
+        private List<String> keys(String prefix) {
+            return objects.keySet().stream().filter(key -> key.startsWith(prefix)).sorted().toList();
+        }
+
+        private int uploads(String key) {
+            return uploads.getOrDefault(key, 0);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageKeyInvalidException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StoragePreconditionFailedException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for FilesystemStorageAdapter.
+ * Tests writing, reading, conditions, ranges and listing against a temporary directory.
+ */
+class FilesystemStorageAdapterTest {
+
+    private static final String KEY = "gen-1/bom.json";
+    private static final String CONTENT = "0123456789";
+
+    @TempDir
+    Path directory;
+
+    FilesystemStorageAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        adapter = new FilesystemStorageAdapter(directory);
+    }
+
+    @AfterEach
+    void tearDown() {
+        adapter.shutdown();
+    }
+
+    @Test
+    void testUploadAndDownload() throws IOException {
+        adapter.upload(KEY, stream(CONTENT), UploadOptions.builder()
+                .contentType("application/json")
+                .contentEncoding("zstd")
+                .metadata(Map.of("uncompressed-length", "42"))
+                .build());
+
+        StoredObject object = adapter.download(KEY, DownloadOptions.none());
+
+        assertEquals(CONTENT, read(object));
+        assertEquals(CONTENT.length(), object.getContentLength());
+        assertEquals(CONTENT.length(), object.getTotalLength());
+        assertEquals("application/json", object.getContentType());
+        assertEquals("zstd", object.getContentEncoding());
+        assertEquals(Map.of("uncompressed-length", "42"), object.getMetadata());
+        assertEquals("\"781e5e245d69b566979b86e28d23f2c7\"", object.getETag());
+        assertNotNull(object.getLastModified());
+        assertFalse(object.isPartial());
+        // the data file is handed to the REST layer, which sends it without reading it into the heap
+        assertEquals(CONTENT, Files.readString(object.getFile()));
+    }
+
+    @Test
+    void testUploadLeavesNoTemporaryFiles() throws IOException {
+        adapter.upload(KEY, stream(CONTENT), UploadOptions.builder().build());
+
+        try (Stream<Path> files = Files.list(directory.resolve("tmp"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testFailedUploadKeepsPreviousObject() throws IOException {
+        adapter.upload(KEY, stream(CONTENT), UploadOptions.builder().build());
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+
+        assertThrows(StorageException.class, () -> adapter.upload(KEY, failing, UploadOptions.builder().build()));
+
+        assertEquals(CONTENT, read(adapter.download(KEY, DownloadOptions.none())));
+        try (Stream<Path> files = Files.list(directory.resolve("tmp"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testUploadReplacesObject() throws IOException {
+        adapter.upload(KEY, stream(CONTENT), UploadOptions.builder().build());
+        StoredObject previous = adapter.download(KEY, DownloadOptions.none());
+
+        adapter.upload(KEY, stream("replaced"), UploadOptions.builder().build());
+
+        StoredObject current = adapter.download(KEY, DownloadOptions.none());
+        assertEquals("replaced", read(current));
+        assertNotEquals(previous.getETag(), current.getETag());
+        // the replaced data file is only deleted after a delay
+        assertEquals(CONTENT, read(previous));
+    }
+
+    @Test
+    void testKeysMayBeFilesAndDirectories() throws IOException {
+        adapter.upload("gen-1/enh", stream("file"), UploadOptions.builder().build());
+        adapter.upload("gen-1/enh/bom.json", stream("nested"), UploadOptions.builder().build());
+
+        assertEquals("file", read(adapter.download("gen-1/enh", DownloadOptions.none())));
+        assertEquals("nested", read(adapter.download("gen-1/enh/bom.json", DownloadOptions.none())));
+    }
+
+    @Test
+    void testDownloadRange() throws IOException {
+        adapter.upload(KEY, stream(CONTENT), UploadOptions.builder().build());
+
+        StoredObject object = adapter.download(KEY, DownloadOptions.builder().range(ByteRange.of(2, 5)).build());
+
+        assertEquals("2345", read(object));
+        assertEquals(4, object.getContentLength());
+        assertEquals(10, object.getTotalLength());
+        assertEquals(2L, object.getRangeStart());
+        assertEquals(5L, object.getRangeEnd());
+    }
+
+    @Test
+    void testDownloadRangeNotSatisfiable() {
+        adapter.upload(KEY, stream(CONTENT), UploadOptions.builder().build());
+
+        DownloadOptions options = DownloadOptions.builder().range(ByteRange.from(10)).build();
+        assertThrows(StorageRangeNotSatisfiableException.class, () -> adapter.download(KEY, options));
+    }
+
+    @Test
+    void testDownloadConditions() {
+        adapter.upload(KEY, stream(CONTENT), UploadOptions.builder().build());
+        StoredObject stat = adapter.stat(KEY);
+
+        StoredObject notModified = adapter.download(KEY, DownloadOptions.builder().ifNoneMatch(stat.getETag()).build());
+        assertTrue(notModified.isNotModified());
+        assertNull(notModified.getContent());
+        assertEquals(stat.getETag(), notModified.getETag());
+
+        StoredObject unchanged = adapter.download(KEY, DownloadOptions.builder().ifModifiedSince(stat.getLastModified()).build());
+        assertTrue(unchanged.isNotModified());
+
+        DownloadOptions ifMatch = DownloadOptions.builder().ifMatch("\"other\"").build();
+        assertThrows(StoragePreconditionFailedException.class, () -> adapter.download(KEY, ifMatch));
+    }
+
+    @Test
+    void testStat() {
+        adapter.upload(KEY, stream(CONTENT), UploadOptions.builder().contentType("application/json").build());
+
+        StoredObject object = adapter.stat(KEY);
+
+        assertNull(object.getContent());
+        assertEquals(CONTENT.length(), object.getContentLength());
+        assertEquals("application/json", object.getContentType());
+    }
+
+    @Test
+    void testMissingObject() {
+        assertThrows(StorageFileNotFoundException.class, () -> adapter.download(KEY, DownloadOptions.none()));
+        assertThrows(StorageFileNotFoundException.class, () -> adapter.stat(KEY));
+    }
+
+    @Test
+    void testInvalidKey() {
+        assertThrows(StorageKeyInvalidException.class,
+                () -> adapter.upload("gen-1/../etc/passwd", stream(CONTENT), UploadOptions.builder().build()));
+        assertThrows(StorageKeyInvalidException.class, () -> adapter.download("", DownloadOptions.none()));
+        assertThrows(StorageKeyInvalidException.class, () -> adapter.list(null, null, 10));
+    }
+
+    @Test
+    void testListInKeyOrderWithCursor() {
+        for (String key : List.of("gen-1/c.json", "gen-1/a.json", "gen-1/enh-1/b.json", "gen-10/a.json", "gen-2/a.json")) {
+            adapter.upload(key, stream(CONTENT), UploadOptions.builder().contentType("application/json").build());
+        }
+
+        ObjectPage first = adapter.list("gen-1/", null, 2);
+        ObjectPage second = adapter.list("gen-1/", first.getNextCursor(), 2);
+
+        assertEquals(List.of("gen-1/a.json", "gen-1/c.json"), keys(first));
+        assertEquals("gen-1/c.json", first.getNextCursor());
+        assertEquals(List.of("gen-1/enh-1/b.json"), keys(second));
+        assertNull(second.getNextCursor());
+        ObjectSummary summary = first.getObjects().get(0);
+        assertEquals(CONTENT.length(), summary.getSize());
+        assertEquals("application/json", summary.getContentType());
+        assertNotNull(summary.getETag());
+    }
+
+    @Test
+    void testListPrefixWithoutSlashSpansShards() {
+        for (String key : List.of("gen-2/a.json", "gen-1/a.json", "gen-10/a.json", "other/a.json")) {
+            adapter.upload(key, stream(CONTENT), UploadOptions.builder().build());
+        }
+
+        assertEquals(List.of("gen-1/a.json", "gen-10/a.json", "gen-2/a.json"), keys(adapter.list("gen-", null, 10)));
+        assertEquals(List.of("gen-1/a.json", "gen-10/a.json"), keys(adapter.list("gen-1", null, 10)));
+        assertTrue(adapter.list("missing/", null, 10).getObjects().isEmpty());
+    }
+
+    private static List<String> keys(ObjectPage page) {
+        return page.getObjects().stream().map(ObjectSummary::getKey).toList();
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(UTF_8));
+    }
+
+    private static String read(StoredObject object) throws IOException {
+        try (InputStream content = object.getContent()) {
+            return new String(content.readAllBytes(), UTF_8);
+        }
+    }
+}
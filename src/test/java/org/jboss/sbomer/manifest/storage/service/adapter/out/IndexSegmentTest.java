@@ -0,0 +1,94 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for IndexSegment.
+ * Tests lookups across the sparse index, prefix lookups and merges.
+ */
+class IndexSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testFindsTermsAcrossSparseIndex() throws IOException {
+        SortedMap<String, Set<String>> postings = new TreeMap<>();
+        for (int i = 0; i < IndexSegment.SPARSE_INTERVAL * 3 + 5; i++) {
+            postings.put(String.format("pkg:maven/g/a%04d@1", i), Set.of("gen-" + (i % 7) + "/bom.json", "gen-x/bom.json"));
+        }
+        IndexSegment.write(directory.resolve("1.seg"), postings);
+
+        IndexSegment segment = IndexSegment.open(directory.resolve("1.seg"));
+
+        assertEquals(postings.size(), segment.termCount());
+        for (String term : List.of("pkg:maven/g/a0000@1", "pkg:maven/g/a0064@1", "pkg:maven/g/a0100@1", "pkg:maven/g/a0196@1")) {
+            assertEquals(postings.get(term), Set.copyOf(find(segment, term, false)));
+        }
+        assertTrue(find(segment, "pkg:maven/g/a0100", false).isEmpty());
+        assertTrue(find(segment, "a", false).isEmpty());
+        assertTrue(find(segment, "pkg:maven/z", true).isEmpty());
+        // a0060 to a0069, across the second sparse entry
+        List<String> keys = find(segment, "pkg:maven/g/a006", true);
+        assertEquals(20, keys.size());
+        assertFalse(Files.exists(directory.resolve("1.seg.tmp")));
+    }
+
+    @Test
+    void testMergeUnitesPostings() throws IOException {
+        IndexSegment first = IndexSegment.write(directory.resolve("1.seg"), new TreeMap<>(
+                Map.of("a@1", Set.of("gen-1/bom.json"), "b@1", Set.of("gen-1/bom.json"))));
+        IndexSegment second = IndexSegment.write(directory.resolve("2.seg"), new TreeMap<>(
+                Map.of("b@1", Set.of("gen-2/bom.json", "gen-1/bom.json"), "c@1", Set.of("gen-2/bom.json"))));
+
+        IndexSegment merged = IndexSegment.merge(directory.resolve("3.seg"), List.of(first, second),
+                (segment, key) -> false);
+
+        assertEquals(3, merged.termCount());
+        assertEquals(List.of("gen-1/bom.json"), find(merged, "a@1", false));
+        assertEquals(List.of("gen-1/bom.json", "gen-2/bom.json"), find(merged, "b@1", false));
+        assertEquals(List.of("gen-2/bom.json"), find(merged, "c@1", false));
+    }
+
+    @Test
+    void testMergeLeavesOutMaskedKeys() throws IOException {
+        IndexSegment first = IndexSegment.write(directory.resolve("1.seg"), new TreeMap<>(
+                Map.of("a@1", Set.of("gen-1/bom.json"), "b@1", Set.of("gen-1/bom.json", "gen-2/bom.json"))));
+        IndexSegment second = IndexSegment.write(directory.resolve("2.seg"), new TreeMap<>(
+                Map.of("c@1", Set.of("gen-2/bom.json"))));
+
+        // gen-2 was replaced after the first segment was written
+        IndexSegment merged = IndexSegment.merge(directory.resolve("3.seg"), List.of(first, second),
+                (segment, key) -> key.equals("gen-2/bom.json") && segment == first);
+
+        assertEquals(3, merged.termCount());
+        assertEquals(List.of("gen-1/bom.json", "gen-2/bom.json"), merged.keys());
+        assertEquals(List.of("gen-1/bom.json"), find(merged, "b@1", false));
+        assertEquals(List.of("gen-2/bom.json"), find(merged, "c@1", false));
+
+        IndexSegment removed = IndexSegment.merge(directory.resolve("4.seg"), List.of(first, second),
+                (segment, key) -> key.equals("gen-1/bom.json"));
+
+        assertEquals(List.of("gen-2/bom.json"), removed.keys());
+        assertTrue(find(removed, "a@1", false).isEmpty());
+    }
+
+    private static List<String> find(IndexSegment segment, String term, boolean prefix) {
+        List<String> keys = new ArrayList<>();
+        segment.find(term, prefix, keys::add);
+        return keys;
+    }
+}
@@ -0,0 +1,135 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.SbomInspector;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for JsonSbomInspector.
+ * Tests summaries and components of CycloneDX and SPDX documents fed in small chunks, and documents that are
+ * not summarized.
+ */
+class JsonSbomInspectorTest {
+
+    private final JsonSbomInspector inspector = new JsonSbomInspector();
+
+    @Test
+    void testSummarizesCycloneDx() throws Exception {
+        byte[] sbom = resource("quarkus-service.cdx.json");
+
+        SbomSummary summary = summarize("bom.json", "application/json", sbom, 977);
+
+        assertEquals("CycloneDX", summary.getFormat());
+        assertEquals("1.6", summary.getSpecVersion());
+        assertEquals("urn:uuid:942d95eb-5d46-3590-a403-5ca966ed7796", summary.getSerialNumber());
+        // nested components are counted, the tools in the metadata are not
+        assertEquals(253, summary.getComponentCount());
+        assertEquals("check", summary.getRootName());
+        assertEquals("1", summary.getRootVersion());
+        assertEquals("pkg:maven/x/check@1?type=jar", summary.getRootPurl());
+        assertEquals(sha256(sbom), summary.getSha256());
+        assertEquals(sbom.length, summary.getSize());
+    }
+
+    @Test
+    void testSummarizesSpdx() throws Exception {
+        byte[] sbom = resource("quarkus-service.spdx.json");
+
+        SbomSummary summary = summarize("bom.spdx.json", null, sbom, 4096);
+
+        assertEquals("SPDX", summary.getFormat());
+        assertEquals("2.3", summary.getSpecVersion());
+        assertEquals("http://spdx.org/spdxpackages/x_check-1", summary.getSerialNumber());
+        assertEquals(366, summary.getComponentCount());
+        assertEquals("check", summary.getRootName());
+        assertEquals("pkg:maven/x/check@1", summary.getRootPurl());
+    }
+
+    @Test
+    void testRootHashesAndDescribedSpdxPackage() {
+        String cdx = "{\"bomFormat\":\"CycloneDX\",\"specVersion\":\"1.5\",\"metadata\":{\"component\":{\"name\":\"app\","
+                + "\"hashes\":[{\"alg\":\"SHA-256\",\"content\":\"abc\"},{\"alg\":\"MD5\",\"content\":\"def\"}]}},"
+                + "\"components\":[{\"name\":\"a\",\"components\":[{\"name\":\"b\"}]}]}";
+        SbomSummary summary = summarize("bom.json", null, cdx.getBytes(UTF_8), 7);
+        assertEquals(Map.of("SHA-256", "abc", "MD5", "def"), summary.getRootHashes());
+        assertEquals(2, summary.getComponentCount());
+
+        String spdx = "{\"spdxVersion\":\"SPDX-2.2\",\"documentDescribes\":[\"SPDXRef-app\"],\"packages\":["
+                + "{\"SPDXID\":\"SPDXRef-lib\",\"name\":\"lib\"},{\"SPDXID\":\"SPDXRef-app\",\"name\":\"app\",\"versionInfo\":\"2\"}]}";
+        summary = summarize("bom.json", null, spdx.getBytes(UTF_8), 5);
+        assertEquals("app", summary.getRootName());
+        assertEquals("2", summary.getRootVersion());
+    }
+
+    @Test
+    void testCollectsComponents() throws Exception {
+        SbomInspector.Inspection inspection = inspect("bom.json", resource("quarkus-service.cdx.json"), 977);
+
+        assertTrue(inspection.components().contains("pkg:maven/io.quarkus/quarkus-core@3.28.2"));
+        assertTrue(inspection.components().contains("quarkus-core@3.28.2"));
+        assertTrue(inspection.components().contains("pkg:maven/x/check@1"));
+        assertEquals(508, inspection.components().size());
+
+        inspection = inspect("bom.spdx.json", resource("quarkus-service.spdx.json"), 4096);
+        assertTrue(inspection.components().contains("pkg:maven/x/check@1"));
+        assertEquals(713, inspection.components().size());
+
+        String cdx = "{\"bomFormat\":\"CycloneDX\",\"metadata\":{\"tools\":{\"components\":[{\"name\":\"tool\","
+                + "\"version\":\"1\"}]},\"component\":{\"name\":\"app\",\"version\":\"2\"}},\"components\":[{\"name\":\"a\","
+                + "\"components\":[{\"name\":\"b\",\"purl\":\"pkg:npm/b@3#dist\"}],\"version\":\"1\"}]}";
+        inspection = inspect("bom.json", cdx.getBytes(UTF_8), 5);
+        assertEquals(Set.of("app@2", "a@1", "b", "pkg:npm/b@3"), inspection.components());
+    }
+
+    @Test
+    void testDocumentsThatAreNotSummarized() {
+        assertNull(inspector.inspect("bom.xml", "application/xml"));
+        assertNull(summarize("bom.json", null, "{\"bomFormat\":\"CycloneDX\",".getBytes(UTF_8), 3));
+        assertNull(summarize("bom.json", null, "{\"bomFormat\":".getBytes(UTF_8), 100));
+        assertNull(summarize("data.json", null, "{\"name\":\"not an sbom\"}".getBytes(UTF_8), 100));
+        assertNull(summarize("data.json", null, "[\"a\", \"b\"]".getBytes(UTF_8), 100));
+    }
+
+    private SbomSummary summarize(String filename, String contentType, byte[] content, int chunkSize) {
+        return inspect(filename, contentType, content, chunkSize).finish();
+    }
+
+    private SbomInspector.Inspection inspect(String filename, byte[] content, int chunkSize) {
+        SbomInspector.Inspection inspection = inspect(filename, null, content, chunkSize);
+        assertNotNull(inspection.finish());
+        return inspection;
+    }
+
+    private SbomInspector.Inspection inspect(String filename, String contentType, byte[] content, int chunkSize) {
+        SbomInspector.Inspection inspection = inspector.inspect(filename, contentType);
+        // the caller reuses its buffer, as an upload does
+        byte[] buffer = new byte[chunkSize];
+        for (int offset = 0; offset < content.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, content.length - offset);
+            System.arraycopy(content, offset, buffer, 0, length);
+            inspection.update(buffer, 0, length);
+        }
+        return inspection;
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream in = JsonSbomInspectorTest.class.getResourceAsStream("/sboms/" + name)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static String sha256(byte[] content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+}
@@ -0,0 +1,58 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.sbomer.events.common.ContextSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the serialization of source events into failure notifications.
+ * Run with {@code ./mvnw test -Pjmh -Djmh.include=KafkaFailureNotifierJmhBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KafkaFailureNotifierJmhBenchmark {
+
+    KafkaFailureNotifier notifier;
+    ContextSpec avroEvent;
+    byte[] rawEvent;
+
+    @Setup
+    public void setUp() {
+        notifier = new KafkaFailureNotifier();
+        avroEvent = ContextSpec.newBuilder()
+                .setEventId("0f0b8d4e-6d0c-4b8e-9a59-7d1c2f5e8a11")
+                .setType("GenerationCreated")
+                .setSource("sbomer-generator")
+                .setCorrelationId("1d6e3f7a-2b4c-4d5e-8f90-a1b2c3d4e5f6")
+                .setTimestamp(Instant.parse("2025-01-01T10:00:00Z"))
+                .setEventVersion("1.0")
+                .build();
+        rawEvent = new byte[512];
+    }
+
+    @Benchmark
+    public ByteBuffer serializeAvroEvent() {
+        return notifier.serializeSourceEvent(avroEvent);
+    }
+
+    @Benchmark
+    public ByteBuffer serializeRawEvent() {
+        return notifier.serializeSourceEvent(rawEvent);
+    }
+}
@@ -0,0 +1,143 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.jboss.sbomer.events.common.FailureSpec;
+import org.jboss.sbomer.events.error.ProcessingFailed;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for KafkaFailureNotifier.
+ * Tests the hand-off to the sender, acknowledgements, coalescing, overflow and failures that cannot be sent.
+ */
+@ExtendWith(MockitoExtension.class)
+class KafkaFailureNotifierTest {
+
+    @Mock
+    Emitter<ProcessingFailed> emitter;
+
+    @Captor
+    ArgumentCaptor<Message<ProcessingFailed>> messages;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testFailuresAreSentBySenderAndAcksCounted() throws Exception {
+        KafkaFailureNotifier notifier = new KafkaFailureNotifier(emitter, registry, 10, 10, Duration.ofMinutes(1));
+
+        notifier.notify(failure("S3 down"), "corr-1", new byte[] { 1, 2 });
+        notifier.notify(failure("S3 down"), "corr-2", null);
+        verifyNoInteractions(emitter);
+        assertEquals(2.0, registry.get(KafkaFailureNotifier.METRIC_PREFIX + ".queued").gauge().value());
+
+        assertEquals(2, notifier.sendBatch());
+
+        verify(emitter, times(2)).send(messages.capture());
+        List<Message<ProcessingFailed>> sent = messages.getAllValues();
+        assertEquals("corr-1", sent.get(0).getPayload().getContext().getCorrelationId());
+        sent.get(0).ack().toCompletableFuture().join();
+        sent.get(1).nack(new RuntimeException("broker gone")).toCompletableFuture().join();
+        assertEquals(1.0, count("acked"));
+        assertEquals(1.0, count("nacked"));
+        assertEquals(0.0, registry.get(KafkaFailureNotifier.METRIC_PREFIX + ".queued").gauge().value());
+
+        // a nacked failure is not coalesced with later ones, an acked one is
+        notifier.notify(failure("S3 down"), "corr-1", null);
+        notifier.notify(failure("S3 down"), "corr-2", null);
+        assertEquals(1, notifier.sendBatch());
+        assertEquals(1.0, count("coalesced"));
+    }
+
+    @Test
+    void testDuplicateFailuresAreCoalesced() throws Exception {
+        KafkaFailureNotifier notifier = new KafkaFailureNotifier(emitter, registry, 10, 10, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 5; i++) {
+            notifier.notify(failure("S3 down"), "corr-1", null);
+        }
+        notifier.notify(failure("S3 down"), null, null);
+        notifier.notify(failure("S3 down"), null, null);
+
+        assertEquals(3, notifier.sendBatch());
+        assertEquals(4.0, count("coalesced"));
+    }
+
+    @Test
+    void testFullQueueDropsInsteadOfBlocking() throws Exception {
+        KafkaFailureNotifier notifier = new KafkaFailureNotifier(emitter, registry, 2, 10, Duration.ofMinutes(1));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 5; i++) {
+                notifier.notify(failure("S3 down"), "corr-" + i, null);
+            }
+        });
+        assertEquals(3.0, count("dropped"));
+        assertEquals(2, notifier.sendBatch());
+
+        // a dropped failure is not coalesced with later ones
+        notifier.notify(failure("S3 down"), "corr-4", null);
+        assertEquals(1, notifier.sendBatch());
+        assertEquals(0.0, count("coalesced"));
+    }
+
+    @Test
+    void testRefusedSendFreesInFlightSlot() {
+        doThrow(new IllegalStateException("buffer full")).when(emitter).send(any(Message.class));
+        KafkaFailureNotifier notifier = new KafkaFailureNotifier(emitter, registry, 10, 1, Duration.ofMinutes(1));
+        notifier.notify(failure("S3 down"), "corr-1", null);
+        notifier.notify(failure("S3 down"), "corr-2", null);
+
+        int sent = assertTimeoutPreemptively(Duration.ofSeconds(5), notifier::sendBatch);
+
+        assertEquals(2, sent);
+        assertEquals(2.0, count("nacked"));
+
+        // a refused failure is not coalesced with later ones
+        notifier.notify(failure("S3 down"), "corr-1", null);
+        assertEquals(1, assertTimeoutPreemptively(Duration.ofSeconds(5), notifier::sendBatch));
+        assertEquals(0.0, count("coalesced"));
+    }
+
+    @Test
+    void testFailureThatCannotBeBuiltDoesNotStopSender() throws Exception {
+        KafkaFailureNotifier notifier = new KafkaFailureNotifier(emitter, registry, 10, 10, Duration.ofMinutes(1));
+        // the event requires a failure
+        notifier.notify(null, "corr-1", null);
+        notifier.notify(failure("S3 down"), "corr-2", null);
+
+        assertEquals(2, notifier.sendBatch());
+
+        verify(emitter).send(messages.capture());
+        assertEquals("corr-2", messages.getValue().getPayload().getContext().getCorrelationId());
+        assertEquals(1.0, count("failed"));
+
+        // and is not coalesced with later ones
+        notifier.notify(failure("S3 down"), "corr-1", null);
+        assertEquals(1, notifier.sendBatch());
+        assertEquals(0.0, count("coalesced"));
+    }
+
+    private double count(String result) {
+        return registry.get(KafkaFailureNotifier.METRIC_PREFIX).tag("result", result).counter().count();
+    }
+
+    private static FailureSpec failure(String reason) {
+        FailureSpec failure = new FailureSpec();
+        failure.setReason(reason);
+        return failure;
+    }
+}
@@ -0,0 +1,172 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.kafka.common.errors.RecordTooLargeException;
+
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.jboss.sbomer.events.storage.ManifestsStored;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+
+/**
+ * Unit tests for KafkaStoredManifestsNotifier.
+ * Tests publishing from the outbox, redelivery of unacknowledged batches, setting aside events Kafka never
+ * accepts, the outbox limit and replay after a restart.
+ */
+@ExtendWith(MockitoExtension.class)
+class KafkaStoredManifestsNotifierTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    Emitter<ManifestsStored> emitter;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<Message<ManifestsStored>> sent = new ArrayList<>();
+
+    @Test
+    void testEventsArePublishedInBatchesFromTheOutbox() throws Exception {
+        answerWith(true);
+        KafkaStoredManifestsNotifier notifier = new KafkaStoredManifestsNotifier(emitter, registry, directory, 1024, Long.MAX_VALUE, 2, 3);
+
+        notifier.manifestsStored("gen-1", null, Map.of("bom.json", "http://localhost/gen-1/bom.json"));
+        notifier.manifestsStored("gen-1", "enh-1", Map.of("bom.json", "http://localhost/gen-1/enh-1/bom.json"));
+        notifier.manifestsStored("gen-2", null, Map.of("bom.json", "http://localhost/gen-2/bom.json"));
+        verifyNoInteractions(emitter);
+
+        assertEquals(2, notifier.publishBatch());
+        assertEquals(1, notifier.publishBatch());
+        assertEquals(0, notifier.publishBatch());
+
+        assertEquals(3, sent.size());
+        ManifestsStored event = sent.get(1).getPayload();
+        assertEquals("gen-1", event.getGenerationId());
+        assertEquals("enh-1", event.getEnhancementId());
+        assertEquals(Map.of("bom.json", "http://localhost/gen-1/enh-1/bom.json"), event.getUrls());
+        assertEquals("gen-1", sent.get(1).getMetadata(OutgoingKafkaRecordMetadata.class).orElseThrow().getKey());
+        assertEquals(3.0, count("acked"));
+        assertEquals(0.0, registry.get(KafkaStoredManifestsNotifier.METRIC_PREFIX + ".outbox.backlog").gauge().value());
+    }
+
+    @Test
+    void testUnacknowledgedBatchIsSentAgain() throws Exception {
+        answerWith(false);
+        KafkaStoredManifestsNotifier notifier = new KafkaStoredManifestsNotifier(emitter, registry, directory, 1024, Long.MAX_VALUE, 10, 3);
+        notifier.manifestsStored("gen-1", null, Map.of("bom.json", "http://localhost/gen-1/bom.json"));
+
+        assertEquals(0, notifier.publishBatch());
+        answerWith(true);
+        assertEquals(1, notifier.publishBatch());
+
+        assertEquals(2, sent.size());
+        assertEquals(sent.get(0).getPayload().getEventId(), sent.get(1).getPayload().getEventId());
+        assertEquals(1.0, count("nacked"));
+        assertEquals(1.0, count("acked"));
+    }
+
+    @Test
+    void testEventKafkaRejectsIsSetAsideAndLaterEventsArePublished() throws Exception {
+        answerWith(event -> "gen-large".equals(event.getGenerationId())
+                ? new RecordTooLargeException("The message is too large")
+                : null);
+        KafkaStoredManifestsNotifier notifier = new KafkaStoredManifestsNotifier(emitter, registry, directory, 1024,
+                Long.MAX_VALUE, 10, 3);
+        notifier.manifestsStored("gen-large", null, Map.of("bom.json", "http://localhost/gen-large/bom.json"));
+        notifier.manifestsStored("gen-2", null, Map.of("bom.json", "http://localhost/gen-2/bom.json"));
+
+        assertEquals(2, notifier.publishBatch());
+        assertEquals(0, notifier.publishBatch());
+
+        assertEquals(1.0, count("rejected"));
+        assertEquals(1.0, count("acked"));
+        String eventId = sent.get(0).getPayload().getEventId();
+        assertTrue(Files.exists(directory.resolve("rejected").resolve(eventId + ".avro")));
+    }
+
+    @Test
+    void testAlwaysNackedEventIsSetAsideAfterMaxAttempts() throws Exception {
+        answerWith(event -> "gen-poison".equals(event.getGenerationId()) ? new IllegalStateException("rejected by registry") : null);
+        KafkaStoredManifestsNotifier notifier = new KafkaStoredManifestsNotifier(emitter, registry, directory, 1024,
+                Long.MAX_VALUE, 10, 3);
+        notifier.manifestsStored("gen-poison", null, Map.of("bom.json", "http://localhost/gen-poison/bom.json"));
+        notifier.manifestsStored("gen-2", null, Map.of("bom.json", "http://localhost/gen-2/bom.json"));
+
+        assertEquals(0, notifier.publishBatch());
+        assertEquals(0, notifier.publishBatch());
+        assertEquals(2, notifier.publishBatch());
+
+        assertEquals(3.0, count("nacked"));
+        assertEquals(1.0, count("rejected"));
+        assertEquals(0.0, registry.get(KafkaStoredManifestsNotifier.METRIC_PREFIX + ".outbox.backlog").gauge().value());
+    }
+
+    @Test
+    void testEventsAreRefusedWhenTheOutboxIsFull() throws Exception {
+        KafkaStoredManifestsNotifier notifier = new KafkaStoredManifestsNotifier(emitter, registry, directory, 1024,
+                200, 10, 3);
+        notifier.manifestsStored("gen-1", null, Map.of("bom.json", "http://localhost/gen-1/bom.json"));
+
+        assertThrows(StorageUnavailableException.class, () -> notifier.manifestsStored("gen-2", null,
+                Map.of("bom.json", "http://localhost/gen-2/bom.json", "bom2.json", "http://localhost/gen-2/bom2.json")));
+    }
+
+    @Test
+    void testEventsLeftInTheOutboxArePublishedAfterRestart() throws Exception {
+        answerWith(true);
+        KafkaStoredManifestsNotifier notifier = new KafkaStoredManifestsNotifier(emitter, registry, directory, 1024, Long.MAX_VALUE, 10, 3);
+        notifier.manifestsStored("gen-1", null, Map.of("bom.json", "http://localhost/gen-1/bom.json"));
+        notifier.publishBatch();
+        notifier.manifestsStored("gen-2", null, Map.of("bom.json", "http://localhost/gen-2/bom.json"));
+        notifier.shutdown();
+
+        KafkaStoredManifestsNotifier restarted = new KafkaStoredManifestsNotifier(emitter, new SimpleMeterRegistry(),
+                directory, 1024, Long.MAX_VALUE, 10, 3);
+
+        assertEquals(1, restarted.publishBatch());
+        assertEquals("gen-2", sent.get(1).getPayload().getGenerationId());
+    }
+
+    private void answerWith(boolean ack) {
+        answerWith(event -> ack ? null : new RuntimeException("broker gone"));
+    }
+
+    /**
+     * @param failures the failure each event is nacked with, null to acknowledge it
+     */
+    private void answerWith(Function<ManifestsStored, Throwable> failures) {
+        doAnswer(invocation -> {
+            Message<ManifestsStored> message = invocation.getArgument(0);
+            sent.add(message);
+            Throwable failure = failures.apply(message.getPayload());
+            if (failure == null) {
+                message.ack();
+            } else {
+                message.nack(failure);
+            }
+            return null;
+        }).when(emitter).send(any(Message.class));
+    }
+
+    private double count(String result) {
+        return registry.get(KafkaStoredManifestsNotifier.METRIC_PREFIX).tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,159 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for MetricsObjectStorage.
+ * Tests latency by outcome, bytes moved and the transfers in flight.
+ */
+@ExtendWith(MockitoExtension.class)
+class MetricsObjectStorageTest {
+
+    private static final String KEY = "gen-1/bom.json";
+    private static final byte[] CONTENT = "0123456789".getBytes(UTF_8);
+
+    @Mock
+    ObjectStorage delegate;
+
+    SimpleMeterRegistry registry;
+    MetricsObjectStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        storage = new MetricsObjectStorage(delegate, registry);
+    }
+
+    @Test
+    void testMetersAreRegisteredUpFront() {
+        assertNotNull(timer("upload", "success", "none"));
+        assertNotNull(timer("download", "not_modified", "none"));
+        assertNotNull(timer("download", "failure", "StorageFileNotFoundException"));
+        assertNotNull(timer("upload", "failure", "other"));
+        CountAtBucket[] buckets = timer("upload", "success", "none").takeSnapshot().histogramCounts();
+        assertTrue(buckets.length > 0, "latency should be recorded into SLO buckets");
+    }
+
+    @Test
+    void testUploadRecordsLatencyAndBytes() {
+        doAnswer(invocation -> {
+            invocation.<InputStream>getArgument(1).transferTo(OutputStream.nullOutputStream());
+            assertEquals(1, gauge("sbomer.storage.upload.in.flight"));
+            assertEquals(CONTENT.length, gauge("sbomer.storage.upload.in.flight.transferred"));
+            return null;
+        }).when(delegate).upload(eq(KEY), any(), any(UploadOptions.class));
+
+        storage.upload(KEY, new ByteArrayInputStream(CONTENT), CONTENT.length, "application/json");
+
+        assertEquals(1, timer("upload", "success", "none").count());
+        assertEquals(CONTENT.length, registry.get("sbomer.storage.upload.transferred").counter().count());
+        assertEquals(0, gauge("sbomer.storage.upload.in.flight"));
+        assertEquals(0, gauge("sbomer.storage.upload.in.flight.transferred"));
+    }
+
+    @Test
+    void testFailuresAreTaggedWithTheirException() {
+        doThrow(new StorageUnavailableException("Storage unavailable", null))
+                .when(delegate).upload(eq(KEY), any(), any(UploadOptions.class));
+        when(delegate.download(eq(KEY), any())).thenThrow(new StorageFileNotFoundException("File not found: " + KEY, null));
+
+        InputStream content = new ByteArrayInputStream(CONTENT);
+        assertThrows(StorageUnavailableException.class, () -> storage.upload(KEY, content, CONTENT.length, null));
+        assertThrows(StorageFileNotFoundException.class, () -> storage.download(KEY, DownloadOptions.none()));
+
+        assertEquals(1, timer("upload", "failure", "StorageUnavailableException").count());
+        assertEquals(1, timer("download", "failure", "StorageFileNotFoundException").count());
+        assertEquals(0, gauge("sbomer.storage.upload.in.flight"));
+    }
+
+    @Test
+    void testUnlistedStorageExceptionIsTaggedWithClosestSuperclass() {
+        when(delegate.download(eq(KEY), any())).thenThrow(new StorageException("Storage error for: " + KEY, (Throwable) null) {});
+
+        assertThrows(StorageException.class, () -> storage.download(KEY, DownloadOptions.none()));
+
+        assertEquals(1, timer("download", "failure", "StorageException").count());
+    }
+
+    @Test
+    void testDownloadIsInFlightUntilClosed() throws IOException {
+        when(delegate.download(eq(KEY), any())).thenReturn(StoredObject.builder()
+                .content(new ByteArrayInputStream(CONTENT))
+                .contentLength(CONTENT.length)
+                .build());
+
+        StoredObject object = storage.download(KEY, DownloadOptions.none());
+        assertEquals(1, gauge("sbomer.storage.download.in.flight"));
+        try (InputStream content = object.getContent()) {
+            assertArrayEquals(CONTENT, content.readAllBytes());
+            assertEquals(CONTENT.length, gauge("sbomer.storage.download.in.flight.transferred"));
+        }
+
+        assertEquals(1, timer("download", "success", "none").count());
+        assertEquals(CONTENT.length, registry.get("sbomer.storage.download.transferred").counter().count());
+        assertEquals(0, gauge("sbomer.storage.download.in.flight"));
+        assertEquals(0, gauge("sbomer.storage.download.in.flight.transferred"));
+    }
+
+    @Test
+    void testFileDownloadIsCountedWhenHandedOut() {
+        when(delegate.download(eq(KEY), any())).thenReturn(StoredObject.builder()
+                .content(new ByteArrayInputStream(CONTENT))
+                .contentLength(CONTENT.length)
+                .file(Path.of("bom.json"))
+                .build());
+
+        storage.download(KEY, DownloadOptions.none());
+
+        assertEquals(CONTENT.length, registry.get("sbomer.storage.download.transferred").counter().count());
+        assertEquals(0, gauge("sbomer.storage.download.in.flight"));
+    }
+
+    @Test
+    void testNotModifiedDownload() {
+        when(delegate.download(eq(KEY), any())).thenReturn(StoredObject.builder().notModified(true).eTag("\"v1\"").build());
+
+        storage.download(KEY, DownloadOptions.builder().ifNoneMatch("\"v1\"").build());
+
+        assertEquals(1, timer("download", "not_modified", "none").count());
+        assertEquals(0, timer("download", "success", "none").count());
+    }
+
+    private Timer timer(String operation, String outcome, String exception) {
+        return registry.get("sbomer.storage.operation")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .tag("exception", exception)
+                .timer();
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).gauge().value();
+    }
+}
@@ -0,0 +1,88 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Unit tests for ObjectStorageSummaryStore.
+ * Tests the sidecar objects and the in-memory cache.
+ */
+@ExtendWith(MockitoExtension.class)
+class ObjectStorageSummaryStoreTest {
+
+    private static final String KEY = "gen-1/bom.json";
+    private static final String SIDECAR_KEY = "_summaries/gen-1/bom.json.json";
+
+    @Mock
+    ObjectStorage objectStorage;
+
+    @Test
+    void testSavedSummaryIsReadBackFromSidecar() {
+        AtomicReference<byte[]> sidecar = new AtomicReference<>();
+        doAnswer(invocation -> {
+            sidecar.set(invocation.<InputStream>getArgument(1).readAllBytes());
+            return null;
+        }).when(objectStorage).upload(eq(SIDECAR_KEY), any(InputStream.class), anyLong(), eq("application/json"));
+        SbomSummary summary = SbomSummary.builder()
+                .format("CycloneDX")
+                .specVersion("1.6")
+                .componentCount(42)
+                .rootName("app")
+                .rootPurl("pkg:maven/org/app@1")
+                .rootHashes(Map.of("SHA-256", "abc"))
+                .sha256("def")
+                .size(1234)
+                .build();
+        new ObjectStorageSummaryStore(objectStorage, new ObjectMapper(), 10).save(KEY, summary);
+        when(objectStorage.download(SIDECAR_KEY)).thenAnswer(invocation -> new ByteArrayInputStream(sidecar.get()));
+
+        // another instance, its cache is empty
+        ObjectStorageSummaryStore store = new ObjectStorageSummaryStore(objectStorage, new ObjectMapper(), 10);
+        SbomSummary read = store.find(KEY);
+        store.find(KEY);
+
+        assertEquals("CycloneDX", read.getFormat());
+        assertEquals("1.6", read.getSpecVersion());
+        assertNull(read.getSerialNumber());
+        assertEquals(42, read.getComponentCount());
+        assertEquals("pkg:maven/org/app@1", read.getRootPurl());
+        assertNull(read.getRootVersion());
+        assertEquals(Map.of("SHA-256", "abc"), read.getRootHashes());
+        assertEquals(1234, read.getSize());
+        verify(objectStorage, times(1)).download(SIDECAR_KEY);
+    }
+
+    @Test
+    void testSavedSummaryIsServedFromMemory() {
+        ObjectStorageSummaryStore store = new ObjectStorageSummaryStore(objectStorage, new ObjectMapper(), 10);
+        SbomSummary summary = SbomSummary.builder().format("SPDX").build();
+
+        store.save(KEY, summary);
+
+        assertSame(summary, store.find(KEY));
+        verify(objectStorage, never()).download(anyString());
+    }
+
+    @Test
+    void testMissingSidecarIsNoSummary() {
+        when(objectStorage.download(SIDECAR_KEY)).thenThrow(new StorageFileNotFoundException("File not found: " + SIDECAR_KEY, null));
+
+        assertNull(new ObjectStorageSummaryStore(objectStorage, new ObjectMapper(), 10).find(KEY));
+    }
+}
@@ -0,0 +1,124 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for OutboxLog.
+ * Tests appends, reads across segments, checkpoints and recovery after a torn write.
+ */
+class OutboxLogTest {
+
+    private static final long UNLIMITED = Long.MAX_VALUE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecordsAreReadInOrderAcrossSegments() throws IOException {
+        try (OutboxLog log = new OutboxLog(directory, 32, UNLIMITED)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(("record-" + i).getBytes(UTF_8));
+            }
+            assertTrue(log.segmentCount() > 1, "records should be spread over segments");
+
+            List<OutboxLog.Entry> first = log.read(0, 4);
+            List<OutboxLog.Entry> rest = log.read(first.get(3).next(), 100);
+
+            assertEquals(List.of("record-0", "record-1", "record-2", "record-3"), strings(first));
+            assertEquals(6, rest.size());
+            assertEquals("record-9", new String(rest.get(5).record(), UTF_8));
+            assertEquals(log.durable(), rest.get(5).next());
+        }
+    }
+
+    @Test
+    void testCheckpointDeletesConsumedSegmentsAndIsKeptAcrossRestarts() throws IOException {
+        long position;
+        try (OutboxLog log = new OutboxLog(directory, 32, UNLIMITED)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(("record-" + i).getBytes(UTF_8));
+            }
+            int segments = log.segmentCount();
+            position = log.read(0, 8).get(7).next();
+
+            log.checkpoint(position);
+
+            assertTrue(log.segmentCount() < segments, "consumed segments should be deleted");
+        }
+        try (OutboxLog log = new OutboxLog(directory, 32, UNLIMITED)) {
+            assertEquals(position, log.checkpoint());
+            assertEquals(List.of("record-8", "record-9"), strings(log.read(log.checkpoint(), 100)));
+        }
+    }
+
+    @Test
+    void testAppendFailsWhenUnconsumedRecordsWouldExceedMaxSize() throws IOException {
+        // room for two records of 8 bytes with their 8 byte headers
+        try (OutboxLog log = new OutboxLog(directory, 1024, 32)) {
+            log.append("record-0".getBytes(UTF_8));
+            long position = log.append("record-1".getBytes(UTF_8));
+
+            assertThrows(OutboxLog.OutboxFullException.class, () -> log.append("record-2".getBytes(UTF_8)));
+
+            log.checkpoint(position);
+            log.append("record-2".getBytes(UTF_8));
+            assertEquals(List.of("record-2"), strings(log.read(log.checkpoint(), 100)));
+        }
+    }
+
+    @Test
+    void testTornRecordIsCutOffWhenOpened() throws IOException {
+        long end;
+        try (OutboxLog log = new OutboxLog(directory, 1024, UNLIMITED)) {
+            log.append("complete".getBytes(UTF_8));
+            end = log.durable();
+        }
+        // header of a record whose content was never written
+        Path segment = directory.resolve(String.format("%020d.log", 0));
+        Files.write(segment, new byte[] { 0, 0, 0, 100, 1, 2, 3, 4, 5 }, StandardOpenOption.APPEND);
+
+        try (OutboxLog log = new OutboxLog(directory, 1024, UNLIMITED)) {
+            assertEquals(end, log.durable());
+            log.append("next".getBytes(UTF_8));
+            assertEquals(List.of("complete", "next"), strings(log.read(0, 100)));
+        }
+    }
+
+    @Test
+    void testConcurrentAppendsAreAllOnDisk() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (OutboxLog log = new OutboxLog(directory, 256, UNLIMITED)) {
+            List<Future<Long>> appends = IntStream.range(0, 200)
+                    .mapToObj(i -> executor.submit(() -> log.append(("record-" + i).getBytes(UTF_8))))
+                    .toList();
+            for (Future<Long> append : appends) {
+                assertTrue(append.get() <= log.durable(), "append should return once its record is on disk");
+            }
+
+            assertEquals(200, log.read(0, 1000).size());
+            assertFalse(log.awaitRecords(log.durable(), Duration.ofMillis(10)));
+            assertTrue(log.awaitRecords(0, Duration.ofMillis(10)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<String> strings(List<OutboxLog.Entry> entries) {
+        return entries.stream().map(entry -> new String(entry.record(), UTF_8)).toList();
+    }
+}
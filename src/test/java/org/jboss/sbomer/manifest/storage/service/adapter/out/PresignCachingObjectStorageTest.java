@@ -0,0 +1,89 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for PresignCachingObjectStorage.
+ * Tests reuse of presigned URLs, their refresh ahead of expiry and invalidation by uploads.
+ */
+@ExtendWith(MockitoExtension.class)
+class PresignCachingObjectStorageTest {
+
+    private static final String KEY = "gen-1/bom.json";
+    private static final Instant NOW = Instant.parse("2025-01-01T10:00:00Z");
+    private static final Duration VALIDITY = Duration.ofMinutes(15);
+
+    @Mock
+    ObjectStorage delegate;
+
+    PresignCachingObjectStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new PresignCachingObjectStorage(delegate, Duration.ofMinutes(2), new SimpleMeterRegistry(),
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void testUrlIsSignedOnceWhileValid() {
+        when(delegate.presignDownload(eq(KEY), any(), eq(VALIDITY))).thenReturn(url("a", NOW.plus(VALIDITY)));
+
+        PresignedUrl first = storage.presignDownload(KEY, DownloadOptions.none(), VALIDITY);
+        PresignedUrl second = storage.presignDownload(KEY, DownloadOptions.none(), VALIDITY);
+
+        assertSame(first, second);
+        verify(delegate).presignDownload(eq(KEY), any(), eq(VALIDITY));
+    }
+
+    @Test
+    void testUrlCloseToExpiryIsSignedAgain() {
+        when(delegate.presignDownload(eq(KEY), any(), eq(VALIDITY)))
+                .thenReturn(url("a", NOW.plus(Duration.ofMinutes(1))), url("b", NOW.plus(VALIDITY)));
+
+        storage.presignDownload(KEY, DownloadOptions.none(), VALIDITY);
+        PresignedUrl refreshed = storage.presignDownload(KEY, DownloadOptions.none(), VALIDITY);
+
+        assertEquals(URI.create("https://s3.example.com/b"), refreshed.getUrl());
+        verify(delegate, times(2)).presignDownload(eq(KEY), any(), eq(VALIDITY));
+    }
+
+    @Test
+    void testUploadDropsUrlOfKey() {
+        when(delegate.presignDownload(eq(KEY), any(), eq(VALIDITY))).thenReturn(url("a", NOW.plus(VALIDITY)));
+
+        storage.presignDownload(KEY, DownloadOptions.none(), VALIDITY);
+        storage.upload(KEY, new ByteArrayInputStream("{}".getBytes(UTF_8)), UploadOptions.builder().build());
+        storage.presignDownload(KEY, DownloadOptions.none(), VALIDITY);
+
+        verify(delegate, times(2)).presignDownload(eq(KEY), any(), eq(VALIDITY));
+    }
+
+    private static PresignedUrl url(String path, Instant expiresAt) {
+        return PresignedUrl.builder()
+                .url(URI.create("https://s3.example.com/" + path))
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
@@ -0,0 +1,238 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static jakarta.ws.rs.core.Response.Status.FORBIDDEN;
+import static jakarta.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static jakarta.ws.rs.core.Response.Status.TOO_MANY_REQUESTS;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageAccessException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageKeyInvalidException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+/**
+ * Unit tests for S3AsyncStorageAdapter.
+ * Tests upload and download operations and that failures are translated like in S3StorageAdapter.
+ */
+@ExtendWith(MockitoExtension.class)
+class S3AsyncStorageAdapterTest {
+
+    private static final String BUCKET_NAME = "test-storage";
+    private static final String CONTENT_TYPE = "text/plain";
+
+    @Mock
+    S3AsyncClient client;
+
+    S3AsyncStorageAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        adapter = new S3AsyncStorageAdapter(client, BUCKET_NAME, 4, 2, 4);
+    }
+
+    @Test
+    void testUploadSuccess() {
+        String key = "foo/file.txt";
+        byte[] bytes = "123".getBytes();
+        when(client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+            .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+        adapter.upload(key, new ByteArrayInputStream(bytes), bytes.length, CONTENT_TYPE);
+        ArgumentCaptor<PutObjectRequest> requestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<AsyncRequestBody> bodyCaptor = ArgumentCaptor.forClass(AsyncRequestBody.class);
+        verify(client).putObject(requestCaptor.capture(), bodyCaptor.capture());
+        PutObjectRequest capturedRequest = requestCaptor.getValue();
+        assertEquals(BUCKET_NAME, capturedRequest.bucket());
+        assertEquals(key, capturedRequest.key());
+        assertEquals(bytes.length, capturedRequest.contentLength());
+        assertEquals(bytes.length, bodyCaptor.getValue().contentLength().orElseThrow());
+    }
+
+    @Test
+    void testUploadMultipartSuccess() {
+        byte[] bytes = "0123456789".getBytes();
+        when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload-1").build()));
+        when(client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+            .thenAnswer(invocation -> {
+                UploadPartRequest request = invocation.getArgument(0);
+                return CompletableFuture.completedFuture(UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build());
+            });
+        when(client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+        adapter.upload("foo/large.txt", new ByteArrayInputStream(bytes), bytes.length, CONTENT_TYPE);
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(completeCaptor.capture());
+        List<CompletedPart> parts = completeCaptor.getValue().multipartUpload().parts();
+        assertEquals(List.of("etag-1", "etag-2", "etag-3"), parts.stream().map(CompletedPart::eTag).toList());
+    }
+
+    @Test
+    void testUploadMultipartPartFailureAborts() {
+        byte[] bytes = "0123456789".getBytes();
+        when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload-2").build()));
+        when(client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+            .thenReturn(CompletableFuture.failedFuture(s3Exception(SERVICE_UNAVAILABLE.getStatusCode())));
+        when(client.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+        assertThrows(StorageUnavailableException.class, () ->
+            adapter.upload("foo/failing.txt", new ByteArrayInputStream(bytes), bytes.length, CONTENT_TYPE)
+        );
+        verify(client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testUploadPathTraversal() {
+        assertThrows(StorageKeyInvalidException.class, () ->
+            adapter.upload("../foo", new ByteArrayInputStream(new byte[0]), 0, CONTENT_TYPE)
+        );
+    }
+
+    @Test
+    void testUploadNoSuchBucket() {
+        when(client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+            .thenReturn(CompletableFuture.failedFuture(NoSuchBucketException.builder().message("Bucket not found").build()));
+        StorageException ex = assertThrows(StorageException.class, () ->
+            adapter.upload("foo/non-existent.txt", new ByteArrayInputStream(new byte[0]), 0, CONTENT_TYPE)
+        );
+        assertTrue(ex.getMessage().contains(BUCKET_NAME));
+    }
+
+    @Test
+    void testUploadForbidden() {
+        when(client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+            .thenReturn(CompletableFuture.failedFuture(s3Exception(FORBIDDEN.getStatusCode())));
+        assertThrows(StorageAccessException.class, () ->
+            adapter.upload("foo/forbidden.txt", new ByteArrayInputStream(new byte[0]), 0, CONTENT_TYPE)
+        );
+    }
+
+    @Test
+    void testUploadRateLimited() {
+        when(client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+            .thenReturn(CompletableFuture.failedFuture(s3Exception(TOO_MANY_REQUESTS.getStatusCode())));
+        StorageUnavailableException ex = assertThrows(StorageUnavailableException.class, () ->
+            adapter.upload("foo/rate-limited.txt", new ByteArrayInputStream(new byte[0]), 0, CONTENT_TYPE)
+        );
+        assertTrue(ex.getMessage().contains("rate limit"));
+    }
+
+    @Test
+    void testUploadConnectionError() {
+        when(client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+            .thenReturn(CompletableFuture.failedFuture(SdkClientException.create("Connection error")));
+        assertThrows(StorageUnavailableException.class, () ->
+            adapter.upload("foo/connection-error.txt", new ByteArrayInputStream(new byte[0]), 0, CONTENT_TYPE)
+        );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDownloadSuccess() {
+        String key = "bar/file.txt";
+        ResponseInputStream<GetObjectResponse> mockResponse = mock(ResponseInputStream.class);
+        when(mockResponse.response()).thenReturn(GetObjectResponse.builder().contentLength(3L).build());
+        when(client.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+            .thenReturn(CompletableFuture.completedFuture(mockResponse));
+        InputStream result = adapter.download(key);
+        assertEquals(mockResponse, result);
+        ArgumentCaptor<GetObjectRequest> requestCaptor = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(client).getObject(requestCaptor.capture(), any(AsyncResponseTransformer.class));
+        assertEquals(BUCKET_NAME, requestCaptor.getValue().bucket());
+        assertEquals(key, requestCaptor.getValue().key());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDownloadNoSuchKey() {
+        String key = "bar/non-existent.txt";
+        when(client.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+            .thenReturn(CompletableFuture.failedFuture(NoSuchKeyException.builder().message("Key not found").build()));
+        StorageFileNotFoundException ex = assertThrows(StorageFileNotFoundException.class, () ->
+            adapter.download(key)
+        );
+        assertTrue(ex.getMessage().contains(key));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDownloadServiceUnavailable() {
+        when(client.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+            .thenReturn(CompletableFuture.failedFuture(s3Exception(SERVICE_UNAVAILABLE.getStatusCode())));
+        assertThrows(StorageUnavailableException.class, () ->
+            adapter.download("bar/service-unavailable.txt")
+        );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDownloadNotModified() {
+        when(client.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+            .thenReturn(CompletableFuture.failedFuture(s3Exception(304)));
+        StoredObject result = adapter.download("bar/file.json", DownloadOptions.builder().ifNoneMatch("\"abc\"").build());
+        assertTrue(result.isNotModified());
+        assertNull(result.getContent());
+    }
+
+    @Test
+    void testStatReturnsMetadata() {
+        when(client.headObject(any(HeadObjectRequest.class))).thenReturn(CompletableFuture.completedFuture(
+                HeadObjectResponse.builder().contentLength(42L).contentType(CONTENT_TYPE).build()));
+        StoredObject result = adapter.stat("bar/file.txt");
+        assertEquals(42, result.getContentLength());
+        assertEquals(CONTENT_TYPE, result.getContentType());
+    }
+
+    @Test
+    void testStatNoSuchKey() {
+        when(client.headObject(any(HeadObjectRequest.class)))
+            .thenReturn(CompletableFuture.failedFuture(s3Exception(404)));
+        assertThrows(StorageFileNotFoundException.class, () ->
+            adapter.stat("bar/non-existent.txt")
+        );
+    }
+
+    @Test
+    void testListReturnsPage() {
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(CompletableFuture.completedFuture(
+                ListObjectsV2Response.builder()
+                        .contents(S3Object.builder().key("gen-1/a.json").size(10L).build())
+                        .isTruncated(true)
+                        .build()));
+        ObjectPage page = adapter.list("gen-1/", null, 1);
+        assertEquals(1, page.getObjects().size());
+        assertEquals("gen-1/a.json", page.getNextCursor());
+    }
+
+    private static S3Exception s3Exception(int statusCode) {
+        return (S3Exception) S3Exception.builder()
+            .statusCode(statusCode)
+            .message("Error " + statusCode)
+            .build();
+    }
+}
@@ -0,0 +1,145 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUploadMismatchException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+/**
+ * Unit tests for S3MultipartUploadAdapter.
+ * Tests presigning of parts, the checks of received parts and the abort of old uploads.
+ */
+@ExtendWith(MockitoExtension.class)
+class S3MultipartUploadAdapterTest {
+
+    private static final String BUCKET_NAME = "test-storage";
+    private static final String KEY = "gen-1/bom.json";
+    private static final String UPLOAD_ID = "upload-1";
+
+    @Mock
+    S3Client client;
+
+    S3Presigner presigner;
+    S3MultipartUploadAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        presigner = S3Presigner.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("access", "secret")))
+                .build();
+        adapter = new S3MultipartUploadAdapter(client, presigner, BUCKET_NAME);
+    }
+
+    @AfterEach
+    void tearDown() {
+        presigner.close();
+    }
+
+    @Test
+    void testPresignPartsSignsEveryPartNumber() {
+        List<URI> urls = adapter.presignParts(KEY, UPLOAD_ID, 3, Duration.ofHours(2));
+
+        assertEquals(3, urls.size());
+        assertTrue(urls.get(2).getQuery().contains("partNumber=3"));
+        assertTrue(urls.get(2).getQuery().contains("uploadId=" + UPLOAD_ID));
+        assertTrue(urls.get(0).getQuery().contains("X-Amz-Expires=7200"));
+    }
+
+    @Test
+    void testVerifyAcceptsMatchingParts() {
+        when(client.listParts(any(ListPartsRequest.class))).thenReturn(parts(part(1, "\"a\"", 5), part(2, "\"b\"", 3)));
+
+        assertDoesNotThrow(() -> adapter.verifyUpload(KEY, UPLOAD_ID, 8, List.of("a", "\"b\"")));
+    }
+
+    @Test
+    void testVerifyRejectsMismatchingParts() {
+        when(client.listParts(any(ListPartsRequest.class))).thenReturn(parts(part(1, "\"a\"", 5), part(3, "\"b\"", 3)));
+
+        assertThrows(StorageUploadMismatchException.class, () -> adapter.verifyUpload(KEY, UPLOAD_ID, 8, List.of("a", "b")));
+        assertThrows(StorageUploadMismatchException.class, () -> adapter.verifyUpload(KEY, UPLOAD_ID, 8, List.of("a")));
+    }
+
+    @Test
+    void testVerifyRejectsWrongETagAndSize() {
+        when(client.listParts(any(ListPartsRequest.class))).thenReturn(parts(part(1, "\"a\"", 5)));
+
+        assertThrows(StorageUploadMismatchException.class, () -> adapter.verifyUpload(KEY, UPLOAD_ID, 5, List.of("x")));
+        assertThrows(StorageUploadMismatchException.class, () -> adapter.verifyUpload(KEY, UPLOAD_ID, 6, List.of("a")));
+    }
+
+    @Test
+    void testVerifyOfUnknownUploadThrowsNotFound() {
+        when(client.listParts(any(ListPartsRequest.class))).thenThrow(NoSuchUploadException.builder().build());
+
+        assertThrows(StorageFileNotFoundException.class, () -> adapter.verifyUpload(KEY, UPLOAD_ID, 5, List.of("a")));
+    }
+
+    @Test
+    void testCompleteSendsPartsInOrder() {
+        adapter.completeUpload(KEY, UPLOAD_ID, List.of("a", "b"));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> captor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(captor.capture());
+        List<CompletedPart> parts = captor.getValue().multipartUpload().parts();
+        assertEquals(2, parts.get(1).partNumber());
+        assertEquals("b", parts.get(1).eTag());
+        assertEquals(UPLOAD_ID, captor.getValue().uploadId());
+    }
+
+    @Test
+    void testAbortUploadsStartedBeforeAbortsOnlyOldOnes() {
+        Instant cutoff = Instant.parse("2025-01-01T10:00:00Z");
+        when(client.listMultipartUploads(any(ListMultipartUploadsRequest.class)))
+                .thenReturn(ListMultipartUploadsResponse.builder()
+                        .uploads(upload("gen-1/old.json", "old", cutoff.minusSeconds(1)))
+                        .isTruncated(true)
+                        .nextKeyMarker("gen-1/old.json")
+                        .nextUploadIdMarker("old")
+                        .build())
+                .thenReturn(ListMultipartUploadsResponse.builder()
+                        .uploads(upload("gen-2/new.json", "new", cutoff.plusSeconds(1)))
+                        .isTruncated(false)
+                        .build());
+
+        assertEquals(1, adapter.abortUploadsStartedBefore(cutoff));
+
+        verify(client).abortMultipartUpload(argThat((AbortMultipartUploadRequest r) -> r != null && "old".equals(r.uploadId())));
+        verify(client, times(1)).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(client).listMultipartUploads(argThat((ListMultipartUploadsRequest r) -> r != null && "old".equals(r.uploadIdMarker())));
+    }
+
+    private static ListPartsResponse parts(Part... parts) {
+        return ListPartsResponse.builder().parts(parts).isTruncated(false).build();
+    }
+
+    private static Part part(int partNumber, String eTag, long size) {
+        return Part.builder().partNumber(partNumber).eTag(eTag).size(size).build();
+    }
+
+    private static MultipartUpload upload(String key, String uploadId, Instant initiated) {
+        return MultipartUpload.builder().key(key).uploadId(uploadId).initiated(initiated).build();
+    }
+}
@@ -89,6 +89,22 @@ class S3StorageAdapterIntegrationTest {
         }
     }
 
+    @Test
+    void testUploadAndDownloadMultipartContent() throws IOException {
+        String key = "foobar/multipart.txt";
+        // Minimum part size accepted by S3 compatible storage
+        int partSize = 5 * ONE_MB;
+        byte[] originalBytes = new byte[2 * partSize + ONE_MB];
+        new Random().nextBytes(originalBytes);
+        S3StorageAdapter multipartAdapter = new S3StorageAdapter(client, BUCKET_NAME, partSize, 2, 4);
+        multipartAdapter.upload(key, new ByteArrayInputStream(originalBytes),
+                       originalBytes.length, CONTENT_TYPE);
+        try (InputStream downloaded = adapter.download(key)) {
+            byte[] downloadedBytes = downloaded.readAllBytes();
+            assertArrayEquals(originalBytes, downloadedBytes);
+        }
+    }
+
     @Test
     void testDownloadNonExistentFile() {
         assertThrows(StorageFileNotFoundException.class, () ->
@@ -137,8 +153,8 @@ class S3StorageAdapterIntegrationTest {
      *  4. Without byte array buffering, retry fails (InputStream already consumed)
      *
      * The fix:
-     *  S3StorageAdapter.upload() buffers InputStream to byte array, enabling AWS
-     *  SDK's built-in retry mechanism to work with non-markable streams.
+     *  S3StorageAdapter.upload() buffers each part of the InputStream in a pooled byte array,
+     *  enabling AWS SDK's built-in retry mechanism to work with non-markable streams.
      *
      * @throws IOException if stream operations fail
      */
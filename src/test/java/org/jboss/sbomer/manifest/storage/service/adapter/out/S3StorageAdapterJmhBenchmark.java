@@ -0,0 +1,130 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.sbomer.manifest.storage.service.PayloadInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+/**
+ * JMH benchmarks of the S3StorageAdapter upload and download paths against a mocked S3Client,
+ * which reads request bodies to the end and returns generated content.
+ * Run with {@code ./mvnw test -Pjmh -Djmh.include=S3StorageAdapterJmhBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class S3StorageAdapterJmhBenchmark {
+
+    private static final String KEY = "gen-123/bom.json";
+
+    @State(Scope.Benchmark)
+    public static class Adapter {
+        // 1 KB, 1 MB, 100 MB, 500 MB
+        @Param({ "1024", "1048576", "104857600", "524288000" })
+        long size;
+
+        S3StorageAdapter adapter;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // stub-only mocks do not record invocations, which would otherwise pile up over the run
+            S3Client client = mock(S3Client.class, withSettings().stubOnly());
+            when(client.putObject(any(PutObjectRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+                drain(invocation.getArgument(1));
+                return PutObjectResponse.builder().eTag("\"etag\"").build();
+            });
+            when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                    .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+            when(client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+                drain(invocation.getArgument(1));
+                return UploadPartResponse.builder().eTag("\"part\"").build();
+            });
+            when(client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                    .thenReturn(CompleteMultipartUploadResponse.builder().build());
+            when(client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> new ResponseInputStream<>(
+                    GetObjectResponse.builder().contentLength(size).contentType("application/json").eTag("\"etag\"").build(),
+                    AbortableInputStream.create(new PayloadInputStream(size))));
+            adapter = new S3StorageAdapter(client, "bucket");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            adapter.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void upload(Adapter state) {
+        state.adapter.upload(KEY, new PayloadInputStream(state.size), state.size, "application/json");
+    }
+
+    @Benchmark
+    public long downloadStreaming(Adapter state) throws IOException {
+        try (InputStream content = state.adapter.download(KEY)) {
+            return content.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    /**
+     * Key validation runs on every storage call, measured without a payload.
+     */
+    @State(Scope.Benchmark)
+    public static class Keys {
+        String valid = "gen-123/enh-456/bom.cyclonedx.json";
+        String traversal = "gen-123/../../etc/passwd";
+    }
+
+    @Benchmark
+    public void validateKey(Keys keys, Blackhole blackhole) {
+        StorageKeyValidator.validate(keys.valid);
+        try {
+            StorageKeyValidator.validate(keys.traversal);
+        } catch (RuntimeException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    private static void drain(RequestBody body) throws IOException {
+        try (InputStream content = body.contentStreamProvider().newStream()) {
+            content.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.jboss.sbomer.manifest.storage.service.adapter.out;
 
 import static jakarta.ws.rs.core.Response.Status.FORBIDDEN;
+import static jakarta.ws.rs.core.Response.Status.PRECONDITION_FAILED;
+import static jakarta.ws.rs.core.Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE;
 import static jakarta.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
 import static jakarta.ws.rs.core.Response.Status.TOO_MANY_REQUESTS;
 import static org.junit.jupiter.api.Assertions.*;
@@ -8,13 +10,28 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 
 import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageAccessException;
 import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageException;
 import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
 import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageKeyInvalidException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StoragePreconditionFailedException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageRangeNotSatisfiableException;
 import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.PresignedUrl;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -22,11 +39,17 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 /**
  * Unit tests for S3StorageAdapter.
@@ -64,6 +87,71 @@ class S3StorageAdapterTest {
         assertEquals(CONTENT_TYPE, capturedRequest.contentType());
     }
 
+    @Test
+    void testUploadMultipartSuccess() {
+        String key = "foo/large.txt";
+        byte[] bytes = "0123456789".getBytes();
+        S3StorageAdapter multipartAdapter = new S3StorageAdapter(client, BUCKET_NAME, 4, 2, 4);
+        ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+        when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+            .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+            .thenAnswer(invocation -> {
+                UploadPartRequest request = invocation.getArgument(0);
+                RequestBody body = invocation.getArgument(1);
+                synchronized (uploaded) {
+                    uploaded.write(readBody(body));
+                }
+                return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+            });
+        multipartAdapter.upload(key, new ByteArrayInputStream(bytes), bytes.length, CONTENT_TYPE);
+
+        verify(client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(client, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(completeCaptor.capture());
+        CompleteMultipartUploadRequest complete = completeCaptor.getValue();
+        assertEquals("upload-1", complete.uploadId());
+        assertEquals(key, complete.key());
+        List<CompletedPart> parts = complete.multipartUpload().parts();
+        assertEquals(List.of(1, 2, 3), parts.stream().map(CompletedPart::partNumber).toList());
+        assertEquals("etag-3", parts.get(2).eTag());
+        assertEquals(bytes.length, uploaded.size());
+    }
+
+    @Test
+    void testUploadExactlyOnePartUsesSinglePut() {
+        byte[] bytes = "0123".getBytes();
+        S3StorageAdapter multipartAdapter = new S3StorageAdapter(client, BUCKET_NAME, 4, 2, 4);
+        when(client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().build());
+        multipartAdapter.upload("foo/one-part.txt", new ByteArrayInputStream(bytes), bytes.length, CONTENT_TYPE);
+        verify(client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testUploadMultipartPartFailureAborts() {
+        byte[] bytes = "0123456789".getBytes();
+        S3StorageAdapter multipartAdapter = new S3StorageAdapter(client, BUCKET_NAME, 4, 1, 4);
+        when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+            .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-2").build());
+        S3Exception s3Exception = (S3Exception) S3Exception.builder()
+            .statusCode(SERVICE_UNAVAILABLE.getStatusCode())
+            .message("Service Unavailable")
+            .build();
+        when(client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+            .thenReturn(UploadPartResponse.builder().eTag("etag-1").build())
+            .thenThrow(s3Exception);
+        assertThrows(StorageUnavailableException.class, () ->
+            multipartAdapter.upload("foo/failing.txt", new ByteArrayInputStream(bytes), bytes.length, CONTENT_TYPE)
+        );
+        ArgumentCaptor<AbortMultipartUploadRequest> abortCaptor = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        verify(client).abortMultipartUpload(abortCaptor.capture());
+        assertEquals("upload-2", abortCaptor.getValue().uploadId());
+        verify(client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
     @Test
     void testUploadNullKey() {
         assertThrows(StorageKeyInvalidException.class, () ->
@@ -175,6 +263,121 @@ class S3StorageAdapterTest {
         assertEquals(key, capturedRequest.key());
     }
 
+    @Test
+    void testDownloadRange() {
+        String key = "bar/file.txt";
+        ResponseInputStream<GetObjectResponse> mockResponse = mock(ResponseInputStream.class);
+        GetObjectResponse getObjectResponse = GetObjectResponse.builder()
+            .contentLength(10L)
+            .contentRange("bytes 100-109/1000")
+            .eTag("\"abc\"")
+            .build();
+        when(mockResponse.response()).thenReturn(getObjectResponse);
+        when(client.getObject(any(GetObjectRequest.class)))
+            .thenReturn(mockResponse);
+        StoredObject result = adapter.download(key, DownloadOptions.builder()
+            .range(ByteRange.of(100, 109))
+            .ifMatch("\"abc\"")
+            .build());
+        assertTrue(result.isPartial());
+        assertEquals(100L, result.getRangeStart());
+        assertEquals(109L, result.getRangeEnd());
+        assertEquals(1000L, result.getTotalLength());
+        assertEquals(10L, result.getContentLength());
+        assertEquals("\"abc\"", result.getETag());
+        ArgumentCaptor<GetObjectRequest> requestCaptor = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(client).getObject(requestCaptor.capture());
+        assertEquals("bytes=100-109", requestCaptor.getValue().range());
+        assertEquals("\"abc\"", requestCaptor.getValue().ifMatch());
+    }
+
+    @Test
+    void testDownloadWholeObjectIsNotPartial() {
+        ResponseInputStream<GetObjectResponse> mockResponse = mock(ResponseInputStream.class);
+        when(mockResponse.response()).thenReturn(GetObjectResponse.builder().contentLength(42L).build());
+        when(client.getObject(any(GetObjectRequest.class)))
+            .thenReturn(mockResponse);
+        StoredObject result = adapter.download("bar/file.txt", DownloadOptions.none());
+        assertFalse(result.isPartial());
+        assertEquals(42L, result.getTotalLength());
+        ArgumentCaptor<GetObjectRequest> requestCaptor = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(client).getObject(requestCaptor.capture());
+        assertNull(requestCaptor.getValue().range());
+    }
+
+    @Test
+    void testDownloadExposesValidators() {
+        Instant lastModified = Instant.parse("2025-01-01T10:00:00Z");
+        ResponseInputStream<GetObjectResponse> mockResponse = mock(ResponseInputStream.class);
+        when(mockResponse.response()).thenReturn(GetObjectResponse.builder()
+            .contentLength(42L)
+            .contentType("application/json")
+            .eTag("\"abc\"")
+            .lastModified(lastModified)
+            .build());
+        when(client.getObject(any(GetObjectRequest.class)))
+            .thenReturn(mockResponse);
+        StoredObject result = adapter.download("bar/file.json", DownloadOptions.builder()
+            .ifNoneMatch("\"old\"")
+            .ifModifiedSince(lastModified.minusSeconds(60))
+            .build());
+        assertFalse(result.isNotModified());
+        assertEquals("application/json", result.getContentType());
+        assertEquals("\"abc\"", result.getETag());
+        assertEquals(lastModified, result.getLastModified());
+        ArgumentCaptor<GetObjectRequest> requestCaptor = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(client).getObject(requestCaptor.capture());
+        assertEquals("\"old\"", requestCaptor.getValue().ifNoneMatch());
+        assertEquals(lastModified.minusSeconds(60), requestCaptor.getValue().ifModifiedSince());
+    }
+
+    @Test
+    void testDownloadNotModified() {
+        S3Exception s3Exception = (S3Exception) S3Exception.builder()
+            .statusCode(304)
+            .awsErrorDetails(AwsErrorDetails.builder()
+                .sdkHttpResponse(SdkHttpResponse.builder()
+                    .statusCode(304)
+                    .putHeader("ETag", "\"abc\"")
+                    .putHeader("Last-Modified", "Wed, 01 Jan 2025 10:00:00 GMT")
+                    .build())
+                .build())
+            .build();
+        when(client.getObject(any(GetObjectRequest.class)))
+            .thenThrow(s3Exception);
+        StoredObject result = adapter.download("bar/file.json", DownloadOptions.builder().ifNoneMatch("\"abc\"").build());
+        assertTrue(result.isNotModified());
+        assertNull(result.getContent());
+        assertEquals("\"abc\"", result.getETag());
+        assertEquals(Instant.parse("2025-01-01T10:00:00Z"), result.getLastModified());
+    }
+
+    @Test
+    void testDownloadPreconditionFailed() {
+        S3Exception s3Exception = (S3Exception) S3Exception.builder()
+            .statusCode(PRECONDITION_FAILED.getStatusCode())
+            .message("Precondition Failed")
+            .build();
+        when(client.getObject(any(GetObjectRequest.class)))
+            .thenThrow(s3Exception);
+        assertThrows(StoragePreconditionFailedException.class, () ->
+            adapter.download("bar/changed.txt", DownloadOptions.builder().ifMatch("\"old\"").build())
+        );
+    }
+
+    @Test
+    void testDownloadRangeNotSatisfiable() {
+        S3Exception s3Exception = (S3Exception) S3Exception.builder()
+            .statusCode(REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode())
+            .message("Requested Range Not Satisfiable")
+            .build();
+        when(client.getObject(any(GetObjectRequest.class)))
+            .thenThrow(s3Exception);
+        assertThrows(StorageRangeNotSatisfiableException.class, () ->
+            adapter.download("bar/small.txt", DownloadOptions.builder().range(ByteRange.from(5000)).build())
+        );
+    }
+
     @Test
     void testDownloadNullKey() {
         assertThrows(StorageKeyInvalidException.class, () ->
@@ -276,4 +479,102 @@ class S3StorageAdapterTest {
             adapter.download("bar/unexpected-error.txt")
         );
     }
+
+    @Test
+    void testStatReturnsMetadata() {
+        when(client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .contentLength(42L)
+                .contentType(CONTENT_TYPE)
+                .eTag("\"v1\"")
+                .metadata(Map.of("content-digest", "sha256:abc"))
+                .build());
+
+        StoredObject object = adapter.stat("bar/file.txt");
+
+        assertNull(object.getContent());
+        assertEquals(42, object.getContentLength());
+        assertEquals(CONTENT_TYPE, object.getContentType());
+        assertEquals("\"v1\"", object.getETag());
+        assertEquals("sha256:abc", object.getMetadata().get("content-digest"));
+    }
+
+    @Test
+    void testPresignDownloadSignsExistingObject() {
+        when(client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .contentLength(42L)
+                .contentEncoding("zstd")
+                .build());
+        // signing is done locally, no request is sent
+        S3Presigner presigner = S3Presigner.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("access", "secret")))
+                .build();
+        S3StorageAdapter presigning = new S3StorageAdapter(client, presigner, BUCKET_NAME);
+
+        PresignedUrl url = presigning.presignDownload("bar/file.txt", DownloadOptions.none(), Duration.ofMinutes(15));
+
+        assertTrue(url.getUrl().toString().contains("bar/file.txt"));
+        assertTrue(url.getUrl().getQuery().contains("X-Amz-Expires=900"));
+        assertEquals("zstd", url.getContentEncoding());
+        assertTrue(url.getExpiresAt().isAfter(Instant.now()));
+        presigner.close();
+    }
+
+    @Test
+    void testPresignDownloadNoSuchKey() {
+        when(client.headObject(any(HeadObjectRequest.class)))
+            .thenThrow(S3Exception.builder().statusCode(404).message("Not Found").build());
+        assertThrows(StorageFileNotFoundException.class, () ->
+            adapter.presignDownload("bar/non-existent.txt", DownloadOptions.none(), Duration.ofMinutes(15))
+        );
+    }
+
+    @Test
+    void testStatNoSuchKey() {
+        // HeadObject responses have no body, a missing key is a plain 404
+        when(client.headObject(any(HeadObjectRequest.class)))
+            .thenThrow(S3Exception.builder().statusCode(404).message("Not Found").build());
+        assertThrows(StorageFileNotFoundException.class, () ->
+            adapter.stat("bar/non-existent.txt")
+        );
+    }
+
+    @Test
+    void testListReturnsPageWithCursor() {
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(ListObjectsV2Response.builder()
+                .contents(S3Object.builder().key("gen-1/a.json").size(10L).eTag("\"a\"").lastModified(Instant.EPOCH).build(),
+                        S3Object.builder().key("gen-1/b.json").size(20L).eTag("\"b\"").build())
+                .isTruncated(true)
+                .build());
+
+        ObjectPage page = adapter.list("gen-1/", "gen-1/0.json", 2);
+
+        ArgumentCaptor<ListObjectsV2Request> request = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(client).listObjectsV2(request.capture());
+        assertEquals("gen-1/", request.getValue().prefix());
+        assertEquals("gen-1/0.json", request.getValue().startAfter());
+        assertEquals(2, request.getValue().maxKeys());
+        assertEquals(List.of("gen-1/a.json", "gen-1/b.json"), page.getObjects().stream().map(ObjectSummary::getKey).toList());
+        assertEquals(20, page.getObjects().get(1).getSize());
+        assertEquals("\"a\"", page.getObjects().get(0).getETag());
+        assertEquals("gen-1/b.json", page.getNextCursor());
+    }
+
+    @Test
+    void testListLastPageHasNoCursor() {
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(ListObjectsV2Response.builder()
+                .contents(S3Object.builder().key("gen-1/a.json").size(10L).build())
+                .isTruncated(false)
+                .build());
+
+        assertNull(adapter.list("gen-1/", null, 1000).getNextCursor());
+    }
+
+    private static byte[] readBody(RequestBody body) {
+        try (InputStream stream = body.contentStreamProvider().newStream()) {
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
\ No newline at end of file
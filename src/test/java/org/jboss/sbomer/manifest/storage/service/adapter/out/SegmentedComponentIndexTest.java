@@ -0,0 +1,192 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ComponentIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for SegmentedComponentIndex.
+ * Tests lookups in memory and in segments, replacements, removals, merges, restarts and rebuilds.
+ */
+class SegmentedComponentIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testFindsFilesInMemoryAndInSegments() throws IOException {
+        SegmentedComponentIndex index = new SegmentedComponentIndex(directory, 1000, 4);
+        index.add("gen-1/bom.json", List.of("pkg:maven/g/a@1", "a@1"));
+        index.flush();
+        index.add("gen-2/bom.json", List.of("pkg:maven/g/a@1", "pkg:maven/g/a@2", "a@2"));
+
+        assertEquals(Set.of("gen-1/bom.json", "gen-2/bom.json"), index.find("pkg:maven/g/a@1", false));
+        assertEquals(Set.of("gen-2/bom.json"), index.find("a@2", false));
+        assertEquals(Set.of("gen-1/bom.json", "gen-2/bom.json"), index.find("pkg:maven/g/a@", true));
+        assertTrue(index.find("pkg:maven/g/a", false).isEmpty());
+        assertEquals(1, index.segments().size());
+    }
+
+    @Test
+    void testMergesSmallestSegments() throws IOException {
+        SegmentedComponentIndex index = new SegmentedComponentIndex(directory, 1000, 2);
+        for (int i = 0; i < 5; i++) {
+            index.add("gen-" + i + "/bom.json", List.of("a@1", "b@" + i));
+            index.flush();
+        }
+
+        index.merge();
+
+        assertEquals(2, index.segments().size());
+        assertEquals(2, segmentFiles().size());
+        assertEquals(5, index.find("a@1", false).size());
+        assertEquals(Set.of("gen-3/bom.json"), index.find("b@3", false));
+    }
+
+    @Test
+    void testSegmentsAreKeptAcrossRestarts() throws IOException {
+        SegmentedComponentIndex index = new SegmentedComponentIndex(directory, 1000, 4);
+        index.add("gen-1/bom.json", List.of("a@1"));
+        index.shutdown();
+        // left over by a write that did not complete
+        Files.writeString(directory.resolve("0000000000000009.seg.tmp"), "partial");
+
+        SegmentedComponentIndex restarted = new SegmentedComponentIndex(directory, 1000, 4);
+        restarted.add("gen-2/bom.json", List.of("a@1"));
+        restarted.flush();
+
+        assertEquals(Set.of("gen-1/bom.json", "gen-2/bom.json"), restarted.find("a@1", false));
+        assertEquals(2, segmentFiles().size());
+        assertFalse(Files.exists(directory.resolve("0000000000000009.seg.tmp")));
+    }
+
+    @Test
+    void testRebuildReplacesSegmentsPresentWhenItStarted() throws IOException {
+        SegmentedComponentIndex index = new SegmentedComponentIndex(directory, 2, 4);
+        index.add("gen-old/bom.json", List.of("a@1"));
+        index.flush();
+
+        ComponentIndex.Rebuild rebuild = index.startRebuild();
+        rebuild.add("gen-1/bom.json", List.of("a@1", "b@1"));
+        rebuild.add("gen-2/bom.json", List.of("a@1"));
+        // uploaded while the rebuild runs
+        index.add("gen-3/bom.json", List.of("a@1"));
+        assertEquals(Set.of("gen-old/bom.json", "gen-3/bom.json"), index.find("a@1", false));
+        rebuild.commit();
+
+        assertEquals(Set.of("gen-1/bom.json", "gen-2/bom.json", "gen-3/bom.json"), index.find("a@1", false));
+
+        ComponentIndex.Rebuild aborted = index.startRebuild();
+        aborted.add("gen-4/bom.json", List.of("a@1", "b@1", "c@1"));
+        aborted.abort();
+        assertEquals(Set.of("gen-1/bom.json", "gen-2/bom.json", "gen-3/bom.json"), index.find("a@1", false));
+        assertTrue(index.find("c@1", false).isEmpty());
+    }
+
+    @Test
+    void testRemovedFilesAreNotFoundAndDroppedByMerges() throws IOException {
+        SegmentedComponentIndex index = new SegmentedComponentIndex(directory, 1000, 1);
+        index.add("gen-1/bom.json", List.of("a@1"));
+        index.flush();
+        index.add("gen-2/bom.json", List.of("a@1"));
+        index.flush();
+        index.add("gen-3/bom.json", List.of("a@1", "b@1"));
+
+        index.remove(List.of("gen-1/bom.json", "gen-3/bom.json"));
+
+        assertEquals(Set.of("gen-2/bom.json"), index.find("a@1", false));
+        assertTrue(index.find("b@1", false).isEmpty());
+        // only the file listed by a segment is recorded
+        assertEquals(Set.of("gen-1/bom.json"), index.masks().keySet());
+        index.shutdown();
+
+        SegmentedComponentIndex restarted = new SegmentedComponentIndex(directory, 1000, 1);
+        assertEquals(Set.of("gen-2/bom.json"), restarted.find("a@1", false));
+
+        restarted.merge();
+
+        assertEquals(1, restarted.segments().size());
+        assertEquals(List.of("gen-2/bom.json"), restarted.segments().get(0).keys());
+        assertTrue(restarted.masks().isEmpty());
+        assertFalse(Files.exists(directory.resolve(SegmentedComponentIndex.MASKS_FILE)));
+    }
+
+    @Test
+    void testAddingStoredFileReplacesItsComponents() throws IOException {
+        SegmentedComponentIndex index = new SegmentedComponentIndex(directory, 1000, 1);
+        index.add("gen-1/bom.json", List.of("a@1", "b@1"));
+        index.flush();
+        index.add("gen-2/bom.json", List.of("a@1", "c@1"));
+        // uploaded again, once in a segment and once still in memory
+        index.add("gen-1/bom.json", List.of("c@1"));
+        index.add("gen-2/bom.json", List.of("b@1"));
+
+        assertEquals(Set.of("gen-2/bom.json"), index.find("b@1", false));
+        assertEquals(Set.of("gen-1/bom.json"), index.find("c@1", false));
+        assertTrue(index.find("a@1", false).isEmpty());
+        assertEquals(Set.of("gen-1/bom.json"), index.masks().keySet());
+
+        index.flush();
+        index.merge();
+
+        assertEquals(1, index.segments().size());
+        assertEquals(Set.of("gen-2/bom.json"), index.find("b@1", false));
+        assertEquals(Set.of("gen-1/bom.json"), index.find("c@1", false));
+        assertTrue(index.find("a@1", false).isEmpty());
+        assertTrue(index.masks().isEmpty());
+    }
+
+    @Test
+    void testRemovedFileStoredAgainIsFoundByItsNewComponents() throws IOException {
+        SegmentedComponentIndex index = new SegmentedComponentIndex(directory, 1000, 4);
+        index.add("gen-1/bom.json", List.of("a@1"));
+        index.flush();
+        index.remove(List.of("gen-1/bom.json"));
+        index.add("gen-1/bom.json", List.of("b@1"));
+
+        assertTrue(index.find("a@1", false).isEmpty());
+        assertEquals(Set.of("gen-1/bom.json"), index.find("b@1", false));
+        index.shutdown();
+
+        SegmentedComponentIndex restarted = new SegmentedComponentIndex(directory, 1000, 1);
+        assertTrue(restarted.find("a@1", false).isEmpty());
+        assertEquals(Set.of("gen-1/bom.json"), restarted.find("b@1", false));
+
+        restarted.merge();
+
+        assertEquals(List.of("gen-1/bom.json"), restarted.segments().get(0).keys());
+        assertTrue(restarted.find("a@1", false).isEmpty());
+        assertEquals(Set.of("gen-1/bom.json"), restarted.find("b@1", false));
+        assertTrue(restarted.masks().isEmpty());
+    }
+
+    @Test
+    void testRebuildLeavesOutFilesReplacedWhileItRuns() throws IOException {
+        SegmentedComponentIndex index = new SegmentedComponentIndex(directory, 1000, 4);
+        ComponentIndex.Rebuild rebuild = index.startRebuild();
+        // read by the rebuild before they were stored again or removed
+        rebuild.add("gen-1/bom.json", List.of("a@1"));
+        rebuild.add("gen-2/bom.json", List.of("a@1"));
+        index.add("gen-1/bom.json", List.of("b@1"));
+        index.remove(List.of("gen-2/bom.json"));
+        rebuild.commit();
+
+        assertTrue(index.find("a@1", false).isEmpty());
+        assertEquals(Set.of("gen-1/bom.json"), index.find("b@1", false));
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(SegmentedComponentIndex.SEGMENT_SUFFIX)).toList();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Measures the latency staged batches add to batch uploads, and the time a failed batch takes to roll back,
+ * against the filesystem storage with a fixed latency per request.
+ * Not part of the regular test run, enable with {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StagedBatchBenchmark {
+
+    private static final Duration REQUEST_LATENCY = Duration.ofMillis(20);
+    private static final int[] BATCH_SIZES = { 1, 10, 100, 1000 };
+    private static final int CONCURRENCY = 16;
+    private static final int ITERATIONS = 5;
+    private static final byte[] CONTENT = "{\"bomFormat\":\"CycloneDX\"}".getBytes(UTF_8);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void stagedBatchLatencyVersusBatchSize() throws Exception {
+        ExecutorService uploaders = Executors.newFixedThreadPool(CONCURRENCY);
+        try (StagedBatchObjectStorage staged = new StagedBatchObjectStorage(
+                new LatencyObjectStorage(new FilesystemStorageAdapter(directory)), new ObjectMapper(),
+                Duration.ofMinutes(1), new SimpleMeterRegistry())) {
+            System.out.printf("Request latency %d ms, %d concurrent uploads, average of %d iterations%n",
+                    REQUEST_LATENCY.toMillis(), CONCURRENCY, ITERATIONS);
+            System.out.printf("%-12s%14s%14s%14s%14s%n", "batch size", "direct", "staged", "overhead", "rollback");
+            for (int batchSize : BATCH_SIZES) {
+                long direct = 0;
+                long committed = 0;
+                long rolledBack = 0;
+                for (int i = 0; i < ITERATIONS; i++) {
+                    List<String> keys = keys("direct-" + batchSize, batchSize);
+                    direct += time(() -> upload(uploaders, staged, keys, UnaryOperator.identity()));
+
+                    // the same keys every iteration, so commits also delete the files they replace
+                    List<String> stagedKeys = keys("staged-" + batchSize, batchSize);
+                    committed += time(() -> {
+                        String batchId = staged.begin();
+                        upload(uploaders, staged, stagedKeys, key -> staged.stagingKey(batchId, key));
+                        staged.commit(batchId, stagedKeys.stream()
+                                .map(key -> ObjectSummary.builder().key(key).contentType("application/json").build())
+                                .toList());
+                    });
+
+                    String failedId = staged.begin();
+                    upload(uploaders, staged, keys("failed-" + batchSize, batchSize),
+                            key -> staged.stagingKey(failedId, key));
+                    rolledBack += time(() -> staged.discard(failedId));
+                }
+                System.out.printf("%-12d%11d ms%11d ms%11d ms%11d ms%n", batchSize, millis(direct), millis(committed),
+                        millis(committed - direct), millis(rolledBack));
+            }
+        } finally {
+            uploaders.shutdownNow();
+        }
+    }
+
+    private static List<String> keys(String generationId, int count) {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(generationId + "/bom-" + i + ".json");
+        }
+        return keys;
+    }
+
+    private static void upload(ExecutorService uploaders, ObjectStorage storage, List<String> keys,
+            UnaryOperator<String> location) throws Exception {
+        List<Future<?>> uploads = new ArrayList<>();
+        for (String key : keys) {
+            uploads.add(uploaders.submit(() -> storage.upload(location.apply(key), new ByteArrayInputStream(CONTENT),
+                    CONTENT.length, "application/json")));
+        }
+        for (Future<?> upload : uploads) {
+            upload.get();
+        }
+    }
+
+    private static long time(Action action) throws Exception {
+        long start = System.nanoTime();
+        action.run();
+        return System.nanoTime() - start;
+    }
+
+    private static long millis(long nanos) {
+        return Duration.ofNanos(nanos / ITERATIONS).toMillis();
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    /**
+     * Adds the request latency of a remote storage to every request.
+     */
+    private static final class LatencyObjectStorage extends ForwardingObjectStorage {
+
+        LatencyObjectStorage(ObjectStorage delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void upload(String key, InputStream content, UploadOptions options) {
+            pause();
+            super.upload(key, content, options);
+        }
+
+        @Override
+        public ObjectPage list(String prefix, String cursor, int limit) {
+            pause();
+            return super.list(prefix, cursor, limit);
+        }
+
+        @Override
+        public void delete(Collection<String> keys) {
+            pause();
+            super.delete(keys);
+        }
+
+        private static void pause() {
+            try {
+                Thread.sleep(REQUEST_LATENCY.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ByteRange;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for StagedBatchObjectStorage.
+ * Tests that staged files become visible on commit only, and the deletes of discarded, abandoned and
+ * replaced files.
+ */
+class StagedBatchObjectStorageTest {
+
+    private static final Duration REFRESH_AFTER = Duration.ofMinutes(1);
+
+    InMemoryObjectStorage delegate;
+    SimpleMeterRegistry registry;
+    MutableClock clock;
+    StagedBatchObjectStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new InMemoryObjectStorage();
+        registry = new SimpleMeterRegistry();
+        clock = new MutableClock();
+        storage = new StagedBatchObjectStorage(delegate, new ObjectMapper(), REFRESH_AFTER, registry, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    void testStagedFilesAreVisibleOnlyOnceCommitted() throws IOException {
+        String batchId = storage.begin();
+        stage(storage, batchId, "gen-1/bom.json", "v1");
+        stage(storage, batchId, "gen-1/enh-1/bom.json", "e1");
+
+        assertTrue(storage.list("gen-1/", null, 10).getObjects().isEmpty());
+        assertThrows(StorageFileNotFoundException.class, () -> storage.stat("gen-1/bom.json"));
+
+        storage.commit(batchId, List.of(file("gen-1/bom.json"), file("gen-1/enh-1/bom.json")));
+
+        List<ObjectSummary> listed = storage.list("gen-1/", null, 10).getObjects();
+        assertEquals(List.of("gen-1/bom.json", "gen-1/enh-1/bom.json"), listed.stream().map(ObjectSummary::getKey).toList());
+        assertEquals(2, listed.get(0).getSize());
+        assertEquals(delegate.eTag(storage.stagingKey(batchId, "gen-1/bom.json")), listed.get(0).getETag());
+        assertEquals(List.of("gen-1/enh-1/bom.json"),
+                storage.list("gen-1/enh-1/", null, 10).getObjects().stream().map(ObjectSummary::getKey).toList());
+        assertEquals("v1", read(storage, "gen-1/bom.json"));
+        assertEquals(List.of("gen-1/.batches/" + batchId + ".json", "gen-1/enh-1/.batches/" + batchId + ".json"),
+                delegate.keys("gen-1/"));
+        assertEquals(2.0, registry.get(StagedBatchObjectStorage.METRIC_PREFIX + ".committed").counter().count());
+    }
+
+    @Test
+    void testDiscardDeletesInRequestsOfAtMostMaxBatch() {
+        String batchId = storage.begin();
+        for (int i = 0; i < 2500; i++) {
+            stage(storage, batchId, "gen-1/bom-" + i + ".json", "content");
+        }
+
+        storage.discard(batchId);
+
+        assertTrue(delegate.keys("").isEmpty());
+        assertEquals(3, delegate.deleteRequests.size());
+        assertTrue(delegate.deleteRequests.stream().allMatch(size -> size <= ObjectStorage.MAX_DELETE_BATCH));
+        assertEquals(2500.0, deleted("discarded"));
+    }
+
+    @Test
+    void testLaterBatchReplacesTheFilesOfEarlierOnes() throws IOException {
+        String first = storage.begin();
+        stage(storage, first, "gen-1/bom.json", "v1");
+        stage(storage, first, "gen-1/other.json", "o1");
+        storage.commit(first, List.of(file("gen-1/bom.json"), file("gen-1/other.json")));
+        String second = storage.begin();
+        stage(storage, second, "gen-1/bom.json", "v2");
+
+        storage.commit(second, List.of(file("gen-1/bom.json")));
+
+        assertTrue(second.compareTo(first) > 0);
+        assertEquals("v2", read(storage, "gen-1/bom.json"));
+        assertEquals("o1", read(storage, "gen-1/other.json"));
+        assertEquals(List.of("gen-1/bom.json", "gen-1/other.json"),
+                storage.list("gen-1/", null, 10).getObjects().stream().map(ObjectSummary::getKey).toList());
+        assertFalse(delegate.objects.containsKey(storage.stagingKey(first, "gen-1/bom.json")));
+        assertEquals(1.0, deleted("replaced"));
+
+        String third = storage.begin();
+        stage(storage, third, "gen-1/other.json", "o2");
+        storage.commit(third, List.of(file("gen-1/other.json")));
+
+        assertEquals(List.of("gen-1/.batches/" + second + ".json", "gen-1/.batches/" + third + ".json"),
+                delegate.keys("gen-1/"));
+    }
+
+    @Test
+    void testAbandonedBatchesAreDiscardedAndCommittedOnesKept() throws IOException {
+        Instant start = clock.instant();
+        String committed = storage.begin();
+        stage(storage, committed, "gen-1/bom.json", "v1");
+        storage.commit(committed, List.of(file("gen-1/bom.json")));
+        String abandoned = storage.begin();
+        stage(storage, abandoned, "gen-2/bom.json", "v1");
+        stage(storage, abandoned, "gen-2/enh-1/bom.json", "e1");
+        clock.advance(Duration.ofHours(2));
+        String running = storage.begin();
+        stage(storage, running, "gen-3/bom.json", "v1");
+
+        int count = storage.discardAbandoned(start.minus(Duration.ofHours(1)), clock.instant().minus(Duration.ofHours(1)));
+
+        assertEquals(2, count);
+        assertEquals(List.of(storage.stagingKey(committed, "gen-1/bom.json"), storage.stagingKey(running, "gen-3/bom.json")),
+                delegate.keys(StagedBatchObjectStorage.STAGING_PREFIX));
+        assertEquals("v1", read(storage, "gen-1/bom.json"));
+        assertEquals(2.0, deleted("abandoned"));
+        assertEquals(0, storage.discardAbandoned(start.minus(Duration.ofHours(1)), start.plus(Duration.ofHours(1))));
+    }
+
+    @Test
+    void testFilesUploadedInPlaceReplaceStagedOnes() throws IOException {
+        String batchId = storage.begin();
+        stage(storage, batchId, "gen-1/bom.json", "v1");
+        storage.commit(batchId, List.of(file("gen-1/bom.json")));
+
+        delegate.upload("gen-1/bom.json", new ByteArrayInputStream("v2".getBytes(UTF_8)), 2, "application/json");
+        assertEquals("v1", read(storage, "gen-1/bom.json"));
+        storage.commitInPlace(List.of(file("gen-1/bom.json")));
+
+        assertEquals("v2", read(storage, "gen-1/bom.json"));
+        assertTrue(delegate.keys(StagedBatchObjectStorage.STAGING_PREFIX).isEmpty());
+        assertEquals(List.of("gen-1/bom.json"),
+                storage.list("gen-1/", null, 10).getObjects().stream().map(ObjectSummary::getKey).toList());
+    }
+
+    @Test
+    void testFileReplacedThroughAnotherInstanceIsFound() throws IOException {
+        String first = storage.begin();
+        stage(storage, first, "gen-1/bom.json", "v1");
+        storage.commit(first, List.of(file("gen-1/bom.json")));
+        assertEquals("v1", read(storage, "gen-1/bom.json"));
+
+        try (StagedBatchObjectStorage other = new StagedBatchObjectStorage(delegate, new ObjectMapper(), REFRESH_AFTER,
+                new SimpleMeterRegistry(), clock)) {
+            clock.advance(Duration.ofSeconds(2));
+            String second = other.begin();
+            stage(other, second, "gen-1/bom.json", "v2");
+            other.commit(second, List.of(file("gen-1/bom.json")));
+        }
+
+        assertEquals("v2", read(storage, "gen-1/bom.json"));
+    }
+
+    @Test
+    void testListingPagesHoldAtMostLimitFilesInKeyOrder() {
+        String batchId = storage.begin();
+        List<String> committed = List.of("gen-1/a.json", "gen-1/c.json", "gen-1/enh-1/a.json", "gen-1/enh-1/b.json",
+                "gen-1/z.json");
+        committed.forEach(key -> stage(storage, batchId, key, key));
+        storage.commit(batchId, committed.stream().map(StagedBatchObjectStorageTest::file).toList());
+        delegate.upload("gen-1/-first.json", new ByteArrayInputStream(new byte[1]), 1, "application/json");
+        delegate.upload("gen-1/b.json", new ByteArrayInputStream(new byte[1]), 1, "application/json");
+        delegate.upload("gen-1/enh-1/c.json", new ByteArrayInputStream(new byte[1]), 1, "application/json");
+
+        List<String> listed = new ArrayList<>();
+        String cursor = null;
+        do {
+            ObjectPage page = storage.list("gen-1/", cursor, 2);
+            assertTrue(page.getObjects().size() <= 2);
+            page.getObjects().forEach(object -> listed.add(object.getKey()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(List.of("gen-1/-first.json", "gen-1/a.json", "gen-1/b.json", "gen-1/c.json", "gen-1/enh-1/a.json",
+                "gen-1/enh-1/b.json", "gen-1/enh-1/c.json", "gen-1/z.json"), listed);
+    }
+
+    @Test
+    void testStreamedCompressedFileIsReadWithItsUploadedLength(@TempDir Path directory) throws IOException {
+        storage.close();
+        storage = new StagedBatchObjectStorage(new CompressingObjectStorage(new FilesystemStorageAdapter(directory),
+                ContentCodec.ZSTD, registry), new ObjectMapper(), REFRESH_AFTER, registry, clock);
+        byte[] content = "{\"components\": []}".repeat(100).getBytes(UTF_8);
+        String batchId = storage.begin();
+        // streamed, the length is only known once the content was read
+        storage.upload(storage.stagingKey(batchId, "gen-1/bom.json"), new ByteArrayInputStream(content), -1,
+                "application/json");
+        storage.commit(batchId, List.of(ObjectSummary.builder()
+                .key("gen-1/bom.json")
+                .size(content.length)
+                .contentType("application/json")
+                .build()));
+
+        StoredObject whole = storage.download("gen-1/bom.json", DownloadOptions.builder().build());
+        try (InputStream body = whole.getContent()) {
+            assertNull(whole.getContentEncoding());
+            assertEquals(content.length, whole.getContentLength());
+            assertArrayEquals(content, body.readAllBytes());
+        }
+        StoredObject range = storage.download("gen-1/bom.json", DownloadOptions.builder().range(ByteRange.of(2, 11)).build());
+        try (InputStream body = range.getContent()) {
+            assertEquals(10, range.getContentLength());
+            assertEquals(content.length, range.getTotalLength());
+            assertArrayEquals(Arrays.copyOfRange(content, 2, 12), body.readAllBytes());
+        }
+        assertEquals(content.length, storage.stat("gen-1/bom.json").getContentLength());
+        assertEquals(content.length, storage.list("gen-1/", null, 10).getObjects().get(0).getSize());
+    }
+
+    private static void stage(StagedBatchObjectStorage storage, String batchId, String key, String content) {
+        byte[] bytes = content.getBytes(UTF_8);
+        storage.upload(storage.stagingKey(batchId, key), new ByteArrayInputStream(bytes), bytes.length,
+                "application/json");
+    }
+
+    private static ObjectSummary file(String key) {
+        // the size is not known to the uploader, the listed one is used
+        return ObjectSummary.builder().key(key).size(-1).contentType("application/json").build();
+    }
+
+    private static String read(ObjectStorage storage, String key) throws IOException {
+        try (InputStream content = storage.download(key)) {
+            return new String(content.readAllBytes(), UTF_8);
+        }
+    }
+
+    private double deleted(String reason) {
+        return registry.get(StagedBatchObjectStorage.METRIC_PREFIX + ".deleted").tag("reason", reason).counter().count();
+    }
+
+    private static final class InMemoryObjectStorage implements ObjectStorage {
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        private final List<Integer> deleteRequests = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void upload(String key, InputStream content, UploadOptions options) {
+            try {
+                objects.put(key, content.readAllBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public StoredObject download(String key, DownloadOptions options) {
+            byte[] bytes = get(key);
+            return stat(key).toBuilder().content(new ByteArrayInputStream(bytes)).build();
+        }
+
+        @Override
+        public StoredObject stat(String key) {
+            byte[] bytes = get(key);
+            return StoredObject.builder().contentLength(bytes.length).totalLength(bytes.length).eTag(eTag(key)).build();
+        }
+
+        @Override
+        public ObjectPage list(String prefix, String cursor, int limit) {
+            List<ObjectSummary> page = objects.entrySet().stream()
+                    .filter(entry -> entry.getKey().startsWith(prefix))
+                    .filter(entry -> cursor == null || entry.getKey().compareTo(cursor) > 0)
+                    .sorted(Map.Entry.comparingByKey())
+                    .limit(limit + 1L)
+                    .map(entry -> ObjectSummary.builder()
+                            .key(entry.getKey())
+                            .size(entry.getValue().length)
+                            .eTag(eTag(entry.getKey()))
+                            .build())
+                    .toList();
+            if (page.size() <= limit) {
+                return ObjectPage.builder().objects(page).build();
+            }
+            List<ObjectSummary> first = page.subList(0, limit);
+            return ObjectPage.builder().objects(first).nextCursor(first.get(limit - 1).getKey()).build();
+        }
+
+        @Override
+        public void delete(Collection<String> keys) {
+            if (keys.size() > MAX_DELETE_BATCH) {
+                throw new IllegalArgumentException("Too many keys in one request: " + keys.size());
+            }
+            deleteRequests.add(keys.size());
+            keys.forEach(objects::remove);
+        }
+
+        private String eTag(String key) {
+            return Integer.toHexString(new String(get(key), UTF_8).hashCode());
+        }
+
+        private byte[] get(String key) {
+            byte[] bytes = objects.get(key);
+            if (bytes == null) {
+                throw new StorageFileNotFoundException("File not found: " + key, null);
+            }
+            return bytes;
+        }
+
+        private List<String> keys(String prefix) {
+            return objects.keySet().stream().filter(key -> key.startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
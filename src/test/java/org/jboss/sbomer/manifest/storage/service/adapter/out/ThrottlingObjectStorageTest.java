@@ -0,0 +1,258 @@
+package org.jboss.sbomer.manifest.storage.service.adapter.out;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageThrottledException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for ThrottlingObjectStorage.
+ * Tests retries, the adaptive rate and the circuit breaker.
+ */
+@ExtendWith(MockitoExtension.class)
+class ThrottlingObjectStorageTest {
+
+    private static final String KEY = "gen-1/bom.json";
+    private static final byte[] CONTENT = "{}".getBytes(UTF_8);
+
+    @Mock
+    ObjectStorage delegate;
+
+    SimpleMeterRegistry registry;
+    MutableClock clock;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        clock = new MutableClock();
+    }
+
+    @Test
+    void testRetriesUnavailableDownload() {
+        StoredObject object = StoredObject.builder().contentLength(2).build();
+        when(delegate.download(eq(KEY), any()))
+                .thenThrow(new StorageUnavailableException("Storage unavailable", null))
+                .thenReturn(object);
+        ThrottlingObjectStorage storage = storage(policy(100, 5));
+
+        assertSame(object, storage.download(KEY, DownloadOptions.none()));
+
+        verify(delegate, times(2)).download(eq(KEY), any());
+        assertEquals(1, registry.get("sbomer.storage.throttling.retries").counter().count());
+    }
+
+    @Test
+    void testOtherFailuresAreNotRetried() {
+        when(delegate.download(eq(KEY), any())).thenThrow(new StorageFileNotFoundException("File not found: " + KEY, null));
+        ThrottlingObjectStorage storage = storage(policy(100, 5));
+
+        assertThrows(StorageFileNotFoundException.class, () -> storage.download(KEY, DownloadOptions.none()));
+
+        verify(delegate).download(eq(KEY), any());
+    }
+
+    @Test
+    void testUploadIsNotRetriedOnceContentWasRead() {
+        doAnswer(invocation -> {
+            invocation.<InputStream>getArgument(1).read();
+            throw new StorageUnavailableException("Storage unavailable", null);
+        }).when(delegate).upload(eq(KEY), any(), any(UploadOptions.class));
+        ThrottlingObjectStorage storage = storage(policy(100, 5));
+
+        InputStream content = new ByteArrayInputStream(CONTENT);
+        assertThrows(StorageUnavailableException.class, () -> storage.upload(KEY, content, CONTENT.length, null));
+
+        verify(delegate).upload(eq(KEY), any(), any(UploadOptions.class));
+    }
+
+    @Test
+    void testThrottlingHalvesRateAndSuccessRaisesIt() {
+        when(delegate.stat(KEY))
+                .thenThrow(new StorageThrottledException("Storage rate limit exceeded", null))
+                .thenReturn(StoredObject.builder().build());
+        ThrottlingObjectStorage storage = storage(policy(100, 5));
+
+        storage.stat(KEY);
+
+        // halved to 50, then one success adds 1/50
+        assertEquals(50.02, storage.getRate(), 1e-9);
+        assertEquals(50.02, registry.get("sbomer.storage.throttling.rate").gauge().value(), 1e-9);
+        assertEquals(1, registry.get("sbomer.storage.throttling.throttled").counter().count());
+    }
+
+    @Test
+    void testCircuitOpensAfterConsecutiveFailuresAndFailsFast() {
+        when(delegate.stat(KEY)).thenThrow(new StorageUnavailableException("Storage unavailable", null));
+        // no time for retries
+        ThrottlingObjectStorage storage = storage(policy(100, 2, Duration.ZERO));
+
+        assertThrows(StorageUnavailableException.class, () -> storage.stat(KEY));
+        assertThrows(StorageUnavailableException.class, () -> storage.stat(KEY));
+        assertEquals(ThrottlingObjectStorage.CircuitState.OPEN, storage.getCircuitState());
+
+        assertThrows(StorageUnavailableException.class, () -> storage.stat(KEY));
+
+        verify(delegate, times(2)).stat(KEY);
+        assertEquals(1, registry.get("sbomer.storage.throttling.rejected").tag("reason", "circuit_open").counter().count());
+        assertEquals(2, registry.get("sbomer.storage.throttling.circuit.state").gauge().value());
+    }
+
+    @Test
+    void testSuccessfulProbeClosesCircuit() {
+        when(delegate.stat(KEY))
+                .thenThrow(new StorageUnavailableException("Storage unavailable", null))
+                .thenReturn(StoredObject.builder().build());
+        ThrottlingObjectStorage storage = storage(policy(100, 1, Duration.ZERO));
+
+        assertThrows(StorageUnavailableException.class, () -> storage.stat(KEY));
+        assertEquals(ThrottlingObjectStorage.CircuitState.OPEN, storage.getCircuitState());
+
+        clock.advance(Duration.ofMinutes(1));
+        storage.stat(KEY);
+
+        assertEquals(ThrottlingObjectStorage.CircuitState.CLOSED, storage.getCircuitState());
+    }
+
+    @Test
+    void testProbeInterruptedWhileWaitingForTokenLeavesProbeToNextRequest() {
+        when(delegate.stat(KEY))
+                .thenThrow(new StorageUnavailableException("Storage unavailable", null))
+                .thenReturn(StoredObject.builder().build());
+        // one request per second, so the probe waits for a token
+        ThrottlingObjectStorage storage = storage(ThrottlingObjectStorage.Policy.builder()
+                .initialRate(1).minRate(1).maxRate(1)
+                .retryDeadline(Duration.ofSeconds(5))
+                .retryBaseDelay(Duration.ofMillis(1))
+                .retryMaxDelay(Duration.ofMillis(1))
+                .failureThreshold(1)
+                .openDuration(Duration.ofSeconds(30))
+                .build());
+        assertThrows(StorageUnavailableException.class, () -> storage.stat(KEY));
+        clock.advance(Duration.ofMinutes(1));
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(StorageUnavailableException.class, () -> storage.stat(KEY));
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(ThrottlingObjectStorage.CircuitState.HALF_OPEN, storage.getCircuitState());
+
+        storage.stat(KEY);
+
+        assertEquals(ThrottlingObjectStorage.CircuitState.CLOSED, storage.getCircuitState());
+        verify(delegate, times(2)).stat(KEY);
+    }
+
+    @Test
+    void testProbeThatCannotWaitForTokenLeavesProbeToNextRequest() {
+        when(delegate.stat(KEY))
+                .thenThrow(new StorageUnavailableException("Storage unavailable", null))
+                .thenReturn(StoredObject.builder().build());
+        // one request per second, no time to wait for the next token
+        ThrottlingObjectStorage storage = storage(ThrottlingObjectStorage.Policy.builder()
+                .initialRate(1).minRate(1).maxRate(1)
+                .retryDeadline(Duration.ofMillis(100))
+                .retryBaseDelay(Duration.ofMillis(1))
+                .retryMaxDelay(Duration.ofMillis(1))
+                .failureThreshold(1)
+                .openDuration(Duration.ofSeconds(30))
+                .build());
+        assertThrows(StorageUnavailableException.class, () -> storage.stat(KEY));
+        clock.advance(Duration.ofMinutes(1));
+
+        assertThrows(StorageThrottledException.class, () -> storage.stat(KEY));
+        // the next request is sent as the probe once a token is available, not rejected as waiting for it
+        assertThrows(StorageThrottledException.class, () -> storage.stat(KEY));
+
+        assertEquals(2, registry.get("sbomer.storage.throttling.rejected").tag("reason", "rate_limited").counter().count());
+        verify(delegate).stat(KEY);
+    }
+
+    @Test
+    void testRequestsBeyondRateFailWhenTheyCannotWaitForToken() {
+        when(delegate.stat(KEY)).thenReturn(StoredObject.builder().build());
+        // one request per second, no time to wait for the next token
+        ThrottlingObjectStorage storage = storage(ThrottlingObjectStorage.Policy.builder()
+                .initialRate(1).minRate(1).maxRate(1)
+                .retryDeadline(Duration.ofMillis(100))
+                .retryBaseDelay(Duration.ofMillis(1))
+                .retryMaxDelay(Duration.ofMillis(1))
+                .failureThreshold(5)
+                .openDuration(Duration.ofSeconds(30))
+                .build());
+
+        storage.stat(KEY);
+        assertThrows(StorageThrottledException.class, () -> storage.stat(KEY));
+
+        verify(delegate).stat(KEY);
+        assertEquals(1, registry.get("sbomer.storage.throttling.rejected").tag("reason", "rate_limited").counter().count());
+    }
+
+    private ThrottlingObjectStorage storage(ThrottlingObjectStorage.Policy policy) {
+        return new ThrottlingObjectStorage(delegate, policy, registry, clock);
+    }
+
+    private static ThrottlingObjectStorage.Policy policy(double rate, int failureThreshold) {
+        return policy(rate, failureThreshold, Duration.ofSeconds(5));
+    }
+
+    private static ThrottlingObjectStorage.Policy policy(double rate, int failureThreshold, Duration retryDeadline) {
+        return ThrottlingObjectStorage.Policy.builder()
+                .initialRate(rate)
+                .minRate(1)
+                .maxRate(1000)
+                .retryDeadline(retryDeadline)
+                .retryBaseDelay(Duration.ofMillis(1))
+                .retryMaxDelay(Duration.ofMillis(10))
+                .failureThreshold(failureThreshold)
+                .openDuration(Duration.ofSeconds(30))
+                .build();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.jboss.sbomer.manifest.storage.service.core.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ComponentIndex;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.SbomInspector;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for ComponentIndexService.
+ * Tests the searches and the rebuild from the storage.
+ */
+class ComponentIndexServiceTest {
+
+    private final InMemoryComponentIndex index = new InMemoryComponentIndex();
+    private final LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+
+    // inspects .json files, whose content lists their components separated by commas
+    private final SbomInspector inspector = (filename, contentType) -> !filename.endsWith(".json") ? null : new SbomInspector.Inspection() {
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            content.write(bytes, offset, length);
+        }
+
+        @Override
+        public SbomSummary finish() {
+            return content.size() == 0 ? null : SbomSummary.builder().format("CycloneDX").build();
+        }
+
+        @Override
+        public Set<String> components() {
+            return Set.of(content.toString(UTF_8).split(","));
+        }
+    };
+
+    @Test
+    void testRebuildReadsAllStoredSboms() {
+        storage.objects().put("gen-1/bom.json", "pkg:maven/g/a@1,a@1".getBytes(UTF_8));
+        storage.objects().put("gen-1/enh-1/bom.json", "pkg:maven/g/a@2,a@2".getBytes(UTF_8));
+        storage.objects().put("gen-2/bom.json", "".getBytes(UTF_8));
+        storage.objects().put("gen-2/notes.txt", "a@1".getBytes(UTF_8));
+        storage.objects().put("_summaries/gen-1/bom.json.json", "a@1".getBytes(UTF_8));
+        index.add("gen-gone/bom.json", List.of("a@1"));
+        ComponentIndexService service = new ComponentIndexService(index, storage, inspector, 2);
+
+        assertEquals(2, service.rebuild());
+
+        assertEquals(Set.of("gen-1/bom.json"), service.findByName("a", "1"));
+        assertEquals(Set.of("gen-1/bom.json", "gen-1/enh-1/bom.json"), service.findByName("a", null));
+        assertEquals(Set.of("gen-1/enh-1/bom.json"), service.findByPurl("pkg:maven/g/a@2?type=jar", false));
+        assertEquals(Set.of("gen-1/bom.json", "gen-1/enh-1/bom.json"), service.findByPurl("pkg:maven/g/a@", true));
+    }
+
+    @Test
+    void testFailedListingKeepsIndex() {
+        index.add("gen-1/bom.json", List.of("a@1"));
+        LatencyInjectingObjectStorage failing = new LatencyInjectingObjectStorage(Duration.ZERO) {
+            @Override
+            public ObjectPage list(String prefix, String cursor, int limit) {
+                throw new IllegalStateException("storage down");
+            }
+        };
+        ComponentIndexService service = new ComponentIndexService(index, failing, inspector, 2);
+
+        assertThrows(IllegalStateException.class, service::rebuild);
+
+        assertEquals(Set.of("gen-1/bom.json"), service.findByName("a", "1"));
+    }
+
+    /**
+     * Index in a map, a rebuild replaces all of it.
+     */
+    private static final class InMemoryComponentIndex implements ComponentIndex {
+        private volatile Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+
+        @Override
+        public void add(String storageKey, Collection<String> components) {
+            add(postings, storageKey, components);
+        }
+
+        @Override
+        public void remove(Collection<String> storageKeys) {
+            postings.values().forEach(termKeys -> termKeys.removeAll(storageKeys));
+        }
+
+        @Override
+        public SortedSet<String> find(String component, boolean prefix) {
+            SortedSet<String> keys = new TreeSet<>();
+            postings.forEach((term, termKeys) -> {
+                if (prefix ? term.startsWith(component) : term.equals(component)) {
+                    keys.addAll(termKeys);
+                }
+            });
+            return keys;
+        }
+
+        @Override
+        public Rebuild startRebuild() {
+            Map<String, Set<String>> rebuilt = new ConcurrentHashMap<>();
+            return new Rebuild() {
+                @Override
+                public void add(String storageKey, Collection<String> components) {
+                    InMemoryComponentIndex.add(rebuilt, storageKey, components);
+                }
+
+                @Override
+                public void commit() {
+                    postings = rebuilt;
+                }
+
+                @Override
+                public void abort() {
+                    // the current postings stay
+                }
+            };
+        }
+
+        private static void add(Map<String, Set<String>> postings, String storageKey, Collection<String> components) {
+            components.forEach(component -> postings.computeIfAbsent(component, c -> ConcurrentHashMap.newKeySet()).add(storageKey));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.jboss.sbomer.manifest.storage.service.core.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+/**
+ * In-memory ObjectStorage that delays every upload to simulate the round trip to S3.
+ * Records concurrency so tests can verify the batch upload limits, and counts listings, lookups and
+ * delete requests, which like DeleteObjects take at most {@link #MAX_DELETE_BATCH} keys.
+ * Listings tell the time of an object only if a test set it, and its content type only if it was uploaded.
+ */
+class LatencyInjectingObjectStorage implements ObjectStorage {
+
+    private final Duration latency;
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, Instant> lastModified = new ConcurrentHashMap<>();
+    private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+    private final Set<String> failingKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger lists = new AtomicInteger();
+    private final AtomicInteger stats = new AtomicInteger();
+    private final AtomicInteger deletes = new AtomicInteger();
+
+    LatencyInjectingObjectStorage(Duration latency) {
+        this.latency = latency;
+    }
+
+    void failOn(String key) {
+        failingKeys.add(key);
+    }
+
+    void lastModified(String key, Instant at) {
+        lastModified.put(key, at);
+    }
+
+    @Override
+    public void upload(String key, InputStream content, UploadOptions options) {
+        started.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            // the content is sent before the storage answers
+            byte[] bytes = content.readAllBytes();
+            Thread.sleep(latency.toMillis());
+            if (failingKeys.contains(key)) {
+                throw new StorageUnavailableException("Storage unavailable", null);
+            }
+            objects.put(key, bytes);
+            if (options.getContentType() != null) {
+                contentTypes.put(key, options.getContentType());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageUnavailableException("Interrupted", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
+        byte[] bytes = objects.get(key);
+        if (bytes == null) {
+            throw new StorageFileNotFoundException("File not found: " + key, null);
+        }
+        return StoredObject.builder()
+                .content(new ByteArrayInputStream(bytes))
+                .contentLength(bytes.length)
+                .totalLength(bytes.length)
+                .build();
+    }
+
+    @Override
+    public StoredObject stat(String key) {
+        stats.incrementAndGet();
+        byte[] bytes = objects.get(key);
+        if (bytes == null) {
+            throw new StorageFileNotFoundException("File not found: " + key, null);
+        }
+        return StoredObject.builder()
+                .contentLength(bytes.length)
+                .totalLength(bytes.length)
+                .eTag(eTag(bytes))
+                .contentType(contentTypes.get(key))
+                .build();
+    }
+
+    @Override
+    public ObjectPage list(String prefix, String cursor, int limit) {
+        lists.incrementAndGet();
+        List<ObjectSummary> page = objects.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(prefix))
+                .filter(entry -> cursor == null || entry.getKey().compareTo(cursor) > 0)
+                .sorted(Map.Entry.comparingByKey())
+                .limit(limit + 1L)
+                .map(entry -> ObjectSummary.builder()
+                        .key(entry.getKey())
+                        .size(entry.getValue().length)
+                        .eTag(eTag(entry.getValue()))
+                        .lastModified(lastModified.get(entry.getKey()))
+                        .contentType(contentTypes.get(entry.getKey()))
+                        .build())
+                .toList();
+        if (page.size() <= limit) {
+            return ObjectPage.builder().objects(page).build();
+        }
+        List<ObjectSummary> first = page.subList(0, limit);
+        return ObjectPage.builder().objects(first).nextCursor(first.get(limit - 1).getKey()).build();
+    }
+
+    @Override
+    public void delete(Collection<String> keys) {
+        deletes.incrementAndGet();
+        if (keys.size() > MAX_DELETE_BATCH) {
+            throw new IllegalArgumentException("More than " + MAX_DELETE_BATCH + " keys in one delete");
+        }
+        keys.forEach(key -> {
+            objects.remove(key);
+            lastModified.remove(key);
+        });
+    }
+
+    private static String eTag(byte[] bytes) {
+        return "\"" + Arrays.hashCode(bytes) + "\"";
+    }
+
+    Map<String, byte[]> objects() {
+        return objects;
+    }
+
+    int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    int started() {
+        return started.get();
+    }
+
+    int lists() {
+        return lists.get();
+    }
+
+    int stats() {
+        return stats.get();
+    }
+
+    int deletes() {
+        return deletes.get();
+    }
+}
@@ -0,0 +1,223 @@
+package org.jboss.sbomer.manifest.storage.service.core.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnsupportedException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ExpiredGeneration;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.RetentionReport;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.StagedBatchStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.SummaryStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for RetentionService.
+ * Tests which generations the policy keeps, the report and the deletion of expired generations.
+ */
+class RetentionServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-06-01T00:00:00Z");
+
+    private final LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+    private final InMemorySummaryStore summaries = new InMemorySummaryStore();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private StagedBatchStorage stagedBatches;
+    private StorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        // without staged batches, the files of a folder are stored under their own keys
+        stagedBatches = mock(StagedBatchStorage.class);
+        when(stagedBatches.storedKeys(anyString())).thenAnswer(invocation -> storage.objects().keySet().stream()
+                .filter(key -> key.startsWith(invocation.getArgument(0)))
+                .sorted()
+                .toList());
+        storageService = mock(StorageService.class);
+    }
+
+    @Test
+    void testKeepsLatestGenerationsPerProduct() {
+        store("a-1", "product-a", 40);
+        store("a-2", "product-a", 41);
+        store("a-3", "product-a", 42);
+        store("a-4", "product-a", 43);
+        store("b-1", "product-b", 100);
+        RetentionService service = service(2, Duration.ofDays(30));
+
+        RetentionReport report = service.evaluate();
+
+        assertEquals(5, report.getGenerations());
+        assertEquals(3, report.getKeptLatest());
+        assertEquals(List.of("a-4", "a-3"), report.getExpired().stream().map(ExpiredGeneration::getGenerationId).toList());
+        assertEquals("product-a", report.getExpired().get(0).getProduct());
+        assertEquals(NOW.minus(Duration.ofDays(43)), report.getExpired().get(0).getLastModified());
+        assertEquals(2, report.getExpired().get(0).getObjects());
+        // the report is a dry run
+        assertEquals(10, storage.objects().size());
+
+        assertEquals(2, service.run());
+
+        assertEquals(Set.of("a-1", "a-2", "b-1"), generations());
+        assertNull(summaries.find("a-3/bom.json"));
+        assertNotNull(summaries.find("a-2/bom.json"));
+        verify(storageService).forgetGeneration("a-3", List.of("a-3/bom.json", "a-3/notes.txt"));
+        verify(storageService).forgetGeneration("a-4", List.of("a-4/bom.json", "a-4/notes.txt"));
+        assertEquals(2, registry.get(RetentionService.METRIC_PREFIX + ".generations").tag("result", "deleted")
+                .counter().count());
+        assertEquals(4, registry.get(RetentionService.METRIC_PREFIX + ".deleted").counter().count());
+        assertEquals(0, service.evaluate().getExpired().size());
+    }
+
+    @Test
+    void testKeepsPinnedRecentAndUnidentifiedGenerations() {
+        store("a-1", "product-a", 5);
+        store("a-2", "product-a", 40);
+        store("a-3", "product-a", 50);
+        store("unknown", null, 60);
+        storage.objects().put("_blobs/sha256/abc", "{}".getBytes(UTF_8));
+        RetentionService service = service(0, Duration.ofDays(30));
+        service.pin("a-2");
+
+        RetentionReport report = service.evaluate();
+
+        assertEquals(Set.of("a-2"), service.pins());
+        assertEquals(4, report.getGenerations());
+        assertEquals(1, report.getKeptPinned());
+        assertEquals(1, report.getKeptRecent());
+        assertEquals(1, report.getKeptUnidentified());
+        assertEquals(0, report.getKeptLatest());
+        assertEquals(List.of("a-3"), report.getExpired().stream().map(ExpiredGeneration::getGenerationId).toList());
+
+        assertEquals(1, service.run());
+        assertEquals(Set.of("a-1", "a-2", "unknown"), generations());
+        assertTrue(storage.objects().containsKey("_blobs/sha256/abc"));
+
+        service.unpin("a-2");
+        assertEquals(Set.of(), service.pins());
+        assertEquals(List.of("a-2"), service.evaluate().getExpired().stream().map(ExpiredGeneration::getGenerationId).toList());
+    }
+
+    @Test
+    void testPassesDoNotRunWithDeduplication() throws InterruptedException {
+        store("a-1", "product-a", 40);
+        store("a-2", "product-a", 41);
+        RetentionService service = service(1, Duration.ofDays(30));
+        service.dedupEnabled = true;
+
+        assertThrows(StorageUnsupportedException.class, service::runRetention);
+        assertTrue(service.startReport());
+        while (service.lastReport() == null) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, service.lastReport().getExpired().size());
+        assertEquals(Set.of("a-1", "a-2"), generations());
+    }
+
+    @Test
+    void testReportIsEvaluatedInTheBackground() throws InterruptedException {
+        store("a-1", "product-a", 40);
+        store("a-2", "product-a", 41);
+        RetentionService service = service(1, Duration.ofDays(30));
+        assertNull(service.lastReport());
+
+        assertTrue(service.startReport());
+        for (int i = 0; i < 100 && service.lastReport() == null; i++) {
+            Thread.sleep(50);
+        }
+
+        RetentionReport report = service.lastReport();
+        assertNotNull(report);
+        assertEquals(List.of("a-2"), report.getExpired().stream().map(ExpiredGeneration::getGenerationId).toList());
+        assertEquals(4, storage.objects().size());
+    }
+
+    @Test
+    void testDeletesInBatchesOfAtMostMaxDeleteBatchKeys() {
+        store("new", "product-a", 31);
+        String[] enhancements = new String[2 * ObjectStorage.MAX_DELETE_BATCH + 498];
+        for (int i = 0; i < enhancements.length; i++) {
+            enhancements[i] = "old/enh-" + i + "/bom.json";
+        }
+        store("old", "product-a", 32, enhancements);
+        RetentionService service = service(1, Duration.ofDays(30));
+
+        assertEquals(1, service.run());
+
+        assertEquals(Set.of("new"), generations());
+        // 2500 files in 3 requests
+        assertEquals(3, storage.deletes());
+        assertEquals(List.of(1000, 1000, 500), summaries.deleteSizes);
+    }
+
+    private RetentionService service(int keepLast, Duration keepNewerThan) {
+        return new RetentionService(storage, stagedBatches, summaries, storageService, registry, keepLast, keepNewerThan,
+                4, 10_000, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    /**
+     * Stores a generation with a bom.json naming the product and the further files, all stored days ago.
+     */
+    private void store(String generationId, String product, int days, String... files) {
+        Instant at = NOW.minus(Duration.ofDays(days));
+        List<String> keys = new ArrayList<>(List.of(generationId + "/bom.json", generationId + "/notes.txt"));
+        keys.addAll(List.of(files));
+        for (String key : keys) {
+            storage.objects().put(key, "{}".getBytes(UTF_8));
+            storage.lastModified(key, at);
+        }
+        if (product != null) {
+            summaries.save(generationId + "/bom.json", SbomSummary.builder().format("CycloneDX").rootName(product).build());
+        }
+    }
+
+    private Set<String> generations() {
+        return storage.objects().keySet().stream()
+                .filter(key -> !key.startsWith("_"))
+                .map(key -> key.substring(0, key.indexOf('/')))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Summaries in a map, recording the size of every delete.
+     */
+    private static final class InMemorySummaryStore implements SummaryStore {
+        private final Map<String, SbomSummary> summaries = new ConcurrentHashMap<>();
+        private final List<Integer> deleteSizes = new ArrayList<>();
+
+        @Override
+        public void save(String storageKey, SbomSummary summary) {
+            summaries.put(storageKey, summary);
+        }
+
+        @Override
+        public SbomSummary find(String storageKey) {
+            return summaries.get(storageKey);
+        }
+
+        @Override
+        public void delete(Collection<String> storageKeys) {
+            deleteSizes.add(storageKeys.size());
+            storageKeys.forEach(summaries::remove);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.jboss.sbomer.manifest.storage.service.core.service;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Measures batch upload latency against batch size with a fixed per-upload latency.
+ * Not part of the regular test run, enable with {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StorageServiceBatchBenchmark {
+
+    private static final Duration UPLOAD_LATENCY = Duration.ofMillis(50);
+    private static final int[] BATCH_SIZES = { 1, 5, 10, 20, 40, 80 };
+    private static final int[] CONCURRENCY_LIMITS = { 1, 4, 8, 16 };
+    private static final int ITERATIONS = 5;
+
+    @Test
+    void batchLatencyVersusBatchSize() {
+        System.out.printf("Upload latency %d ms, average of %d iterations%n", UPLOAD_LATENCY.toMillis(), ITERATIONS);
+        System.out.printf("%-12s", "batch size");
+        for (int limit : CONCURRENCY_LIMITS) {
+            System.out.printf("%14s", "limit=" + limit);
+        }
+        System.out.println();
+        for (int batchSize : BATCH_SIZES) {
+            System.out.printf("%-12d", batchSize);
+            for (int limit : CONCURRENCY_LIMITS) {
+                System.out.printf("%11d ms", averageBatchMillis(batchSize, limit));
+            }
+            System.out.println();
+        }
+    }
+
+    private long averageBatchMillis(int batchSize, int limit) {
+        StorageService service = StorageService.forTesting()
+                .objectStorage(new LatencyInjectingObjectStorage(UPLOAD_LATENCY))
+                .publicApiUrl("http://localhost")
+                .maxConcurrency(limit)
+                .globalMaxConcurrency(64)
+                .build();
+        try {
+            // warm up the upload threads
+            service.storeGenerationSboms("warmup", StorageServiceTest.files(limit));
+            long total = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                long start = System.nanoTime();
+                service.storeGenerationSboms("gen-" + i, StorageServiceTest.files(batchSize));
+                total += System.nanoTime() - start;
+            }
+            return Duration.ofNanos(total / ITERATIONS).toMillis();
+        } finally {
+            service.shutdown();
+        }
+    }
+}
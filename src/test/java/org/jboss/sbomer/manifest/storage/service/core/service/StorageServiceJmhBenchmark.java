@@ -0,0 +1,108 @@
+package org.jboss.sbomer.manifest.storage.service.core.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.jboss.sbomer.manifest.storage.service.PayloadInputStream;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the StorageService upload and download paths against an in-memory storage.
+ * Run with {@code ./mvnw test -Pjmh -Djmh.include=StorageServiceJmhBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class StorageServiceJmhBenchmark {
+
+    private static final int BATCH_SIZE = 8;
+
+    @State(Scope.Benchmark)
+    public static class Service {
+        SyntheticObjectStorage storage;
+        StorageService service;
+        SbomFile file;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            storage = new SyntheticObjectStorage();
+            service = StorageService.forTesting()
+                    .objectStorage(storage)
+                    .publicApiUrl("http://localhost:8085")
+                    .globalMaxConcurrency(32)
+                    .build();
+            file = SbomFile.builder().filename("bom.json").contentType("application/json").build();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            service.shutdown();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Payload {
+        // 1 KB, 1 MB, 100 MB, 500 MB
+        @Param({ "1024", "1048576", "104857600", "524288000" })
+        long size;
+
+        @Setup(Level.Trial)
+        public void setUp(Service service) {
+            service.service.storeGenerationSboms("download", files(1, size));
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> uploadSingle(Service service, Payload payload) {
+        return service.service.storeGenerationSboms("gen-single", files(1, payload.size));
+    }
+
+    @Benchmark
+    public Map<String, String> uploadBatch(Service service, Payload payload) {
+        return service.service.storeGenerationSboms("gen-batch", files(BATCH_SIZE, payload.size));
+    }
+
+    @Benchmark
+    public long downloadStreaming(Service service, Payload payload) throws IOException {
+        try (InputStream content = service.service.getFile("download/bom-0.json", DownloadOptions.none()).getContent()) {
+            return content.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public String buildPermanentUrl(Service service) {
+        return service.service.buildPermanentUrl("gen-123/enh-456", service.file);
+    }
+
+    private static List<SbomFile> files(int count, long size) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> SbomFile.builder()
+                        .filename("bom-" + i + ".json")
+                        .contentType("application/json")
+                        .size(size)
+                        .content(new PayloadInputStream(size))
+                        .build())
+                .toList();
+    }
+}
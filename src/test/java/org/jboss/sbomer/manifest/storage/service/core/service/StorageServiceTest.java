@@ -0,0 +1,496 @@
+package org.jboss.sbomer.manifest.storage.service.core.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomFile;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomSummary;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ComponentIndex;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.SbomInspector;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.StagedBatchStorage;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.StoredManifestsNotifier;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.SummaryStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for StorageService.
+ * Tests batch upload concurrency and atomicity, the staging of batches and the listings served from the key
+ * index.
+ */
+class StorageServiceTest {
+
+    private static final String PUBLIC_API_URL = "http://localhost:8085";
+
+    StorageService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testStoreGenerationSbomsReturnsPermanentUrls() {
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .build();
+        Map<String, String> urls = service.storeGenerationSboms("gen-1", files(3));
+        assertEquals(Map.of(
+                "bom-0.json", PUBLIC_API_URL + "/api/v1/storage/content/gen-1/bom-0.json",
+                "bom-1.json", PUBLIC_API_URL + "/api/v1/storage/content/gen-1/bom-1.json",
+                "bom-2.json", PUBLIC_API_URL + "/api/v1/storage/content/gen-1/bom-2.json"), urls);
+        assertArrayEquals("content-1".getBytes(), storage.objects().get("gen-1/bom-1.json"));
+    }
+
+    @Test
+    void testStoreEnhancementSbomsUsesNestedPrefix() {
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .build();
+        Map<String, String> urls = service.storeEnhancementSboms("gen-1", "enh-1", files(1));
+        assertEquals(PUBLIC_API_URL + "/api/v1/storage/content/gen-1/enh-1/bom-0.json", urls.get("bom-0.json"));
+        assertTrue(storage.objects().containsKey("gen-1/enh-1/bom-0.json"));
+    }
+
+    @Test
+    void testUploadBatchRespectsPerRequestConcurrency() {
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ofMillis(50));
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .maxConcurrency(3)
+                .globalMaxConcurrency(16)
+                .build();
+        Map<String, String> urls = service.storeGenerationSboms("gen-1", files(12));
+        assertEquals(12, urls.size());
+        assertTrue(storage.maxInFlight() > 1, "uploads should run in parallel");
+        assertTrue(storage.maxInFlight() <= 3, "uploads should not exceed the per-request limit");
+    }
+
+    @Test
+    void testUploadBatchRespectsGlobalConcurrency() {
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ofMillis(50));
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .maxConcurrency(8)
+                .globalMaxConcurrency(2)
+                .build();
+        service.storeGenerationSboms("gen-1", files(8));
+        assertEquals(2, storage.maxInFlight());
+    }
+
+    @Test
+    void testStreamedFilesAreUploadedWhileTheNextOnesAreRead() {
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ofMillis(50));
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .maxConcurrency(3)
+                .globalMaxConcurrency(16)
+                .build();
+
+        Map<String, String> urls = service.streamGenerationSboms("gen-1", streamed(files(12)));
+
+        assertEquals(12, urls.size());
+        assertArrayEquals("content-11".getBytes(), storage.objects().get("gen-1/bom-11.json"));
+        assertTrue(storage.maxInFlight() > 1, "uploads should overlap");
+        assertTrue(storage.maxInFlight() <= 3, "uploads should not exceed the per-request limit");
+    }
+
+    @Test
+    void testStreamedBatchFailsFast() {
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ofMillis(50));
+        storage.failOn("gen-1/bom-0.json");
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .maxConcurrency(2)
+                .build();
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () ->
+                service.streamGenerationSboms("gen-1", streamed(files(20))));
+
+        assertEquals("Failed to upload file bom-0.json", ex.getMessage());
+        assertTrue(storage.started() < 20, "remaining files should not be read after a failure");
+    }
+
+    @Test
+    void testUploadBatchFailsFast() {
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ofMillis(50));
+        storage.failOn("gen-1/bom-0.json");
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .maxConcurrency(2)
+                .build();
+        RuntimeException ex = assertThrows(RuntimeException.class, () ->
+                service.storeGenerationSboms("gen-1", files(20)));
+        assertEquals("Failed to upload file bom-0.json", ex.getMessage());
+        assertInstanceOf(StorageUnavailableException.class, ex.getCause());
+        assertTrue(storage.started() < 20, "remaining uploads should not be started after a failure");
+    }
+
+    @Test
+    void testUploadFailingWithErrorIsReportedWithItsCause() {
+        ObjectStorage storage = mock(ObjectStorage.class);
+        OutOfMemoryError error = new OutOfMemoryError("Java heap space");
+        doThrow(error).when(storage).upload(anyString(), any(), anyLong(), any());
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .build();
+
+        RuntimeException batch = assertThrows(RuntimeException.class, () ->
+                service.storeGenerationSboms("gen-1", files(2)));
+        RuntimeException stream = assertThrows(RuntimeException.class, () ->
+                service.streamGenerationSboms("gen-2", streamed(files(2))));
+
+        assertSame(error, batch.getCause());
+        assertSame(error, stream.getCause());
+    }
+
+    @Test
+    void testListingServesUploadedFilesFromIndex() {
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .build();
+        service.storeGenerationSboms("gen-1", files(3));
+        service.storeEnhancementSboms("gen-1", "enh-1", files(1));
+
+        ObjectPage first = service.listGenerationFiles("gen-1", null, 2);
+        ObjectPage second = service.listGenerationFiles("gen-1", first.getNextCursor(), 2);
+
+        assertEquals(List.of("gen-1/bom-0.json", "gen-1/bom-1.json"), keys(first));
+        assertEquals(List.of("gen-1/bom-2.json"), keys(second));
+        assertNull(second.getNextCursor());
+        assertEquals("application/json", first.getObjects().get(0).getContentType());
+        assertEquals("content-0".length(), first.getObjects().get(0).getSize());
+        assertNotNull(first.getObjects().get(0).getETag());
+        assertEquals(1, storage.lists(), "the generation should be listed from storage once");
+        assertEquals(0, storage.stats(), "uploaded files should not be looked up");
+    }
+
+    @Test
+    void testUploadBatchRecordsBatchSize() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service = StorageService.forTesting()
+                .objectStorage(new LatencyInjectingObjectStorage(Duration.ZERO))
+                .publicApiUrl(PUBLIC_API_URL)
+                .meterRegistry(registry)
+                .build();
+
+        service.storeGenerationSboms("gen-1", files(3));
+        service.storeGenerationSboms("gen-2", files(1));
+
+        DistributionSummary files = registry.get("sbomer.storage.batch.files").summary();
+        assertEquals(2, files.count());
+        assertEquals(4, files.totalAmount());
+        assertEquals(3, files.max());
+        assertEquals(4 * "content-0".length(), registry.get("sbomer.storage.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    void testStreamedFilesAreIndexedWithTheBytesRead() {
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .build();
+        Map<String, String> urls = service.streamEnhancementSboms("gen-1", "enh-1", streamed(files(2)));
+
+        assertEquals(PUBLIC_API_URL + "/api/v1/storage/content/gen-1/enh-1/bom-1.json", urls.get("bom-1.json"));
+        assertArrayEquals("content-1".getBytes(), storage.objects().get("gen-1/enh-1/bom-1.json"));
+        ObjectPage page = service.listEnhancementFiles("gen-1", "enh-1", null, 10);
+        assertEquals("content-0".length(), page.getObjects().get(0).getSize());
+    }
+
+    @Test
+    void testUploadedFilesAreSummarizedAndIndexedOnTheirWay() {
+        Map<String, SbomSummary> summaries = new ConcurrentHashMap<>();
+        SummaryStore store = new SummaryStore() {
+            @Override
+            public void save(String storageKey, SbomSummary summary) {
+                summaries.put(storageKey, summary);
+            }
+
+            @Override
+            public SbomSummary find(String storageKey) {
+                return summaries.get(storageKey);
+            }
+
+            @Override
+            public void delete(Collection<String> storageKeys) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        // summarizes files by the bytes passed to it, except bom-2.json
+        SbomInspector inspector = (filename, contentType) -> "bom-2.json".equals(filename) ? null : new SbomInspector.Inspection() {
+            private long size;
+
+            @Override
+            public void update(byte[] bytes, int offset, int length) {
+                size += length;
+            }
+
+            @Override
+            public SbomSummary finish() {
+                return SbomSummary.builder().format("CycloneDX").size(size).build();
+            }
+
+            @Override
+            public Set<String> components() {
+                return Set.of("component@" + size);
+            }
+        };
+        Map<String, Collection<String>> indexed = new ConcurrentHashMap<>();
+        ComponentIndex index = new ComponentIndex() {
+            @Override
+            public void add(String storageKey, Collection<String> components) {
+                indexed.put(storageKey, components);
+            }
+
+            @Override
+            public void remove(Collection<String> storageKeys) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public SortedSet<String> find(String component, boolean prefix) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Rebuild startRebuild() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .sbomInspector(inspector)
+                .summaryStore(store)
+                .componentIndex(index)
+                .build();
+
+        service.storeGenerationSboms("gen-1", files(3));
+
+        assertEquals("content-1".length(), service.getSummary("gen-1/bom-1.json").getSize());
+        assertNull(service.getSummary("gen-1/bom-2.json"));
+        assertEquals(Set.of("component@9"), indexed.get("gen-1/bom-0.json"));
+        assertEquals(Set.of("gen-1/bom-0.json", "gen-1/bom-1.json"), indexed.keySet());
+        assertArrayEquals("content-0".getBytes(), storage.objects().get("gen-1/bom-0.json"));
+    }
+
+    @Test
+    void testStoredBatchesAreAnnouncedOnce() {
+        List<String> announced = new ArrayList<>();
+        StoredManifestsNotifier notifier = (generationId, enhancementId, urls) -> announced
+                .add(generationId + "/" + enhancementId + ":" + urls.keySet().stream().sorted().toList());
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .storedManifestsNotifier(notifier)
+                .build();
+
+        service.storeGenerationSboms("gen-1", files(2));
+        service.streamEnhancementSboms("gen-1", "enh-1", files(1).iterator());
+        storage.failOn("gen-2/bom-0.json");
+        assertThrows(RuntimeException.class, () -> service.storeGenerationSboms("gen-2", files(2)));
+
+        assertEquals(List.of("gen-1/null:[bom-0.json, bom-1.json]", "gen-1/enh-1:[bom-0.json]"), announced);
+    }
+
+    @Test
+    void testBatchIsStagedAndCommittedOnce() {
+        StagedBatchStorage staging = staging("batch-1");
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .stagedBatches(staging)
+                .build();
+
+        service.storeGenerationSboms("gen-1", files(3));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ObjectSummary>> committed = ArgumentCaptor.forClass(List.class);
+        verify(staging).commit(eq("batch-1"), committed.capture());
+        verify(staging, never()).discard(anyString());
+        assertEquals(List.of("gen-1/bom-0.json", "gen-1/bom-1.json", "gen-1/bom-2.json"),
+                committed.getValue().stream().map(ObjectSummary::getKey).sorted().toList());
+        assertEquals(Set.of("_batches/batch-1/gen-1/bom-0.json", "_batches/batch-1/gen-1/bom-1.json",
+                "_batches/batch-1/gen-1/bom-2.json"), storage.objects().keySet());
+        assertEquals(3, service.listGenerationFiles("gen-1", null, 10).getObjects().size());
+    }
+
+    @Test
+    void testFailedBatchIsDiscardedWithoutCommit() {
+        StagedBatchStorage staging = staging("batch-1", "batch-2");
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+        storage.failOn("_batches/batch-1/gen-1/bom-1.json");
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .maxConcurrency(1)
+                .stagedBatches(staging)
+                .build();
+        Iterator<SbomFile> failing = new Iterator<>() {
+            private final Iterator<SbomFile> files = files(2).iterator();
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public SbomFile next() {
+                if (!files.hasNext()) {
+                    throw new IllegalStateException("Malformed multipart body");
+                }
+                return files.next();
+            }
+        };
+
+        assertThrows(RuntimeException.class, () -> service.storeGenerationSboms("gen-1", files(3)));
+        assertThrows(IllegalStateException.class, () -> service.streamGenerationSboms("gen-2", failing));
+
+        verify(staging).discard("batch-1");
+        verify(staging).discard("batch-2");
+        verify(staging, never()).commit(anyString(), anyList());
+        assertTrue(service.listGenerationFiles("gen-1", null, 10).getObjects().isEmpty());
+        assertTrue(service.listGenerationFiles("gen-2", null, 10).getObjects().isEmpty());
+    }
+
+    @Test
+    void testListingLooksUpFilesStoredElsewhere() {
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+        storage.objects().put("gen-1/enh-1/bom.json", "content".getBytes());
+        storage.objects().put("gen-1/bom.json", "content".getBytes());
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .build();
+
+        ObjectPage page = service.listEnhancementFiles("gen-1", "enh-1", null, 10);
+        service.listEnhancementFiles("gen-1", "enh-1", null, 10);
+
+        assertEquals(List.of("gen-1/enh-1/bom.json"), keys(page));
+        assertEquals("content".length(), page.getObjects().get(0).getSize());
+        assertEquals(1, storage.lists());
+        // only the file on the page, once
+        assertEquals(1, storage.stats());
+    }
+
+    @Test
+    void testListingDescribesFilesUploadedByOtherInstances() {
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+        StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .build()
+                .storeGenerationSboms("gen-1", files(3));
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .build();
+
+        ObjectPage page = service.listGenerationFiles("gen-1", null, 10);
+
+        assertEquals(List.of("gen-1/bom-0.json", "gen-1/bom-1.json", "gen-1/bom-2.json"), keys(page));
+        assertEquals("content-0".length(), page.getObjects().get(0).getSize());
+        assertEquals("application/json", page.getObjects().get(0).getContentType());
+        assertEquals(0, storage.stats(), "listed files should not be looked up");
+    }
+
+    @Test
+    void testListingIsRefreshedFromStorage() {
+        LatencyInjectingObjectStorage storage = new LatencyInjectingObjectStorage(Duration.ZERO);
+        service = StorageService.forTesting()
+                .objectStorage(storage)
+                .publicApiUrl(PUBLIC_API_URL)
+                .indexRefreshAfter(Duration.ZERO)
+                .build();
+        service.storeGenerationSboms("gen-1", files(2));
+        service.listGenerationFiles("gen-1", null, 10);
+        storage.objects().remove("gen-1/bom-0.json");
+
+        ObjectPage page = service.listGenerationFiles("gen-1", null, 10);
+
+        assertEquals(List.of("gen-1/bom-1.json"), keys(page));
+        assertEquals(2, storage.lists());
+    }
+
+    private static StagedBatchStorage staging(String batchId, String... nextBatchIds) {
+        StagedBatchStorage staging = mock(StagedBatchStorage.class);
+        when(staging.begin()).thenReturn(batchId, nextBatchIds);
+        when(staging.stagingKey(anyString(), anyString()))
+                .thenAnswer(invocation -> "_batches/" + invocation.getArgument(0) + "/" + invocation.getArgument(1));
+        return staging;
+    }
+
+    private static List<String> keys(ObjectPage page) {
+        return page.getObjects().stream().map(ObjectSummary::getKey).toList();
+    }
+
+    static List<SbomFile> files(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> {
+                    byte[] content = ("content-" + i).getBytes();
+                    return SbomFile.builder()
+                            .filename("bom-" + i + ".json")
+                            .contentType("application/json")
+                            .size(content.length)
+                            .content(new ByteArrayInputStream(content))
+                            .build();
+                })
+                .toList();
+    }
+
+    // the files as a multipart body yields them, of unknown size
+    private static Iterator<SbomFile> streamed(List<SbomFile> files) {
+        return files.stream()
+                .map(file -> SbomFile.builder()
+                        .filename(file.getFilename())
+                        .contentType(file.getContentType())
+                        .size(-1)
+                        .content(file.getContent())
+                        .build())
+                .iterator();
+    }
+}
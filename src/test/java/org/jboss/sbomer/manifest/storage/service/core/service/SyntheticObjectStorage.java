@@ -0,0 +1,80 @@
+package org.jboss.sbomer.manifest.storage.service.core.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.sbomer.manifest.storage.service.PayloadInputStream;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageFileNotFoundException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.DownloadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectPage;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.ObjectSummary;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.StoredObject;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadOptions;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.ObjectStorage;
+
+/**
+ * In-memory ObjectStorage for benchmarks that keeps only the size of each upload.
+ * Uploads are read to the end, downloads return generated content of the uploaded size,
+ * so payloads of any size run in constant memory.
+ */
+class SyntheticObjectStorage implements ObjectStorage {
+
+    private final Map<String, Long> sizes = new ConcurrentHashMap<>();
+
+    @Override
+    public void upload(String key, InputStream content, UploadOptions options) {
+        try (content) {
+            sizes.put(key, content.transferTo(OutputStream.nullOutputStream()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public StoredObject download(String key, DownloadOptions options) {
+        long size = size(key);
+        return StoredObject.builder()
+                .content(new PayloadInputStream(size))
+                .contentLength(size)
+                .totalLength(size)
+                .build();
+    }
+
+    @Override
+    public StoredObject stat(String key) {
+        long size = size(key);
+        return StoredObject.builder().contentLength(size).totalLength(size).build();
+    }
+
+    @Override
+    public ObjectPage list(String prefix, String cursor, int limit) {
+        List<ObjectSummary> objects = sizes.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(prefix))
+                .filter(entry -> cursor == null || entry.getKey().compareTo(cursor) > 0)
+                .sorted(Map.Entry.comparingByKey())
+                .limit(limit)
+                .map(entry -> ObjectSummary.builder().key(entry.getKey()).size(entry.getValue()).build())
+                .toList();
+        String nextCursor = objects.size() == limit ? objects.get(limit - 1).getKey() : null;
+        return ObjectPage.builder().objects(objects).nextCursor(nextCursor).build();
+    }
+
+    @Override
+    public void delete(Collection<String> keys) {
+        keys.forEach(sizes::remove);
+    }
+
+    private long size(String key) {
+        Long size = sizes.get(key);
+        if (size == null) {
+            throw new StorageFileNotFoundException("File not found: " + key, null);
+        }
+        return size;
+    }
+}
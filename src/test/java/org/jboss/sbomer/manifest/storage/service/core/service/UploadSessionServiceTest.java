@@ -0,0 +1,162 @@
+package org.jboss.sbomer.manifest.storage.service.core.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUnavailableException;
+import org.jboss.sbomer.manifest.storage.service.adapter.out.exception.StorageUploadMismatchException;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.CompletedUpload;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.SbomFile;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadSession;
+import org.jboss.sbomer.manifest.storage.service.core.domain.model.UploadTarget;
+import org.jboss.sbomer.manifest.storage.service.core.port.spi.MultipartUploadStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Unit tests for UploadSessionService.
+ * Tests the part layout of started sessions, finalization and the sweep of expired uploads.
+ */
+@ExtendWith(MockitoExtension.class)
+class UploadSessionServiceTest {
+
+    private static final String PUBLIC_API_URL = "http://localhost:8085";
+    private static final long PART_SIZE = 1024;
+    private static final Duration EXPIRE_AFTER = Duration.ofHours(2);
+    private static final Instant NOW = Instant.parse("2025-01-01T12:00:00Z");
+
+    @Mock
+    MultipartUploadStorage multipartUploads;
+
+    StorageService storageService;
+    UploadSessionService service;
+
+    @BeforeEach
+    void setUp() {
+        storageService = StorageService.forTesting()
+                .objectStorage(new LatencyInjectingObjectStorage(Duration.ZERO))
+                .publicApiUrl(PUBLIC_API_URL)
+                .build();
+        service = new UploadSessionService(multipartUploads, storageService, PART_SIZE, EXPIRE_AFTER,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageService.shutdown();
+    }
+
+    @Test
+    void testStartPresignsPartsOfEveryFile() {
+        when(multipartUploads.startUpload(anyString(), anyString())).thenReturn("upload-1", "upload-2");
+        when(multipartUploads.presignParts(anyString(), anyString(), anyInt(), eq(EXPIRE_AFTER)))
+                .thenAnswer(invocation -> urls(invocation.getArgument(2)));
+
+        UploadSession session = service.startGenerationUploadSession("gen-1",
+                List.of(file("bom.json", 2500), file("empty.json", 0)));
+
+        assertEquals(NOW.plus(EXPIRE_AFTER), session.getExpiresAt());
+        UploadTarget bom = session.getFiles().get(0);
+        assertEquals("upload-1", bom.getUploadId());
+        assertEquals(PART_SIZE, bom.getPartSize());
+        assertEquals(3, bom.getPartUrls().size());
+        // an empty file is still uploaded as one part
+        assertEquals(1, session.getFiles().get(1).getPartUrls().size());
+        verify(multipartUploads).startUpload("gen-1/bom.json", "application/json");
+        verify(multipartUploads).presignParts("gen-1/empty.json", "upload-2", 1, EXPIRE_AFTER);
+    }
+
+    @Test
+    void testPartSizeIsRaisedToStayWithinMaxParts() {
+        long size = UploadSessionService.MAX_PARTS * PART_SIZE * 3 + 1;
+        when(multipartUploads.startUpload(anyString(), anyString())).thenReturn("upload-1");
+        when(multipartUploads.presignParts(anyString(), anyString(), anyInt(), any()))
+                .thenAnswer(invocation -> urls(invocation.getArgument(2)));
+
+        UploadTarget target = service.startEnhancementUploadSession("gen-1", "enh-1", List.of(file("bom.json", size)))
+                .getFiles().get(0);
+
+        assertTrue(target.getPartSize() > PART_SIZE * 3);
+        assertTrue(target.getPartUrls().size() <= UploadSessionService.MAX_PARTS);
+        assertTrue(target.getPartSize() * target.getPartUrls().size() >= size);
+        verify(multipartUploads).startUpload("gen-1/enh-1/bom.json", "application/json");
+    }
+
+    @Test
+    void testStartAbortsStartedUploadsWhenOneFails() {
+        when(multipartUploads.startUpload(anyString(), anyString()))
+                .thenReturn("upload-1")
+                .thenThrow(new StorageUnavailableException("Storage unavailable", null));
+        when(multipartUploads.presignParts(anyString(), anyString(), anyInt(), any()))
+                .thenAnswer(invocation -> urls(invocation.getArgument(2)));
+
+        assertThrows(StorageUnavailableException.class, () -> service.startGenerationUploadSession("gen-1",
+                List.of(file("bom-0.json", 10), file("bom-1.json", 10))));
+
+        verify(multipartUploads).abortUpload("gen-1/bom-0.json", "upload-1");
+    }
+
+    @Test
+    void testFinalizeCompletesUploadsAndReturnsPermanentUrls() {
+        Map<String, String> urls = service.finalizeGenerationUploadSession("gen-1", List.of(
+                upload("bom-0.json", "upload-1"), upload("bom-1.json", "upload-2")));
+
+        assertEquals(Map.of(
+                "bom-0.json", PUBLIC_API_URL + "/api/v1/storage/content/gen-1/bom-0.json",
+                "bom-1.json", PUBLIC_API_URL + "/api/v1/storage/content/gen-1/bom-1.json"), urls);
+        verify(multipartUploads).verifyUpload("gen-1/bom-0.json", "upload-1", 10, List.of("etag-1"));
+        verify(multipartUploads).completeUpload("gen-1/bom-1.json", "upload-2", List.of("etag-1"));
+        assertEquals(2, storageService.listGenerationFiles("gen-1", null, 10).getObjects().size());
+    }
+
+    @Test
+    void testFinalizeCompletesNothingWhenAnUploadDoesNotMatch() {
+        lenient().doThrow(new StorageUploadMismatchException("Upload of gen-1/bom-1.json has 10 bytes, expected 11", null))
+                .when(multipartUploads).verifyUpload("gen-1/bom-1.json", "upload-2", 10, List.of("etag-1"));
+
+        assertThrows(StorageUploadMismatchException.class, () -> service.finalizeGenerationUploadSession("gen-1",
+                List.of(upload("bom-0.json", "upload-1"), upload("bom-1.json", "upload-2"))));
+
+        verify(multipartUploads, never()).completeUpload(anyString(), anyString(), anyList());
+    }
+
+    @Test
+    void testSweepAbortsUploadsOlderThanExpiry() {
+        when(multipartUploads.abortUploadsStartedBefore(NOW.minus(EXPIRE_AFTER))).thenReturn(2);
+
+        assertEquals(2, service.sweep());
+    }
+
+    private static SbomFile file(String filename, long size) {
+        return SbomFile.builder().filename(filename).size(size).contentType("application/json").build();
+    }
+
+    private static CompletedUpload upload(String filename, String uploadId) {
+        return CompletedUpload.builder()
+                .filename(filename)
+                .uploadId(uploadId)
+                .size(10)
+                .partETags(List.of("etag-1"))
+                .build();
+    }
+
+    private static List<URI> urls(int partCount) {
+        return IntStream.rangeClosed(1, partCount)
+                .mapToObj(i -> URI.create("https://s3.example.com/bucket/key?partNumber=" + i))
+                .toList();
+    }
+}